@@ -19,6 +19,8 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import java.io.IOException;
 import java.util.Date;
@@ -43,6 +45,16 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * @return a writer for many values to one output, one value per line, that leaves flushing to
+     * the caller
+     */
+    public static ObjectWriter lineWriter() {
+        return objectMapper.writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .withRootValueSeparator("\n");
+    }
+
     public static <T> T readValue(String s, Class<T> clazz) throws JsonUtilException {
         try {
             if (hasText(s)) {
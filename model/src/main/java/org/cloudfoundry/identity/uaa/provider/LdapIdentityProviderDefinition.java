@@ -52,6 +52,9 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
     public static final String LDAP_GROUP_FILE_GROUPS_MAP_TO_SCOPES = "ldap/ldap-groups-map-to-scopes.xml";
     public static final String LDAP_GROUP_FILE_GROUPS_NULL_XML = "ldap/ldap-groups-null.xml";
     public static final String LDAP_GROUPS_AUTO_ADD = LDAP_PREFIX + "groups.autoAdd";
+    public static final String LDAP_GROUPS_BATCH_SIZE = LDAP_PREFIX + "groups.batchSize";
+    public static final String LDAP_GROUPS_CACHE_MAX_SIZE = LDAP_PREFIX + "groups.cacheMaxSize";
+    public static final String LDAP_GROUPS_CACHE_TTL_SECONDS = LDAP_PREFIX + "groups.cacheTtlSeconds";
     public static final String LDAP_GROUPS_FILE = LDAP_PREFIX + "groups.file";
     public static final String LDAP_GROUPS_GROUP_ROLE_ATTRIBUTE = LDAP_PREFIX + "groups.groupRoleAttribute";
     public static final String LDAP_GROUPS_GROUP_SEARCH_FILTER = LDAP_PREFIX + "groups.groupSearchFilter";
@@ -59,6 +62,10 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
     public static final String LDAP_GROUPS_MAX_SEARCH_DEPTH = LDAP_PREFIX + "groups.maxSearchDepth";
     public static final String LDAP_GROUPS_SEARCH_BASE = LDAP_PREFIX + "groups.searchBase";
     public static final String LDAP_GROUPS_SEARCH_SUBTREE = LDAP_PREFIX + "groups.searchSubtree";
+    public static final String LDAP_POOL_ENABLED = LDAP_PREFIX + "pool.enabled";
+    public static final String LDAP_POOL_IDLE_TIMEOUT_MILLIS = LDAP_PREFIX + "pool.idleTimeoutMillis";
+    public static final String LDAP_POOL_MAX_SIZE = LDAP_PREFIX + "pool.maxSize";
+    public static final String LDAP_POOL_VALIDATE = LDAP_PREFIX + "pool.validate";
     public static final String LDAP_PROFILE_FILE = LDAP_PREFIX + "profile.file";
     public static final String LDAP_PROFILE_FILE_SEARCH_AND_BIND = "ldap/ldap-search-and-bind.xml";
     public static final String LDAP_PROFILE_FILE_SEARCH_AND_COMPARE = "ldap/ldap-search-and-compare.xml";
@@ -74,7 +81,7 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
             List.of("ldap/ldap-groups-as-scopes.xml", "ldap/ldap-groups-map-to-scopes.xml", "ldap/ldap-groups-null.xml", "ldap/ldap-groups-populator.xml");
 
 
-    public static final List<String> LDAP_PROPERTY_NAMES = List.of(LDAP_ATTRIBUTE_MAPPINGS, LDAP_BASE_LOCAL_PASSWORD_COMPARE, LDAP_BASE_MAIL_ATTRIBUTE_NAME, LDAP_BASE_MAIL_SUBSTITUTE, LDAP_BASE_MAIL_SUBSTITUTE_OVERRIDES_LDAP, LDAP_BASE_PASSWORD, LDAP_BASE_PASSWORD_ATTRIBUTE_NAME, LDAP_BASE_PASSWORD_ENCODER, LDAP_BASE_REFERRAL, LDAP_BASE_SEARCH_BASE, LDAP_BASE_SEARCH_FILTER, LDAP_BASE_URL, LDAP_BASE_USER_DN, LDAP_BASE_USER_DN_PATTERN, LDAP_BASE_USER_DN_PATTERN_DELIMITER, LDAP_EMAIL_DOMAIN, LDAP_EXTERNAL_GROUPS_WHITELIST, LDAP_GROUPS_AUTO_ADD, LDAP_GROUPS_FILE, LDAP_GROUPS_GROUP_ROLE_ATTRIBUTE, LDAP_GROUPS_GROUP_SEARCH_FILTER, LDAP_GROUPS_IGNORE_PARTIAL_RESULT_EXCEPTION, LDAP_GROUPS_MAX_SEARCH_DEPTH, LDAP_GROUPS_SEARCH_BASE, LDAP_GROUPS_SEARCH_SUBTREE, LDAP_PROFILE_FILE, LDAP_SSL_SKIPVERIFICATION, LDAP_SSL_TLS);
+    public static final List<String> LDAP_PROPERTY_NAMES = List.of(LDAP_ATTRIBUTE_MAPPINGS, LDAP_BASE_LOCAL_PASSWORD_COMPARE, LDAP_BASE_MAIL_ATTRIBUTE_NAME, LDAP_BASE_MAIL_SUBSTITUTE, LDAP_BASE_MAIL_SUBSTITUTE_OVERRIDES_LDAP, LDAP_BASE_PASSWORD, LDAP_BASE_PASSWORD_ATTRIBUTE_NAME, LDAP_BASE_PASSWORD_ENCODER, LDAP_BASE_REFERRAL, LDAP_BASE_SEARCH_BASE, LDAP_BASE_SEARCH_FILTER, LDAP_BASE_URL, LDAP_BASE_USER_DN, LDAP_BASE_USER_DN_PATTERN, LDAP_BASE_USER_DN_PATTERN_DELIMITER, LDAP_EMAIL_DOMAIN, LDAP_EXTERNAL_GROUPS_WHITELIST, LDAP_GROUPS_AUTO_ADD, LDAP_GROUPS_BATCH_SIZE, LDAP_GROUPS_CACHE_MAX_SIZE, LDAP_GROUPS_CACHE_TTL_SECONDS, LDAP_GROUPS_FILE, LDAP_GROUPS_GROUP_ROLE_ATTRIBUTE, LDAP_GROUPS_GROUP_SEARCH_FILTER, LDAP_GROUPS_IGNORE_PARTIAL_RESULT_EXCEPTION, LDAP_GROUPS_MAX_SEARCH_DEPTH, LDAP_GROUPS_SEARCH_BASE, LDAP_GROUPS_SEARCH_SUBTREE, LDAP_POOL_ENABLED, LDAP_POOL_IDLE_TIMEOUT_MILLIS, LDAP_POOL_MAX_SIZE, LDAP_POOL_VALIDATE, LDAP_PROFILE_FILE, LDAP_SSL_SKIPVERIFICATION, LDAP_SSL_TLS);
 
     public static final Map<String, Class<?>> LDAP_PROPERTY_TYPES = new HashMap<>();
 
@@ -97,6 +104,9 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
         LDAP_PROPERTY_TYPES.put(LDAP_EMAIL_DOMAIN, List.class);
         LDAP_PROPERTY_TYPES.put(LDAP_EXTERNAL_GROUPS_WHITELIST, List.class);
         LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_AUTO_ADD, Boolean.class);
+        LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_BATCH_SIZE, Integer.class);
+        LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_CACHE_MAX_SIZE, Long.class);
+        LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_CACHE_TTL_SECONDS, Long.class);
         LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_FILE, String.class);
         LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_GROUP_ROLE_ATTRIBUTE, String.class);
         LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_GROUP_SEARCH_FILTER, String.class);
@@ -104,6 +114,10 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
         LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_MAX_SEARCH_DEPTH, Integer.class);
         LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_SEARCH_BASE, String.class);
         LDAP_PROPERTY_TYPES.put(LDAP_GROUPS_SEARCH_SUBTREE, Boolean.class);
+        LDAP_PROPERTY_TYPES.put(LDAP_POOL_ENABLED, Boolean.class);
+        LDAP_PROPERTY_TYPES.put(LDAP_POOL_IDLE_TIMEOUT_MILLIS, Long.class);
+        LDAP_PROPERTY_TYPES.put(LDAP_POOL_MAX_SIZE, Integer.class);
+        LDAP_PROPERTY_TYPES.put(LDAP_POOL_VALIDATE, Boolean.class);
         LDAP_PROPERTY_TYPES.put(LDAP_PROFILE_FILE, String.class);
         LDAP_PROPERTY_TYPES.put(LDAP_SSL_SKIPVERIFICATION, Boolean.class);
         LDAP_PROPERTY_TYPES.put(LDAP_SSL_TLS, String.class);
@@ -136,10 +150,18 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
     private Boolean autoAddGroups = true;
     private Boolean groupSearchSubTree = true;
     private int maxGroupSearchDepth = 10;
+    private int groupSearchBatchSize = 50;
+    private long groupCacheTtlSeconds = 300;
+    private long groupCacheMaxSize = 10000;
     private String groupRoleAttribute;
 
     private String tlsConfiguration = LDAP_TLS_NONE;
 
+    private boolean connectionPoolEnabled = false;
+    private int connectionPoolMaxSize = 8;
+    private boolean connectionPoolValidate = true;
+    private long connectionPoolIdleTimeoutMillis = 5 * 60 * 1000;
+
     public static LdapIdentityProviderDefinition searchAndBindMapGroupToScopes(
         String baseUrl,
         String bindUserDn,
@@ -404,6 +426,62 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
 
     }
 
+    public int getGroupSearchBatchSize() {
+        return groupSearchBatchSize;
+    }
+
+    public void setGroupSearchBatchSize(int groupSearchBatchSize) {
+        this.groupSearchBatchSize = groupSearchBatchSize;
+    }
+
+    public long getGroupCacheTtlSeconds() {
+        return groupCacheTtlSeconds;
+    }
+
+    public void setGroupCacheTtlSeconds(long groupCacheTtlSeconds) {
+        this.groupCacheTtlSeconds = groupCacheTtlSeconds;
+    }
+
+    public long getGroupCacheMaxSize() {
+        return groupCacheMaxSize;
+    }
+
+    public void setGroupCacheMaxSize(long groupCacheMaxSize) {
+        this.groupCacheMaxSize = groupCacheMaxSize;
+    }
+
+    public boolean isConnectionPoolEnabled() {
+        return connectionPoolEnabled;
+    }
+
+    public void setConnectionPoolEnabled(boolean connectionPoolEnabled) {
+        this.connectionPoolEnabled = connectionPoolEnabled;
+    }
+
+    public int getConnectionPoolMaxSize() {
+        return connectionPoolMaxSize;
+    }
+
+    public void setConnectionPoolMaxSize(int connectionPoolMaxSize) {
+        this.connectionPoolMaxSize = connectionPoolMaxSize;
+    }
+
+    public boolean isConnectionPoolValidate() {
+        return connectionPoolValidate;
+    }
+
+    public void setConnectionPoolValidate(boolean connectionPoolValidate) {
+        this.connectionPoolValidate = connectionPoolValidate;
+    }
+
+    public long getConnectionPoolIdleTimeoutMillis() {
+        return connectionPoolIdleTimeoutMillis;
+    }
+
+    public void setConnectionPoolIdleTimeoutMillis(long connectionPoolIdleTimeoutMillis) {
+        this.connectionPoolIdleTimeoutMillis = connectionPoolIdleTimeoutMillis;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -413,6 +491,13 @@ public class LdapIdentityProviderDefinition extends ExternalIdentityProviderDefi
         LdapIdentityProviderDefinition that = (LdapIdentityProviderDefinition) o;
 
         if (maxGroupSearchDepth != that.maxGroupSearchDepth) return false;
+        if (groupSearchBatchSize != that.groupSearchBatchSize) return false;
+        if (groupCacheTtlSeconds != that.groupCacheTtlSeconds) return false;
+        if (groupCacheMaxSize != that.groupCacheMaxSize) return false;
+        if (connectionPoolEnabled != that.connectionPoolEnabled) return false;
+        if (connectionPoolMaxSize != that.connectionPoolMaxSize) return false;
+        if (connectionPoolValidate != that.connectionPoolValidate) return false;
+        if (connectionPoolIdleTimeoutMillis != that.connectionPoolIdleTimeoutMillis) return false;
         if (!Objects.equals(ldapProfileFile, that.ldapProfileFile))
             return false;
         if (!Objects.equals(baseUrl, that.baseUrl)) return false;
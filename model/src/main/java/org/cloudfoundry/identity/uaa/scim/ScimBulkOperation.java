@@ -0,0 +1,75 @@
+package org.cloudfoundry.identity.uaa.scim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * A single operation of a {@link ScimBulkRequest}, as described in RFC 7644 section 3.7.
+ * {@code data} is kept untyped so that {@code bulkId:} references can be resolved
+ * before it is bound to a user or a group.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimBulkOperation {
+
+    private String method;
+
+    private String bulkId;
+
+    private String version;
+
+    private String path;
+
+    private Map<String, Object> data;
+
+    public ScimBulkOperation() {
+    }
+
+    public ScimBulkOperation(String method, String bulkId, String version, String path, Map<String, Object> data) {
+        this.method = method;
+        this.bulkId = bulkId;
+        this.version = version;
+        this.path = path;
+        this.data = data;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getBulkId() {
+        return bulkId;
+    }
+
+    public void setBulkId(String bulkId) {
+        this.bulkId = bulkId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    public void setData(Map<String, Object> data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,102 @@
+package org.cloudfoundry.identity.uaa.scim;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of a single {@link ScimBulkOperation}. Failed operations carry a SCIM error in {@code response}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimBulkOperationResponse {
+
+    public static final String ERROR_SCHEMA = "urn:ietf:params:scim:api:messages:2.0:Error";
+
+    private String method;
+
+    private String bulkId;
+
+    private String version;
+
+    private String location;
+
+    private String status;
+
+    private Map<String, Object> response;
+
+    public ScimBulkOperationResponse() {
+    }
+
+    public ScimBulkOperationResponse(String method, String bulkId, String version, String location, int status) {
+        this.method = method;
+        this.bulkId = bulkId;
+        this.version = version;
+        this.location = location;
+        this.status = String.valueOf(status);
+    }
+
+    public static ScimBulkOperationResponse error(String method, String bulkId, int status, String detail) {
+        ScimBulkOperationResponse result = new ScimBulkOperationResponse(method, bulkId, null, null, status);
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("schemas", new String[] {ERROR_SCHEMA});
+        error.put("status", String.valueOf(status));
+        error.put("detail", detail);
+        result.setResponse(error);
+        return result;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getBulkId() {
+        return bulkId;
+    }
+
+    public void setBulkId(String bulkId) {
+        this.bulkId = bulkId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Map<String, Object> getResponse() {
+        return response;
+    }
+
+    public void setResponse(Map<String, Object> response) {
+        this.response = response;
+    }
+
+    @JsonIgnore
+    public boolean isSuccessful() {
+        return status != null && status.startsWith("2");
+    }
+}
@@ -0,0 +1,45 @@
+package org.cloudfoundry.identity.uaa.scim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Body of a SCIM bulk response, with one entry per operation that was processed, in request order.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimBulkResponse {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkResponse";
+
+    private List<String> schemas = Collections.singletonList(SCHEMA);
+
+    @JsonProperty("Operations")
+    private List<ScimBulkOperationResponse> operations = new ArrayList<>();
+
+    public ScimBulkResponse() {
+    }
+
+    public ScimBulkResponse(List<ScimBulkOperationResponse> operations) {
+        setOperations(operations);
+    }
+
+    public List<String> getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(List<String> schemas) {
+        this.schemas = schemas;
+    }
+
+    public List<ScimBulkOperationResponse> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<ScimBulkOperationResponse> operations) {
+        this.operations = operations == null ? new ArrayList<>() : operations;
+    }
+}
@@ -0,0 +1,76 @@
+package org.cloudfoundry.identity.uaa.scim;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Outcome of a single member addition or removal within a {@link ScimGroupMemberChanges} request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimGroupMemberChangeResult {
+
+    public static final String ADD = "add";
+    public static final String REMOVE = "remove";
+
+    @JsonProperty("value")
+    private String memberId;
+
+    private String operation;
+
+    private int status;
+
+    private String error;
+
+    public ScimGroupMemberChangeResult() {
+    }
+
+    public ScimGroupMemberChangeResult(String memberId, String operation, int status, String error) {
+        this.memberId = memberId;
+        this.operation = operation;
+        this.status = status;
+        this.error = error;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public void setMemberId(String memberId) {
+        this.memberId = memberId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @JsonIgnore
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(memberId: %s, operation: %s, status: %d)", memberId, operation, status);
+    }
+}
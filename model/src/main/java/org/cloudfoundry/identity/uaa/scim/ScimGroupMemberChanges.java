@@ -0,0 +1,46 @@
+package org.cloudfoundry.identity.uaa.scim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of membership changes applied to a single group in one request.
+ * Members listed in {@code remove} only need their id.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimGroupMemberChanges {
+
+    private List<ScimGroupMember> add = new ArrayList<>();
+
+    private List<String> remove = new ArrayList<>();
+
+    public ScimGroupMemberChanges() {
+    }
+
+    public ScimGroupMemberChanges(List<ScimGroupMember> add, List<String> remove) {
+        setAdd(add);
+        setRemove(remove);
+    }
+
+    public List<ScimGroupMember> getAdd() {
+        return add;
+    }
+
+    public void setAdd(List<ScimGroupMember> add) {
+        this.add = add == null ? new ArrayList<>() : add;
+    }
+
+    public List<String> getRemove() {
+        return remove;
+    }
+
+    public void setRemove(List<String> remove) {
+        this.remove = remove == null ? new ArrayList<>() : remove;
+    }
+
+    public int size() {
+        return add.size() + remove.size();
+    }
+}
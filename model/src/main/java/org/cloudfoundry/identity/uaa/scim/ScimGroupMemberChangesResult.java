@@ -0,0 +1,60 @@
+package org.cloudfoundry.identity.uaa.scim;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimGroupMemberChangesResult {
+
+    private String groupId;
+
+    private String displayName;
+
+    private List<ScimGroupMemberChangeResult> results = new ArrayList<>();
+
+    public ScimGroupMemberChangesResult() {
+    }
+
+    public ScimGroupMemberChangesResult(String groupId, String displayName, List<ScimGroupMemberChangeResult> results) {
+        this.groupId = groupId;
+        this.displayName = displayName;
+        this.results = results;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public List<ScimGroupMemberChangeResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ScimGroupMemberChangeResult> results) {
+        this.results = results;
+    }
+
+    @JsonIgnore
+    public List<String> getChangedMemberIds() {
+        return results.stream()
+                .filter(ScimGroupMemberChangeResult::isSuccessful)
+                .map(ScimGroupMemberChangeResult::getMemberId)
+                .collect(toList());
+    }
+}
@@ -0,0 +1,212 @@
+package org.cloudfoundry.identity.uaa.audit;
+
+import org.cloudfoundry.identity.uaa.logging.LogSanitizerUtil;
+
+/**
+ * Renders an {@link AuditEvent} as a single log line.
+ * <p>
+ * Lines are built in a per thread buffer that is reused between events, so encoding an event
+ * allocates little more than the resulting string. Carriage returns, line feeds and tabs never
+ * reach the log: the text and key=value formats replace them like {@link LogSanitizerUtil} does,
+ * the JSON format escapes them.
+ */
+public class AuditLogEncoder {
+
+    public enum Format {
+        TEXT, JSON, KEY_VALUE;
+
+        public static Format fromString(String format) {
+            if (format == null) {
+                return TEXT;
+            }
+            switch (format.trim().toLowerCase()) {
+                case "json":
+                    return JSON;
+                case "keyvalue":
+                case "key_value":
+                case "kv":
+                    return KEY_VALUE;
+                case "text":
+                case "":
+                    return TEXT;
+                default:
+                    throw new IllegalArgumentException("Unknown audit log format: " + format);
+            }
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 8 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Format format;
+
+    public AuditLogEncoder(Format format) {
+        this.format = format;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public String encode(AuditEvent auditEvent) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        switch (format) {
+            case JSON:
+                encodeJson(auditEvent, buffer);
+                break;
+            case KEY_VALUE:
+                encodeKeyValue(auditEvent, buffer);
+                break;
+            default:
+                encodeText(auditEvent, buffer);
+                break;
+        }
+        String line = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.set(new StringBuilder(INITIAL_CAPACITY));
+        }
+        return line;
+    }
+
+    private static void encodeText(AuditEvent auditEvent, StringBuilder buffer) {
+        boolean sanitized = appendSanitized(buffer, auditEvent.getType().name());
+        buffer.append(" ('");
+        sanitized |= appendSanitized(buffer, auditEvent.getData());
+        buffer.append("'): principal=");
+        sanitized |= appendSanitized(buffer, auditEvent.getPrincipalId());
+        buffer.append(", origin=[");
+        sanitized |= appendSanitized(buffer, auditEvent.getOrigin());
+        buffer.append("], identityZoneId=[");
+        sanitized |= appendSanitized(buffer, auditEvent.getIdentityZoneId());
+        buffer.append(']');
+        if (auditEvent.getAuthenticationType() != null) {
+            buffer.append(", authenticationType=[");
+            sanitized |= appendSanitized(buffer, auditEvent.getAuthenticationType());
+            buffer.append(']');
+        }
+        if (sanitized) {
+            buffer.append(LogSanitizerUtil.SANITIZED_FLAG);
+        }
+    }
+
+    private static void encodeKeyValue(AuditEvent auditEvent, StringBuilder buffer) {
+        buffer.append("type=").append(auditEvent.getType().name());
+        boolean sanitized = appendKeyValue(buffer, "data", auditEvent.getData());
+        sanitized |= appendKeyValue(buffer, "principal", auditEvent.getPrincipalId());
+        sanitized |= appendKeyValue(buffer, "origin", auditEvent.getOrigin());
+        sanitized |= appendKeyValue(buffer, "identityZoneId", auditEvent.getIdentityZoneId());
+        sanitized |= appendKeyValue(buffer, "authenticationType", auditEvent.getAuthenticationType());
+        buffer.append(" time=").append(auditEvent.getTime());
+        if (sanitized) {
+            buffer.append(" sanitized=true");
+        }
+    }
+
+    private static void encodeJson(AuditEvent auditEvent, StringBuilder buffer) {
+        buffer.append("{\"type\":\"").append(auditEvent.getType().name()).append('"');
+        appendJsonField(buffer, "data", auditEvent.getData());
+        appendJsonField(buffer, "principal", auditEvent.getPrincipalId());
+        appendJsonField(buffer, "origin", auditEvent.getOrigin());
+        appendJsonField(buffer, "identityZoneId", auditEvent.getIdentityZoneId());
+        appendJsonField(buffer, "authenticationType", auditEvent.getAuthenticationType());
+        buffer.append(",\"time\":").append(auditEvent.getTime()).append('}');
+    }
+
+    private static boolean appendSanitized(StringBuilder buffer, String value) {
+        if (value == null) {
+            buffer.append("null");
+            return false;
+        }
+        boolean sanitized = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == '\t') {
+                buffer.append('|');
+                sanitized = true;
+            } else {
+                buffer.append(c);
+            }
+        }
+        return sanitized;
+    }
+
+    private static boolean appendKeyValue(StringBuilder buffer, String key, String value) {
+        if (value == null) {
+            return false;
+        }
+        buffer.append(' ').append(key).append('=');
+        if (!needsQuotes(value)) {
+            return appendSanitized(buffer, value);
+        }
+        boolean sanitized = false;
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == '\t') {
+                buffer.append('|');
+                sanitized = true;
+            } else {
+                if (c == '"' || c == '\\') {
+                    buffer.append('\\');
+                }
+                buffer.append(c);
+            }
+        }
+        buffer.append('"');
+        return sanitized;
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ' ' || c == '"' || c == '=' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendJsonField(StringBuilder buffer, String key, String value) {
+        if (value == null) {
+            return;
+        }
+        buffer.append(",\"").append(key).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        buffer.append("\\u")
+                                .append(HEX[(c >> 12) & 0xF])
+                                .append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF])
+                                .append(HEX[c & 0xF]);
+                    } else {
+                        buffer.append(c);
+                    }
+            }
+        }
+        buffer.append('"');
+    }
+}
@@ -1,8 +1,8 @@
 package org.cloudfoundry.identity.uaa.audit;
 
-import org.cloudfoundry.identity.uaa.logging.LogSanitizerUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jmx.export.annotation.ManagedMetric;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.jmx.support.MetricType;
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Audit service implementation which just outputs the relevant information
@@ -17,6 +18,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  * Keep this as a top-level bean to ensure it is exposed as a @ManagedResource
  *
+ * Lines are written as text by default, {@code audit.log.format} switches to json or key=value.
+ * With {@code audit.log.tokenIssuedSampleRate} set to N only every Nth {@code TokenIssuedEvent}
+ * is written; the counters always include every event.
+ *
  * @author Luke Taylor
  * @author Dave Syer
  */
@@ -48,6 +53,14 @@ public class LoggingAuditService implements UaaAuditService {
 
     private AtomicInteger passwordFailures = new AtomicInteger();
 
+    private AtomicLong tokenIssuedCount = new AtomicLong();
+
+    private AtomicLong unsampledCount = new AtomicLong();
+
+    private AuditLogEncoder encoder = new AuditLogEncoder(AuditLogEncoder.Format.TEXT);
+
+    private int tokenIssuedSampleRate = 1;
+
     @ManagedMetric(metricType = MetricType.COUNTER, displayName = "User Not Found Count")
     public int getUserNotFoundCount() {
         return userNotFoundCount.get();
@@ -93,6 +106,37 @@ public class LoggingAuditService implements UaaAuditService {
         return passwordFailures.get();
     }
 
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Token Issued Count")
+    public long getTokenIssuedCount() {
+        return tokenIssuedCount.get();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Audit Events Not Logged Due To Sampling Count")
+    public long getUnsampledCount() {
+        return unsampledCount.get();
+    }
+
+    @Value("${audit.log.format:text}")
+    public void setFormat(String format) {
+        this.encoder = new AuditLogEncoder(AuditLogEncoder.Format.fromString(format));
+    }
+
+    public AuditLogEncoder.Format getFormat() {
+        return encoder.getFormat();
+    }
+
+    @Value("${audit.log.tokenIssuedSampleRate:1}")
+    public void setTokenIssuedSampleRate(int tokenIssuedSampleRate) {
+        if (tokenIssuedSampleRate < 1) {
+            throw new IllegalArgumentException("audit.log.tokenIssuedSampleRate must be 1 or greater");
+        }
+        this.tokenIssuedSampleRate = tokenIssuedSampleRate;
+    }
+
+    public int getTokenIssuedSampleRate() {
+        return tokenIssuedSampleRate;
+    }
+
     @Override
     public List<AuditEvent> find(String principal, long after, String zoneId) {
         throw new UnsupportedOperationException("This implementation does not store data");
@@ -100,24 +144,17 @@ public class LoggingAuditService implements UaaAuditService {
 
     @Override
     public void log(AuditEvent auditEvent, String zoneId) {
-        updateCounters(auditEvent);
-
-        String logMessage = String.format("%s ('%s'): principal=%s, origin=[%s], identityZoneId=[%s]",
-                auditEvent.getType().name(),
-                auditEvent.getData(),
-                auditEvent.getPrincipalId(),
-                auditEvent.getOrigin(),
-                auditEvent.getIdentityZoneId()
-        );
-
-        if (auditEvent.getAuthenticationType() != null) {
-            logMessage = String.format("%s, authenticationType=[%s]", logMessage, auditEvent.getAuthenticationType());
+        if (!updateCounters(auditEvent)) {
+            unsampledCount.incrementAndGet();
+            return;
         }
-
-        log(logMessage);
+        log(encoder.encode(auditEvent));
     }
 
-    private void updateCounters(AuditEvent auditEvent) {
+    /**
+     * @return false when the event is left out of the log by sampling
+     */
+    private boolean updateCounters(AuditEvent auditEvent) {
         switch (auditEvent.getType()) {
             case PasswordChangeSuccess:
                 passwordChanges.incrementAndGet();
@@ -146,14 +183,16 @@ public class LoggingAuditService implements UaaAuditService {
             case PrincipalNotFound:
                 principalNotFoundCount.incrementAndGet();
                 break;
+            case TokenIssuedEvent:
+                long count = tokenIssuedCount.incrementAndGet();
+                return tokenIssuedSampleRate == 1 || count % tokenIssuedSampleRate == 1;
             default:
                 break;
         }
+        return true;
     }
 
-    private void log(String msg) {
-        String sanitized = LogSanitizerUtil.sanitize(msg);
-
+    private void log(String sanitized) {
         if (logger.isTraceEnabled()) {
             StringBuilder output = new StringBuilder(256);
             output.append("\n************************************************************\n");
@@ -65,7 +65,8 @@ public abstract class AbstractUaaEvent extends ApplicationEvent {
     }
 
     public void process(UaaAuditService auditor) {
-        auditor.log(getAuditEvent(), getAuditEvent().getIdentityZoneId());
+        AuditEvent auditEvent = getAuditEvent();
+        auditor.log(auditEvent, auditEvent.getIdentityZoneId());
     }
 
     protected AuditEvent createAuditRecord(String principalId, AuditEventType type, String origin) {
@@ -0,0 +1,144 @@
+package org.cloudfoundry.identity.uaa.audit.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs audit listeners off the request thread.
+ * <p>
+ * Work is spread over a fixed number of single threaded lanes chosen by the principal of the event,
+ * so the events of one principal are handled in the order they were published. Each lane has a
+ * bounded queue; when it is full the publisher waits for room in that queue, which slows requests
+ * down instead of dropping audit records or handling them out of order. Only once a lane is shut
+ * down is work run on the publishing thread.
+ * <p>
+ * When disabled all work runs on the publishing thread.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=AuditEventDispatcher",
+        description = "UAA Audit Event Dispatcher Metrics"
+)
+public class AuditEventDispatcher implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditEventDispatcher.class);
+    private static final long SHUTDOWN_WAIT_MILLIS = 5000;
+
+    private final ThreadPoolExecutor[] lanes;
+    private final int queueSize;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public AuditEventDispatcher(boolean enabled, int threads, int queueSize) {
+        if (enabled && (threads <= 0 || queueSize <= 0)) {
+            throw new IllegalArgumentException("Audit dispatcher threads and queueSize must be positive numbers");
+        }
+        this.queueSize = queueSize;
+        this.lanes = new ThreadPoolExecutor[enabled ? threads : 0];
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("audit-dispatcher-");
+        threadFactory.setDaemon(true);
+        RejectedExecutionHandler backPressure = this::waitForRoom;
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), threadFactory, backPressure);
+        }
+    }
+
+    public boolean isEnabled() {
+        return lanes.length > 0;
+    }
+
+    /**
+     * @param key  work with the same key is run in the order it was dispatched, usually the principal id
+     * @param work the listener call
+     */
+    public void dispatch(String key, Runnable work) {
+        Runnable task = () -> run(work);
+        if (!isEnabled()) {
+            task.run();
+            return;
+        }
+        int hash = key == null ? 0 : key.hashCode();
+        lanes[(hash & Integer.MAX_VALUE) % lanes.length].execute(task);
+        dispatched.increment();
+    }
+
+    private void run(Runnable work) {
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            if (!isEnabled()) {
+                throw e;
+            }
+            failures.increment();
+            logger.error("Audit listener failed", e);
+        }
+    }
+
+    private void waitForRoom(Runnable task, ThreadPoolExecutor executor) {
+        if (!executor.isShutdown()) {
+            blocked.increment();
+            try {
+                // running the work here instead would overtake earlier events of the same principal
+                executor.getQueue().put(task);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        task.run();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Dropping " + lane.shutdownNow().size() + " audit event(s) on shutdown");
+            }
+        }
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Queued Audit Event Count")
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Audit Event Queue Capacity")
+    public int getQueueCapacity() {
+        return lanes.length * queueSize;
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Dispatched Audit Event Count")
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Audit Events Waiting For Queue Room Count")
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Failed Audit Listener Count")
+    public long getFailureCount() {
+        return failures.sum();
+    }
+}
@@ -1,6 +1,6 @@
 package org.cloudfoundry.identity.uaa.audit.event;
 
-import org.cloudfoundry.identity.uaa.audit.LoggingAuditService;
+import org.cloudfoundry.identity.uaa.audit.AuditEvent;
 import org.cloudfoundry.identity.uaa.audit.UaaAuditService;
 import org.springframework.context.ApplicationListener;
 import org.springframework.util.Assert;
@@ -15,15 +15,31 @@ import org.springframework.util.Assert;
  */
 public class AuditListener implements ApplicationListener<AbstractUaaEvent> {
     private final UaaAuditService uaaAuditService;
+    private final AuditEventDispatcher dispatcher;
 
     public AuditListener(UaaAuditService auditor) {
+        this(auditor, null);
+    }
+
+    /**
+     * @param dispatcher when not null the audit service is called by the dispatcher instead of
+     *                   on the publishing thread. The audit record itself is always built on the
+     *                   publishing thread, as it may read request scoped state.
+     */
+    public AuditListener(UaaAuditService auditor, AuditEventDispatcher dispatcher) {
         Assert.notNull(auditor, "[Assertion failed] - auditor is required; it must not be null");
         this.uaaAuditService = auditor;
+        this.dispatcher = dispatcher;
     }
 
     @Override
     public void onApplicationEvent(AbstractUaaEvent event) {
-        event.process(uaaAuditService);
+        if (dispatcher == null) {
+            event.process(uaaAuditService);
+            return;
+        }
+        AuditEvent auditEvent = event.getAuditEvent();
+        dispatcher.dispatch(auditEvent.getPrincipalId(), () -> uaaAuditService.log(auditEvent, auditEvent.getIdentityZoneId()));
     }
 
 }
@@ -2,19 +2,31 @@ package org.cloudfoundry.identity.uaa.audit.event;
 
 import org.cloudfoundry.identity.uaa.audit.UaaAuditService;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class AuditListenerConfig {
 
+    @Bean
+    public AuditEventDispatcher auditEventDispatcher(
+            @Value("${audit.async.enabled:false}") boolean enabled,
+            @Value("${audit.async.threads:4}") int threads,
+            @Value("${audit.async.queueSize:10000}") int queueSize
+    ) {
+        return new AuditEventDispatcher(enabled, threads, queueSize);
+    }
+
     @Bean
     public AuditListener loggingAuditListener(
-            @Qualifier("loggingAuditService") UaaAuditService loggingAuditService
+            @Qualifier("loggingAuditService") UaaAuditService loggingAuditService,
+            AuditEventDispatcher auditEventDispatcher
     ) {
-        return new AuditListener(loggingAuditService);
+        return new AuditListener(loggingAuditService, auditEventDispatcher.isEnabled() ? auditEventDispatcher : null);
     }
 
+    // stays on the request thread, account lockout reads the failed logins written by this listener
     @Bean
     public AuditListener jdbcAuditListener(
             @Qualifier("jdbcAuditService") UaaAuditService jdbcAuditService
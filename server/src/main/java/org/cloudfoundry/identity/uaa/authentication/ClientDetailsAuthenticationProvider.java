@@ -12,6 +12,10 @@
  *******************************************************************************/
 package org.cloudfoundry.identity.uaa.authentication;
 
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.MultitenantJdbcClientDetailsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.core.AuthenticationException;
@@ -22,6 +26,10 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 public class ClientDetailsAuthenticationProvider extends DaoAuthenticationProvider {
 
+    private static final Logger logger = LoggerFactory.getLogger(ClientDetailsAuthenticationProvider.class);
+
+    private MultitenantJdbcClientDetailsService clientDetailsService;
+    private boolean rehashOnLogin = false;
 
     public ClientDetailsAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder encoder) {
         super();
@@ -42,11 +50,15 @@ public class ClientDetailsAuthenticationProvider extends DaoAuthenticationProvid
         }
 
         AuthenticationException error = null;
-        for(String pwd: passwordList) {
+        for (int i = 0; i < passwordList.length; i++) {
+            String pwd = passwordList[i];
             try {
                 User user = new User(userDetails.getUsername(), pwd, userDetails.isEnabled(), userDetails.isAccountNonExpired(), userDetails.isCredentialsNonExpired(), userDetails.isAccountNonLocked(), userDetails.getAuthorities());
                 super.additionalAuthenticationChecks(user, authentication);
                 error = null;
+                if (rehashOnLogin && pwd != null) {
+                    rehashSecretIfNeeded(userDetails.getUsername(), password, passwordList, i, authentication);
+                }
                 break;
             } catch (AuthenticationException e) {
                 error = e;
@@ -56,4 +68,28 @@ public class ClientDetailsAuthenticationProvider extends DaoAuthenticationProvid
             throw error;
         }
     }
+
+    private void rehashSecretIfNeeded(String clientId, String currentSecret, String[] secrets, int matched, UsernamePasswordAuthenticationToken authentication) {
+        if (clientDetailsService == null || !getPasswordEncoder().upgradeEncoding(secrets[matched])) {
+            return;
+        }
+        try {
+            String[] newSecrets = secrets.clone();
+            newSecrets[matched] = getPasswordEncoder().encode(authentication.getCredentials().toString());
+            if (clientDetailsService.updateClientSecretHash(clientId, currentSecret, String.join(" ", newSecrets), IdentityZoneHolder.getCurrentZoneId())) {
+                logger.debug("Client secret hash re-encoded for client: " + clientId);
+            }
+        } catch (RuntimeException e) {
+            // the client has been authenticated, a failed re-hash is retried on the next authentication
+            logger.warn("Unable to re-encode client secret hash for client: " + clientId, e);
+        }
+    }
+
+    public void setClientDetailsService(MultitenantJdbcClientDetailsService clientDetailsService) {
+        this.clientDetailsService = clientDetailsService;
+    }
+
+    public void setRehashOnLogin(boolean rehashOnLogin) {
+        this.rehashOnLogin = rehashOnLogin;
+    }
 }
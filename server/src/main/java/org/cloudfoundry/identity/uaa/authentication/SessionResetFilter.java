@@ -15,11 +15,18 @@
 
 package org.cloudfoundry.identity.uaa.authentication;
 
-import org.cloudfoundry.identity.uaa.user.UaaUserPrototype;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.account.event.PasswordChangeEvent;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.event.UserModifiedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.user.UaaUserDatabase;
+import org.springframework.context.ApplicationListener;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -33,25 +40,81 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
-public class SessionResetFilter extends OncePerRequestFilter {
+/**
+ * Invalidates the session of a UAA user whose password changed after they authenticated.
+ * <p>
+ * The time of the last password change is kept per user for {@code passwordChangeCacheTtlSeconds}.
+ * Password changes, user modifications and deletions on this server evict the user right away;
+ * changes made through another server are picked up when the entry expires.
+ */
+public class SessionResetFilter extends OncePerRequestFilter implements ApplicationListener<AbstractUaaEvent> {
+
+    private static final long PASSWORD_NEVER_CHANGED = Long.MIN_VALUE;
+    private static final int DEFAULT_PASSWORD_CHANGE_CACHE_TTL_SECONDS = 10;
+    private static final int PASSWORD_CHANGE_CACHE_MAX_SIZE = 100000;
 
     private static Logger logger = LoggerFactory.getLogger(SessionResetFilter.class);
 
     private final RedirectStrategy strategy;
     private final String redirectUrl;
     private final UaaUserDatabase userDatabase;
+    private volatile Cache<String, Long> passwordChangeTimes;
 
     public SessionResetFilter(RedirectStrategy strategy, String redirectUrl, UaaUserDatabase userDatabase) {
         this.strategy = strategy;
         this.redirectUrl = redirectUrl;
         this.userDatabase = userDatabase;
+        setPasswordChangeCacheTtlSeconds(DEFAULT_PASSWORD_CHANGE_CACHE_TTL_SECONDS);
     }
 
     public String getRedirectUrl() {
         return redirectUrl;
     }
 
+    /**
+     * @param ttlSeconds how long the password change time of a user is reused, 0 reads it on every request
+     */
+    public void setPasswordChangeCacheTtlSeconds(int ttlSeconds) {
+        this.passwordChangeTimes = ttlSeconds <= 0 ? null : CacheBuilder.newBuilder()
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .maximumSize(PASSWORD_CHANGE_CACHE_MAX_SIZE)
+            .build();
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        Cache<String, Long> cache = passwordChangeTimes;
+        if (cache == null) {
+            return;
+        }
+        if (event instanceof PasswordChangeEvent) {
+            PasswordChangeEvent passwordChangeEvent = (PasswordChangeEvent) event;
+            if (passwordChangeEvent.getUser() != null) {
+                cache.invalidate(passwordChangeEvent.getUser().getId());
+            }
+        } else if (event instanceof UserModifiedEvent) {
+            cache.invalidate(((UserModifiedEvent) event).getUserId());
+        } else if (event instanceof EntityDeletedEvent && ((EntityDeletedEvent<?>) event).getDeleted() instanceof ScimUser) {
+            cache.invalidate(((ScimUser) ((EntityDeletedEvent<?>) event).getDeleted()).getId());
+        }
+    }
+
+    private long getPasswordChangeTime(String userId) {
+        Cache<String, Long> cache = passwordChangeTimes;
+        Long cached = cache == null ? null : cache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        Date lastModified = userDatabase.retrievePasswordLastModified(userId);
+        long passwordChangeTime = lastModified == null ? PASSWORD_NEVER_CHANGED : lastModified.getTime();
+        if (cache != null) {
+            cache.put(userId, passwordChangeTime);
+        }
+        return passwordChangeTime;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         SecurityContext context = SecurityContextHolder.getContext();
@@ -65,11 +128,9 @@ public class SessionResetFilter extends OncePerRequestFilter {
                 String userId = authentication.getPrincipal().getId();
                 try {
                     logger.debug("Evaluating user-id for session reset:"+userId);
-                    UaaUserPrototype user = userDatabase.retrieveUserPrototypeById(userId);
-                    Date lastModified;
-                    if ((lastModified = user.getPasswordLastModified()) != null) {
+                    long passwordModTime = getPasswordChangeTime(userId);
+                    if (passwordModTime != PASSWORD_NEVER_CHANGED) {
                         long lastAuthTime = authentication.getAuthenticatedTime();
-                        long passwordModTime = lastModified.getTime();
                         //if the password has changed after authentication time
                         if (hasPasswordChangedAfterAuthentication(lastAuthTime, passwordModTime)) {
                             logger.debug(String.format("Resetting user session for user ID: %s Auth Time: %s Password Change Time: %s",userId, lastAuthTime, passwordModTime));
@@ -91,6 +91,17 @@ public class UaaAuthenticationDetails implements Serializable {
         this.sessionId = sessionId;
     }
 
+    public UaaAuthenticationDetails(boolean addNew,
+                                    String clientId,
+                                    String origin,
+                                    String sessionId,
+                                    UaaLoginHint loginHint,
+                                    Map<String, String[]> parameterMap) {
+        this(addNew, clientId, origin, sessionId);
+        this.loginHint = loginHint;
+        this.parameterMap = parameterMap == null ? null : new HashMap<>(parameterMap);
+    }
+
     public String getOrigin() {
         return origin;
     }
@@ -120,7 +131,7 @@ public class UaaAuthenticationDetails implements Serializable {
     }
 
     public Map<String, String[]> getParameterMap() {
-        return new HashMap<>(parameterMap);
+        return parameterMap == null ? null : new HashMap<>(parameterMap);
     }
 
     @Override
@@ -50,6 +50,7 @@ public class AuthzAuthenticationManager implements AuthenticationManager, Applic
 
     private String origin;
     private boolean allowUnverifiedUsers = true;
+    private boolean rehashOnLogin = false;
 
     public AuthzAuthenticationManager(UaaUserDatabase userDatabase,
                                       @Qualifier("nonCachingPasswordEncoder") PasswordEncoder encoder,
@@ -108,6 +109,10 @@ public class AuthzAuthenticationManager implements AuthenticationManager, Applic
 
                 uaaAuthentication.setAuthenticationMethods(Collections.singleton("pwd"));
 
+                if (rehashOnLogin) {
+                    rehashPasswordIfNeeded(user, (CharSequence) req.getCredentials());
+                }
+
                 if (userMustUpdatePassword(user)) {
                     logger.info("Password change required for user: " + user.getEmail());
                     user.setPasswordChangeRequired(true);
@@ -124,6 +129,19 @@ public class AuthzAuthenticationManager implements AuthenticationManager, Applic
         throw e;
     }
 
+    private void rehashPasswordIfNeeded(UaaUser user, CharSequence rawPassword) {
+        try {
+            if (encoder.upgradeEncoding(user.getPassword())) {
+                if (userDatabase.updatePasswordHash(user.getId(), user.getPassword(), encoder.encode(rawPassword))) {
+                    logger.debug("Password hash re-encoded for user: " + user.getId());
+                }
+            }
+        } catch (RuntimeException e) {
+            // the user has been authenticated, a failed re-hash is retried on the next login
+            logger.warn("Unable to re-encode password hash for user: " + user.getId() + ", " + e.getMessage());
+        }
+    }
+
     private boolean userMustUpdatePassword(UaaUser user) {
         return user.isPasswordChangeRequired() ||
                 afterPasswordExpirationDate(user.getPasswordLastModified()) ||
@@ -202,6 +220,10 @@ public class AuthzAuthenticationManager implements AuthenticationManager, Applic
         this.allowUnverifiedUsers = allowUnverifiedUsers;
     }
 
+    public void setRehashOnLogin(boolean rehashOnLogin) {
+        this.rehashOnLogin = rehashOnLogin;
+    }
+
     private boolean afterPasswordExpirationDate(Date passwordLastModified) {
         int expiringPassword = getPasswordExpiresInMonths();
         if (expiringPassword>0) {
@@ -25,12 +25,12 @@ import java.nio.file.ProviderNotFoundException;
 
 public class DynamicLdapAuthenticationManager implements AuthenticationManager {
     private final LdapIdentityProviderDefinition definition;
-    private ClassPathXmlApplicationContext context = null;
+    private volatile ClassPathXmlApplicationContext context = null;
     private ScimGroupExternalMembershipManager scimGroupExternalMembershipManager;
     private ScimGroupProvisioning scimGroupProvisioning;
     private LdapLoginAuthenticationManager ldapLoginAuthenticationManager;
-    private AuthenticationManager manager;
-    private AuthenticationManager ldapManagerActual;
+    private volatile AuthenticationManager manager;
+    private volatile AuthenticationManager ldapManagerActual;
     private ApplicationEventPublisher eventPublisher;
 
 
@@ -48,10 +48,23 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
         return context;
     }
 
-    public synchronized AuthenticationManager getLdapAuthenticationManager() throws BeansException {
-        if (definition==null) {
-            return null;
+    /**
+     * Returns the LDAP manager, building the LDAP application context on first use. Once built,
+     * the manager is returned without locking.
+     */
+    public AuthenticationManager getLdapAuthenticationManager() throws BeansException {
+        AuthenticationManager result = manager;
+        if (result != null || definition == null) {
+            return result;
         }
+        return createLdapAuthenticationManager();
+    }
+
+    public boolean isInitialized() {
+        return manager != null;
+    }
+
+    private synchronized AuthenticationManager createLdapAuthenticationManager() throws BeansException {
         if (manager!=null) {
             return manager;
         }
@@ -66,7 +79,7 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
             parent.refresh();
 
             //create the context that holds LDAP
-            context = new ClassPathXmlApplicationContext(new String[] {"ldap-integration.xml"}, false, parent);
+            ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(new String[] {"ldap-integration.xml"}, false, parent);
             context.setEnvironment(environment);
             EnvironmentPropertiesFactoryBean factoryBean = new EnvironmentPropertiesFactoryBean();
             factoryBean.setEnvironment(environment);
@@ -75,6 +88,7 @@ public class DynamicLdapAuthenticationManager implements AuthenticationManager {
             placeholderConfigurer.setLocalOverride(true);
             context.addBeanFactoryPostProcessor(placeholderConfigurer);
             context.refresh();
+            this.context = context;
             ldapManagerActual = (AuthenticationManager)context.getBean("ldapAuthenticationManager");
             AuthenticationManager shadowUserManager = (AuthenticationManager)context.getBean("ldapLoginAuthenticationMgr");
 
@@ -28,10 +28,15 @@ import org.cloudfoundry.identity.uaa.scim.ScimGroupProvisioning;
 import org.cloudfoundry.identity.uaa.util.ObjectUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityProviderModifiedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.ApplicationListener;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderNotFoundException;
 import org.springframework.security.core.Authentication;
@@ -42,12 +47,24 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class DynamicZoneAwareAuthenticationManager implements AuthenticationManager, ApplicationEventPublisherAware {
+/**
+ * Chains the internal and the LDAP authentication managers of the current zone.
+ * <p>
+ * LDAP managers are looked up per zone without locking. When an LDAP provider is created or
+ * updated its manager is built in the background and swapped in once ready, so the first logins
+ * of a zone do not wait for the LDAP application context to load.
+ */
+public class DynamicZoneAwareAuthenticationManager implements AuthenticationManager, ApplicationEventPublisherAware, ApplicationListener<IdentityProviderModifiedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DynamicZoneAwareAuthenticationManager.class);
 
     private final IdentityProviderProvisioning provisioning;
     private final AuthenticationManager internalUaaAuthenticationManager;
-    private final ConcurrentMap<IdentityZone, DynamicLdapAuthenticationManager> ldapAuthManagers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DynamicLdapAuthenticationManager> ldapAuthManagers = new ConcurrentHashMap<>();
+    private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("ldap-warm-up-"));
     private final ScimGroupExternalMembershipManager scimGroupExternalMembershipManager;
     private final ScimGroupProvisioning scimGroupProvisioning;
     private final LdapLoginAuthenticationManager ldapLoginAuthenticationManager;
@@ -112,8 +129,9 @@ public class DynamicZoneAwareAuthenticationManager implements AuthenticationMana
             //has LDAP IDP config changed since last time?
             DynamicLdapAuthenticationManager existing = getLdapAuthenticationManager(zone, ldapProvider);
             if (!existing.getDefinition().equals(ldapProvider.getConfig())) {
-                ldapAuthManagers.remove(zone);
-                existing.destroy();
+                if (ldapAuthManagers.remove(zone.getId(), existing)) {
+                    existing.destroy();
+                }
             }
             DynamicLdapAuthenticationManager ldapAuthenticationManager = getLdapAuthenticationManager(zone, ldapProvider);
             AuthenticationManagerConfiguration ldapConfig =
@@ -146,7 +164,7 @@ public class DynamicZoneAwareAuthenticationManager implements AuthenticationMana
     }
 
     public DynamicLdapAuthenticationManager getLdapAuthenticationManager(IdentityZone zone, IdentityProvider provider) {
-        DynamicLdapAuthenticationManager ldapMgr = ldapAuthManagers.get(zone);
+        DynamicLdapAuthenticationManager ldapMgr = ldapAuthManagers.get(zone.getId());
         if (ldapMgr!=null) {
             return ldapMgr;
         }
@@ -154,17 +172,79 @@ public class DynamicZoneAwareAuthenticationManager implements AuthenticationMana
         if (definition==null || !definition.isConfigured()) {
             throw new IllegalArgumentException("LDAP provider not configured ID:"+provider.getId());
         }
-        ldapMgr = new DynamicLdapAuthenticationManager(definition,
+        ldapMgr = newLdapAuthenticationManager(definition);
+        DynamicLdapAuthenticationManager existing = ldapAuthManagers.putIfAbsent(zone.getId(), ldapMgr);
+        return existing != null ? existing : ldapMgr;
+    }
+
+    protected DynamicLdapAuthenticationManager newLdapAuthenticationManager(LdapIdentityProviderDefinition definition) {
+        DynamicLdapAuthenticationManager ldapMgr = new DynamicLdapAuthenticationManager(definition,
             scimGroupExternalMembershipManager,
             scimGroupProvisioning,
             ldapLoginAuthenticationManager);
         ldapMgr.setApplicationEventPublisher(eventPublisher);
-        ldapAuthManagers.putIfAbsent(zone, ldapMgr);
-        return ldapAuthManagers.get(zone);
+        return ldapMgr;
+    }
+
+    @Override
+    public void onApplicationEvent(IdentityProviderModifiedEvent event) {
+        if (!(event.getSource() instanceof IdentityProvider)) {
+            return;
+        }
+        IdentityProvider provider = (IdentityProvider) event.getSource();
+        if (!OriginKeys.LDAP.equals(provider.getOriginKey()) || provider.getIdentityZoneId() == null) {
+            return;
+        }
+        if (!provider.isActive()) {
+            DynamicLdapAuthenticationManager existing = ldapAuthManagers.remove(provider.getIdentityZoneId());
+            if (existing != null) {
+                existing.destroy();
+            }
+            return;
+        }
+        LdapIdentityProviderDefinition definition = ObjectUtils.castInstance(provider.getConfig(), LdapIdentityProviderDefinition.class);
+        if (definition != null && definition.isConfigured()) {
+            warmUpExecutor.execute(() -> warmUp(provider.getIdentityZoneId(), definition));
+        }
+    }
+
+    /**
+     * Builds the LDAP manager of a zone off the login path and swaps it in, unless an equivalent
+     * manager has been built in the meantime.
+     */
+    void warmUp(String zoneId, LdapIdentityProviderDefinition definition) {
+        DynamicLdapAuthenticationManager current = ldapAuthManagers.get(zoneId);
+        DynamicLdapAuthenticationManager ldapMgr = current != null && definition.equals(current.getDefinition()) ?
+            current :
+            newLdapAuthenticationManager(definition);
+        try {
+            ldapMgr.getLdapAuthenticationManager();
+        } catch (RuntimeException e) {
+            logger.warn("Unable to prepare the LDAP provider of zone " + zoneId + ": " + e.getMessage());
+            if (ldapMgr != current) {
+                ldapMgr.destroy();
+            }
+            return;
+        }
+        if (ldapMgr == current) {
+            return;
+        }
+        current = ldapAuthManagers.get(zoneId);
+        if (current != null && definition.equals(current.getDefinition())) {
+            ldapMgr.destroy();
+        } else if (current == null ? ldapAuthManagers.putIfAbsent(zoneId, ldapMgr) == null : ldapAuthManagers.replace(zoneId, current, ldapMgr)) {
+            if (current != null) {
+                current.destroy();
+            }
+            logger.debug("LDAP provider of zone " + zoneId + " is ready");
+        } else {
+            ldapMgr.destroy();
+        }
     }
 
     public void destroy() {
-        for (Map.Entry<IdentityZone, DynamicLdapAuthenticationManager> entry : ldapAuthManagers.entrySet()) {
+        warmUpExecutor.shutdownNow();
+        for (Map.Entry<String, DynamicLdapAuthenticationManager> entry : ldapAuthManagers.entrySet()) {
             entry.getValue().destroy();
         }
     }
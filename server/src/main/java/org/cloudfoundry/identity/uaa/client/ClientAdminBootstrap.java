@@ -7,16 +7,25 @@ import static org.cloudfoundry.identity.uaa.oauth.token.TokenConstants.GRANT_TYP
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.authentication.SystemAuthentication;
+import org.cloudfoundry.identity.uaa.impl.config.BootstrapSectionStore;
 import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
 import org.cloudfoundry.identity.uaa.user.UaaAuthority;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
@@ -57,6 +66,10 @@ public class ClientAdminBootstrap implements
     private final JdbcTemplate jdbcTemplate;
     private final Set<String> autoApproveClients;
     private final boolean defaultOverride;
+    private BootstrapSectionStore sectionStore;
+    private int parallelism = 1;
+
+    static final String CLIENT_SECTION_PREFIX = "clients/";
 
     /**
      * @param defaultOverride    the default override flag to set. Flag to indicate
@@ -90,6 +103,21 @@ public class ClientAdminBootstrap implements
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Skips clients whose configuration has not changed since it was last applied.
+     */
+    public void setSectionStore(BootstrapSectionStore sectionStore) {
+        this.sectionStore = sectionStore;
+    }
+
+    /**
+     * The number of clients added or updated at the same time. Most of the time goes into hashing
+     * secrets, so more than the number of processors does not help.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
     @Override
     public void afterPropertiesSet() {
         addNewClients();
@@ -131,93 +159,149 @@ public class ClientAdminBootstrap implements
     private void addNewClients() {
         Set<Map.Entry<String, Map<String, Object>>> entries = clients.entrySet();
         entries.removeIf(entry -> clientsToDelete.contains(entry.getKey()));
-        for (Map.Entry<String, Map<String, Object>> entry : entries) {
-            String clientId = entry.getKey();
 
-            Map<String, Object> map = entry.getValue();
-            if (map.get("authorized-grant-types") == null) {
-                throw new InvalidClientDetailsException("Client must have at least one authorized-grant-type. client ID: " + clientId);
-            }
-            BaseClientDetails client = new BaseClientDetails(clientId, (String) map.get("resource-ids"),
-                    (String) map.get("scope"), (String) map.get("authorized-grant-types"),
-                    (String) map.get("authorities"), getRedirectUris(map));
-
-            // support second secret
-            String secondSecret = null;
-            if (map.get("secret") instanceof List) {
-                List<String> secrets = (List<String>) map.get("secret");
-                if (secrets.isEmpty()) {
-                    client.setClientSecret("");
-                } else {
-                    client.setClientSecret(secrets.get(0) == null ? "" : secrets.get(0));
-                    if (secrets.size() > 1) {
-                        secondSecret = secrets.get(1) == null ? "" : secrets.get(1);
-                    }
-                }
-            } else {
-                client.setClientSecret(map.get("secret") == null ? "" : (String) map.get("secret"));
+        BootstrapSectionStore.Snapshot applied = null;
+        Set<String> existingClients = Collections.emptySet();
+        if (sectionStore != null && sectionStore.isEnabled()) {
+            applied = sectionStore.load(CLIENT_SECTION_PREFIX);
+            existingClients = new HashSet<>(jdbcTemplate.queryForList(
+                    "select client_id from oauth_client_details where identity_zone_id = ?", String.class, IdentityZone.getUaaZoneId()));
+        }
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Object>> entry : entries) {
+            Object section = Arrays.asList(defaultOverride, entry.getValue());
+            if (applied != null && existingClients.contains(entry.getKey())
+                    && applied.isUnchanged(CLIENT_SECTION_PREFIX + entry.getKey(), section)) {
+                logger.debug("Client configuration unchanged since it was last applied: " + entry.getKey());
+                continue;
             }
+            changed.put(entry.getKey(), section);
+        }
 
-            Integer validity = (Integer) map.get("access-token-validity");
-            Boolean override = (Boolean) map.get("override");
-            if (override == null) {
-                override = defaultOverride;
-            }
-            Map<String, Object> info = new HashMap<>(map);
-            if (validity != null) {
-                client.setAccessTokenValiditySeconds(validity);
-            }
-            validity = (Integer) map.get("refresh-token-validity");
-            if (validity != null) {
-                client.setRefreshTokenValiditySeconds(validity);
-            }
-            // UAA does not use the resource ids in client registrations
-            client.setResourceIds(Collections.singleton("none"));
-            if (client.getScope().isEmpty()) {
-                client.setScope(Collections.singleton("uaa.none"));
-            }
-            if (client.getAuthorities().isEmpty()) {
-                client.setAuthorities(Collections.singleton(UaaAuthority.UAA_NONE));
+        runInParallel(changed.keySet(), clientId -> addNewClient(clientId, clients.get(clientId)));
+
+        if (sectionStore != null) {
+            Map<String, Object> sections = new LinkedHashMap<>();
+            changed.forEach((clientId, section) -> sections.put(CLIENT_SECTION_PREFIX + clientId, section));
+            sectionStore.recordApplied(sections);
+        }
+    }
+
+    private void runInParallel(Collection<String> clientIds, Consumer<String> action) {
+        if (parallelism == 1 || clientIds.size() < 2) {
+            clientIds.forEach(action);
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, clientIds.size()), r -> {
+            Thread thread = new Thread(r, "client-bootstrap-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String clientId : clientIds) {
+                futures.add(executor.submit(() -> action.accept(clientId)));
             }
-            if (client.getAuthorizedGrantTypes().contains(GRANT_TYPE_AUTHORIZATION_CODE)) {
-                client.getAuthorizedGrantTypes().add(GRANT_TYPE_REFRESH_TOKEN);
+            for (Future<?> future : futures) {
+                future.get();
             }
-            for (String key : Arrays.asList("resource-ids", "scope", "authorized-grant-types", "authorities",
-                    "redirect-uri", "secret", "id", "override", "access-token-validity",
-                    "refresh-token-validity", "show-on-homepage", "app-launch-url", "app-icon")) {
-                info.remove(key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while adding clients", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            client.setAdditionalInformation(info);
-            try {
-                clientRegistrationService.addClientDetails(client, IdentityZone.getUaaZoneId());
-                if (secondSecret != null) {
-                    clientRegistrationService.addClientSecret(clientId, secondSecret, IdentityZone.getUaaZoneId());
-                }
-            } catch (ClientAlreadyExistsException e) {
-                if (override) {
-                    logger.debug("Overriding client details for " + clientId);
-                    clientRegistrationService.updateClientDetails(client, IdentityZone.getUaaZoneId());
-                    updatePasswordsIfChanged(clientId, client.getClientSecret(), secondSecret);
-                } else {
-                    // ignore it
-                    logger.debug(e.getMessage());
+    private void addNewClient(String clientId, Map<String, Object> map) {
+        if (map.get("authorized-grant-types") == null) {
+            throw new InvalidClientDetailsException("Client must have at least one authorized-grant-type. client ID: " + clientId);
+        }
+        BaseClientDetails client = new BaseClientDetails(clientId, (String) map.get("resource-ids"),
+                (String) map.get("scope"), (String) map.get("authorized-grant-types"),
+                (String) map.get("authorities"), getRedirectUris(map));
+
+        // support second secret
+        String secondSecret = null;
+        if (map.get("secret") instanceof List) {
+            List<String> secrets = (List<String>) map.get("secret");
+            if (secrets.isEmpty()) {
+                client.setClientSecret("");
+            } else {
+                client.setClientSecret(secrets.get(0) == null ? "" : secrets.get(0));
+                if (secrets.size() > 1) {
+                    secondSecret = secrets.get(1) == null ? "" : secrets.get(1);
                 }
             }
+        } else {
+            client.setClientSecret(map.get("secret") == null ? "" : (String) map.get("secret"));
+        }
 
-            if (map.containsKey("use-bcrypt-prefix") && "true".equals(map.get("use-bcrypt-prefix"))) {
-                jdbcTemplate.update("update oauth_client_details set client_secret=concat(?, client_secret) where client_id = ?", "{bcrypt}", clientId);
-            }
+        Integer validity = (Integer) map.get("access-token-validity");
+        Boolean override = (Boolean) map.get("override");
+        if (override == null) {
+            override = defaultOverride;
+        }
+        Map<String, Object> info = new HashMap<>(map);
+        if (validity != null) {
+            client.setAccessTokenValiditySeconds(validity);
+        }
+        validity = (Integer) map.get("refresh-token-validity");
+        if (validity != null) {
+            client.setRefreshTokenValiditySeconds(validity);
+        }
+        // UAA does not use the resource ids in client registrations
+        client.setResourceIds(Collections.singleton("none"));
+        if (client.getScope().isEmpty()) {
+            client.setScope(Collections.singleton("uaa.none"));
+        }
+        if (client.getAuthorities().isEmpty()) {
+            client.setAuthorities(Collections.singleton(UaaAuthority.UAA_NONE));
+        }
+        if (client.getAuthorizedGrantTypes().contains(GRANT_TYPE_AUTHORIZATION_CODE)) {
+            client.getAuthorizedGrantTypes().add(GRANT_TYPE_REFRESH_TOKEN);
+        }
+        for (String key : Arrays.asList("resource-ids", "scope", "authorized-grant-types", "authorities",
+                "redirect-uri", "secret", "id", "override", "access-token-validity",
+                "refresh-token-validity", "show-on-homepage", "app-launch-url", "app-icon")) {
+            info.remove(key);
+        }
 
-            for (String s : Arrays.asList(GRANT_TYPE_AUTHORIZATION_CODE, GRANT_TYPE_IMPLICIT)) {
-                if (client.getAuthorizedGrantTypes().contains(s) && isMissingRedirectUris(client)) {
-                    throw new InvalidClientDetailsException(s + " grant type requires at least one redirect URL. ClientID: " + client.getClientId());
-                }
+        client.setAdditionalInformation(info);
+        try {
+            clientRegistrationService.addClientDetails(client, IdentityZone.getUaaZoneId());
+            if (secondSecret != null) {
+                clientRegistrationService.addClientSecret(clientId, secondSecret, IdentityZone.getUaaZoneId());
+            }
+        } catch (ClientAlreadyExistsException e) {
+            if (override) {
+                logger.debug("Overriding client details for " + clientId);
+                clientRegistrationService.updateClientDetails(client, IdentityZone.getUaaZoneId());
+                updatePasswordsIfChanged(clientId, client.getClientSecret(), secondSecret);
+            } else {
+                // ignore it
+                logger.debug(e.getMessage());
             }
+        }
+
+        if (map.containsKey("use-bcrypt-prefix") && "true".equals(map.get("use-bcrypt-prefix"))) {
+            jdbcTemplate.update("update oauth_client_details set client_secret=concat(?, client_secret) where client_id = ?", "{bcrypt}", clientId);
+        }
 
-            ClientMetadata clientMetadata = buildClientMetadata(map, clientId);
-            clientMetadataProvisioning.update(clientMetadata, IdentityZone.getUaaZoneId());
+        for (String s : Arrays.asList(GRANT_TYPE_AUTHORIZATION_CODE, GRANT_TYPE_IMPLICIT)) {
+            if (client.getAuthorizedGrantTypes().contains(s) && isMissingRedirectUris(client)) {
+                throw new InvalidClientDetailsException(s + " grant type requires at least one redirect URL. ClientID: " + client.getClientId());
+            }
         }
+
+        ClientMetadata clientMetadata = buildClientMetadata(map, clientId);
+        clientMetadataProvisioning.update(clientMetadata, IdentityZone.getUaaZoneId());
     }
 
     private boolean isMissingRedirectUris(BaseClientDetails client) {
@@ -1,10 +1,14 @@
 package org.cloudfoundry.identity.uaa.db.beans;
 
+import java.util.Arrays;
 import javax.sql.DataSource;
 import org.cloudfoundry.identity.uaa.db.DataSourceAccessor;
 import org.cloudfoundry.identity.uaa.db.FixFailedBackportMigrations_4_0_4;
 import org.cloudfoundry.identity.uaa.db.postgresql.V1_5_3__InitialDBScript;
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Condition;
@@ -16,6 +20,8 @@ import org.springframework.core.type.AnnotatedTypeMetadata;
 @Configuration
 public class FlywayConfiguration {
 
+  private static final Logger logger = LoggerFactory.getLogger(FlywayConfiguration.class);
+
   /**
    * In Flyway 5, the default version table name changed to flyway_schema_history
    * https://flywaydb.org/documentation/releaseNotes#5.0.0
@@ -60,12 +66,27 @@ public class FlywayConfiguration {
       }
     }
 
+    /**
+     * Repairing and migrating each resolve all migrations and lock the history table, so both are
+     * skipped when another server already brought the schema up to date.
+     */
     @Bean
     public Flyway flyway(Flyway baseFlyway) {
+      if (isUpToDate(baseFlyway.info())) {
+        logger.info("Database schema is up to date, skipping migrations");
+        return baseFlyway;
+      }
       baseFlyway.repair();
       baseFlyway.migrate();
       return baseFlyway;
     }
+
+    static boolean isUpToDate(MigrationInfoService info) {
+      if (info.pending().length > 0) {
+        return false;
+      }
+      return Arrays.stream(info.applied()).noneMatch(migration -> migration.getState().isFailed());
+    }
   }
 
   @Configuration
@@ -0,0 +1,47 @@
+package org.cloudfoundry.identity.uaa.db.postgresql;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the trigram indexes for SCIM co/sw filters without locking the tables against writes.
+ * <p>
+ * This is a Java migration rather than SQL, since the indexes can only be created when
+ * {@code pg_trgm} is installed, and {@code CREATE INDEX CONCURRENTLY} can neither run inside a
+ * transaction nor inside a {@code DO} block.
+ */
+public class V4_102_1792500001__Add_Trigram_Indexes extends BaseJavaMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(V4_102_1792500001__Add_Trigram_Indexes.class);
+
+    static final List<String> INDEXES = Arrays.asList(
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS users_username_trgm ON users USING gin (LOWER(username) gin_trgm_ops)",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS users_email_trgm ON users USING gin (LOWER(email) gin_trgm_ops)",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS users_givenname_trgm ON users USING gin (LOWER(givenname) gin_trgm_ops)",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS users_familyname_trgm ON users USING gin (LOWER(familyname) gin_trgm_ops)",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS groups_displayname_trgm ON groups USING gin (LOWER(displayname) gin_trgm_ops)"
+    );
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        Integer installed = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_extension WHERE extname = 'pg_trgm'", Integer.class);
+        if (installed == null || installed == 0) {
+            logger.info("pg_trgm is not available, SCIM co/sw filters will not use trigram indexes");
+            return;
+        }
+        INDEXES.forEach(jdbcTemplate::execute);
+    }
+}
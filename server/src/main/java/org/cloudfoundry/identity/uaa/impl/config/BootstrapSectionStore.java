@@ -0,0 +1,163 @@
+package org.cloudfoundry.identity.uaa.impl.config;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers which configuration sections the bootstraps last applied, so unchanged sections can
+ * be skipped on the next start.
+ * <p>
+ * A section is a name, such as {@code clients/cf}, and the configuration it was applied from. The
+ * configuration is kept as a salted SHA-256 digest of its maps, collections and values, since it
+ * may contain secrets. Maps and sets are digested in sorted order, lists in their own order.
+ * <p>
+ * Disabled by default: skipping a section also means changes made through the APIs to what it
+ * created are no longer overwritten on start.
+ */
+public class BootstrapSectionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BootstrapSectionStore.class);
+
+    public static final String TABLE_NAME = "bootstrap_section";
+    static final int MAX_SECTION_LENGTH = 255;
+
+    private static final String SELECT_SQL = "select section, salt, hash from bootstrap_section where section like ? escape '!'";
+    private static final String UPDATE_SQL = "update bootstrap_section set salt = ?, hash = ?, applied = ? where section = ?";
+    private static final String INSERT_SQL = "insert into bootstrap_section (section, salt, hash, applied) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SecureRandom random = new SecureRandom();
+    private boolean enabled;
+
+    public BootstrapSectionStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param prefix the common prefix of the sections, such as {@code clients/}
+     * @return the sections applied so far with this prefix, empty when disabled
+     */
+    public Snapshot load(String prefix) {
+        Map<String, String[]> applied = new HashMap<>();
+        if (enabled) {
+            jdbcTemplate.query(SELECT_SQL,
+                    rs -> {
+                        applied.put(rs.getString(1), new String[]{rs.getString(2), rs.getString(3)});
+                    },
+                    escapeLike(prefix) + "%");
+        }
+        return new Snapshot(applied);
+    }
+
+    /**
+     * Records that the sections were applied from this configuration. Does nothing when disabled.
+     */
+    public void recordApplied(Map<String, Object> configurationBySection) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Object> entry : configurationBySection.entrySet()) {
+            String section = key(entry.getKey());
+            String salt = newSalt();
+            String hash = digest(salt, entry.getValue());
+            if (jdbcTemplate.update(UPDATE_SQL, salt, hash, now, section) == 0) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, section, salt, hash, now);
+                } catch (DuplicateKeyException e) {
+                    // another server is starting with the same configuration
+                    logger.debug("Bootstrap section " + section + " was recorded concurrently");
+                }
+            }
+        }
+    }
+
+    public static class Snapshot {
+        private final Map<String, String[]> applied;
+
+        Snapshot(Map<String, String[]> applied) {
+            this.applied = applied;
+        }
+
+        /**
+         * @return true if the section was last applied from an equal configuration
+         */
+        public boolean isUnchanged(String section, Object configuration) {
+            String[] saltAndHash = applied.get(key(section));
+            return saltAndHash != null && saltAndHash[1].equals(digest(saltAndHash[0], configuration));
+        }
+    }
+
+    private String newSalt() {
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(salt);
+    }
+
+    static String key(String section) {
+        if (section.length() <= MAX_SECTION_LENGTH) {
+            return section;
+        }
+        // keep a readable prefix so loading by prefix still finds it
+        String digest = Hashing.sha256().hashString(section, StandardCharsets.UTF_8).toString();
+        return section.substring(0, MAX_SECTION_LENGTH - digest.length() - 1) + "#" + digest;
+    }
+
+    static String digest(String salt, Object configuration) {
+        Hasher hasher = Hashing.sha256().newHasher().putString(salt, StandardCharsets.UTF_8);
+        put(hasher, configuration);
+        return hasher.hash().toString();
+    }
+
+    private static void put(Hasher hasher, Object value) {
+        if (value == null) {
+            hasher.putByte((byte) 0);
+        } else if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            ((Map<?, ?>) value).forEach((k, v) -> sorted.put(String.valueOf(k), v));
+            hasher.putByte((byte) 1).putInt(sorted.size());
+            sorted.forEach((k, v) -> {
+                hasher.putString(k, StandardCharsets.UTF_8).putByte((byte) 0);
+                put(hasher, v);
+            });
+        } else if (value instanceof Set) {
+            List<String> sorted = ((Set<?>) value).stream().map(String::valueOf).sorted().collect(Collectors.toList());
+            hasher.putByte((byte) 2).putInt(sorted.size());
+            sorted.forEach(v -> hasher.putString(v, StandardCharsets.UTF_8).putByte((byte) 0));
+        } else if (value instanceof Collection) {
+            hasher.putByte((byte) 3).putInt(((Collection<?>) value).size());
+            ((Collection<?>) value).forEach(v -> put(hasher, v));
+        } else {
+            hasher.putByte((byte) 4)
+                    .putString(value.getClass().getName(), StandardCharsets.UTF_8).putByte((byte) 0)
+                    .putString(String.valueOf(value), StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+    }
+
+    private static String escapeLike(String prefix) {
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
@@ -26,6 +26,10 @@ public class LdapGroupsConfig {
     nestedLdapAuthoritiesPopulator.setMaxSearchDepth(ofNullable(Integer.parseInt(environment.getProperty("ldap.groups.maxSearchDepth"))).orElse(10));
     nestedLdapAuthoritiesPopulator.setAttributeNames(new HashSet<>(Collections.singletonList("cn")));
     nestedLdapAuthoritiesPopulator.setIgnorePartialResultException(ofNullable(environment.getProperty("ldap.groups.ignorePartialResultException")).map(Boolean::parseBoolean).orElse(true));
+    nestedLdapAuthoritiesPopulator.setBatchSize(ofNullable(environment.getProperty("ldap.groups.batchSize")).map(Integer::parseInt).orElse(50));
+    nestedLdapAuthoritiesPopulator.setGroupCache(
+        ofNullable(environment.getProperty("ldap.groups.cacheTtlSeconds")).map(Long::parseLong).orElse(300L),
+        ofNullable(environment.getProperty("ldap.groups.cacheMaxSize")).map(Long::parseLong).orElse(10000L));
     return nestedLdapAuthoritiesPopulator;
   }
 }
@@ -1,11 +1,14 @@
 package org.cloudfoundry.identity.uaa.impl.config;
 
 import org.cloudfoundry.identity.uaa.provider.ldap.ExtendedLdapUserMapper;
+import org.cloudfoundry.identity.uaa.provider.ldap.PooledLdapContextSource;
 import org.cloudfoundry.identity.uaa.provider.ldap.ProcessLdapProperties;
 
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
 
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
@@ -34,6 +37,26 @@ public class LdapIntegrationConfig {
     return ldapPropertyProcessor(environment).process(initialLdapProperties);
   }
 
+  /**
+   * Wraps the context source of the profile in a connection pool when {@code ldap.pool.enabled} is set.
+   */
+  @Bean
+  public static BeanPostProcessor ldapConnectionPoolPostProcessor(Environment environment) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DefaultSpringSecurityContextSource) || !parseBoolean(environment.getProperty("ldap.pool.enabled"))) {
+          return bean;
+        }
+        return new PooledLdapContextSource(
+          (DefaultSpringSecurityContextSource) bean,
+          ofNullable(environment.getProperty("ldap.pool.maxSize", Integer.class)).orElse(8),
+          ofNullable(environment.getProperty("ldap.pool.validate", Boolean.class)).orElse(true),
+          ofNullable(environment.getProperty("ldap.pool.idleTimeoutMillis", Long.class)).orElse(300000L));
+      }
+    };
+  }
+
   @Bean
   public ExtendedLdapUserMapper extendedLdapUserDetailsMapper(Environment environment) {
     String mailAttributeName = ofNullable(environment.getProperty("ldap.base.mailAttributeName")).orElse("mail");
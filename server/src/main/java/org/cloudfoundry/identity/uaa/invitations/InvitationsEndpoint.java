@@ -3,15 +3,18 @@ package org.cloudfoundry.identity.uaa.invitations;
 import org.cloudfoundry.identity.uaa.codestore.ExpiringCode;
 import org.cloudfoundry.identity.uaa.codestore.ExpiringCodeStore;
 import org.cloudfoundry.identity.uaa.error.UaaException;
+import org.cloudfoundry.identity.uaa.provider.EmailDomainIndexCache;
 import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceConflictException;
+import org.cloudfoundry.identity.uaa.util.EmailDomainIndex;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
 import org.cloudfoundry.identity.uaa.util.UaaUrlUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.MultitenantClientServices;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -57,6 +60,7 @@ public class InvitationsEndpoint {
     private final IdentityProviderProvisioning identityProviderProvisioning;
     private final MultitenantClientServices multitenantClientServices;
     private final ExpiringCodeStore expiringCodeStore;
+    private EmailDomainIndexCache emailDomainIndexCache;
 
     public InvitationsEndpoint(final ScimUserProvisioning scimUserProvisioning,
                                final IdentityProviderProvisioning identityProviderProvisioning,
@@ -68,6 +72,11 @@ public class InvitationsEndpoint {
         this.expiringCodeStore = expiringCodeStore;
     }
 
+    @Autowired(required = false)
+    public void setEmailDomainIndexCache(EmailDomainIndexCache emailDomainIndexCache) {
+        this.emailDomainIndexCache = emailDomainIndexCache;
+    }
+
     @RequestMapping(value = "/invite_users", method = RequestMethod.POST, consumes = "application/json")
     public ResponseEntity<InvitationsResponse> inviteUsers(@RequestBody InvitationsRequest invitations,
                                                            @RequestParam(value = "client_id", required = false) String clientId,
@@ -84,7 +93,9 @@ public class InvitationsEndpoint {
 
         InvitationsResponse invitationsResponse = new InvitationsResponse();
 
-        List<IdentityProvider> activeProviders = identityProviderProvisioning.retrieveActive(IdentityZoneHolder.get().getId());
+        EmailDomainIndex activeProviders = emailDomainIndexCache != null ?
+                emailDomainIndexCache.get(IdentityZoneHolder.get().getId()) :
+                EmailDomainIndex.of(identityProviderProvisioning.retrieveActive(IdentityZoneHolder.get().getId()));
 
         HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest();
         String subdomainHeader = request.getHeader(SUBDOMAIN_HEADER);
@@ -99,7 +110,7 @@ public class InvitationsEndpoint {
         for (String email : invitations.getEmails()) {
             try {
                 if (email != null && validateEmail(email)) {
-                    List<IdentityProvider> providers = filter(activeProviders, client, email);
+                    List<IdentityProvider> providers = filter(activeProviders, client, email, true);
                     if (providers.size() == 1) {
                         ScimUser user = findOrCreateUser(email, providers.get(0).getOriginKey());
                         String accountsUrl = UaaUrlUtils.getUaaUrl("/invitations/accept", !IdentityZoneHolder.isUaa(), IdentityZoneHolder.get());
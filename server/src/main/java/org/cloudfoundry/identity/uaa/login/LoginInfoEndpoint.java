@@ -12,6 +12,7 @@ import org.cloudfoundry.identity.uaa.mfa.MfaChecker;
 import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
 import org.cloudfoundry.identity.uaa.provider.AbstractExternalOAuthIdentityProviderDefinition;
 import org.cloudfoundry.identity.uaa.provider.AbstractIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.provider.EmailDomainIndexCache;
 import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
 import org.cloudfoundry.identity.uaa.provider.OIDCIdentityProviderDefinition;
@@ -36,6 +37,7 @@ import org.cloudfoundry.identity.uaa.zone.Links;
 import org.cloudfoundry.identity.uaa.zone.MultitenantClientServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
@@ -138,6 +140,8 @@ public class LoginInfoEndpoint {
     private final Links globalLinks;
     private final MfaChecker mfaChecker;
     private final String entityID;
+    private LoginModelCache loginModelCache;
+    private EmailDomainIndexCache emailDomainIndexCache;
 
     private static final Duration CODE_EXPIRATION = Duration.ofMinutes(5L);
     private static final MapCollector<IdentityProvider, String, AbstractExternalOAuthIdentityProviderDefinition> idpsMapCollector =
@@ -173,6 +177,26 @@ public class LoginInfoEndpoint {
         buildProperties = tryLoadAllProperties("build.properties");
     }
 
+    /**
+     * Serves the identity providers of the zone from per zone snapshots instead of loading them on every request.
+     */
+    @Autowired(required = false)
+    public void setLoginModelCache(LoginModelCache loginModelCache) {
+        this.loginModelCache = loginModelCache;
+    }
+
+    /**
+     * Matches email domains for identity provider discovery against a per zone index instead of every provider.
+     */
+    @Autowired(required = false)
+    public void setEmailDomainIndexCache(EmailDomainIndexCache emailDomainIndexCache) {
+        this.emailDomainIndexCache = emailDomainIndexCache;
+    }
+
+    private LoginModel getLoginModel() {
+        return loginModelCache == null ? null : loginModelCache.get(IdentityZoneHolder.get());
+    }
+
     private static Properties tryLoadAllProperties(final String fileName) {
         try {
             return PropertiesLoaderUtils.loadAllProperties(fileName);
@@ -336,14 +360,21 @@ public class LoginInfoEndpoint {
         boolean fieldUsernameShow = true;
         boolean returnLoginPrompts = true;
         IdentityProvider ldapIdentityProvider = null;
-        try {
-            ldapIdentityProvider = providerProvisioning.retrieveByOrigin(
-                    OriginKeys.LDAP, IdentityZoneHolder.get().getId()
-            );
-        } catch (EmptyResultDataAccessException ignored) {
+        IdentityProvider uaaIdentityProvider;
+        LoginModel loginModel = getLoginModel();
+        if (loginModel != null) {
+            ldapIdentityProvider = loginModel.getLdapProvider();
+            uaaIdentityProvider = loginModel.getUaaProvider();
+        } else {
+            try {
+                ldapIdentityProvider = providerProvisioning.retrieveByOrigin(
+                        OriginKeys.LDAP, IdentityZoneHolder.get().getId()
+                );
+            } catch (EmptyResultDataAccessException ignored) {
+            }
+            uaaIdentityProvider =
+                    providerProvisioning.retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, IdentityZoneHolder.get().getId());
         }
-        IdentityProvider uaaIdentityProvider =
-                providerProvisioning.retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, IdentityZoneHolder.get().getId());
         // ldap and uaa disabled removes username/password input boxes
         if (!uaaIdentityProvider.isActive()) {
             if (ldapIdentityProvider == null || !ldapIdentityProvider.isActive()) {
@@ -635,13 +666,18 @@ public class LoginInfoEndpoint {
     }
 
     private Map<String, SamlIdentityProviderDefinition> getSamlIdentityProviderDefinitions(List<String> allowedIdps) {
-        List<SamlIdentityProviderDefinition> filteredIdps = idpDefinitions.getIdentityProviderDefinitions(allowedIdps, IdentityZoneHolder.get());
+        LoginModel loginModel = getLoginModel();
+        List<SamlIdentityProviderDefinition> filteredIdps = loginModel != null ?
+                loginModel.getSamlDefinitions(allowedIdps) :
+                idpDefinitions.getIdentityProviderDefinitions(allowedIdps, IdentityZoneHolder.get());
         return filteredIdps.stream().collect(new MapCollector<>(SamlIdentityProviderDefinition::getIdpEntityAlias, idp -> idp));
     }
 
     protected Map<String, AbstractExternalOAuthIdentityProviderDefinition> getOauthIdentityProviderDefinitions(List<String> allowedIdps) {
 
-        List<IdentityProvider> identityProviders =
+        LoginModel loginModel = getLoginModel();
+        List<IdentityProvider> identityProviders = loginModel != null ?
+                loginModel.getOauthProviders() :
                 externalOAuthProviderConfigurator.retrieveAll(true, IdentityZoneHolder.get().getId());
 
         return identityProviders.stream()
@@ -806,7 +842,12 @@ public class LoginInfoEndpoint {
         if (StringUtils.hasText(loginHint)) {
             model.addAttribute("login_hint", loginHint);
         }
-        List<IdentityProvider> identityProviders = DomainFilter.filter(providerProvisioning.retrieveActive(IdentityZoneHolder.get().getId()), clientDetails, email, false);
+        List<IdentityProvider> identityProviders;
+        if (emailDomainIndexCache != null) {
+            identityProviders = DomainFilter.filter(emailDomainIndexCache.get(IdentityZoneHolder.get().getId()), clientDetails, email, false);
+        } else {
+            identityProviders = DomainFilter.filter(providerProvisioning.retrieveActive(IdentityZoneHolder.get().getId()), clientDetails, email, false);
+        }
 
         if (!StringUtils.hasText(skipDiscovery) && identityProviders.size() == 1) {
             IdentityProvider matchedIdp = identityProviders.get(0);
@@ -982,7 +1023,10 @@ public class LoginInfoEndpoint {
     protected Map<String, String> getSelfServiceLinks() {
         Map<String, String> selfServiceLinks = new HashMap<>();
         IdentityZone zone = IdentityZoneHolder.get();
-        IdentityProvider<UaaIdentityProviderDefinition> uaaIdp = providerProvisioning.retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, IdentityZoneHolder.get().getId());
+        LoginModel loginModel = getLoginModel();
+        IdentityProvider<UaaIdentityProviderDefinition> uaaIdp = loginModel != null ?
+                loginModel.getUaaProvider() :
+                providerProvisioning.retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, IdentityZoneHolder.get().getId());
         boolean disableInternalUserManagement = (uaaIdp.getConfig() != null) ? uaaIdp.getConfig().isDisableInternalUserManagement() : false;
 
         boolean selfServiceLinksEnabled = (zone.getConfig() != null) ? zone.getConfig().getLinks().getSelfService().isSelfServiceLinksEnabled() : true;
@@ -0,0 +1,83 @@
+package org.cloudfoundry.identity.uaa.login;
+
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The identity providers the login page of one version of a zone is built from.
+ * <p>
+ * Shared between requests: callers filter the lists into their own collections and must not
+ * modify the providers.
+ */
+public class LoginModel {
+
+    private final String zoneId;
+    private final long zoneVersion;
+    private final List<SamlIdentityProviderDefinition> samlDefinitions;
+    private final List<IdentityProvider> oauthProviders;
+    private final IdentityProvider ldapProvider;
+    private final IdentityProvider uaaProvider;
+
+    LoginModel(IdentityZone zone,
+               List<SamlIdentityProviderDefinition> samlDefinitions,
+               List<IdentityProvider> oauthProviders,
+               IdentityProvider ldapProvider,
+               IdentityProvider uaaProvider) {
+        this.zoneId = zone.getId();
+        this.zoneVersion = version(zone);
+        this.samlDefinitions = Collections.unmodifiableList(samlDefinitions);
+        this.oauthProviders = Collections.unmodifiableList(oauthProviders);
+        this.ldapProvider = ldapProvider;
+        this.uaaProvider = uaaProvider;
+    }
+
+    /**
+     * @return true if this model was built from the current configuration of the zone
+     */
+    boolean isSnapshotOf(IdentityZone zone) {
+        return zoneId.equals(zone.getId()) && zoneVersion == version(zone);
+    }
+
+    private static long version(IdentityZone zone) {
+        return zone.getLastModified() == null ? -1 : zone.getLastModified().getTime();
+    }
+
+    /**
+     * @param allowedIdps the aliases to keep, null for all
+     */
+    public List<SamlIdentityProviderDefinition> getSamlDefinitions(List<String> allowedIdps) {
+        List<SamlIdentityProviderDefinition> result = new LinkedList<>();
+        for (SamlIdentityProviderDefinition definition : samlDefinitions) {
+            if (allowedIdps == null || allowedIdps.contains(definition.getIdpEntityAlias())) {
+                result.add(definition);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the active OAuth and OIDC providers
+     */
+    public List<IdentityProvider> getOauthProviders() {
+        return oauthProviders;
+    }
+
+    /**
+     * @return the active LDAP provider, null if there is none
+     */
+    public IdentityProvider getLdapProvider() {
+        return ldapProvider;
+    }
+
+    /**
+     * @return the UAA provider, active or not
+     */
+    public IdentityProvider getUaaProvider() {
+        return uaaProvider;
+    }
+}
@@ -0,0 +1,87 @@
+package org.cloudfoundry.identity.uaa.login;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
+import org.cloudfoundry.identity.uaa.provider.oauth.ExternalOAuthProviderConfigurator;
+import org.cloudfoundry.identity.uaa.provider.saml.SamlIdentityProviderConfigurator;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityProviderModifiedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a {@link LoginModel} per zone, so the login page and {@code /info} do not load the
+ * identity providers of the zone on every request.
+ * <p>
+ * A model is rebuilt when the zone changes, when this server creates, updates or deletes an
+ * identity provider of the zone, and {@code ttlSeconds} after it was built so changes made through
+ * another server are picked up.
+ */
+public class LoginModelCache implements ApplicationListener<AbstractUaaEvent> {
+
+    private final SamlIdentityProviderConfigurator samlConfigurator;
+    private final ExternalOAuthProviderConfigurator oauthConfigurator;
+    private final IdentityProviderProvisioning providerProvisioning;
+    private final Cache<String, LoginModel> models;
+
+    public LoginModelCache(SamlIdentityProviderConfigurator samlConfigurator,
+                           ExternalOAuthProviderConfigurator oauthConfigurator,
+                           IdentityProviderProvisioning providerProvisioning,
+                           int ttlSeconds) {
+        this.samlConfigurator = samlConfigurator;
+        this.oauthConfigurator = oauthConfigurator;
+        this.providerProvisioning = providerProvisioning;
+        this.models = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(1000)
+                .build();
+    }
+
+    public LoginModel get(IdentityZone zone) {
+        LoginModel model = models.getIfPresent(zone.getId());
+        if (model == null || !model.isSnapshotOf(zone)) {
+            model = build(zone);
+            models.put(zone.getId(), model);
+        }
+        return model;
+    }
+
+    public void evict(String zoneId) {
+        models.invalidate(zoneId);
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof IdentityProviderModifiedEvent) {
+            evict(((IdentityProvider) event.getSource()).getIdentityZoneId());
+        } else if (event instanceof EntityDeletedEvent) {
+            Object deleted = ((EntityDeletedEvent<?>) event).getDeleted();
+            if (deleted instanceof IdentityProvider) {
+                evict(((IdentityProvider) deleted).getIdentityZoneId());
+            } else if (deleted instanceof IdentityZone) {
+                evict(((IdentityZone) deleted).getId());
+            }
+        }
+    }
+
+    private LoginModel build(IdentityZone zone) {
+        IdentityProvider ldapProvider = null;
+        try {
+            ldapProvider = providerProvisioning.retrieveByOrigin(OriginKeys.LDAP, zone.getId());
+        } catch (EmptyResultDataAccessException ignored) {
+        }
+        return new LoginModel(
+                zone,
+                samlConfigurator.getIdentityProviderDefinitionsForZone(zone),
+                oauthConfigurator.retrieveAll(true, zone.getId()),
+                ldapProvider,
+                providerProvisioning.retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, zone.getId()));
+    }
+}
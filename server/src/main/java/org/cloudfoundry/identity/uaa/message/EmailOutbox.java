@@ -0,0 +1,352 @@
+package org.cloudfoundry.identity.uaa.message;
+
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durable queue for outbound email.
+ * <p>
+ * Requests only insert the fully rendered message, background workers send due messages in
+ * batches over a single SMTP connection. Failed messages are retried with exponential backoff
+ * and moved to the dead letter state once {@code maxAttempts} is reached. Sent messages are
+ * deleted right away, dead letters stay in the table for inspection until
+ * {@code deadLetterRetentionMillis} has passed. Workers on different servers claim rows with a
+ * lease, so a message is not sent twice unless a send outlives its lease.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=EmailOutbox",
+        description = "UAA Email Outbox Metrics"
+)
+public class EmailOutbox implements InitializingBean, DisposableBean {
+
+    public static final String TABLE_NAME = "email_outbox";
+
+    private static final String INSERT_SQL = "insert into " + TABLE_NAME + " (id, identity_zone_id, recipient, message, created, attempts, next_attempt, dead) values (?,?,?,?,?,0,?,?)";
+    private static final String DUE_SQL = "select id, message, attempts, next_attempt from " + TABLE_NAME + " where dead = ? and next_attempt <= ? order by next_attempt";
+    private static final String CLAIM_SQL = "update " + TABLE_NAME + " set next_attempt = ? where id = ? and next_attempt = ? and dead = ?";
+    private static final String DELETE_SQL = "delete from " + TABLE_NAME + " where id = ?";
+    private static final String FAILED_SQL = "update " + TABLE_NAME + " set attempts = ?, next_attempt = ?, dead = ?, last_error = ? where id = ?";
+    private static final String PURGE_SQL = "delete from " + TABLE_NAME + " where dead = ? and next_attempt < ?";
+    private static final String COUNT_SQL = "select count(*) from " + TABLE_NAME + " where dead = ?";
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutbox.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate dueTemplate;
+    private final JavaMailSender mailSender;
+    private final TimeService timeService;
+
+    private boolean enabled = true;
+    private int workers = 2;
+    private int batchSize = 20;
+    private long pollIntervalMillis = 1000;
+    private long leaseMillis = 5 * 60 * 1000;
+    private long initialBackoffMillis = 30 * 1000;
+    private long maxBackoffMillis = 60 * 60 * 1000;
+    private int maxAttempts = 10;
+    private long deadLetterRetentionMillis = TimeUnit.DAYS.toMillis(7);
+    private long purgeIntervalMillis = TimeUnit.HOURS.toMillis(1);
+
+    private ScheduledExecutorService executor;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+
+    public EmailOutbox(JdbcTemplate jdbcTemplate, JavaMailSender mailSender, TimeService timeService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dueTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.dueTemplate.setMaxRows(batchSize);
+        this.mailSender = mailSender;
+        this.timeService = timeService;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        this.dueTemplate.setMaxRows(batchSize);
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public void setLeaseMillis(long leaseMillis) {
+        this.leaseMillis = leaseMillis;
+    }
+
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param deadLetterRetentionMillis how long dead letters are kept, zero or less keeps them forever
+     */
+    public void setDeadLetterRetentionMillis(long deadLetterRetentionMillis) {
+        this.deadLetterRetentionMillis = deadLetterRetentionMillis;
+    }
+
+    public void setPurgeIntervalMillis(long purgeIntervalMillis) {
+        this.purgeIntervalMillis = purgeIntervalMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (workers <= 0 || batchSize <= 0 || maxAttempts <= 0 || leaseMillis <= 0 || purgeIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Email outbox workers, batchSize, maxAttempts, leaseMillis and purgeIntervalMillis must be positive numbers");
+        }
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newScheduledThreadPool(workers, new CustomizableThreadFactory("email-outbox-"));
+        for (int i = 0; i < workers; i++) {
+            // stagger the workers so they do not poll in lock step
+            executor.scheduleWithFixedDelay(this::sendDueMessagesSafely, pollIntervalMillis * i / workers, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (deadLetterRetentionMillis > 0) {
+            executor.scheduleWithFixedDelay(this::purgeDeadLettersSafely, purgeIntervalMillis, purgeIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void add(String recipient, MimeMessage message, String zoneId) {
+        byte[] bytes;
+        try {
+            message.saveChanges();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            message.writeTo(out);
+            bytes = out.toByteArray();
+        } catch (MessagingException | IOException e) {
+            throw new MailSendException("Unable to store message to " + recipient, e);
+        }
+        long now = timeService.getCurrentTimeMillis();
+        jdbcTemplate.update(INSERT_SQL, UUID.randomUUID().toString(), zoneId, recipient, bytes, now, now, false);
+    }
+
+    /**
+     * Claims and sends one batch of due messages.
+     *
+     * @return the number of messages claimed
+     */
+    public int sendDueMessages() {
+        long now = timeService.getCurrentTimeMillis();
+        long leaseUntil = now + leaseMillis;
+        Map<MimeMessage, OutboxEntry> claimed = new LinkedHashMap<>();
+        for (OutboxEntry entry : dueTemplate.query(DUE_SQL, (rs, rowNum) -> new OutboxEntry(
+                rs.getString("id"),
+                rs.getBytes("message"),
+                rs.getInt("attempts"),
+                rs.getLong("next_attempt")), false, now)) {
+            if (jdbcTemplate.update(CLAIM_SQL, leaseUntil, entry.id, entry.nextAttempt, false) != 1) {
+                // another worker got there first
+                continue;
+            }
+            try {
+                claimed.put(mailSender.createMimeMessage(new ByteArrayInputStream(entry.message)), entry);
+            } catch (MailException e) {
+                failed(entry, e, true);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        Map<Object, Exception> failures = Collections.emptyMap();
+        long start = System.nanoTime();
+        try {
+            mailSender.send(claimed.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages().isEmpty() ? allFailed(claimed.keySet(), e) : e.getFailedMessages();
+        } catch (MailException e) {
+            failures = allFailed(claimed.keySet(), e);
+        } finally {
+            sendNanos.add(System.nanoTime() - start);
+        }
+
+        List<Object[]> delivered = new ArrayList<>();
+        for (Map.Entry<MimeMessage, OutboxEntry> entry : claimed.entrySet()) {
+            Exception failure = failures.get(entry.getKey());
+            if (failure == null) {
+                delivered.add(new Object[]{entry.getValue().id});
+            } else {
+                failed(entry.getValue(), failure, false);
+            }
+        }
+        if (!delivered.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SQL, delivered);
+            sent.add(delivered.size());
+        }
+        return claimed.size();
+    }
+
+    private void sendDueMessagesSafely() {
+        try {
+            // keep draining while full batches come back
+            while (sendDueMessages() >= batchSize) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Unable to send queued email: " + e.getMessage());
+            logger.debug("Email outbox failure", e);
+        }
+    }
+
+    /**
+     * Deletes dead letters that gave up longer than {@code deadLetterRetentionMillis} ago.
+     *
+     * @return the number of messages deleted
+     */
+    public int purgeDeadLetters() {
+        if (deadLetterRetentionMillis <= 0) {
+            return 0;
+        }
+        return jdbcTemplate.update(PURGE_SQL, true, timeService.getCurrentTimeMillis() - deadLetterRetentionMillis);
+    }
+
+    private void purgeDeadLettersSafely() {
+        try {
+            int purged = purgeDeadLetters();
+            if (purged > 0) {
+                logger.debug("Purged " + purged + " dead letter(s) from the email outbox");
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Unable to purge dead email letters: " + e.getMessage());
+            logger.debug("Email outbox purge failure", e);
+        }
+    }
+
+    private void failed(OutboxEntry entry, Exception failure, boolean permanent) {
+        int attempts = entry.attempts + 1;
+        boolean dead = permanent || attempts >= maxAttempts;
+        // a dead letter keeps the time it gave up, which is when its retention starts
+        long nextAttempt = timeService.getCurrentTimeMillis() + (dead ? 0 : backoff(attempts));
+        String error = String.valueOf(failure.getMessage());
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        jdbcTemplate.update(FAILED_SQL, attempts, nextAttempt, dead, error, entry.id);
+        failedAttempts.increment();
+        if (dead) {
+            deadLettered.increment();
+            logger.error("Giving up on queued email " + entry.id + " after " + attempts + " attempt(s): " + error);
+        } else {
+            logger.debug("Queued email " + entry.id + " failed, retrying in " + backoff(attempts) + "ms: " + error);
+        }
+    }
+
+    long backoff(int attempts) {
+        long delay = initialBackoffMillis << Math.min(attempts - 1, 30);
+        return delay < 0 ? maxBackoffMillis : Math.min(delay, maxBackoffMillis);
+    }
+
+    private static Map<Object, Exception> allFailed(Iterable<MimeMessage> messages, Exception e) {
+        Map<Object, Exception> failures = new LinkedHashMap<>();
+        messages.forEach(m -> failures.put(m, e));
+        return failures;
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Queued Email Count")
+    public long getQueueDepth() {
+        return jdbcTemplate.queryForObject(COUNT_SQL, Long.class, false);
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Dead Letter Email Count")
+    public long getDeadLetterCount() {
+        return jdbcTemplate.queryForObject(COUNT_SQL, Long.class, true);
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Sent Email Count")
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Failed Email Attempt Count")
+    public long getFailedAttemptCount() {
+        return failedAttempts.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Dead Lettered Email Count")
+    public long getDeadLetteredCount() {
+        return deadLettered.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Average Email Send Time (ms)")
+    public double getAverageSendTimeMillis() {
+        long count = sent.sum() + failedAttempts.sum();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) sendNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static final class OutboxEntry {
+        private final String id;
+        private final byte[] message;
+        private final int attempts;
+        private final long nextAttempt;
+
+        private OutboxEntry(String id, byte[] message, int attempts, long nextAttempt) {
+            this.id = id;
+            this.message = message;
+            this.attempts = attempts;
+            this.nextAttempt = nextAttempt;
+        }
+    }
+}
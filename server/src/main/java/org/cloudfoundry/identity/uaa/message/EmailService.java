@@ -21,6 +21,7 @@ public class EmailService implements MessageService {
     private JavaMailSender mailSender;
     private final String fromAddress;
     private final IdentityZoneManager identityZoneManager;
+    private EmailOutbox outbox;
 
     public EmailService(JavaMailSender mailSender, String loginUrl, String fromAddress, IdentityZoneManager identityZoneManager) {
         this.mailSender = mailSender;
@@ -43,6 +44,18 @@ public class EmailService implements MessageService {
         this.mailSender = mailSender;
     }
 
+    public EmailOutbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * When an enabled outbox is set, messages are queued there and sent in the background
+     * instead of being sent on the calling thread.
+     */
+    public void setOutbox(EmailOutbox outbox) {
+        this.outbox = outbox;
+    }
+
     private Address[] getSenderAddresses() throws UnsupportedEncodingException {
         String name;
         if (identityZoneManager.isCurrentZoneUaa()) {
@@ -67,6 +80,10 @@ public class EmailService implements MessageService {
             logger.error("Exception raised while sending message to " + email, e);
         }
 
-        mailSender.send(message);
+        if (outbox != null && outbox.isEnabled()) {
+            outbox.add(email, message, identityZoneManager.getCurrentIdentityZoneId());
+        } else {
+            mailSender.send(message);
+        }
     }
 }
@@ -13,6 +13,7 @@
 package org.cloudfoundry.identity.uaa.message.util;
 
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessagePreparator;
@@ -65,8 +66,12 @@ public class FakeJavaMailSender implements JavaMailSender {
     }
 
     @Override
-    public MimeMessage createMimeMessage(InputStream inputStream)  {
-        throw new UnsupportedOperationException();
+    public MimeMessage createMimeMessage(InputStream inputStream) throws MailException {
+        try {
+            return new MimeMessage(session, inputStream);
+        } catch (MessagingException e) {
+            throw new MailParseException(e);
+        }
     }
 
     @Override
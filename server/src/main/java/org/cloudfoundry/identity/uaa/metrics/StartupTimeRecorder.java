@@ -0,0 +1,142 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records how long each bean takes to be created, and logs the slowest ones once the context is
+ * ready.
+ * <p>
+ * The time of a bean runs from its instantiation to the end of its initialization and excludes
+ * the beans created meanwhile as its dependencies, so the times add up to the time spent creating
+ * beans. Startup phases such as database migrations and the bootstraps show up as the beans that
+ * run them. Beans created once the context is ready, such as lazy ones, are not recorded.
+ */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=StartupTimes",
+        description = "UAA Startup Times"
+)
+public class StartupTimeRecorder implements InstantiationAwareBeanPostProcessor, ApplicationListener<ContextRefreshedEvent>, PriorityOrdered {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimeRecorder.class);
+
+    private final long started = System.nanoTime();
+    private final ThreadLocal<Deque<Creation>> creations = ThreadLocal.withInitial(ArrayDeque::new);
+    private final Map<String, Long> beanTimes = new ConcurrentHashMap<>();
+    private final AtomicBoolean ready = new AtomicBoolean();
+    private volatile long startupTime = -1;
+    private volatile long uptimeWhenReady = -1;
+    private int reportSize = 20;
+
+    public void setReportSize(int reportSize) {
+        this.reportSize = reportSize;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+        if (ready.get()) {
+            return null;
+        }
+        creations.get().push(new Creation(beanName, System.nanoTime()));
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (ready.get()) {
+            return bean;
+        }
+        Deque<Creation> inProgress = creations.get();
+        if (inProgress.stream().noneMatch(c -> c.beanName.equals(beanName))) {
+            // objects created by factory beans are post processed under the name of the factory
+            return bean;
+        }
+        Creation creation = inProgress.pop();
+        while (!creation.beanName.equals(beanName)) {
+            // creation failed and the exception was handled
+            creation = inProgress.pop();
+        }
+        long elapsed = System.nanoTime() - creation.started;
+        beanTimes.merge(beanName, elapsed - creation.dependencies, Long::sum);
+        if (!inProgress.isEmpty()) {
+            inProgress.peek().dependencies += elapsed;
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // child contexts created later publish to this context as well
+        if (!ready.compareAndSet(false, true)) {
+            return;
+        }
+        creations.remove();
+        startupTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        uptimeWhenReady = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (logger.isInfoEnabled()) {
+            StringBuilder report = new StringBuilder();
+            report.append("Context ready after ").append(startupTime).append("ms, ")
+                    .append(uptimeWhenReady).append("ms after JVM start. Slowest of ")
+                    .append(beanTimes.size()).append(" beans:");
+            getSlowestBeans().forEach((name, millis) -> report.append("\n  ").append(millis).append("ms ").append(name));
+            logger.info(report.toString());
+        }
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Time from context start to ready (ms)")
+    public long getStartupTime() {
+        return startupTime;
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Time from JVM start to ready (ms)")
+    public long getUptimeWhenReady() {
+        return uptimeWhenReady;
+    }
+
+    @ManagedMetric(category = "performance", displayName = "Slowest bean creations (ms)")
+    public String getSlowestBeanTimes() {
+        return JsonUtils.writeValueAsString(getSlowestBeans());
+    }
+
+    public Map<String, Long> getSlowestBeans() {
+        Map<String, Long> slowest = new LinkedHashMap<>();
+        beanTimes.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(reportSize)
+                .forEach(e -> slowest.put(e.getKey(), TimeUnit.NANOSECONDS.toMillis(e.getValue())));
+        return slowest;
+    }
+
+    private static class Creation {
+        private final String beanName;
+        private final long started;
+        private long dependencies;
+
+        Creation(String beanName, long started) {
+            this.beanName = beanName;
+            this.started = started;
+        }
+    }
+}
@@ -1,25 +1,83 @@
 package org.cloudfoundry.identity.uaa.mfa;
 
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneProvisioning;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.EmptyResultDataAccessException;
 
-public class MfaChecker {
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Answers MFA questions for a zone from an {@link MfaPolicy} that is kept per zone and rebuilt
+ * only when the zone configuration changes, so the provider is not looked up on every request.
+ */
+public class MfaChecker implements ApplicationListener<AbstractUaaEvent> {
 
     private final IdentityZoneProvisioning identityZoneProvisioning;
+    private final ConcurrentMap<String, MfaPolicy> policies = new ConcurrentHashMap<>();
+    private MfaProviderProvisioning mfaProviderProvisioning;
 
     public MfaChecker(IdentityZoneProvisioning identityZoneProvisioning) {
         this.identityZoneProvisioning = identityZoneProvisioning;
     }
 
+    public void setMfaProviderProvisioning(MfaProviderProvisioning mfaProviderProvisioning) {
+        this.mfaProviderProvisioning = mfaProviderProvisioning;
+        policies.clear();
+    }
+
+    public MfaPolicy getPolicy(IdentityZone zone) {
+        MfaPolicy policy = policies.get(zone.getId());
+        if (policy != null && policy.isSnapshotOf(zone)) {
+            return policy;
+        }
+        policy = new MfaPolicy(zone, findProvider(zone));
+        if (!policy.isEnabled() || policy.getProvider() != null) {
+            policies.put(zone.getId(), policy);
+        }
+        return policy;
+    }
+
     public boolean isMfaEnabled(IdentityZone zone) {
-        return zone.getConfig().getMfaConfig().isEnabled();
+        return getPolicy(zone).isEnabled();
     }
 
     public boolean isMfaEnabledForZoneId(String zoneId) {
+        IdentityZone current = IdentityZoneHolder.get();
+        if (current != null && current.getId().equals(zoneId)) {
+            return isMfaEnabled(current);
+        }
         return isMfaEnabled(identityZoneProvisioning.retrieve(zoneId));
     }
 
     public boolean isRequired(IdentityZone zone, String originKey) {
-        return zone.getConfig().getMfaConfig().getIdentityProviders().contains(originKey);
+        return getPolicy(zone).isRequired(originKey);
+    }
+
+    public MfaProvider getMfaProvider(IdentityZone zone) {
+        return getPolicy(zone).getProvider();
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof EntityDeletedEvent && ((EntityDeletedEvent<?>) event).getDeleted() instanceof MfaProvider) {
+            policies.remove(event.getIdentityZoneId());
+        }
+    }
+
+    private MfaProvider findProvider(IdentityZone zone) {
+        String providerName = zone.getConfig().getMfaConfig().getProviderName();
+        if (mfaProviderProvisioning == null || !zone.getConfig().getMfaConfig().isEnabled() || providerName == null) {
+            return null;
+        }
+        try {
+            return mfaProviderProvisioning.retrieveByName(providerName, zone.getId());
+        } catch (EmptyResultDataAccessException x) {
+            return null;
+        }
     }
 }
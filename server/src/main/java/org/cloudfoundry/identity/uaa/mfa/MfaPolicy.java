@@ -0,0 +1,74 @@
+package org.cloudfoundry.identity.uaa.mfa;
+
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.MfaConfig;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The MFA settings of one version of a zone, with the configured MFA provider already looked up.
+ */
+public class MfaPolicy {
+
+    private final String zoneId;
+    private final long zoneVersion;
+    private final boolean enabled;
+    private final String providerName;
+    private final Set<String> identityProviders;
+    private final MfaProvider provider;
+
+    MfaPolicy(IdentityZone zone, MfaProvider provider) {
+        MfaConfig config = zone.getConfig().getMfaConfig();
+        this.zoneId = zone.getId();
+        this.zoneVersion = version(zone);
+        this.enabled = config.isEnabled();
+        this.providerName = config.getProviderName();
+        this.identityProviders = Collections.unmodifiableSet(new HashSet<>(config.getIdentityProviders()));
+        this.provider = provider;
+    }
+
+    /**
+     * @return true if this policy was built from the current configuration of the zone
+     */
+    boolean isSnapshotOf(IdentityZone zone) {
+        MfaConfig config = zone.getConfig().getMfaConfig();
+        List<String> origins = config.getIdentityProviders();
+        return zoneId.equals(zone.getId()) &&
+            zoneVersion == version(zone) &&
+            enabled == config.isEnabled() &&
+            Objects.equals(providerName, config.getProviderName()) &&
+            origins.size() == identityProviders.size() &&
+            identityProviders.containsAll(origins);
+    }
+
+    private static long version(IdentityZone zone) {
+        return zone.getLastModified() == null ? -1 : zone.getLastModified().getTime();
+    }
+
+    public String getZoneId() {
+        return zoneId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getProviderName() {
+        return providerName;
+    }
+
+    public boolean isRequired(String originKey) {
+        return originKey != null && identityProviders.contains(originKey);
+    }
+
+    /**
+     * @return the configured provider, null when MFA is disabled or the provider does not exist
+     */
+    public MfaProvider getProvider() {
+        return provider;
+    }
+}
@@ -60,6 +60,7 @@ public class StatelessMfaAuthenticationFilter extends OncePerRequestFilter imple
     private final CommonLoginPolicy commonLoginPolicy;
 
     private ApplicationEventPublisher publisher;
+    private MfaChecker checker;
 
     public StatelessMfaAuthenticationFilter(UserGoogleMfaCredentialsProvisioning provisioning,
                                             Set<String> supportedGrantTypes,
@@ -73,6 +74,10 @@ public class StatelessMfaAuthenticationFilter extends OncePerRequestFilter imple
         this.commonLoginPolicy = commonLoginPolicy;
 }
 
+    public void setChecker(MfaChecker checker) {
+        this.checker = checker;
+    }
+
     public boolean isGrantTypeSupported(String type) {
         return supportedGrantTypes.contains(type);
     }
@@ -119,9 +124,16 @@ public class StatelessMfaAuthenticationFilter extends OncePerRequestFilter imple
                 throw new RuntimeException();
             }
 
-            try {
-                provider = mfaProvider.retrieveByName(zone.getConfig().getMfaConfig().getProviderName(), zone.getId());
-            } catch (EmptyResultDataAccessException x) {
+            if (checker != null) {
+                provider = checker.getMfaProvider(zone);
+            } else {
+                try {
+                    provider = mfaProvider.retrieveByName(zone.getConfig().getMfaConfig().getProviderName(), zone.getId());
+                } catch (EmptyResultDataAccessException x) {
+                    provider = null;
+                }
+            }
+            if (provider == null) {
                 throw new ProviderNotFoundException("Unable to find MFA provider for zone:" + zone.getSubdomain());
             }
             Integer code = getMfaCode(request);
@@ -15,13 +15,19 @@
 package org.cloudfoundry.identity.uaa.oauth;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
 import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
 import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
 import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.JsonUtils.JsonUtilException;
 import org.cloudfoundry.identity.uaa.util.UaaStringUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -40,6 +46,7 @@ import org.springframework.security.oauth2.provider.OAuth2Request;
 import org.springframework.security.oauth2.provider.code.AuthorizationCodeServices;
 
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -50,8 +57,18 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Stores authorization codes in the {@code oauth_code} table.
+ * <p>
+ * Codes are written as a single {@link CompactAuthorizationCode} object encoded with Smile, a binary
+ * form of JSON, so they are read back with one parse. Codes written in the earlier nested JSON
+ * format, or with Java serialization by the legacy code services, are still read, which lets codes
+ * issued before an upgrade be exchanged after it. While older servers that only read nested JSON
+ * still share the database, {@code setCompactFormat(false)} keeps writing that format.
+ */
 public class UaaTokenStore implements AuthorizationCodeServices {
     public static final long EXPIRATION_TIME = 5*60*1000;
     public static final long LEGACY_CODE_EXPIRATION_TIME = 3*24*60*60*1000;
@@ -69,6 +86,8 @@ public class UaaTokenStore implements AuthorizationCodeServices {
 
     protected static Logger logger = LoggerFactory.getLogger(UaaTokenStore.class);
 
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
     private static final String SQL_SELECT_STATEMENT = "select code, user_id, client_id, expiresat, created, authentication from oauth_code where code = ?";
     private static final String SQL_INSERT_STATEMENT = "insert into oauth_code (code, user_id, client_id, expiresat, authentication, identity_zone_id) values (?, ?, ?, ?, ?, ?)";
     private static final String SQL_DELETE_STATEMENT = "delete from oauth_code where code = ?";
@@ -82,6 +101,8 @@ public class UaaTokenStore implements AuthorizationCodeServices {
 
     private final AtomicLong lastClean = new AtomicLong(0);
 
+    private boolean compactFormat = false;
+
     public UaaTokenStore(DataSource dataSource) {
         this(dataSource, EXPIRATION_TIME);
     }
@@ -148,6 +169,39 @@ public class UaaTokenStore implements AuthorizationCodeServices {
     }
 
     protected byte[] serializeOauth2Authentication(OAuth2Authentication auth2Authentication) {
+        if (auth2Authentication.getOAuth2Request().getExtensions() != null && auth2Authentication.getOAuth2Request().getExtensions().size()>0) {
+            logger.warn("[oauth_code] Unable to serialize extensions:"+auth2Authentication.getOAuth2Request().getExtensions());
+        }
+        if (!compactFormat) {
+            return serializeOauth2AuthenticationAsJson(auth2Authentication);
+        }
+        Authentication userAuthentication = auth2Authentication.getUserAuthentication();
+        OAuth2Request oAuth2Request = auth2Authentication.getOAuth2Request();
+        CompactAuthorizationCode data = new CompactAuthorizationCode();
+        if (userAuthentication != null) {
+            if (userAuthentication instanceof UaaAuthentication) {
+                data.uaaAuthentication = (UaaAuthentication) userAuthentication;
+            } else {
+                data.uaaPrincipal = (UaaPrincipal) userAuthentication.getPrincipal();
+                data.userAuthorities = UaaStringUtils.getStringsFromAuthorities(userAuthentication.getAuthorities());
+            }
+        }
+        data.requestParameters = oAuth2Request.getRequestParameters();
+        data.clientId = oAuth2Request.getClientId();
+        data.authorities = UaaStringUtils.getStringsFromAuthorities(oAuth2Request.getAuthorities());
+        data.approved = oAuth2Request.isApproved();
+        data.scope = oAuth2Request.getScope();
+        data.resourceIds = oAuth2Request.getResourceIds();
+        data.redirectUri = oAuth2Request.getRedirectUri();
+        data.responseTypes = oAuth2Request.getResponseTypes();
+        try {
+            return SMILE_MAPPER.writeValueAsBytes(data);
+        } catch (IOException e) {
+            throw new JsonUtilException(e);
+        }
+    }
+
+    private byte[] serializeOauth2AuthenticationAsJson(OAuth2Authentication auth2Authentication) {
         Authentication userAuthentication = auth2Authentication.getUserAuthentication();
         HashMap<String, Object> data = new HashMap<>();
         if (userAuthentication!=null) {
@@ -169,13 +223,48 @@ public class UaaTokenStore implements AuthorizationCodeServices {
 
         //currently not serializing any of the
         //Map<String, Serializable > extensionProperties
-        if (auth2Authentication.getOAuth2Request().getExtensions() != null && auth2Authentication.getOAuth2Request().getExtensions().size()>0) {
-            logger.warn("[oauth_code] Unable to serialize extensions:"+auth2Authentication.getOAuth2Request().getExtensions());
-        }
         return JsonUtils.writeValueAsBytes(data);
     }
 
     protected OAuth2Authentication deserializeOauth2Authentication(byte[] data) {
+        if (!isCompactFormat(data)) {
+            return deserializeOauth2AuthenticationFromJson(data);
+        }
+        CompactAuthorizationCode code;
+        try {
+            code = SMILE_MAPPER.readValue(data, CompactAuthorizationCode.class);
+        } catch (IOException e) {
+            throw new JsonUtilException(e);
+        }
+        if (code.version != CompactAuthorizationCode.VERSION) {
+            throw new InvalidGrantException("Unsupported authorization code format: " + code.version);
+        }
+        Authentication userAuthentication = code.uaaAuthentication;
+        if (userAuthentication == null && code.uaaPrincipal != null) {
+            userAuthentication = new UaaAuthentication(code.uaaPrincipal, UaaStringUtils.getAuthoritiesFromStrings(code.userAuthorities), UaaAuthenticationDetails.UNKNOWN);
+        }
+        OAuth2Request request = new OAuth2Request(
+            code.requestParameters,
+            code.clientId,
+            UaaStringUtils.getAuthoritiesFromStrings(code.authorities),
+            code.approved,
+            code.scope,
+            code.resourceIds,
+            code.redirectUri,
+            code.responseTypes,
+            new HashMap<String,Serializable>()
+        );
+        return new OAuth2Authentication(request, userAuthentication);
+    }
+
+    static boolean isCompactFormat(byte[] data) {
+        return data != null && data.length > 2
+            && data[0] == SmileConstants.HEADER_BYTE_1
+            && data[1] == SmileConstants.HEADER_BYTE_2
+            && data[2] == SmileConstants.HEADER_BYTE_3;
+    }
+
+    private OAuth2Authentication deserializeOauth2AuthenticationFromJson(byte[] data) {
         Map<String,Object> map = JsonUtils.readValue(data, new TypeReference<Map<String,Object>>() {});
         Authentication userAuthentication = null;
         if (map.get(USER_AUTHENTICATION_UAA_AUTHENTICATION) != null) {
@@ -236,6 +325,44 @@ public class UaaTokenStore implements AuthorizationCodeServices {
         return expirationTime;
     }
 
+    public boolean isCompactFormat() {
+        return compactFormat;
+    }
+
+    public void setCompactFormat(boolean compactFormat) {
+        this.compactFormat = compactFormat;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    protected static class CompactAuthorizationCode {
+        static final int VERSION = 2;
+
+        @JsonProperty("v")
+        public int version = VERSION;
+        @JsonProperty("ua")
+        public UaaAuthentication uaaAuthentication;
+        @JsonProperty("up")
+        public UaaPrincipal uaaPrincipal;
+        @JsonProperty("uau")
+        public Collection<String> userAuthorities;
+        @JsonProperty("rp")
+        public Map<String, String> requestParameters;
+        @JsonProperty("c")
+        public String clientId;
+        @JsonProperty("au")
+        public Collection<String> authorities;
+        @JsonProperty("a")
+        public boolean approved;
+        @JsonProperty("s")
+        public Set<String> scope;
+        @JsonProperty("ri")
+        public Set<String> resourceIds;
+        @JsonProperty("ru")
+        public String redirectUri;
+        @JsonProperty("rt")
+        public Set<String> responseTypes;
+    }
+
     protected class TokenCodeRowMapper implements RowMapper<TokenCode> {
 
         @Override
@@ -0,0 +1,61 @@
+package org.cloudfoundry.identity.uaa.provider;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.util.EmailDomainIndex;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityProviderModifiedEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an {@link EmailDomainIndex} of the active identity providers per zone, for identity
+ * provider discovery and invitations.
+ * <p>
+ * An index is dropped when this server creates, updates or deletes an identity provider of the
+ * zone, and {@code ttlSeconds} after it was built so changes made through another server are
+ * picked up. The indexed providers are shared and must not be modified.
+ */
+public class EmailDomainIndexCache implements ApplicationListener<AbstractUaaEvent> {
+
+    private final IdentityProviderProvisioning providerProvisioning;
+    private final Cache<String, EmailDomainIndex> indexes;
+
+    public EmailDomainIndexCache(IdentityProviderProvisioning providerProvisioning, int ttlSeconds) {
+        this.providerProvisioning = providerProvisioning;
+        this.indexes = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(1000)
+                .build();
+    }
+
+    public EmailDomainIndex get(String zoneId) {
+        EmailDomainIndex index = indexes.getIfPresent(zoneId);
+        if (index == null) {
+            index = EmailDomainIndex.of(providerProvisioning.retrieveActive(zoneId));
+            indexes.put(zoneId, index);
+        }
+        return index;
+    }
+
+    public void evict(String zoneId) {
+        indexes.invalidate(zoneId);
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof IdentityProviderModifiedEvent) {
+            evict(((IdentityProvider) event.getSource()).getIdentityZoneId());
+        } else if (event instanceof EntityDeletedEvent) {
+            Object deleted = ((EntityDeletedEvent<?>) event).getDeleted();
+            if (deleted instanceof IdentityProvider) {
+                evict(((IdentityProvider) deleted).getIdentityZoneId());
+            } else if (deleted instanceof IdentityZone) {
+                evict(((IdentityZone) deleted).getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.cloudfoundry.identity.uaa.provider.ldap;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.support.BaseLdapPathContextSource;
+import org.springframework.ldap.pool2.factory.PoolConfig;
+import org.springframework.ldap.pool2.factory.PooledContextSource;
+import org.springframework.ldap.pool2.validation.DefaultDirContextValidator;
+
+import javax.naming.directory.DirContext;
+import javax.naming.ldap.LdapName;
+
+/**
+ * Pools the connections of the bind user of an LDAP provider.
+ * <p>
+ * Searches for users and groups borrow a connection from the pool, binds with the credentials
+ * of the user that is logging in always get a new connection from the wrapped context source,
+ * so pooled connections never carry the identity of an end user.
+ */
+public class PooledLdapContextSource implements BaseLdapPathContextSource, DisposableBean {
+
+    static final long MAX_WAIT_MILLIS = 10 * 1000;
+
+    private final BaseLdapPathContextSource contextSource;
+    private final PooledContextSource pool;
+
+    public PooledLdapContextSource(BaseLdapPathContextSource contextSource,
+                                   int maxSize,
+                                   boolean validate,
+                                   long idleTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("LDAP connection pool size must be a positive number");
+        }
+        PoolConfig config = new PoolConfig();
+        config.setMaxTotal(maxSize);
+        config.setMaxTotalPerKey(maxSize);
+        config.setMaxIdlePerKey(maxSize);
+        config.setMaxWaitMillis(MAX_WAIT_MILLIS);
+        config.setTestOnBorrow(validate);
+        config.setTestWhileIdle(validate);
+        if (idleTimeoutMillis > 0) {
+            config.setMinEvictableIdleTimeMillis(idleTimeoutMillis);
+            config.setTimeBetweenEvictionRunsMillis(Math.max(1000, idleTimeoutMillis / 2));
+        }
+        this.contextSource = contextSource;
+        this.pool = new PooledContextSource(config);
+        this.pool.setContextSource(contextSource);
+        this.pool.setDirContextValidator(new DefaultDirContextValidator());
+    }
+
+    @Override
+    public DirContext getReadOnlyContext() {
+        return pool.getReadOnlyContext();
+    }
+
+    @Override
+    public DirContext getReadWriteContext() {
+        return pool.getReadWriteContext();
+    }
+
+    @Override
+    public DirContext getContext(String principal, String credentials) {
+        return contextSource.getContext(principal, credentials);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public DistinguishedName getBaseLdapPath() {
+        return contextSource.getBaseLdapPath();
+    }
+
+    @Override
+    public LdapName getBaseLdapName() {
+        return contextSource.getBaseLdapName();
+    }
+
+    @Override
+    public String getBaseLdapPathAsString() {
+        return contextSource.getBaseLdapPathAsString();
+    }
+
+    public int getActiveCount() {
+        return pool.getNumActive();
+    }
+
+    public int getIdleCount() {
+        return pool.getNumIdle();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        pool.destroy();
+    }
+}
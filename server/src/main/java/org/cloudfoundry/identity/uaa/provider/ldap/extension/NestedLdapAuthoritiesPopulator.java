@@ -15,6 +15,8 @@
  */
 package org.cloudfoundry.identity.uaa.provider.ldap.extension;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ldap.core.ContextSource;
@@ -22,11 +24,20 @@ import org.springframework.ldap.core.DirContextOperations;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.util.StringUtils;
 
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.EMPTY_LIST;
@@ -59,16 +70,30 @@ import static java.util.Collections.EMPTY_LIST;
  * ou: java-developer
  * </pre>
  * <p>
- * During an authentication
+ * During an authentication the groups are resolved level by level. When the group search filter
+ * only matches on the member DN, like {@code member={0}}, all groups of a level are looked up with
+ * one search, otherwise each group is searched for on its own. Only the role attributes of the
+ * groups are read, never their member lists. The parents found by a search can be cached for a
+ * while, see {@link #setGroupCache(long, long)}; the groups a user is a direct member of are always
+ * read from the directory. A filter using the Active Directory
+ * {@code LDAP_MATCHING_RULE_IN_CHAIN}, like {@code member:1.2.840.113556.1.4.1941:={0}}, returns all
+ * nested groups at once and is therefore only searched once.
  */
 
 public class NestedLdapAuthoritiesPopulator extends DefaultLdapAuthoritiesPopulator {
     public static final String MEMBER_OF = "memberOf";
+    public static final String MATCHING_RULE_IN_CHAIN = "1.2.840.113556.1.4.1941";
     private static final Logger logger = LoggerFactory.getLogger(NestedLdapAuthoritiesPopulator.class);
+    private static final Pattern SIMPLE_MEMBER_FILTER = Pattern.compile("^\\(?\\s*([A-Za-z][\\w.;-]*)\\s*=\\s*\\{0}\\s*\\)?$");
 
     private Set<String> attributeNames;
 
     private int maxSearchDepth = 10;
+
+    private int batchSize = 50;
+
+    private volatile Cache<Set<LdapName>, Set<Map<String, String[]>>> parentGroups = buildCache(0, 0);
+
     /**
      * Constructor for group search scenarios. <tt>userRoleAttributes</tt> may still be
      * set as a property.
@@ -107,51 +132,148 @@ public class NestedLdapAuthoritiesPopulator extends DefaultLdapAuthoritiesPopula
         return authorities;
     }
 
+    /**
+     * Resolves the groups of a user one nesting level at a time. The first level is the group search
+     * for the user itself, every following level looks up the parents of all groups found on the
+     * previous level, in a single search when the group search filter allows it. Parents of groups
+     * are cached, so repeated logins usually only pay for the first level.
+     */
     protected void performNestedSearch(String userDn, String username, Set<GrantedAuthority> authorities, int depth) {
-        if (depth==0) {
-            //back out of recursion
-            logger.debug("Search aborted, max depth reached,"+
-                " for roles for user '" + username + "', DN = " + "'" + userDn + "', with filter "
-                + getGroupSearchFilter() + " in search base '" + getGroupSearchBase() + "'");
-            return;
+        if (StringUtils.hasText(getGroupRoleAttribute()) && !getAttributeNames().contains(getGroupRoleAttribute())) {
+            getAttributeNames().add(getGroupRoleAttribute());
         }
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("Searching for roles for user '" + username + "', DN = " + "'" + userDn + "', with filter "
-                + getGroupSearchFilter() + " in search base '" + getGroupSearchBase() + "'");
+        Map<String, String> level = Collections.singletonMap(userDn, username);
+        boolean user = true;
+        Set<String> visited = new HashSet<>();
+        while (!level.isEmpty()) {
+            if (depth == 0) {
+                logger.debug("Search aborted, max depth reached,"+
+                    " for roles for user '" + username + "', DN = " + "'" + userDn + "', with filter "
+                    + getGroupSearchFilter() + " in search base '" + getGroupSearchBase() + "'");
+                return;
+            }
+
+            Set<Map<String, String[]>> parents;
+            if (user) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Searching for roles for user '" + username + "', DN = " + "'" + userDn + "', with filter "
+                        + getGroupSearchFilter() + " in search base '" + getGroupSearchBase() + "'");
+                }
+                parents = searchGroups(getGroupSearchFilter(), new String[]{userDn, username});
+            } else {
+                parents = findParentGroups(level);
+            }
+
+            Map<String, String> next = new LinkedHashMap<>();
+            for (Map<String, String[]> record : parents) {
+                boolean circular = false;
+                String dn = record.get(SpringSecurityLdapTemplate.DN_KEY)[0];
+                String[] roleValues = record.get(getGroupRoleAttribute());
+                Set<String> roles = new HashSet<>(Arrays.asList(roleValues != null ? roleValues : new String[0]));
+                for (String role : roles) {
+                    if (isConvertToUpperCase()) {
+                        role = role.toUpperCase();
+                    }
+                    role = getRolePrefix() + role;
+                    circular = circular | (!authorities.add(new LdapAuthority(role, dn, record)));
+                }
+                String roleName = roles.size() > 0 ? roles.iterator().next() : dn;
+                if (!circular && visited.add(dn)) {
+                    next.putIfAbsent(dn, roleName);
+                }
+            }
+            if (getGroupSearchFilter() != null && getGroupSearchFilter().contains(MATCHING_RULE_IN_CHAIN)) {
+                // the directory already returned every nested group
+                return;
+            }
+            level = next;
+            user = false;
+            depth--;
         }
+    }
 
-        if (StringUtils.hasText(getGroupRoleAttribute()) && !getAttributeNames().contains(getGroupRoleAttribute())) {
-            getAttributeNames().add(getGroupRoleAttribute());
+    /**
+     * @param groups group DN mapped to the role name of the group
+     * @return the parent group records of all groups
+     */
+    protected Set<Map<String, String[]>> findParentGroups(Map<String, String> groups) {
+        Set<Map<String, String[]>> result = new HashSet<>();
+        String memberAttribute = getBatchMemberAttribute();
+        if (memberAttribute == null) {
+            groups.forEach((dn, roleName) -> result.addAll(findParentGroups(Collections.singletonList(dn),
+                () -> searchGroups(getGroupSearchFilter(), new String[]{dn, roleName}))));
+            return result;
+        }
+
+        // sorted, so that the same groups end up in the same searches and cache entries
+        List<String> dns = groups.keySet().stream().sorted(String.CASE_INSENSITIVE_ORDER).collect(Collectors.toList());
+        for (int from = 0; from < dns.size(); from += batchSize) {
+            List<String> batch = dns.subList(from, Math.min(from + batchSize, dns.size()));
+            StringBuilder filter = new StringBuilder("(|");
+            for (int i = 0; i < batch.size(); i++) {
+                filter.append('(').append(memberAttribute).append("={").append(i).append("})");
+            }
+            filter.append(')');
+            result.addAll(findParentGroups(batch, () -> searchGroups(filter.toString(), batch.toArray(new String[0]))));
         }
+        return result;
+    }
 
-        Set<Map<String,String[]>> userRoles = getLdapTemplate().searchForMultipleAttributeValues(
+    /**
+     * The parents are cached for the groups searched together rather than for each group, as telling
+     * which group a parent belongs to would mean reading the complete member list of every parent.
+     */
+    private Set<Map<String, String[]>> findParentGroups(List<String> groups, Supplier<Set<Map<String, String[]>>> search) {
+        Set<LdapName> key = new HashSet<>();
+        for (String dn : groups) {
+            LdapName name = toLdapName(dn);
+            if (name == null) {
+                return search.get();
+            }
+            key.add(name);
+        }
+        Set<Map<String, String[]>> parents = parentGroups.getIfPresent(key);
+        if (parents == null) {
+            parents = Collections.unmodifiableSet(search.get());
+            parentGroups.put(key, parents);
+        }
+        return parents;
+    }
+
+    private Set<Map<String, String[]>> searchGroups(String filter, String[] params) {
+        Set<Map<String, String[]>> records = getLdapTemplate().searchForMultipleAttributeValues(
             getGroupSearchBase(),
-            getGroupSearchFilter(),
-            new String[]{userDn, username},
+            filter,
+            params,
             getAttributeNames().toArray(new String[0]));
 
         if (logger.isDebugEnabled()) {
-            logRoles(userRoles);
+            logRoles(records);
         }
+        return records;
+    }
 
-        for (Map<String,String[]> record : userRoles) {
-            boolean circular = false;
-            String dn = record.get(SpringSecurityLdapTemplate.DN_KEY)[0];
-            String[] roleValues = record.get(getGroupRoleAttribute());
-            Set<String> roles = new HashSet<>(Arrays.asList(roleValues != null ? roleValues : new String[0]));
-            for (String role : roles) {
-                if (isConvertToUpperCase()) {
-                    role = role.toUpperCase();
-                }
-                role = getRolePrefix() + role;
-                circular = circular | (!authorities.add(new LdapAuthority(role,dn,record)));
-            }
-            String roleName = roles.size()>0 ? roles.iterator().next() : dn;
-            if (!circular) {
-                performNestedSearch(dn, roleName, authorities, (depth - 1));
-            }
+    /**
+     * @return the membership attribute when the group search filter only matches on the DN, like
+     * {@code member={0}}, so that the parents of several groups can be found with a single
+     * {@code (|(member=...)(member=...))} search; {@code null} when each group has to be searched for
+     * on its own.
+     */
+    String getBatchMemberAttribute() {
+        if (batchSize <= 1 || getGroupSearchFilter() == null) {
+            return null;
+        }
+        Matcher matcher = SIMPLE_MEMBER_FILTER.matcher(getGroupSearchFilter().trim());
+        return matcher.matches() ? matcher.group(1) : null;
+    }
 
+    private static LdapName toLdapName(String dn) {
+        try {
+            return new LdapName(dn);
+        } catch (InvalidNameException | IllegalArgumentException e) {
+            logger.debug("Unable to parse DN '" + dn + "': " + e.getMessage());
+            return null;
         }
     }
 
@@ -195,6 +317,32 @@ public class NestedLdapAuthoritiesPopulator extends DefaultLdapAuthoritiesPopula
         this.maxSearchDepth = maxSearchDepth;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
 
+    /**
+     * @param batchSize the maximum number of groups whose parents are looked up in a single search
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
 
+    /**
+     * @param cacheTtlSeconds how long the parent groups of a group are remembered, 0 disables the cache
+     * @param cacheMaxSize    the maximum number of searches to remember
+     */
+    public void setGroupCache(long cacheTtlSeconds, long cacheMaxSize) {
+        this.parentGroups = buildCache(cacheTtlSeconds, cacheMaxSize);
+    }
+
+    private static Cache<Set<LdapName>, Set<Map<String, String[]>>> buildCache(long cacheTtlSeconds, long cacheMaxSize) {
+        if (cacheTtlSeconds <= 0 || cacheMaxSize <= 0) {
+            return CacheBuilder.newBuilder().maximumSize(0).build();
+        }
+        return CacheBuilder.newBuilder()
+            .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+            .maximumSize(cacheMaxSize)
+            .build();
+    }
 }
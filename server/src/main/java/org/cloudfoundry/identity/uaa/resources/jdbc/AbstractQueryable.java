@@ -4,13 +4,20 @@ import org.cloudfoundry.identity.uaa.resources.Queryable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.util.StringUtils;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.google.common.primitives.Ints.tryParse;
@@ -85,6 +92,39 @@ public abstract class AbstractQueryable<T> implements Queryable<T> {
         }
     }
 
+    /**
+     * Passes every row matching the filter to {@code consumer}, in one query over a forward-only
+     * cursor instead of pages. Rows are not collected, so memory use does not grow with the result.
+     * <p>
+     * Postgres only honours the fetch size inside a transaction, MySQL only with {@code useCursorFetch=true}.
+     * Only errors a filter can cause are reported as an invalid filter, others such as a connection
+     * lost halfway through are passed on.
+     *
+     * @param fetchSize the number of rows the driver fetches per round trip
+     */
+    public void stream(String filter, String sortBy, boolean ascending, String zoneId, int fetchSize, Consumer<T> consumer) {
+        validateOrderBy(queryConverter.map(sortBy));
+
+        SearchQueryConverter.ProcessedFilter where = queryConverter.convert(filter, sortBy, ascending, zoneId);
+        String completeSql = getQuerySQL(where);
+        logger.debug("streaming sql: " + completeSql + ", params: " + where.getParams());
+        JdbcTemplate streamingTemplate = new JdbcTemplate(namedParameterJdbcTemplate.getJdbcTemplate().getDataSource());
+        streamingTemplate.setFetchSize(fetchSize);
+        try {
+            new NamedParameterJdbcTemplate(streamingTemplate).query(completeSql, where.getParams(), new RowCallbackHandler() {
+                private int rowNum = 0;
+
+                @Override
+                public void processRow(ResultSet rs) throws SQLException {
+                    consumer.accept(rowMapper.mapRow(rs, rowNum++));
+                }
+            });
+        } catch (BadSqlGrammarException | DataIntegrityViolationException | InvalidDataAccessApiUsageException e) {
+            logger.debug("Filter '" + filter + "' generated invalid SQL", e);
+            throw new IllegalArgumentException("Invalid filter: " + filter);
+        }
+    }
+
     private String getQuerySQL(SearchQueryConverter.ProcessedFilter where) {
         if (where.hasOrderBy()) {
             return getBaseSqlQuery() + " where (" + where.getSql().replace(where.ORDER_BY, ")" + where.ORDER_BY);
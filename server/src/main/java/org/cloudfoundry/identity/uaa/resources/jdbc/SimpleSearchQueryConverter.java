@@ -1,5 +1,7 @@
 package org.cloudfoundry.identity.uaa.resources.jdbc;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.unboundid.scim.sdk.AttributePath;
 import com.unboundid.scim.sdk.InvalidResourceException;
 import com.unboundid.scim.sdk.SCIMException;
@@ -8,7 +10,6 @@ import org.cloudfoundry.identity.uaa.resources.AttributeNameMapper;
 import org.cloudfoundry.identity.uaa.resources.SimpleAttributeNameMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
@@ -16,11 +17,16 @@ import org.springframework.util.StringUtils;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.unboundid.scim.sdk.SCIMException.createException;
 import static java.util.Arrays.asList;
@@ -84,19 +90,21 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
             "g.id",
             "external_id");
 
+    static final String PARAM_PREFIX = "__value_";
+    private static final int MAX_CACHED_FILTERS = 1000;
+    // quoted filter values, filters with escapes or legacy single quotes are never cached
+    private static final Pattern QUOTED_VALUE = Pattern.compile("\"([^\"]*)\"");
+
     private static Logger logger = LoggerFactory.getLogger(SimpleSearchQueryConverter.class);
     private AttributeNameMapper mapper = new SimpleAttributeNameMapper(Collections.emptyMap());
 
     private boolean dbCaseInsensitive = false;
-    private RandomValueStringGenerator randomStringGenerator;
 
-    public SimpleSearchQueryConverter() {
-        randomStringGenerator = new RandomValueStringGenerator();
-    }
+    private boolean substringSearchIndexed = false;
 
-    public SimpleSearchQueryConverter(RandomValueStringGenerator randomStringGenerator) {
-        this.randomStringGenerator = randomStringGenerator;
-    }
+    private final Cache<String, CompiledFilter> compiledFilters = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_FILTERS)
+            .build();
 
     private boolean isDbCaseInsensitive() {
         return dbCaseInsensitive;
@@ -104,29 +112,68 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
 
     public void setDbCaseInsensitive(boolean caseInsensitive) {
         this.dbCaseInsensitive = caseInsensitive;
+        compiledFilters.invalidateAll();
+    }
+
+    /**
+     * When the database has trigram indexes on LOWER(column), {@code co} and {@code sw} values are
+     * lower cased before binding so the predicate reads {@code LOWER(column) LIKE :value}, which
+     * the indexes serve directly.
+     */
+    public void setSubstringSearchIndexed(boolean substringSearchIndexed) {
+        this.substringSearchIndexed = substringSearchIndexed;
+        compiledFilters.invalidateAll();
     }
 
     public void setAttributeNameMapper(AttributeNameMapper mapper) {
         this.mapper = mapper;
+        compiledFilters.invalidateAll();
     }
 
+    /**
+     * Filters are compiled into SQL with stable parameter names. The compiled form is cached by the
+     * shape of the filter, i.e. the filter with its quoted values taken out, so searches that only
+     * differ in their values or zone reuse both the parsed filter and the same statement text.
+     */
     @Override
     public ProcessedFilter convert(String filter, String sortBy, boolean ascending, String zoneId) {
-        String paramPrefix = generateParameterPrefix(filter);
-        Map<String, Object> values = new HashMap<>();
-        String where = getWhereClause(filter, sortBy, ascending, values, mapper, paramPrefix, zoneId);
-        ProcessedFilter pf = new ProcessedFilter(where, values, hasText(sortBy));
-        pf.setParamPrefix(paramPrefix);
+        List<String> quotedValues = new ArrayList<>();
+        String key = getCacheKey(filter, sortBy, ascending, quotedValues);
+        CompiledFilter compiled = key == null ? null : compiledFilters.getIfPresent(key);
+        Map<String, Object> values;
+        if (compiled != null) {
+            values = compiled.bind(quotedValues, zoneId);
+        } else {
+            values = new HashMap<>();
+            List<ParamSlot> slots = new ArrayList<>();
+            String where = getWhereClause(filter, sortBy, ascending, values, slots, mapper, zoneId);
+            compiled = new CompiledFilter(where, slots);
+            if (key != null && compiled.getQuotedValueCount() == quotedValues.size()) {
+                compiledFilters.put(key, compiled);
+            }
+        }
+        ProcessedFilter pf = new ProcessedFilter(compiled.sql, values, hasText(sortBy));
+        pf.setParamPrefix(PARAM_PREFIX);
         return pf;
     }
 
-    private String generateParameterPrefix(String filter) {
-        while (true) {
-            String s = randomStringGenerator.generate().toLowerCase();
-            if (!filter.contains(s) && !s.contains("-")) {
-                return "__" + s + "_";
-            }
+    private static String getCacheKey(String filter, String sortBy, boolean ascending, List<String> quotedValues) {
+        String safeFilter = filter == null ? "" : filter;
+        if (safeFilter.indexOf('\\') >= 0 || safeFilter.indexOf('\'') >= 0) {
+            return null;
+        }
+        Matcher matcher = QUOTED_VALUE.matcher(safeFilter);
+        StringBuilder shape = new StringBuilder();
+        int last = 0;
+        while (matcher.find()) {
+            String value = matcher.group(1);
+            quotedValues.add(value);
+            // dates and strings compile to different SQL, so they are different shapes
+            shape.append(safeFilter, last, matcher.start()).append(getStringOrDate(value) instanceof Date ? "\"D\"" : "\"S\"");
+            last = matcher.end();
         }
+        shape.append(safeFilter, last, safeFilter.length());
+        return shape + "|" + sortBy + "|" + ascending;
     }
 
     private String getWhereClause(
@@ -134,8 +181,8 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
             final String sortBy,
             final boolean ascending,
             final Map<String, Object> values,
+            final List<ParamSlot> slots,
             final AttributeNameMapper mapper,
-            final String paramPrefix,
             final String zoneId) {
 
         try {
@@ -149,7 +196,9 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
                 fullFilter = zoneIdFilter;
             }
 
-            String whereClause = whereClauseFromFilter(fullFilter, values, mapper, paramPrefix);
+            String whereClause = whereClauseFromFilter(fullFilter, values, slots, mapper);
+            // the zone clause is always the last parameter
+            slots.set(slots.size() - 1, ParamSlot.ZONE);
             if (sortBy != null) {
                 final String internalSortBy = mapper.mapToInternal(sortBy);
                 // Need to add "asc" or "desc" explicitly to ensure that the pattern
@@ -245,28 +294,28 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
         }
     }
 
-    private String whereClauseFromFilter(SCIMFilter filter, Map<String, Object> values, AttributeNameMapper mapper, String paramPrefix) {
+    private String whereClauseFromFilter(SCIMFilter filter, Map<String, Object> values, List<ParamSlot> slots, AttributeNameMapper mapper) {
         switch (filter.getFilterType()) {
             case AND:
-                return "(" + whereClauseFromFilter(filter.getFilterComponents().get(0), values, mapper, paramPrefix) + " AND " + whereClauseFromFilter(filter.getFilterComponents().get(1), values, mapper, paramPrefix) + ")";
+                return "(" + whereClauseFromFilter(filter.getFilterComponents().get(0), values, slots, mapper) + " AND " + whereClauseFromFilter(filter.getFilterComponents().get(1), values, slots, mapper) + ")";
             case OR:
-                return "(" + whereClauseFromFilter(filter.getFilterComponents().get(0), values, mapper, paramPrefix) + " OR " + whereClauseFromFilter(filter.getFilterComponents().get(1), values, mapper, paramPrefix) + ")";
+                return "(" + whereClauseFromFilter(filter.getFilterComponents().get(0), values, slots, mapper) + " OR " + whereClauseFromFilter(filter.getFilterComponents().get(1), values, slots, mapper) + ")";
             case EQUALITY:
-                return comparisonClause(filter, "=", values, "", "", paramPrefix);
+                return comparisonClause(filter, "=", values, slots, "", "");
             case CONTAINS:
-                return comparisonClause(filter, "LIKE", values, "%", "%", paramPrefix);
+                return comparisonClause(filter, "LIKE", values, slots, "%", "%");
             case STARTS_WITH:
-                return comparisonClause(filter, "LIKE", values, "", "%", paramPrefix);
+                return comparisonClause(filter, "LIKE", values, slots, "", "%");
             case PRESENCE:
                 return getAttributeName(filter, mapper) + " IS NOT NULL";
             case GREATER_THAN:
-                return comparisonClause(filter, ">", values, "", "", paramPrefix);
+                return comparisonClause(filter, ">", values, slots, "", "");
             case GREATER_OR_EQUAL:
-                return comparisonClause(filter, ">=", values, "", "", paramPrefix);
+                return comparisonClause(filter, ">=", values, slots, "", "");
             case LESS_THAN:
-                return comparisonClause(filter, "<", values, "", "", paramPrefix);
+                return comparisonClause(filter, "<", values, slots, "", "");
             case LESS_OR_EQUAL:
-                return comparisonClause(filter, "<=", values, "", "", paramPrefix);
+                return comparisonClause(filter, "<=", values, slots, "", "");
         }
         return null;
     }
@@ -274,33 +323,41 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
     private String comparisonClause(SCIMFilter filter,
                                     String comparator,
                                     Map<String, Object> values,
+                                    List<ParamSlot> slots,
                                     String valuePrefix,
-                                    String valueSuffix,
-                                    String paramPrefix) {
-        String pName = getParamName(values, paramPrefix);
+                                    String valueSuffix) {
+        String pName = getParamName(values);
         String paramName = ":" + pName;
         if (filter.getFilterValue() == null) {
             return getAttributeName(filter, mapper) + " IS NULL";
         } else if (filter.isQuoteFilterValue()) {
             Object value = getStringOrDate(filter.getFilterValue());
+            int quotedValueIndex = (int) slots.stream().filter(ParamSlot::isQuotedValue).count();
             if (value instanceof String) {
+                boolean blank = false;
                 //lower is used to satisfy the requirement that all quoted values are compared case insensitive
                 switch (filter.getFilterAttribute().getAttributeName().toLowerCase()) {
                     case "client_secret":
                     case "password":
                     case "salt":
                         value = "";
+                        blank = true;
                     default:
                         break;
                 }
-                values.put(pName, valuePrefix + value + valueSuffix);
-                if (isDbCaseInsensitive()) {
+                boolean lowerCase = substringSearchIndexed && !isDbCaseInsensitive() && "LIKE".equals(comparator);
+                values.put(pName, lowerCase ? (valuePrefix + value + valueSuffix).toLowerCase(Locale.ROOT) : valuePrefix + value + valueSuffix);
+                slots.add(new ParamSlot(quotedValueIndex, valuePrefix, valueSuffix, blank, lowerCase, null));
+                if (isDbCaseInsensitive() || isExactMatchAttribute(filter)) {
                     return "" + getAttributeName(filter, mapper) + " " + comparator + " " + paramName + "";
+                } else if (lowerCase) {
+                    return "LOWER(" + getAttributeName(filter, mapper) + ") " + comparator + " " + paramName;
                 } else {
                     return "LOWER(" + getAttributeName(filter, mapper) + ") " + comparator + " LOWER(" + paramName + ")";
                 }
             } else {
                 values.put(pName, value);
+                slots.add(new ParamSlot(quotedValueIndex, null, null, false, false, null));
                 return getAttributeName(filter, mapper) + " " + comparator + " " + paramName;
             }
         } else {
@@ -316,10 +373,20 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
                             " : " + filter.getFilterValue() + "]");
                 }
             }
+            slots.add(new ParamSlot(-1, null, null, false, false, values.get(pName)));
             return getAttributeName(filter, mapper) + " " + comparator + " " + paramName;
         }
     }
 
+    /**
+     * Zone ids are stored exactly as the zone defines them, comparing them without LOWER()
+     * keeps the zone column usable as the trailing column of the LOWER(...) lookup indexes.
+     */
+    private static boolean isExactMatchAttribute(SCIMFilter filter) {
+        return "identity_zone_id".equalsIgnoreCase(filter.getFilterAttribute().getAttributeName())
+                && filter.getFilterAttribute().getSubAttributeName() == null;
+    }
+
     private String getAttributeName(SCIMFilter filter, AttributeNameMapper mapper) {
         String name = filter.getFilterAttribute().getAttributeName();
         String subName = filter.getFilterAttribute().getSubAttributeName();
@@ -330,11 +397,11 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
         return name.replace("meta.", "");
     }
 
-    private String getParamName(Map<String, Object> values, String paramPrefix) {
-        return paramPrefix + values.size();
+    private static String getParamName(Map<String, Object> values) {
+        return PARAM_PREFIX + values.size();
     }
 
-    private Object getStringOrDate(String s) {
+    private static Object getStringOrDate(String s) {
         try {
             DateFormat TIMESTAMP_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
             return TIMESTAMP_FORMAT.parse(s);
@@ -347,4 +414,65 @@ public class SimpleSearchQueryConverter implements SearchQueryConverter {
     public String map(String attribute) {
         return hasText(attribute) ? mapper.mapToInternal(attribute) : attribute;
     }
+
+    /**
+     * Where a parameter of a compiled filter gets its value from.
+     */
+    private static final class ParamSlot {
+        private static final ParamSlot ZONE = new ParamSlot(-1, null, null, false, false, null);
+
+        private final int quotedValueIndex;
+        private final String valuePrefix;
+        private final String valueSuffix;
+        private final boolean blank;
+        private final boolean lowerCase;
+        private final Object constant;
+
+        private ParamSlot(int quotedValueIndex, String valuePrefix, String valueSuffix, boolean blank, boolean lowerCase, Object constant) {
+            this.quotedValueIndex = quotedValueIndex;
+            this.valuePrefix = valuePrefix;
+            this.valueSuffix = valueSuffix;
+            this.blank = blank;
+            this.lowerCase = lowerCase;
+            this.constant = constant;
+        }
+
+        private boolean isQuotedValue() {
+            return quotedValueIndex >= 0;
+        }
+    }
+
+    private static final class CompiledFilter {
+        private final String sql;
+        private final List<ParamSlot> slots;
+
+        private CompiledFilter(String sql, List<ParamSlot> slots) {
+            this.sql = sql;
+            this.slots = slots;
+        }
+
+        private long getQuotedValueCount() {
+            return slots.stream().filter(ParamSlot::isQuotedValue).count();
+        }
+
+        private Map<String, Object> bind(List<String> quotedValues, String zoneId) {
+            Map<String, Object> values = new HashMap<>();
+            for (int i = 0; i < slots.size(); i++) {
+                ParamSlot slot = slots.get(i);
+                Object value;
+                if (slot == ParamSlot.ZONE) {
+                    value = zoneId;
+                } else if (!slot.isQuotedValue()) {
+                    value = slot.constant;
+                } else if (slot.valuePrefix == null) {
+                    value = getStringOrDate(quotedValues.get(slot.quotedValueIndex));
+                } else {
+                    String text = slot.valuePrefix + (slot.blank ? "" : quotedValues.get(slot.quotedValueIndex)) + slot.valueSuffix;
+                    value = slot.lowerCase ? text.toLowerCase(Locale.ROOT) : text;
+                }
+                values.put(PARAM_PREFIX + i, value);
+            }
+            return values;
+        }
+    }
 }
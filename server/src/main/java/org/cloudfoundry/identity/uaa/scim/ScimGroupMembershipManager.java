@@ -4,6 +4,7 @@ import org.cloudfoundry.identity.uaa.scim.exception.MemberAlreadyExistsException
 import org.cloudfoundry.identity.uaa.scim.exception.MemberNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.exception.ScimResourceNotFoundException;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -58,6 +59,15 @@ public interface ScimGroupMembershipManager {
             final List<ScimGroupMember> members,
             final String zoneId) throws ScimResourceNotFoundException;
 
+    /**
+     * Add and remove many members of a group at once. Each member is validated on its own,
+     * invalid entries are reported in the result instead of failing the whole request.
+     */
+    ScimGroupMemberChangesResult applyMemberChanges(
+            final String groupId,
+            final ScimGroupMemberChanges changes,
+            final String zoneId) throws ScimResourceNotFoundException;
+
     /**
      * Revoke membership of a member
      */
@@ -95,4 +105,17 @@ public interface ScimGroupMembershipManager {
             final String origin,
             final String zoneId) throws ScimResourceNotFoundException;
 
+    /**
+     * Make the memberships an external member holds for {@code origin} match the given group names.
+     * Memberships of groups that are not named are revoked, named groups the member is not yet part
+     * of are joined. Group names are matched ignoring case. Groups that do not exist are created
+     * if {@code createGroups} is set and skipped otherwise.
+     */
+    void syncExternalMember(
+            final String memberId,
+            final String origin,
+            final Collection<String> groupNames,
+            final boolean createGroups,
+            final String zoneId);
+
 }
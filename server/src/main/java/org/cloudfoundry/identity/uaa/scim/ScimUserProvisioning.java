@@ -25,6 +25,12 @@ public interface ScimUserProvisioning extends ResourceManager<ScimUser>, Queryab
 
     ScimUser createUser(ScimUser user, String password, String zoneId) throws InvalidPasswordException, InvalidScimResourceException;
 
+    /**
+     * Creates several users at once. Unlike {@link #createUser(ScimUser, String, String)} the
+     * passwords of {@code users} must already be encoded.
+     */
+    List<ScimUser> createUsers(List<ScimUser> users, String zoneId);
+
     List<ScimUser> retrieveByEmailAndZone(String email, String origin, String zoneId);
 
     List<ScimUser> retrieveByUsernameAndZone(String username, String zoneId);
@@ -14,6 +14,7 @@ package org.cloudfoundry.identity.uaa.scim.bootstrap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.cloudfoundry.identity.uaa.impl.config.BootstrapSectionStore;
 import org.cloudfoundry.identity.uaa.scim.ScimCore;
 import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
@@ -34,13 +35,18 @@ import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static java.util.Optional.ofNullable;
+
 public class ScimGroupBootstrap implements InitializingBean {
 
     private Map<String, String> groups;
@@ -61,6 +67,10 @@ public class ScimGroupBootstrap implements InitializingBean {
     private Map<String, String> configuredGroups = Collections.EMPTY_MAP;
 
     private static final String USER_BY_NAME_FILTER = "username eq \"%s\"";
+    private static final int USERS_PER_QUERY = 50;
+
+    static final String GROUP_SECTION = "groups";
+    private BootstrapSectionStore sectionStore;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private PropertySource messageSource;
@@ -179,8 +189,24 @@ public class ScimGroupBootstrap implements InitializingBean {
         logger.debug("admins: " + groupAdmins + ", members: " + groupMembers);
     }
 
+    /**
+     * Skips the groups and their members when their configuration has not changed since it was
+     * last applied, all the groups still exist and all configured members still belong to them.
+     */
+    public void setSectionStore(BootstrapSectionStore sectionStore) {
+        this.sectionStore = sectionStore;
+    }
+
     @Override
     public void afterPropertiesSet() {
+        Object configuration = Arrays.asList(groups, groupMembers, groupAdmins);
+        if (sectionStore != null && sectionStore.isEnabled()
+                && sectionStore.load(GROUP_SECTION).isUnchanged(GROUP_SECTION, configuration)
+                && allGroupsAndMembersExist()) {
+            logger.debug("Group configuration unchanged since it was last applied");
+            return;
+        }
+
         List<ScimGroup> groupInfos = groups.keySet().stream().filter(n -> StringUtils.hasText(n)).map(n -> getOrCreateGroup(n)).collect(Collectors.toList());
         for (int i = 0; i < groupInfos.size(); i++) {
             ScimGroup g = groupInfos.get(i);
@@ -200,15 +226,74 @@ public class ScimGroupBootstrap implements InitializingBean {
             }
         }
 
+        Map<String, ScimUser> users = findUsers(configuredMemberNames());
+        Set<String> unresolved = new HashSet<>();
         for (ScimGroup g : groupInfos) {
-            addMembers(g);
+            addMembers(g, users, unresolved);
+        }
+
+        // members that do not exist yet are looked up again on the next start
+        if (sectionStore != null && unresolved.isEmpty()) {
+            sectionStore.recordApplied(Collections.singletonMap(GROUP_SECTION, configuration));
+        }
+    }
+
+    private boolean allGroupsAndMembersExist() {
+        Map<String, ScimGroup> existing = scimGroupProvisioning.retrieveAll(IdentityZone.getUaaZoneId()).stream()
+                .collect(Collectors.toMap(ScimGroup::getDisplayName, g -> g, (a, b) -> a));
+        if (!groups.keySet().stream().filter(StringUtils::hasText).allMatch(existing::containsKey)) {
+            return false;
+        }
+        // a configured member deleted since, and maybe recreated with a new id, has to be added again
+        Map<String, ScimUser> users = findUsers(configuredMemberNames());
+        for (ScimGroup group : existing.values()) {
+            Set<String> names = new HashSet<>();
+            ofNullable(groupMembers.get(group.getDisplayName())).ifPresent(names::addAll);
+            ofNullable(groupAdmins.get(group.getDisplayName())).ifPresent(names::addAll);
+            if (names.isEmpty()) {
+                continue;
+            }
+            Set<String> memberIds = membershipManager.getMembers(group.getId(), false, IdentityZoneHolder.get().getId()).stream()
+                    .map(ScimGroupMember::getMemberId)
+                    .collect(Collectors.toSet());
+            for (String name : names) {
+                ScimCore member = getScimResourceId(name, users);
+                if (member == null || !memberIds.contains(member.getId())) {
+                    return false;
+                }
+            }
         }
+        return true;
+    }
+
+    private Set<String> configuredMemberNames() {
+        Set<String> memberNames = new HashSet<>();
+        groupMembers.values().forEach(memberNames::addAll);
+        groupAdmins.values().forEach(memberNames::addAll);
+        return memberNames;
     }
 
-    private void addMembers(ScimGroup group) {
+    /**
+     * @return the users with these usernames by lower case username, looked up a batch of names at a time
+     */
+    private Map<String, ScimUser> findUsers(Collection<String> names) {
+        List<String> nameList = new ArrayList<>(names);
+        Map<String, ScimUser> users = new HashMap<>();
+        for (int i = 0; i < nameList.size(); i += USERS_PER_QUERY) {
+            String filter = nameList.subList(i, Math.min(i + USERS_PER_QUERY, nameList.size())).stream()
+                    .map(name -> String.format(USER_BY_NAME_FILTER, name))
+                    .collect(Collectors.joining(" or "));
+            for (ScimUser user : scimUserProvisioning.query(filter, IdentityZoneHolder.get().getId())) {
+                users.putIfAbsent(user.getUserName().toLowerCase(), user);
+            }
+        }
+        return users;
+    }
+
+    private void addMembers(ScimGroup group, Map<String, ScimUser> users, Set<String> unresolved) {
         String name = group.getDisplayName();
-        List<ScimGroupMember> members = getMembers(groupMembers.get(name));
-        members.addAll(getMembers(groupAdmins.get(name)));
+        List<ScimGroupMember> members = getMembers(groupMembers.get(name), users, unresolved);
+        members.addAll(getMembers(groupAdmins.get(name), users, unresolved));
         logger.debug("adding members: " + members + " into group: " + name);
 
         for (ScimGroupMember member : members) {
@@ -220,15 +305,17 @@ public class ScimGroupBootstrap implements InitializingBean {
         }
     }
 
-    private List<ScimGroupMember> getMembers(Set<String> names) {
+    private List<ScimGroupMember> getMembers(Set<String> names, Map<String, ScimUser> users, Set<String> unresolved) {
         if (names == null || names.isEmpty()) {
             return Collections.<ScimGroupMember> emptyList();
         }
 
         List<ScimGroupMember> members = new ArrayList<>();
         for (String name : names) {
-            ScimCore member = getScimResourceId(name);
-            if (member != null) {
+            ScimCore member = getScimResourceId(name, users);
+            if (member == null) {
+                unresolved.add(name);
+            } else {
                 members.add(
                     new ScimGroupMember(
                         member.getId(),
@@ -240,9 +327,9 @@ public class ScimGroupBootstrap implements InitializingBean {
         return members;
     }
 
-    private ScimCore getScimResourceId(String name) {
+    private ScimCore getScimResourceId(String name, Map<String, ScimUser> users) {
 
-        ScimCore res = getUser(name);
+        ScimCore res = users.get(name.toLowerCase());
         if (res != null) {
             return res;
         }
@@ -251,14 +338,6 @@ public class ScimGroupBootstrap implements InitializingBean {
         return getGroup(name);
     }
 
-    private ScimUser getUser(String name) {
-        List<ScimUser> user = scimUserProvisioning.query(String.format(USER_BY_NAME_FILTER, name), IdentityZoneHolder.get().getId());
-        if (user != null && !user.isEmpty()) {
-            return user.get(0);
-        }
-        return null;
-    }
-
     ScimGroup getGroup(String name) {
         try {
             ScimGroup gr = scimGroupProvisioning.getByName(name, IdentityZoneHolder.get().getId());
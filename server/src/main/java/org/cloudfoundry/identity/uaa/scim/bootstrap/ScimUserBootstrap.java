@@ -1,5 +1,9 @@
 package org.cloudfoundry.identity.uaa.scim.bootstrap;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.authentication.SystemAuthentication;
 import org.cloudfoundry.identity.uaa.authentication.manager.AuthEvent;
@@ -7,7 +11,9 @@ import org.cloudfoundry.identity.uaa.authentication.manager.ExternalGroupAuthori
 import org.cloudfoundry.identity.uaa.authentication.manager.InvitedUserAuthenticatedEvent;
 import org.cloudfoundry.identity.uaa.authentication.manager.NewUserAuthenticatedEvent;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.impl.config.BootstrapSectionStore;
 import org.cloudfoundry.identity.uaa.scim.*;
+import org.cloudfoundry.identity.uaa.scim.event.GroupModifiedEvent;
 import org.cloudfoundry.identity.uaa.scim.exception.InvalidPasswordException;
 import org.cloudfoundry.identity.uaa.scim.exception.MemberAlreadyExistsException;
 import org.cloudfoundry.identity.uaa.scim.exception.MemberNotFoundException;
@@ -23,12 +29,14 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.util.StringUtils;
 
 import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
@@ -55,6 +63,14 @@ public class ScimUserBootstrap implements
     private final boolean override;
     private final List<String> usersToDelete;
     private ApplicationEventPublisher publisher;
+    private BootstrapSectionStore sectionStore;
+
+    static final String USER_SECTION_PREFIX = "users/";
+    private static final int USERS_PER_QUERY = 50;
+    private final Cache<String, String> syncedExternalGroups = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
 
     /**
      *
@@ -75,15 +91,69 @@ public class ScimUserBootstrap implements
         this.usersToDelete = usersToDelete;
     }
 
+    /**
+     * Skips existing users whose configuration has not changed since it was last applied.
+     */
+    public void setSectionStore(BootstrapSectionStore sectionStore) {
+        this.sectionStore = sectionStore;
+    }
+
     @Override
     public void afterPropertiesSet() {
         List<UaaUser> users = new LinkedList<>(ofNullable(this.users).orElse(emptyList()));
         List<String> deleteMe = ofNullable(usersToDelete).orElse(emptyList());
         users.removeIf(u -> deleteMe.contains(u.getUsername()));
+
+        BootstrapSectionStore.Snapshot applied = null;
+        Set<String> existingUsers = Collections.emptySet();
+        if (sectionStore != null && sectionStore.isEnabled()) {
+            applied = sectionStore.load(USER_SECTION_PREFIX);
+            existingUsers = findExistingUsers(users);
+        }
+        Map<String, Object> changed = new LinkedHashMap<>();
         for (UaaUser u : users) {
             u.setVerified(true);
+            String origin = u.getOrigin() == null ? OriginKeys.UAA : u.getOrigin();
+            String section = USER_SECTION_PREFIX + origin + "/" + u.getUsername();
+            Object configuration = Arrays.asList(override, u.getId(), u.getUsername(), u.getPassword(), u.getEmail(),
+                    u.getGivenName(), u.getFamilyName(), u.getPhoneNumber(), origin, u.getExternalId(),
+                    convertToGroups(u.getAuthorities()));
+            if (applied != null && existingUsers.contains(userKey(origin, u.getUsername()))
+                    && applied.isUnchanged(section, configuration)) {
+                logger.debug("User configuration unchanged since it was last applied: " + u.getUsername());
+                continue;
+            }
             addUser(u);
+            changed.put(section, configuration);
         }
+        if (sectionStore != null) {
+            sectionStore.recordApplied(changed);
+        }
+    }
+
+    /**
+     * @return the keys of the users that exist, looked up a batch of usernames at a time
+     */
+    private Set<String> findExistingUsers(List<UaaUser> users) {
+        Map<String, List<String>> usernamesByOrigin = users.stream().collect(Collectors.groupingBy(
+                u -> u.getOrigin() == null ? OriginKeys.UAA : u.getOrigin(),
+                Collectors.mapping(UaaUser::getUsername, Collectors.toList())));
+        Set<String> existing = new HashSet<>();
+        usernamesByOrigin.forEach((origin, usernames) -> {
+            for (int i = 0; i < usernames.size(); i += USERS_PER_QUERY) {
+                String filter = usernames.subList(i, Math.min(i + USERS_PER_QUERY, usernames.size())).stream()
+                        .map(username -> "userName eq \"" + username + "\"")
+                        .collect(Collectors.joining(" or ", "origin eq \"" + origin + "\" and (", ")"));
+                for (ScimUser user : scimUserProvisioning.query(filter, IdentityZoneHolder.get().getId())) {
+                    existing.add(userKey(user.getOrigin(), user.getUserName()));
+                }
+            }
+        });
+        return existing;
+    }
+
+    private static String userKey(String origin, String username) {
+        return origin + "/" + username.toLowerCase();
     }
 
     private void deleteUsers(@NotNull List<String> deleteList) {
@@ -197,6 +267,9 @@ public class ScimUserBootstrap implements
                 logger.warn("Unable to delete users from manifest.", e);
                 throw new RuntimeException(e);
             }
+        } else if (event instanceof GroupModifiedEvent || event instanceof EntityDeletedEvent) {
+            // memberships changed outside of a login must be synced again on the next one
+            syncedExternalGroups.invalidateAll();
         }
     }
 
@@ -216,19 +289,7 @@ public class ScimUserBootstrap implements
             //delete previous membership relation ships
             String origin = exEvent.getUser().getOrigin();
             if (!OriginKeys.UAA.equals(origin)) {
-                Set<ScimGroup> groupsWithMember = membershipManager.getGroupsWithExternalMember(exEvent.getUser().getId(), origin, IdentityZoneHolder.get().getId());
-                Map<String, ScimGroup> groupsMap = groupsWithMember.stream().collect(Collectors.toMap(ScimGroup::getDisplayName, Function.identity()));
-                Collection<? extends GrantedAuthority> externalAuthorities = new LinkedHashSet<>(exEvent.getExternalAuthorities());
-                for (GrantedAuthority authority : externalAuthorities) {
-                    if (groupsMap.containsKey(authority.getAuthority())) {
-                        groupsMap.remove(authority.getAuthority());
-                    } else {
-                        addToGroup(exEvent.getUser().getId(), authority.getAuthority(), origin, exEvent.isAddGroups());
-                    }
-                }
-                for (ScimGroup group : groupsMap.values()) {
-                    membershipManager.removeMemberById(group.getId(), exEvent.getUser().getId(), group.getZoneId());
-                }
+                syncExternalGroups(exEvent.getUser().getId(), origin, exEvent.getExternalAuthorities(), exEvent.isAddGroups());
             }
             //update the user itself
             if (event.isUserModified()) {
@@ -244,6 +305,39 @@ public class ScimUserBootstrap implements
         }
     }
 
+    /**
+     * Group memberships asserted by an identity provider rarely change between logins. A digest of
+     * the last synced set is kept for a while per user, identical sets skip the database entirely.
+     * The digests are held per server and dropped whenever this server sees a group change.
+     */
+    private void syncExternalGroups(String userId, String origin, Collection<? extends GrantedAuthority> externalAuthorities, boolean addGroups) {
+        String zoneId = IdentityZoneHolder.get().getId();
+        List<String> groupNames = externalAuthorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(StringUtils::hasText)
+                .distinct()
+                .collect(Collectors.toList());
+        String key = zoneId + ":" + origin + ":" + userId;
+        String digest = digest(groupNames, addGroups);
+        if (digest.equals(syncedExternalGroups.getIfPresent(key))) {
+            logger.debug("External groups of user " + userId + " are unchanged since the last login");
+            return;
+        }
+        try {
+            membershipManager.syncExternalMember(userId, origin, groupNames, addGroups, zoneId);
+            syncedExternalGroups.put(key, digest);
+        } catch (DuplicateKeyException e) {
+            // a concurrent login of the same user joined the same groups
+            logger.debug("External groups of user " + userId + " were synced concurrently", e);
+        }
+    }
+
+    private static String digest(List<String> groupNames, boolean addGroups) {
+        Hasher hasher = Hashing.sha256().newHasher().putBoolean(addGroups);
+        groupNames.stream().sorted().forEach(name -> hasher.putString(name, StandardCharsets.UTF_8).putByte((byte) 0));
+        return hasher.hash().toString();
+    }
+
     private void addToGroup(String scimUserId, String gName) {
         addToGroup(scimUserId, gName, OriginKeys.UAA, true);
     }
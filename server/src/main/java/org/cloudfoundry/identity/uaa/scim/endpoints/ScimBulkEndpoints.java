@@ -0,0 +1,614 @@
+package org.cloudfoundry.identity.uaa.scim.endpoints;
+
+import org.cloudfoundry.identity.uaa.approval.Approval;
+import org.cloudfoundry.identity.uaa.approval.ApprovalStore;
+import org.cloudfoundry.identity.uaa.error.UaaException;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkOperation;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkOperationResponse;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkRequest;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkResponse;
+import org.cloudfoundry.identity.uaa.scim.ScimCore;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMemberChangeResult;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMemberChanges;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMemberChangesResult;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.scim.exception.InvalidScimResourceException;
+import org.cloudfoundry.identity.uaa.scim.exception.ScimException;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.util.UaaUrlUtils;
+import org.cloudfoundry.identity.uaa.web.ConvertingExceptionView;
+import org.cloudfoundry.identity.uaa.web.ExceptionReport;
+import org.cloudfoundry.identity.uaa.web.ExceptionReportHttpMessageConverter;
+import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.View;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * SCIM bulk endpoint (RFC 7644 section 3.7). Operations are applied in request order through the
+ * regular user and group endpoints, so validation, events and error mapping are the same as for
+ * individual requests.
+ * <p>
+ * Consecutive user creations are grouped: their passwords are hashed in parallel on a bounded
+ * pool and the users are inserted with a single JDBC batch. Group members listed in a group
+ * creation are added with one batched membership change.
+ * <p>
+ * Operations may refer to resources created earlier in the same request as {@code bulkId:<id>},
+ * either in their {@code path} or anywhere in their {@code data}. Updates must carry the
+ * {@code version} of the resource, as they must carry If-Match on their own.
+ */
+@Controller
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=ScimBulkEndpoints",
+        description = "SCIM Bulk Endpoint Metrics"
+)
+public class ScimBulkEndpoints implements DisposableBean {
+
+    static final String BULK_ID_PREFIX = "bulkId:";
+    private static final String USERS = "Users";
+    private static final String GROUPS = "Groups";
+    private static final String POST = "POST";
+    private static final String PUT = "PUT";
+    private static final String PATCH = "PATCH";
+    private static final String DELETE = "DELETE";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final IdentityZoneManager identityZoneManager;
+    private final ScimUserEndpoints scimUserEndpoints;
+    private final ScimGroupEndpoints scimGroupEndpoints;
+    private final ScimUserProvisioning scimUserProvisioning;
+    private final ApprovalStore approvalStore;
+    private final PasswordEncoder passwordEncoder;
+    private final Map<Class<? extends Exception>, HttpStatus> statuses;
+    private final int maxOperations;
+    private final int maxPayloadSize;
+    private final ExecutorService passwordEncodingExecutor;
+    private final HttpMessageConverter<?>[] messageConverters;
+
+    private final LongAdder bulkRequests = new LongAdder();
+    private final LongAdder bulkOperations = new LongAdder();
+    private final LongAdder bulkErrors = new LongAdder();
+
+    public ScimBulkEndpoints(
+            final IdentityZoneManager identityZoneManager,
+            final ScimUserEndpoints scimUserEndpoints,
+            final ScimGroupEndpoints scimGroupEndpoints,
+            final ScimUserProvisioning scimUserProvisioning,
+            final ApprovalStore approvalStore,
+            final @Qualifier("nonCachingPasswordEncoder") PasswordEncoder passwordEncoder,
+            final @Qualifier("exceptionToStatusMap") Map<Class<? extends Exception>, HttpStatus> statuses,
+            final @Value("${scim.bulk.maxOperations:1000}") int maxOperations,
+            final @Value("${scim.bulk.maxPayloadSize:1048576}") int maxPayloadSize,
+            final @Value("${scim.bulk.passwordEncodingThreads:4}") int passwordEncodingThreads) {
+        if (maxOperations <= 0 || maxPayloadSize <= 0 || passwordEncodingThreads <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid bulk settings (maxOperations=%d, maxPayloadSize=%d, passwordEncodingThreads=%d). Should be positive numbers.",
+                    maxOperations, maxPayloadSize, passwordEncodingThreads));
+        }
+        this.identityZoneManager = identityZoneManager;
+        this.scimUserEndpoints = scimUserEndpoints;
+        this.scimGroupEndpoints = scimGroupEndpoints;
+        this.scimUserProvisioning = scimUserProvisioning;
+        this.approvalStore = approvalStore;
+        this.passwordEncoder = passwordEncoder;
+        this.statuses = statuses;
+        this.maxOperations = maxOperations;
+        this.maxPayloadSize = maxPayloadSize;
+        this.passwordEncodingExecutor = Executors.newFixedThreadPool(passwordEncodingThreads, new PasswordEncodingThreadFactory());
+        this.messageConverters = new HttpMessageConverter[] {
+                new ExceptionReportHttpMessageConverter()
+        };
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Bulk Request Count (Since Startup)")
+    public long getBulkRequests() {
+        return bulkRequests.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Bulk Operation Count (Since Startup)")
+    public long getBulkOperations() {
+        return bulkOperations.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Failed Bulk Operation Count (Since Startup)")
+    public long getBulkErrors() {
+        return bulkErrors.sum();
+    }
+
+    @RequestMapping(value = "/Bulk", method = RequestMethod.POST)
+    @ResponseBody
+    public ScimBulkResponse bulk(HttpServletRequest request,
+                                 HttpServletResponse response,
+                                 OAuth2Authentication authentication) throws IOException {
+        ScimBulkRequest bulkRequest = readBulkRequest(request);
+        List<ScimBulkOperation> operations = bulkRequest.getOperations();
+        if (operations.size() > maxOperations) {
+            throw new ScimException(
+                    String.format("The number of operations (%d) exceeds the maximum of %d.", operations.size(), maxOperations),
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        bulkRequests.increment();
+
+        BulkExecution execution = new BulkExecution(operations.size(), bulkRequest.getFailOnErrors(), request, response, authentication);
+        for (int i = 0; i < operations.size() && !execution.isAborted(); i++) {
+            ScimBulkOperation operation = operations.get(i);
+            bulkOperations.increment();
+            if (containsBulkIdReference(operation)) {
+                // the referenced resource may still be waiting in the pending batch
+                flushPendingUsers(execution);
+            }
+            if (isUserCreation(operation)) {
+                addPendingUser(execution, i, operation);
+            } else {
+                flushPendingUsers(execution);
+                if (!execution.isAborted()) {
+                    execution.record(i, process(execution, operation));
+                }
+            }
+        }
+        flushPendingUsers(execution);
+        return new ScimBulkResponse(execution.getResults());
+    }
+
+    @ExceptionHandler
+    public View handleException(Exception t, HttpServletRequest request) {
+        ScimException e = toScimException(t);
+        boolean trace = request.getParameter("trace") != null && !request.getParameter("trace").equals("false");
+        return new ConvertingExceptionView(new ResponseEntity<>(new ExceptionReport(e, trace),
+                e.getStatus()), messageConverters);
+    }
+
+    @Override
+    public void destroy() {
+        passwordEncodingExecutor.shutdownNow();
+    }
+
+    private ScimBulkRequest readBulkRequest(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxPayloadSize) {
+            throw payloadTooLarge();
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = request.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > maxPayloadSize) {
+                    throw payloadTooLarge();
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        try {
+            return JsonUtils.readValue(body.toByteArray(), ScimBulkRequest.class);
+        } catch (JsonUtils.JsonUtilException e) {
+            throw new InvalidScimResourceException("Unable to parse bulk request: " + e.getMessage());
+        }
+    }
+
+    private ScimException payloadTooLarge() {
+        return new ScimException(
+                String.format("The size of the bulk request exceeds the maximum of %d bytes.", maxPayloadSize),
+                HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    private static boolean isUserCreation(ScimBulkOperation operation) {
+        return POST.equalsIgnoreCase(operation.getMethod()) && ("/" + USERS).equals(operation.getPath());
+    }
+
+    private static boolean containsBulkIdReference(ScimBulkOperation operation) {
+        return (operation.getPath() != null && operation.getPath().contains(BULK_ID_PREFIX))
+                || referencesBulkId(operation.getData());
+    }
+
+    private static boolean referencesBulkId(Object value) {
+        if (value instanceof String) {
+            return ((String) value).startsWith(BULK_ID_PREFIX);
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>) value).values().stream().anyMatch(ScimBulkEndpoints::referencesBulkId);
+        } else if (value instanceof List) {
+            return ((List<?>) value).stream().anyMatch(ScimBulkEndpoints::referencesBulkId);
+        }
+        return false;
+    }
+
+    private void addPendingUser(BulkExecution execution, int index, ScimBulkOperation operation) {
+        try {
+            ScimUser user = JsonUtils.convertValue(execution.resolve(operation.getData()), ScimUser.class);
+            if (user == null) {
+                throw new InvalidScimResourceException("Missing data for " + POST + " /" + USERS);
+            }
+            scimUserEndpoints.validateUserForCreate(user, execution.request);
+            execution.pendingUsers.add(new PendingUser(index, operation, user));
+        } catch (Exception e) {
+            // the earlier creations count first towards failOnErrors
+            flushPendingUsers(execution);
+            if (!execution.isAborted()) {
+                execution.record(index, error(operation, e));
+            }
+        }
+    }
+
+    private void flushPendingUsers(BulkExecution execution) {
+        List<PendingUser> pending = execution.pendingUsers;
+        if (pending.isEmpty()) {
+            return;
+        }
+        execution.pendingUsers = new ArrayList<>();
+
+        List<CompletableFuture<String>> encoded = pending.stream()
+                .map(p -> CompletableFuture.supplyAsync(() -> passwordEncoder.encode(p.user.getPassword()), passwordEncodingExecutor))
+                .collect(Collectors.toList());
+        Exception[] encodingErrors = new Exception[pending.size()];
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                pending.get(i).user.setPassword(encoded.get(i).join());
+            } catch (CompletionException e) {
+                encodingErrors[i] = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        String zoneId = identityZoneManager.getCurrentIdentityZoneId();
+        if (Arrays.stream(encodingErrors).allMatch(e -> e == null)) {
+            try {
+                scimUserProvisioning.createUsers(pending.stream().map(p -> p.user).collect(Collectors.toList()), zoneId);
+                // all users exist now, so every operation gets its outcome
+                pending.forEach(p -> userCreated(execution, p, zoneId));
+                return;
+            } catch (Exception e) {
+                logger.debug("Bulk user creation failed, creating users one at a time: " + e.getMessage());
+            }
+        }
+        // nothing was inserted, so apply the operations in order as single requests would be
+        for (int i = 0; i < pending.size() && !execution.isAborted(); i++) {
+            PendingUser p = pending.get(i);
+            if (encodingErrors[i] != null) {
+                execution.record(p.index, error(p.operation, encodingErrors[i]));
+                continue;
+            }
+            try {
+                scimUserProvisioning.createUsers(Collections.singletonList(p.user), zoneId);
+            } catch (Exception e) {
+                execution.record(p.index, error(p.operation, e));
+                continue;
+            }
+            userCreated(execution, p, zoneId);
+        }
+    }
+
+    private void userCreated(BulkExecution execution, PendingUser p, String zoneId) {
+        try {
+            if (p.user.getApprovals() != null) {
+                for (Approval approval : p.user.getApprovals()) {
+                    approval.setUserId(p.user.getId());
+                    approvalStore.addApproval(approval, zoneId);
+                }
+            }
+            execution.bulkIds(p.operation, p.user.getId());
+            execution.record(p.index, success(p.operation, USERS, p.user, HttpStatus.CREATED));
+        } catch (Exception e) {
+            execution.record(p.index, error(p.operation, e));
+        }
+    }
+
+    private ScimBulkOperationResponse process(BulkExecution execution, ScimBulkOperation operation) {
+        try {
+            String method = operation.getMethod() == null ? "" : operation.getMethod().toUpperCase();
+            String[] path = parsePath(execution.resolvePath(operation.getPath()));
+            String type = path[0];
+            String id = path[1];
+            String version = version(operation);
+            HttpServletResponse response = new DetachedResponse(execution.response);
+
+            if (USERS.equals(type) && id != null) {
+                switch (method) {
+                    case PUT:
+                        return success(operation, USERS, scimUserEndpoints.updateUser(
+                                toUser(execution, operation), id, requireVersion(operation, version), execution.request, response, execution.authentication), HttpStatus.OK);
+                    case PATCH:
+                        return success(operation, USERS, scimUserEndpoints.patchUser(
+                                toUser(execution, operation), id, requireVersion(operation, version), execution.request, response, execution.authentication), HttpStatus.OK);
+                    case DELETE:
+                        scimUserEndpoints.deleteUser(id, version, execution.request, response);
+                        return new ScimBulkOperationResponse(operation.getMethod(), operation.getBulkId(), null, location(USERS, id), HttpStatus.NO_CONTENT.value());
+                    default:
+                }
+            } else if (GROUPS.equals(type) && id == null && POST.equals(method)) {
+                ScimGroup created = createGroup(toGroup(execution, operation), response);
+                execution.bulkIds(operation, created.getId());
+                return success(operation, GROUPS, created, HttpStatus.CREATED);
+            } else if (GROUPS.equals(type) && id != null) {
+                switch (method) {
+                    case PUT:
+                        return success(operation, GROUPS, scimGroupEndpoints.updateGroup(
+                                toGroup(execution, operation), id, requireVersion(operation, version), response), HttpStatus.OK);
+                    case PATCH:
+                        return success(operation, GROUPS, scimGroupEndpoints.patchGroup(
+                                toGroup(execution, operation), id, requireVersion(operation, version), response), HttpStatus.OK);
+                    case DELETE:
+                        // like a DELETE without If-Match
+                        scimGroupEndpoints.deleteGroup(id, version == null ? "*" : version, response);
+                        return new ScimBulkOperationResponse(operation.getMethod(), operation.getBulkId(), null, location(GROUPS, id), HttpStatus.NO_CONTENT.value());
+                    default:
+                }
+            }
+            throw new ScimException(String.format("Unsupported bulk operation: %s %s", operation.getMethod(), operation.getPath()), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return error(operation, e);
+        }
+    }
+
+    /**
+     * Creates the group without members and then adds all of them with one batched change.
+     * Like a regular group creation, the group is removed again if any member is invalid.
+     */
+    private ScimGroup createGroup(ScimGroup group, HttpServletResponse response) {
+        List<ScimGroupMember> members = group.getMembers();
+        group.setMembers(null);
+        ScimGroup created = scimGroupEndpoints.createGroup(group, response);
+        if (members == null || members.isEmpty()) {
+            return created;
+        }
+        ScimGroupMemberChangesResult result = scimGroupEndpoints.changeGroupMembers(created.getId(), new ScimGroupMemberChanges(members, null));
+        for (ScimGroupMemberChangeResult change : result.getResults()) {
+            if (!change.isSuccessful()) {
+                scimGroupEndpoints.deleteGroup(created.getId(), "*", response);
+                throw new InvalidScimResourceException("Invalid group member: " + change.getMemberId());
+            }
+        }
+        return created;
+    }
+
+    /**
+     * @return the version of the operation as the endpoints expect it in If-Match, null if there is none
+     */
+    private static String version(ScimBulkOperation operation) {
+        if (!hasText(operation.getVersion())) {
+            return null;
+        }
+        String version = operation.getVersion().trim();
+        return version.startsWith("W/") ? version.substring(2) : version;
+    }
+
+    /**
+     * Updates must name the version they apply to, as they must with If-Match when sent on their own.
+     */
+    private static String requireVersion(ScimBulkOperation operation, String version) {
+        if (version == null) {
+            throw new ScimException("Missing version for " + operation.getMethod() + " " + operation.getPath(), HttpStatus.BAD_REQUEST);
+        }
+        return version;
+    }
+
+    private ScimUser toUser(BulkExecution execution, ScimBulkOperation operation) {
+        ScimUser user = JsonUtils.convertValue(execution.resolve(operation.getData()), ScimUser.class);
+        if (user == null) {
+            throw new InvalidScimResourceException("Missing data for " + operation.getMethod() + " " + operation.getPath());
+        }
+        return user;
+    }
+
+    private ScimGroup toGroup(BulkExecution execution, ScimBulkOperation operation) {
+        ScimGroup group = JsonUtils.convertValue(execution.resolve(operation.getData()), ScimGroup.class);
+        if (group == null) {
+            throw new InvalidScimResourceException("Missing data for " + operation.getMethod() + " " + operation.getPath());
+        }
+        return group;
+    }
+
+    /**
+     * @return the resource type and the resource id, which is {@code null} for collection paths
+     */
+    private static String[] parsePath(String path) {
+        if (!hasText(path) || !path.startsWith("/")) {
+            throw new InvalidScimResourceException("Invalid bulk operation path: " + path);
+        }
+        String[] segments = path.substring(1).split("/");
+        if (segments.length > 2 || !(USERS.equals(segments[0]) || GROUPS.equals(segments[0]))) {
+            throw new InvalidScimResourceException("Invalid bulk operation path: " + path);
+        }
+        return new String[] {segments[0], segments.length == 2 ? segments[1] : null};
+    }
+
+    private ScimBulkOperationResponse success(ScimBulkOperation operation, String type, ScimCore<?> resource, HttpStatus status) {
+        return new ScimBulkOperationResponse(
+                operation.getMethod(),
+                operation.getBulkId(),
+                "\"" + resource.getVersion() + "\"",
+                location(type, resource.getId()),
+                status.value());
+    }
+
+    private ScimBulkOperationResponse error(ScimBulkOperation operation, Exception e) {
+        bulkErrors.increment();
+        ScimException scimException = toScimException(e);
+        logger.debug("Bulk operation failed: " + operation.getMethod() + " " + operation.getPath() + ", " + scimException.getMessage());
+        return ScimBulkOperationResponse.error(
+                operation.getMethod(),
+                operation.getBulkId(),
+                scimException.getStatus().value(),
+                scimException.getMessage());
+    }
+
+    private ScimException toScimException(Exception t) {
+        if (t instanceof ScimException) {
+            return (ScimException) t;
+        }
+        if (t instanceof UaaException) {
+            return new ScimException(t.getMessage(), t, HttpStatus.valueOf(((UaaException) t).getHttpStatus()));
+        }
+        Class<?> clazz = t.getClass();
+        for (Class<?> key : statuses.keySet()) {
+            if (key.isAssignableFrom(clazz)) {
+                return new ScimException(t.getMessage(), t, statuses.get(key));
+            }
+        }
+        return new ScimException("Unexpected error", t, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    private String location(String type, String id) {
+        return UaaUrlUtils.getUaaUrl("/" + type + "/" + id, identityZoneManager.getCurrentIdentityZone());
+    }
+
+    private static class PendingUser {
+        private final int index;
+        private final ScimBulkOperation operation;
+        private final ScimUser user;
+
+        private PendingUser(int index, ScimBulkOperation operation, ScimUser user) {
+            this.index = index;
+            this.operation = operation;
+            this.user = user;
+        }
+    }
+
+    /**
+     * State of a single bulk request: results by operation index, resolved bulk ids and the error count.
+     */
+    private static class BulkExecution {
+        private final ScimBulkOperationResponse[] results;
+        private final Integer failOnErrors;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final OAuth2Authentication authentication;
+        private final Map<String, String> bulkIds = new HashMap<>();
+        private List<PendingUser> pendingUsers = new ArrayList<>();
+        private int errors;
+
+        private BulkExecution(int size,
+                              Integer failOnErrors,
+                              HttpServletRequest request,
+                              HttpServletResponse response,
+                              OAuth2Authentication authentication) {
+            this.results = new ScimBulkOperationResponse[size];
+            this.failOnErrors = failOnErrors;
+            this.request = request;
+            this.response = response;
+            this.authentication = authentication;
+        }
+
+        private void record(int index, ScimBulkOperationResponse result) {
+            results[index] = result;
+            if (!result.isSuccessful()) {
+                errors++;
+            }
+        }
+
+        private boolean isAborted() {
+            return failOnErrors != null && failOnErrors > 0 && errors >= failOnErrors;
+        }
+
+        private void bulkIds(ScimBulkOperation operation, String id) {
+            if (hasText(operation.getBulkId())) {
+                bulkIds.put(operation.getBulkId(), id);
+            }
+        }
+
+        private List<ScimBulkOperationResponse> getResults() {
+            return Arrays.stream(results).filter(r -> r != null).collect(Collectors.toList());
+        }
+
+        private String resolvePath(String path) {
+            if (path == null) {
+                return null;
+            }
+            int index = path.indexOf(BULK_ID_PREFIX);
+            if (index < 0) {
+                return path;
+            }
+            return path.substring(0, index) + resolveReference(path.substring(index));
+        }
+
+        private Object resolve(Object value) {
+            if (value instanceof String && ((String) value).startsWith(BULK_ID_PREFIX)) {
+                return resolveReference((String) value);
+            } else if (value instanceof Map) {
+                Map<Object, Object> resolved = new LinkedHashMap<>();
+                ((Map<?, ?>) value).forEach((k, v) -> resolved.put(k, resolve(v)));
+                return resolved;
+            } else if (value instanceof List) {
+                return ((List<?>) value).stream().map(this::resolve).collect(Collectors.toList());
+            }
+            return value;
+        }
+
+        private String resolveReference(String reference) {
+            String id = bulkIds.get(reference.substring(BULK_ID_PREFIX.length()));
+            if (id == null) {
+                throw new ScimException("Unresolved reference: " + reference, HttpStatus.CONFLICT);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Keeps the ETag and other headers of the delegated endpoints off the bulk response.
+     */
+    private static class DetachedResponse extends HttpServletResponseWrapper {
+        private DetachedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+        }
+    }
+
+    private static class PasswordEncodingThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "scim-bulk-password-encoder-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
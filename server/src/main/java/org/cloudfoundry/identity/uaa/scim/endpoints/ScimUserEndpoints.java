@@ -204,6 +204,25 @@ public class ScimUserEndpoints implements InitializingBean, ApplicationEventPubl
     @ResponseStatus(HttpStatus.CREATED)
     @ResponseBody
     public ScimUser createUser(@RequestBody ScimUser user, HttpServletRequest request, HttpServletResponse response) {
+        validateUserForCreate(user, request);
+
+        ScimUser scimUser = scimUserProvisioning.createUser(user, user.getPassword(), identityZoneManager.getCurrentIdentityZoneId());
+        if (user.getApprovals() != null) {
+            for (Approval approval : user.getApprovals()) {
+                approval.setUserId(scimUser.getId());
+                approvalStore.addApproval(approval, identityZoneManager.getCurrentIdentityZoneId());
+            }
+        }
+        scimUser = syncApprovals(syncGroups(scimUser));
+        addETagHeader(response, scimUser);
+        return scimUser;
+    }
+
+    /**
+     * Applies the defaults and checks that {@link #createUser} performs before a user is stored,
+     * so other endpoints that create users (e.g. bulk requests) enforce the same rules.
+     */
+    public void validateUserForCreate(ScimUser user, HttpServletRequest request) {
         //default to UAA origin
         if (isEmpty(user.getOrigin())) {
             user.setOrigin(OriginKeys.UAA);
@@ -224,17 +243,6 @@ public class ScimUserEndpoints implements InitializingBean, ApplicationEventPubl
             }
             passwordValidator.validate(user.getPassword());
         }
-
-        ScimUser scimUser = scimUserProvisioning.createUser(user, user.getPassword(), identityZoneManager.getCurrentIdentityZoneId());
-        if (user.getApprovals() != null) {
-            for (Approval approval : user.getApprovals()) {
-                approval.setUserId(scimUser.getId());
-                approvalStore.addApproval(approval, identityZoneManager.getCurrentIdentityZoneId());
-            }
-        }
-        scimUser = syncApprovals(syncGroups(scimUser));
-        addETagHeader(response, scimUser);
-        return scimUser;
     }
 
     private boolean isUaaUser(@RequestBody ScimUser user) {
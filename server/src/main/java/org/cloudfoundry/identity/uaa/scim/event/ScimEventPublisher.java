@@ -2,6 +2,7 @@ package org.cloudfoundry.identity.uaa.scim.event;
 
 import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMemberChangesResult;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
 import org.springframework.context.ApplicationEvent;
@@ -9,6 +10,7 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 
 import java.util.Collections;
+import java.util.List;
 
 import static java.util.Optional.ofNullable;
 
@@ -31,6 +33,12 @@ public class ScimEventPublisher implements ApplicationEventPublisherAware {
         publish(UserModifiedEvent.userCreated(user, identityZoneManager.getCurrentIdentityZoneId()));
     }
 
+    public void usersCreated(final List<ScimUser> users) {
+        for (ScimUser user : users) {
+            userCreated(user);
+        }
+    }
+
     public void userVerified(final ScimUser user) {
         publish(UserModifiedEvent.userVerified(user, identityZoneManager.getCurrentIdentityZoneId()));
     }
@@ -59,6 +67,21 @@ public class ScimEventPublisher implements ApplicationEventPublisherAware {
                 identityZoneManager.getCurrentIdentityZoneId()));
     }
 
+    /**
+     * One event for a whole batch of membership changes, listing only the members that were added or removed.
+     */
+    public void groupMembersChanged(final ScimGroupMemberChangesResult result) {
+        String[] changedMembers = result.getChangedMemberIds().toArray(new String[0]);
+        if (changedMembers.length == 0) {
+            return;
+        }
+        publish(GroupModifiedEvent.groupModified(
+                result.getGroupId(),
+                result.getDisplayName(),
+                changedMembers,
+                identityZoneManager.getCurrentIdentityZoneId()));
+    }
+
     public void groupDeleted(final ScimGroup group) {
         publish(GroupModifiedEvent.groupDeleted(
                 group.getId(),
@@ -13,9 +13,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -24,6 +30,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.springframework.util.StringUtils.hasText;
 
@@ -43,6 +50,14 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
 
     private static final String GET_MEMBERS_SQL = String.format("select %s from %s where group_id=? and identity_zone_id=?", MEMBERSHIP_FIELDS, MEMBERSHIP_TABLE);
 
+    private static final String GET_MEMBERS_OF_GROUPS_SQL = String.format("select %s from %s where identity_zone_id=:zoneId and group_id in (:ids)", MEMBERSHIP_FIELDS, MEMBERSHIP_TABLE);
+
+    private static final String GET_MEMBER_IDS_SQL = String.format("select member_id from %s where group_id=? and identity_zone_id=?", MEMBERSHIP_TABLE);
+
+    private static final String GET_EXISTING_USER_IDS_SQL = "select id from users where identity_zone_id=:zoneId and id in (:ids)";
+
+    private static final String GET_EXISTING_GROUP_IDS_SQL = "select id from groups where identity_zone_id=:zoneId and id in (:ids)";
+
     private static final String GET_MEMBER_SQL = String.format("select %s from %s where member_id=? and group_id=? and identity_zone_id=?", MEMBERSHIP_FIELDS, MEMBERSHIP_TABLE);
 
     private static final String GET_MEMBER_COUNT_SQL = String.format("select count(*) from %s where member_id=? and group_id=? and identity_zone_id=?", MEMBERSHIP_TABLE);
@@ -65,10 +80,14 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
                     " from %s m, %s g where m.group_id = g.id and g.identity_zone_id = ? and m.member_id = ? and m.origin = ?",
             MEMBERSHIP_TABLE, GROUP_TABLE);
 
+    private static final String GET_GROUPS_BY_LOWER_NAME_SQL = String.format("select %s from %s where identity_zone_id=:zoneId and LOWER(displayName) in (:names)",
+            JdbcScimGroupProvisioning.GROUP_FIELDS, GROUP_TABLE);
+
     @Value("${database.maxParameters:-1}")
     private int maxSqlParameters;
 
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final ScimUserProvisioning userProvisioning;
     private final IdentityZoneProvisioning zoneProvisioning;
     private final ScimGroupMemberRowMapper rowMapper;
@@ -82,6 +101,7 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
             final ScimUserProvisioning userProvisioning,
             final IdentityZoneProvisioning zoneProvisioning) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
         this.userProvisioning = userProvisioning;
         this.zoneProvisioning = zoneProvisioning;
         rowMapper = new ScimGroupMemberRowMapper();
@@ -184,6 +204,25 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         return new ArrayList<>(result);
     }
 
+    /**
+     * @return the members of each group that has any, read in as few queries as the
+     * {@code database.maxParameters} limit allows
+     */
+    public Map<String, List<ScimGroupMember>> getMembers(final List<String> groupIds, final String zoneId) {
+        Map<String, List<ScimGroupMember>> result = new HashMap<>();
+        List<String> remaining = groupIds;
+        while (!remaining.isEmpty()) {
+            int size = maxSqlParameters > 1 ? Math.min(maxSqlParameters - 1, remaining.size()) : remaining.size();
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("zoneId", zoneId)
+                    .addValue("ids", remaining.subList(0, size));
+            namedParameterJdbcTemplate.query(GET_MEMBERS_OF_GROUPS_SQL, parameters, (RowCallbackHandler) rs ->
+                    result.computeIfAbsent(rs.getString(1), id -> new ArrayList<>()).add(rowMapper.mapRow(rs, 0)));
+            remaining = remaining.subList(size, remaining.size());
+        }
+        return result;
+    }
+
     @Override
     public Set<ScimGroup> getGroupsWithMember(final String memberId, boolean transitive, String zoneId)
             throws ScimResourceNotFoundException {
@@ -253,6 +292,96 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         return new HashSet<>(results);
     }
 
+    /**
+     * Not transactional on purpose: missing groups are created first, each in a statement of its
+     * own, so that a group created concurrently by another login is picked up instead of aborting
+     * a surrounding transaction, which PostgreSQL does not recover from.
+     */
+    @Override
+    public void syncExternalMember(final String memberId, final String origin, final Collection<String> groupNames, final boolean createGroups, final String zoneId) {
+        // group names are matched ignoring case, the first spelling asserted is used to create a group
+        Map<String, String> assertedNames = new LinkedHashMap<>();
+        for (String name : groupNames) {
+            if (hasText(name)) {
+                assertedNames.putIfAbsent(name.toLowerCase(), name);
+            }
+        }
+
+        Map<String, String> wantedNames = new LinkedHashMap<>(assertedNames);
+        List<String> groupsToLeave = new ArrayList<>();
+        for (ScimGroup group : getGroupsWithExternalMember(memberId, origin, zoneId)) {
+            String lowerName = group.getDisplayName().toLowerCase();
+            if (assertedNames.containsKey(lowerName)) {
+                wantedNames.remove(lowerName);
+            } else {
+                // no longer asserted by the identity provider
+                groupsToLeave.add(group.getId());
+            }
+        }
+
+        List<String> groupsToJoin = new ArrayList<>();
+        if (!wantedNames.isEmpty()) {
+            Map<String, ScimGroup> groupsByName = findGroupsByLowerName(wantedNames.keySet(), zoneId);
+            Set<String> memberOf = new HashSet<>(jdbcTemplate.queryForList(GET_GROUPS_BY_MEMBER_SQL, String.class, memberId, zoneId));
+            memberOf.removeAll(groupsToLeave);
+            Set<String> defaultGroupIds = getDefaultUserGroups(zoneId).stream().map(ScimGroup::getId).collect(toSet());
+            for (Map.Entry<String, String> wanted : wantedNames.entrySet()) {
+                ScimGroup group = groupsByName.get(wanted.getKey());
+                if (group == null && createGroups) {
+                    group = scimGroupProvisioning.createOrGet(new ScimGroup(null, wanted.getValue(), zoneId), zoneId);
+                }
+                if (group == null) {
+                    logger.debug("No group found with name:" + wanted.getValue() + ". Group membership will not be added.");
+                } else if (!defaultGroupIds.contains(group.getId()) && memberOf.add(group.getId())) {
+                    groupsToJoin.add(group.getId());
+                }
+            }
+        }
+
+        logger.debug("Syncing external member:" + memberId + ", joining " + groupsToJoin.size() + " and leaving " + groupsToLeave.size() + " groups");
+        if (!groupsToLeave.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_MEMBER_SQL, groupsToLeave.stream()
+                    .map(groupId -> new Object[]{memberId, groupId, zoneId})
+                    .collect(toList()));
+        }
+        if (!groupsToJoin.isEmpty()) {
+            final Timestamp added = new Timestamp(new Date().getTime());
+            jdbcTemplate.batchUpdate(ADD_MEMBER_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setString(1, groupsToJoin.get(i));
+                    ps.setString(2, memberId);
+                    ps.setString(3, ScimGroupMember.Type.USER.toString());
+                    ps.setNull(4, Types.VARCHAR);
+                    ps.setTimestamp(5, added);
+                    ps.setString(6, origin);
+                    ps.setString(7, zoneId);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return groupsToJoin.size();
+                }
+            });
+        }
+    }
+
+    private Map<String, ScimGroup> findGroupsByLowerName(Collection<String> names, String zoneId) {
+        Map<String, ScimGroup> result = new HashMap<>();
+        List<String> remaining = names.stream().map(String::toLowerCase).distinct().collect(toList());
+        while (!remaining.isEmpty()) {
+            int size = maxSqlParameters > 1 ? Math.min(maxSqlParameters - 1, remaining.size()) : remaining.size();
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("zoneId", zoneId)
+                    .addValue("names", remaining.subList(0, size));
+            for (ScimGroup group : namedParameterJdbcTemplate.query(GET_GROUPS_BY_LOWER_NAME_SQL, parameters, new ScimGroupRowMapper())) {
+                result.put(group.getDisplayName().toLowerCase(), group);
+            }
+            remaining = remaining.subList(size, remaining.size());
+        }
+        return result;
+    }
+
     @Override
     public ScimGroupMember getMemberById(String groupId, String memberId, String zoneId) throws ScimResourceNotFoundException,
             MemberNotFoundException {
@@ -297,6 +426,126 @@ public class JdbcScimGroupMembershipManager implements ScimGroupMembershipManage
         return getMembers(groupId, false, zoneId);
     }
 
+    @Override
+    public ScimGroupMemberChangesResult applyMemberChanges(final String groupId, final ScimGroupMemberChanges changes, final String zoneId)
+            throws ScimResourceNotFoundException {
+        ScimGroup group = scimGroupProvisioning.retrieve(groupId, zoneId);
+        boolean defaultGroup = isDefaultGroup(groupId, zoneId);
+        Set<String> currentMembers = new HashSet<>(jdbcTemplate.queryForList(GET_MEMBER_IDS_SQL, String.class, groupId, zoneId));
+        Set<String> existingUsers = findExistingIds(GET_EXISTING_USER_IDS_SQL, memberIdsOfType(changes.getAdd(), ScimGroupMember.Type.USER), zoneId);
+        Set<String> existingGroups = findExistingIds(GET_EXISTING_GROUP_IDS_SQL, memberIdsOfType(changes.getAdd(), ScimGroupMember.Type.GROUP), zoneId);
+
+        List<ScimGroupMemberChangeResult> results = new ArrayList<>(changes.size());
+        List<ScimGroupMember> membersToAdd = new ArrayList<>();
+        Set<String> addedMemberIds = new HashSet<>();
+        for (ScimGroupMember member : changes.getAdd()) {
+            String memberId = member == null ? null : member.getMemberId();
+            String error = null;
+            HttpStatus status = HttpStatus.CREATED;
+            if (defaultGroup) {
+                status = HttpStatus.CONFLICT;
+                error = "Trying to add member to default group";
+            } else if (!hasText(memberId) || !hasText(member.getOrigin())) {
+                status = HttpStatus.BAD_REQUEST;
+                error = "member-id and origin must be non-empty";
+            } else if (groupId.equals(memberId)) {
+                status = HttpStatus.BAD_REQUEST;
+                error = "trying to nest group within itself, aborting";
+            } else if (!(member.getType() == ScimGroupMember.Type.GROUP ? existingGroups : existingUsers).contains(memberId)) {
+                status = HttpStatus.NOT_FOUND;
+                error = memberId + " does not exist";
+            } else if (currentMembers.contains(memberId) || !addedMemberIds.add(memberId)) {
+                status = HttpStatus.CONFLICT;
+                error = memberId + " is already part of the group: " + groupId;
+            } else {
+                membersToAdd.add(member);
+            }
+            results.add(new ScimGroupMemberChangeResult(memberId, ScimGroupMemberChangeResult.ADD, status.value(), error));
+        }
+
+        Set<String> membersToRemove = new LinkedHashSet<>();
+        for (String memberId : changes.getRemove()) {
+            if (hasText(memberId) && currentMembers.contains(memberId) && membersToRemove.add(memberId)) {
+                results.add(new ScimGroupMemberChangeResult(memberId, ScimGroupMemberChangeResult.REMOVE, HttpStatus.OK.value(), null));
+            } else {
+                results.add(new ScimGroupMemberChangeResult(memberId, ScimGroupMemberChangeResult.REMOVE, HttpStatus.NOT_FOUND.value(),
+                        "Member " + memberId + " does not exist in group " + groupId));
+            }
+        }
+
+        logger.debug("Adding " + membersToAdd.size() + " and removing " + membersToRemove.size() + " members of group:" + groupId);
+        batchAddMembers(groupId, membersToAdd, zoneId);
+        batchRemoveMembers(groupId, new ArrayList<>(membersToRemove), zoneId);
+        return new ScimGroupMemberChangesResult(groupId, group.getDisplayName(), results);
+    }
+
+    private static List<String> memberIdsOfType(List<ScimGroupMember> members, ScimGroupMember.Type type) {
+        return members.stream()
+                .filter(m -> m != null && hasText(m.getMemberId()))
+                .filter(m -> type == (m.getType() == null ? ScimGroupMember.Type.USER : m.getType()))
+                .map(ScimGroupMember::getMemberId)
+                .distinct()
+                .collect(toList());
+    }
+
+    private Set<String> findExistingIds(String sql, List<String> ids, String zoneId) {
+        Set<String> result = new HashSet<>();
+        List<String> remaining = ids;
+        while (!remaining.isEmpty()) {
+            int size = maxSqlParameters > 1 ? Math.min(maxSqlParameters - 1, remaining.size()) : remaining.size();
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("zoneId", zoneId)
+                    .addValue("ids", remaining.subList(0, size));
+            result.addAll(namedParameterJdbcTemplate.queryForList(sql, parameters, String.class));
+            remaining = remaining.subList(size, remaining.size());
+        }
+        return result;
+    }
+
+    private void batchAddMembers(final String groupId, final List<ScimGroupMember> members, final String zoneId) {
+        if (members.isEmpty()) {
+            return;
+        }
+        final Timestamp added = new Timestamp(new Date().getTime());
+        jdbcTemplate.batchUpdate(ADD_MEMBER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ScimGroupMember member = members.get(i);
+                ps.setString(1, groupId);
+                ps.setString(2, member.getMemberId());
+                ps.setString(3, (member.getType() == null ? ScimGroupMember.Type.USER : member.getType()).toString());
+                ps.setNull(4, Types.VARCHAR);
+                ps.setTimestamp(5, added);
+                ps.setString(6, member.getOrigin());
+                ps.setString(7, zoneId);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return members.size();
+            }
+        });
+    }
+
+    private void batchRemoveMembers(final String groupId, final List<String> memberIds, final String zoneId) {
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DELETE_MEMBER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, memberIds.get(i));
+                ps.setString(2, groupId);
+                ps.setString(3, zoneId);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return memberIds.size();
+            }
+        });
+    }
+
     @Override
     public ScimGroupMember removeMemberById(final String groupId, final String memberId, final String zoneId)
             throws ScimResourceNotFoundException, MemberNotFoundException {
@@ -37,17 +37,22 @@ import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -94,14 +99,31 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
 
     public static final String USER_BY_ID_QUERY = "select " + USER_FIELDS + " from users " + "where id=? and identity_zone_id=?";
 
-    public static final String USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where LOWER(email)=LOWER(?) and LOWER(origin)=LOWER(?) and LOWER(identity_zone_id)=LOWER(?)";
+    // identity_zone_id is compared as is so that (LOWER(username|email), identity_zone_id) indexes can be used
+    private static final String PRE_USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where %s and %s and identity_zone_id=?";
 
-    public static final String USER_BY_USERNAME_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where LOWER(username)=LOWER(?) and LOWER(identity_zone_id)=LOWER(?)";
+    private static final String PRE_USER_BY_USERNAME_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where %s and identity_zone_id=?";
 
-    public static final String USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where LOWER(username)=LOWER(?) and LOWER(origin)=LOWER(?) and LOWER(identity_zone_id)=LOWER(?)";
+    private static final String PRE_USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY = "select " + USER_FIELDS + " from users " + "where %s and %s and identity_zone_id=?";
+
+    public static final String USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY = String.format(PRE_USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY, "LOWER(email)=LOWER(?)", "LOWER(origin)=LOWER(?)");
+
+    public static final String USER_BY_USERNAME_AND_ZONE_QUERY = String.format(PRE_USER_BY_USERNAME_AND_ZONE_QUERY, "LOWER(username)=LOWER(?)");
+
+    public static final String USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY = String.format(PRE_USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY, "LOWER(username)=LOWER(?)", "LOWER(origin)=LOWER(?)");
+
+    static final String CASE_INSENSITIVE_USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY = String.format(PRE_USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY, "email=?", "origin=?");
+
+    static final String CASE_INSENSITIVE_USER_BY_USERNAME_AND_ZONE_QUERY = String.format(PRE_USER_BY_USERNAME_AND_ZONE_QUERY, "username=?");
+
+    static final String CASE_INSENSITIVE_USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY = String.format(PRE_USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY, "username=?", "origin=?");
 
     public static final String ALL_USERS = "select " + USER_FIELDS + " from users";
 
+    private static final String USERNAMES_IN_ZONE_QUERY = "select username, origin, id, active, verified from users where identity_zone_id=? and %s in (%s)";
+
+    private static final int USERNAMES_PER_QUERY = 100;
+
     public static final String HARD_DELETE_OF_GROUP_MEMBERS_BY_ZONE = "delete from group_membership where identity_zone_id = ?";
 
     public static final String HARD_DELETE_OF_GROUP_MEMBERS_BY_PROVIDER = "delete from group_membership where identity_zone_id = ? and origin = ?";
@@ -116,6 +138,8 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
 
     private boolean deactivateOnDelete = true;
 
+    private boolean dbCaseInsensitive = false;
+
     private static final RowMapper<ScimUser> mapper = new ScimUserRowMapper();
 
     private Pattern usernamePattern = Pattern.compile("[\\p{L}+0-9+\\-_.@'!]+");
@@ -148,17 +172,20 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
 
     @Override
     public List<ScimUser> retrieveByEmailAndZone(String email, String origin, String zoneId) {
-        return jdbcTemplate.query(USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY, mapper, email, origin, zoneId);
+        String sql = dbCaseInsensitive ? CASE_INSENSITIVE_USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY : USER_BY_EMAIL_AND_ORIGIN_AND_ZONE_QUERY;
+        return jdbcTemplate.query(sql, mapper, email, origin, zoneId);
     }
 
     @Override
     public List<ScimUser> retrieveByUsernameAndZone(String username, String zoneId) {
-        return jdbcTemplate.query(USER_BY_USERNAME_AND_ZONE_QUERY , mapper, username, zoneId);
+        String sql = dbCaseInsensitive ? CASE_INSENSITIVE_USER_BY_USERNAME_AND_ZONE_QUERY : USER_BY_USERNAME_AND_ZONE_QUERY;
+        return jdbcTemplate.query(sql, mapper, username, zoneId);
     }
 
     @Override
     public List<ScimUser> retrieveByUsernameAndOriginAndZone(String username, String origin, String zoneId) {
-        return jdbcTemplate.query(USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY , mapper, username, origin, zoneId);
+        String sql = dbCaseInsensitive ? CASE_INSENSITIVE_USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY : USER_BY_USERNAME_AND_ORIGIN_AND_ZONE_QUERY;
+        return jdbcTemplate.query(sql, mapper, username, origin, zoneId);
     }
 
     @Override
@@ -190,33 +217,7 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         try {
             jdbcTemplate.update(CREATE_USER_SQL, ps -> {
                 Timestamp t = new Timestamp(new Date().getTime());
-                ps.setString(1, id);
-                ps.setInt(2, user.getVersion());
-                ps.setTimestamp(3, t);
-                ps.setTimestamp(4, t);
-                ps.setString(5, user.getUserName());
-                ps.setString(6, user.getPrimaryEmail());
-                if (user.getName() == null) {
-                    ps.setString(7, null);
-                    ps.setString(8, null);
-                }
-                else {
-                    ps.setString(7, user.getName().getGivenName());
-                    ps.setString(8, user.getName().getFamilyName());
-                }
-                ps.setBoolean(9, user.isActive());
-                String phoneNumber = extractPhoneNumber(user);
-                ps.setString(10, phoneNumber);
-                ps.setBoolean(11, user.isVerified());
-                ps.setString(12, origin);
-                ps.setString(13, hasText(user.getExternalId())?user.getExternalId():null);
-                ps.setString(14, identityZoneId);
-                ps.setString(15, user.getSalt());
-
-                ps.setTimestamp(16, getPasswordLastModifiedTimestamp(t));
-                ps.setNull(17, Types.BIGINT);
-                ps.setNull(18, Types.BIGINT);
-                ps.setString(19, user.getPassword());
+                setCreateUserParameters(ps, id, user, origin, identityZoneId, t);
             });
         } catch (DuplicateKeyException e) {
             String userOrigin = hasText(user.getOrigin()) ? user.getOrigin() : OriginKeys.UAA;
@@ -230,6 +231,119 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         return retrieve(id, zoneId);
     }
 
+    /**
+     * Inserts all users with a single JDBC batch. Passwords must already be encoded.
+     * If any username is already taken, or used twice in the batch, nothing is inserted and the
+     * duplicate is reported the same way {@link #create(ScimUser, String)} reports it.
+     * <p>
+     * Taken usernames are looked up before inserting rather than after a failed insert, which
+     * would leave the transaction unusable on PostgreSQL.
+     */
+    @Override
+    @Transactional
+    public List<ScimUser> createUsers(final List<ScimUser> users, final String zoneId) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        final Timestamp t = new Timestamp(new Date().getTime());
+        final Timestamp passwordLastModified = getPasswordLastModifiedTimestamp(t);
+        final String[] ids = new String[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            ids[i] = UUID.randomUUID().toString();
+            if (!hasText(users.get(i).getOrigin())) {
+                users.get(i).setOrigin(OriginKeys.UAA);
+            }
+        }
+        rejectDuplicateUsernames(users, zoneId);
+        logger.debug("Creating " + users.size() + " new users in a single batch");
+        try {
+            jdbcTemplate.batchUpdate(CREATE_USER_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ScimUser user = users.get(i);
+                    setCreateUserParameters(ps, ids[i], user, user.getOrigin(), zoneId, t);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return users.size();
+                }
+            });
+        } catch (DuplicateKeyException e) {
+            // created concurrently since the lookup
+            throw new ScimResourceAlreadyExistsException("Username already in use");
+        }
+        for (int i = 0; i < users.size(); i++) {
+            ScimUser user = users.get(i);
+            user.setId(ids[i]);
+            user.setZoneId(zoneId);
+            user.setMeta(new ScimMeta(t, t, user.getVersion()));
+            user.setPasswordLastModified(passwordLastModified);
+            user.setPassword(null);
+        }
+        return users;
+    }
+
+    private void rejectDuplicateUsernames(List<ScimUser> users, String zoneId) {
+        Map<String, ScimUser> byName = new HashMap<>();
+        for (ScimUser user : users) {
+            String key = user.getOrigin().toLowerCase() + " " + user.getUserName().toLowerCase();
+            if (byName.put(key, user) != null) {
+                throw new ScimResourceAlreadyExistsException("Username already in use: " + user.getUserName());
+            }
+        }
+        List<ScimUser> all = new ArrayList<>(byName.values());
+        for (int from = 0; from < all.size(); from += USERNAMES_PER_QUERY) {
+            List<ScimUser> chunk = all.subList(from, Math.min(all.size(), from + USERNAMES_PER_QUERY));
+            String sql = String.format(USERNAMES_IN_ZONE_QUERY,
+                    dbCaseInsensitive ? "username" : "LOWER(username)",
+                    String.join(",", Collections.nCopies(chunk.size(), "?")));
+            List<Object> args = new ArrayList<>();
+            args.add(zoneId);
+            chunk.forEach(user -> args.add(dbCaseInsensitive ? user.getUserName() : user.getUserName().toLowerCase()));
+            jdbcTemplate.query(sql, rs -> {
+                ScimUser taken = byName.get(rs.getString(2).toLowerCase() + " " + rs.getString(1).toLowerCase());
+                if (taken != null) {
+                    Map<String, Object> userDetails = new HashMap<>();
+                    userDetails.put("active", rs.getBoolean(4));
+                    userDetails.put("verified", rs.getBoolean(5));
+                    userDetails.put("user_id", rs.getString(3));
+                    throw new ScimResourceAlreadyExistsException("Username already in use: " + rs.getString(1), userDetails);
+                }
+            }, args.toArray());
+        }
+    }
+
+    private void setCreateUserParameters(PreparedStatement ps, String id, ScimUser user, String origin, String zoneId, Timestamp t) throws SQLException {
+        ps.setString(1, id);
+        ps.setInt(2, user.getVersion());
+        ps.setTimestamp(3, t);
+        ps.setTimestamp(4, t);
+        ps.setString(5, user.getUserName());
+        ps.setString(6, user.getPrimaryEmail());
+        if (user.getName() == null) {
+            ps.setString(7, null);
+            ps.setString(8, null);
+        }
+        else {
+            ps.setString(7, user.getName().getGivenName());
+            ps.setString(8, user.getName().getFamilyName());
+        }
+        ps.setBoolean(9, user.isActive());
+        String phoneNumber = extractPhoneNumber(user);
+        ps.setString(10, phoneNumber);
+        ps.setBoolean(11, user.isVerified());
+        ps.setString(12, origin);
+        ps.setString(13, hasText(user.getExternalId())?user.getExternalId():null);
+        ps.setString(14, zoneId);
+        ps.setString(15, user.getSalt());
+
+        ps.setTimestamp(16, getPasswordLastModifiedTimestamp(t));
+        ps.setNull(17, Types.BIGINT);
+        ps.setNull(18, Types.BIGINT);
+        ps.setString(19, user.getPassword());
+    }
+
     protected Timestamp getPasswordLastModifiedTimestamp(Timestamp t) {
         Calendar cal = new GregorianCalendar();
         cal.set(Calendar.MILLISECOND, 0);
@@ -428,6 +542,14 @@ public class JdbcScimUserProvisioning extends AbstractQueryable<ScimUser>
         this.deactivateOnDelete = deactivateOnDelete;
     }
 
+    /**
+     * When the database compares strings case insensitively (MySQL) the lookups by username and email
+     * compare the plain columns, so the regular indexes are used instead of a full scan over LOWER().
+     */
+    public void setDbCaseInsensitive(boolean dbCaseInsensitive) {
+        this.dbCaseInsensitive = dbCaseInsensitive;
+    }
+
     /**
      * Sets the regular expression which will be used to validate the username.
      */
@@ -84,6 +84,8 @@ public class CorsFilter extends OncePerRequestFilter {
 
     private CorsConfiguration xhrConfiguration = new CorsConfiguration();
     private CorsConfiguration defaultConfiguration = new CorsConfiguration();
+    private volatile CorsPolicy xhrPolicy;
+    private volatile CorsPolicy defaultPolicy;
 
     public CorsFilter() {
         //configure defaults for XHR vs non-XHR requests
@@ -124,6 +126,25 @@ public class CorsFilter extends OncePerRequestFilter {
                 }
             }
         }
+        xhrPolicy = new CorsPolicy(xhrConfiguration);
+        defaultPolicy = new CorsPolicy(defaultConfiguration);
+    }
+
+    private CorsPolicy getPolicy(CorsConfiguration configuration) {
+        boolean xhr = configuration == xhrConfiguration;
+        CorsPolicy policy = xhr ? xhrPolicy : defaultPolicy;
+        if (policy == null || !policy.isCompiledFrom(configuration)) {
+            return new CorsPolicy(configuration);
+        }
+        CorsPolicy refreshed = policy.refresh();
+        if (refreshed != policy) {
+            if (xhr) {
+                xhrPolicy = refreshed;
+            } else {
+                defaultPolicy = refreshed;
+            }
+        }
+        return refreshed;
     }
 
 
@@ -276,7 +297,8 @@ public class CorsFilter extends OncePerRequestFilter {
         }
 
         //add all methods that we allow
-        response.addHeader(ACCESS_CONTROL_ALLOW_METHODS, buildCommaDelimitedString(configuration.getAllowedMethods()));
+        CorsPolicy policy = getPolicy(configuration);
+        response.addHeader(ACCESS_CONTROL_ALLOW_METHODS, policy.getAllowMethodsHeader());
 
         //we require Access-Control-Request-Headers header
         String accessControlRequestHeaders = request.getHeader(ACCESS_CONTROL_REQUEST_HEADERS);
@@ -292,7 +314,7 @@ public class CorsFilter extends OncePerRequestFilter {
         //echo back what the client requested
         response.addHeader(ACCESS_CONTROL_ALLOW_HEADERS, accessControlRequestHeaders);
         //send back our configuration value
-        response.addHeader(ACCESS_CONTROL_MAX_AGE, String.valueOf(configuration.getMaxAge()));
+        response.addHeader(ACCESS_CONTROL_MAX_AGE, policy.getMaxAgeHeader());
     }
 
     protected boolean containsHeader(final String accessControlRequestHeaders, final String header) {
@@ -301,9 +323,10 @@ public class CorsFilter extends OncePerRequestFilter {
     }
 
     protected boolean headersAllowed(final String accessControlRequestHeaders, CorsConfiguration configuration) {
+        CorsPolicy policy = getPolicy(configuration);
         List<String> headers = splitCommaDelimitedString(accessControlRequestHeaders);
         for (String header : headers) {
-            if (!containsIgnoreCase(configuration.getAllowedHeaders(), header)) {
+            if (!policy.isAllowedHeader(header)) {
                 return false;
             }
         }
@@ -311,7 +334,7 @@ public class CorsFilter extends OncePerRequestFilter {
     }
 
     protected boolean isAllowedMethod(final String method, CorsConfiguration configuration) {
-        return containsIgnoreCase(configuration.getAllowedMethods(), method);
+        return getPolicy(configuration).isAllowedMethod(method);
     }
 
     protected boolean isAllowedRequestUri(final String uri, CorsConfiguration configuration) {
@@ -319,22 +342,16 @@ public class CorsFilter extends OncePerRequestFilter {
             return false;
         }
 
-        for (Pattern pattern : configuration.getAllowedUriPatterns()) {
-            // Making sure that the pattern matches
-            if (pattern.matcher(uri).find()) {
-                return true;
-            }
+        if (getPolicy(configuration).isAllowedRequestUri(uri)) {
+            return true;
         }
         logger.debug(String.format("The '%s' URI does not allow CORS requests.", uri));
         return false;
     }
 
     protected boolean isAllowedOrigin(final String origin, CorsConfiguration configuration) {
-        for (Pattern pattern : configuration.getAllowedOriginPatterns()) {
-            // Making sure that the pattern matches
-            if (pattern.matcher(origin).find()) {
-                return true;
-            }
+        if (getPolicy(configuration).isAllowedOrigin(origin)) {
+            return true;
         }
         logger.debug(String.format("The '%s' origin is not allowed to make CORS requests.",origin));
         return false;
@@ -0,0 +1,217 @@
+package org.cloudfoundry.identity.uaa.security.web;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.zone.CorsConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A {@link CorsConfiguration} compiled for evaluating requests.
+ * <p>
+ * Origin and URI patterns of the form {@code ^literal$} are kept in hash sets, the others are
+ * combined into a single regular expression. Decisions per origin are remembered, and the
+ * methods, headers and response header values are computed once. The patterns are those
+ * compiled by {@link CorsFilter#initialize()}; the methods, headers and max age are rebuilt when
+ * they are replaced on the configuration.
+ */
+class CorsPolicy {
+
+    static final int MAX_REMEMBERED_ORIGINS = 1000;
+
+    // back references and inline flags, which change meaning once patterns are combined
+    private static final Pattern UNCOMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?[-a-zA-Z]");
+
+    private final CorsConfiguration configuration;
+    private final Matcher origins;
+    private final Matcher uris;
+    private final Cache<String, Boolean> originDecisions;
+
+    private final List<String> allowedMethodsSource;
+    private final List<String> allowedHeadersSource;
+    private final int maxAge;
+    private final Set<String> allowedMethods;
+    private final Set<String> allowedHeaders;
+    private final String allowMethodsHeader;
+    private final String maxAgeHeader;
+
+    CorsPolicy(CorsConfiguration configuration) {
+        this(configuration,
+                new Matcher(configuration.getAllowedOriginPatterns()),
+                new Matcher(configuration.getAllowedUriPatterns()),
+                CacheBuilder.newBuilder().maximumSize(MAX_REMEMBERED_ORIGINS).build());
+    }
+
+    private CorsPolicy(CorsConfiguration configuration, Matcher origins, Matcher uris, Cache<String, Boolean> originDecisions) {
+        this.configuration = configuration;
+        this.origins = origins;
+        this.uris = uris;
+        this.originDecisions = originDecisions;
+        this.allowedMethodsSource = configuration.getAllowedMethods();
+        this.allowedHeadersSource = configuration.getAllowedHeaders();
+        this.maxAge = configuration.getMaxAge();
+        this.allowedMethods = lowerCase(allowedMethodsSource);
+        this.allowedHeaders = lowerCase(allowedHeadersSource);
+        this.allowMethodsHeader = String.join(", ", allowedMethodsSource);
+        this.maxAgeHeader = String.valueOf(maxAge);
+    }
+
+    /**
+     * @return this policy, or a copy with the current methods, headers and max age of the configuration
+     */
+    CorsPolicy refresh() {
+        if (allowedMethodsSource == configuration.getAllowedMethods()
+                && allowedHeadersSource == configuration.getAllowedHeaders()
+                && maxAge == configuration.getMaxAge()) {
+            return this;
+        }
+        return new CorsPolicy(configuration, origins, uris, originDecisions);
+    }
+
+    boolean isCompiledFrom(CorsConfiguration configuration) {
+        return this.configuration == configuration;
+    }
+
+    boolean isAllowedOrigin(String origin) {
+        Boolean allowed = originDecisions.getIfPresent(origin);
+        if (allowed == null) {
+            allowed = origins.find(origin);
+            originDecisions.put(origin, allowed);
+        }
+        return allowed;
+    }
+
+    boolean isAllowedRequestUri(String uri) {
+        return uris.find(uri);
+    }
+
+    boolean isAllowedMethod(String method) {
+        return allowedMethods.contains(method.toLowerCase(Locale.ROOT));
+    }
+
+    boolean isAllowedHeader(String header) {
+        return allowedHeaders.contains(header.toLowerCase(Locale.ROOT));
+    }
+
+    String getAllowMethodsHeader() {
+        return allowMethodsHeader;
+    }
+
+    String getMaxAgeHeader() {
+        return maxAgeHeader;
+    }
+
+    private static Set<String> lowerCase(List<String> values) {
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for (String value : values) {
+            if (value != null) {
+                result.add(value.toLowerCase(Locale.ROOT));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds a match of any of a list of patterns, like {@link java.util.regex.Matcher#find()} on each of them.
+     */
+    static class Matcher {
+        private final Set<String> exact = new HashSet<>();
+        private final List<Pattern> patterns = new ArrayList<>();
+        private final Pattern combined;
+
+        Matcher(List<Pattern> source) {
+            List<Pattern> others = new ArrayList<>();
+            for (Pattern pattern : source) {
+                String literal = pattern.flags() == 0 ? literalOf(pattern.pattern()) : null;
+                if (literal != null) {
+                    exact.add(literal);
+                } else {
+                    others.add(pattern);
+                }
+            }
+            this.combined = combine(others);
+            if (combined == null) {
+                patterns.addAll(others);
+            }
+        }
+
+        boolean find(String value) {
+            if (exact.contains(value)) {
+                return true;
+            }
+            if (combined != null) {
+                return combined.matcher(value).find();
+            }
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(value).find()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Pattern combine(List<Pattern> patterns) {
+            if (patterns.isEmpty()) {
+                return null;
+            }
+            if (patterns.size() == 1) {
+                return patterns.get(0);
+            }
+            StringBuilder alternatives = new StringBuilder();
+            for (Pattern pattern : patterns) {
+                if (pattern.flags() != 0 || UNCOMBINABLE.matcher(pattern.pattern()).find()) {
+                    return null;
+                }
+                if (alternatives.length() > 0) {
+                    alternatives.append('|');
+                }
+                alternatives.append("(?:").append(pattern.pattern()).append(')');
+            }
+            try {
+                return Pattern.compile(alternatives.toString());
+            } catch (PatternSyntaxException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return the only value matched by a pattern of the form {@code ^literal$}, null for other patterns
+         */
+        static String literalOf(String regex) {
+            if (regex.length() < 2 || regex.charAt(0) != '^' || regex.charAt(regex.length() - 1) != '$') {
+                return null;
+            }
+            StringBuilder literal = new StringBuilder();
+            int end = regex.length() - 1;
+            for (int i = 1; i < end; i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    if (i + 1 >= end) {
+                        // the closing $ is escaped
+                        return null;
+                    }
+                    char escaped = regex.charAt(++i);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        return null;
+                    }
+                    literal.append(escaped);
+                } else if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+                    return null;
+                } else {
+                    literal.append(c);
+                }
+            }
+            return literal.toString();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.springframework.util.StringUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
 
 import static org.springframework.util.StringUtils.hasText;
@@ -39,9 +40,12 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
     static final String DEFAULT_CASE_SENSITIVE_USER_BY_EMAIL_AND_ORIGIN_QUERY = String.format(PRE_DEFAULT_USER_BY_EMAIL_AND_ORIGIN_QUERY, "lower(email)");
     static final String DEFAULT_CASE_INSENSITIVE_USER_BY_EMAIL_AND_ORIGIN_QUERY = String.format(PRE_DEFAULT_USER_BY_EMAIL_AND_ORIGIN_QUERY, "email");
     public static final String DEFAULT_UPDATE_USER_LAST_LOGON = "update users set previous_logon_success_time = last_logon_success_time, last_logon_success_time = ? where id = ? and identity_zone_id=?";
+    static final String DEFAULT_UPDATE_USER_PASSWORD_HASH = "update users set password = ? where id = ? and password = ? and identity_zone_id=?";
 
     private static final String DEFAULT_USER_BY_ID_QUERY = "select " + USER_FIELDS + "from users where id = ? and active=? and identity_zone_id=?";
 
+    private static final String PASSWORD_LAST_MODIFIED_BY_ID_QUERY = "select passwd_lastmodified from users where id = ? and active=? and identity_zone_id=?";
+
     private final TimeService timeService;
     private final JdbcTemplate jdbcTemplate;
     private final boolean caseInsensitive;
@@ -118,6 +122,15 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
         }
     }
 
+    @Override
+    public Date retrievePasswordLastModified(String id) throws UsernameNotFoundException {
+        try {
+            return jdbcTemplate.queryForObject(PASSWORD_LAST_MODIFIED_BY_ID_QUERY, Timestamp.class, id, true, identityZoneManager.getCurrentIdentityZoneId());
+        } catch (EmptyResultDataAccessException e) {
+            throw new UsernameNotFoundException(id);
+        }
+    }
+
     @Override
     public UaaUser retrieveUserByEmail(String email, String origin) throws UsernameNotFoundException {
         String sql = caseInsensitive ? DEFAULT_CASE_INSENSITIVE_USER_BY_EMAIL_AND_ORIGIN_QUERY : DEFAULT_CASE_SENSITIVE_USER_BY_EMAIL_AND_ORIGIN_QUERY;
@@ -177,6 +190,11 @@ public class JdbcUaaUserDatabase implements UaaUserDatabase {
         jdbcTemplate.update(DEFAULT_UPDATE_USER_LAST_LOGON, timeService.getCurrentTimeMillis(), userId, identityZoneManager.getCurrentIdentityZoneId());
     }
 
+    @Override
+    public boolean updatePasswordHash(String userId, String currentHash, String newHash) {
+        return jdbcTemplate.update(DEFAULT_UPDATE_USER_PASSWORD_HASH, newHash, userId, currentHash, identityZoneManager.getCurrentIdentityZoneId()) == 1;
+    }
+
     private UaaUserPrototype getUaaUserPrototype(ResultSet rs) throws SQLException {
         String id = rs.getString("id");
         UaaUserPrototype prototype = new UaaUserPrototype().withId(id)
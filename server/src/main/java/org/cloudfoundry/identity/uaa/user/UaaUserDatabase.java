@@ -14,6 +14,8 @@ package org.cloudfoundry.identity.uaa.user;
 
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.util.Date;
+
 /**
  * Interface for loading user data for the UAA.
  */
@@ -26,6 +28,13 @@ public interface UaaUserDatabase {
 
     UaaUserPrototype retrieveUserPrototypeById(String id) throws UsernameNotFoundException;
 
+    /**
+     * @return the time the password of an active user was last changed, or null if it never was
+     */
+    default Date retrievePasswordLastModified(String id) throws UsernameNotFoundException {
+        return retrieveUserPrototypeById(id).getPasswordLastModified();
+    }
+
     UaaUser retrieveUserByEmail(String email, String origin) throws UsernameNotFoundException;
 
     UaaUserPrototype retrieveUserPrototypeByEmail(String email, String origin) throws UsernameNotFoundException;
@@ -35,4 +44,12 @@ public interface UaaUserDatabase {
     UserInfo storeUserInfo(String id, UserInfo info);
 
     void updateLastLogonTime(String id);
+
+    /**
+     * Replaces the stored password hash without treating it as a password change.
+     * The update only applies if the stored hash still equals {@code currentHash}.
+     *
+     * @return true if the hash was replaced
+     */
+    boolean updatePasswordHash(String id, String currentHash, String newHash);
 }
@@ -2,6 +2,9 @@ package org.cloudfoundry.identity.uaa.util;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.codec.Hex;
 import org.springframework.security.crypto.codec.Utf8;
@@ -12,40 +15,69 @@ import org.springframework.security.oauth2.common.util.RandomValueStringGenerato
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.springframework.security.crypto.util.EncodingUtils.concatenate;
 
 /**
  * Wrapper around a slow password encoder that does a fast translation in memory only
  * This uses a hash to as a key to store a list of
+ * <p>
+ * The cache is size bounded and evicts the least recently used keys one at a time,
+ * so reaching the limit never drops every cached password at once.
  */
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=PasswordEncoderCache",
+        description = "UAA Password Encoder Cache Metrics"
+)
 public class CachingPasswordEncoder implements PasswordEncoder {
 
-    private final MessageDigest messageDigest;
+    static final int DEFAULT_MAX_KEYS = 1000;
+    static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(5L);
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final ThreadLocal<MessageDigest> messageDigest;
     private final byte[] secret;
     private final byte[] salt;
 
     private final int ITERATIONS = 25;
-    private final int MAX_KEYS = 1000;
     private final int MAX_ENCODED_PASSWORDS = 5;
-    private final Duration CACHE_TTL = Duration.ofMinutes(5L);
+    private final int maxKeys;
+    private final Duration cacheTtl;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     private volatile Cache<CharSequence, Set<String>> cache = null;
 
     private final PasswordEncoder passwordEncoder;
 
     CachingPasswordEncoder(final PasswordEncoder passwordEncoder) throws NoSuchAlgorithmException {
+        this(passwordEncoder, DEFAULT_MAX_KEYS, DEFAULT_CACHE_TTL.getSeconds());
+    }
+
+    public CachingPasswordEncoder(
+            final PasswordEncoder passwordEncoder,
+            final int maxKeys,
+            final long cacheTtlSeconds) throws NoSuchAlgorithmException {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be a positive number");
+        }
+        if (cacheTtlSeconds <= 0) {
+            throw new IllegalArgumentException("cacheTtlSeconds must be a positive number");
+        }
         this.passwordEncoder = passwordEncoder;
-        this.messageDigest = MessageDigest.getInstance("SHA-256");
+        // fail fast if the algorithm is unavailable, each thread then gets its own instance
+        MessageDigest.getInstance(DIGEST_ALGORITHM);
+        this.messageDigest = ThreadLocal.withInitial(CachingPasswordEncoder::newMessageDigest);
         this.secret = Utf8.encode(new RandomValueStringGenerator().generate());
         this.salt = KeyGenerators.secureRandom().generateKey();
+        this.maxKeys = maxKeys;
+        this.cacheTtl = Duration.ofSeconds(cacheTtlSeconds);
         buildCache();
     }
 
@@ -61,39 +93,39 @@ public class CachingPasswordEncoder implements PasswordEncoder {
         return internalMatches(cacheKey, rawPassword, encodedPassword);
     }
 
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
     // internal helpers
 
     Set<String> getOrCreateHashList(String cacheKey) {
-        Set<String> result = cache.getIfPresent(cacheKey);
-        if (result == null) {
-            if (cache.size() >= MAX_KEYS) {
-                cache.invalidateAll();
-            }
-            cache.put(cacheKey, Collections.synchronizedSet(new LinkedHashSet<>()));
-        }
-        return cache.getIfPresent(cacheKey);
+        return cache.asMap().computeIfAbsent(cacheKey, k -> ConcurrentHashMap.newKeySet());
     }
 
     private boolean internalMatches(String cacheKey, CharSequence rawPassword, String encodedPassword) {
         Set<String> cacheValue = cache.getIfPresent(cacheKey);
-        boolean result = false;
-        List<String> searchList = (cacheValue != null ? new ArrayList<>(cacheValue) : Collections.emptyList());
-        for (String encoded : searchList) {
-            if (hashesEquals(encoded, encodedPassword)) {
-                return true;
+        if (cacheValue != null) {
+            // concurrent set iterators are weakly consistent, no need to copy
+            for (String encoded : cacheValue) {
+                if (hashesEquals(encoded, encodedPassword)) {
+                    hits.increment();
+                    return true;
+                }
             }
         }
+        misses.increment();
+        boolean result = false;
         if (passwordEncoder.matches(rawPassword, encodedPassword)) {
             result = true;
             cacheValue = getOrCreateHashList(cacheKey);
-            if (cacheValue != null) {
-                //this list should never grow very long.
-                //Only if you store multiple versions of the same password more than once
-                if (cacheValue.size() >= MAX_ENCODED_PASSWORDS) {
-                    cacheValue.clear();
-                }
-                cacheValue.add(encodedPassword);
+            //this list should never grow very long.
+            //Only if you store multiple versions of the same password more than once
+            if (cacheValue.size() >= MAX_ENCODED_PASSWORDS) {
+                cacheValue.clear();
             }
+            cacheValue.add(encodedPassword);
         }
         return result;
     }
@@ -110,39 +142,63 @@ public class CachingPasswordEncoder implements PasswordEncoder {
     }
 
     private byte[] digest(byte[] value) {
-        synchronized (messageDigest) {
-            for (int i = 0; i < ITERATIONS; i++) {
-                value = messageDigest.digest(value);
-            }
-            return value;
+        MessageDigest digest = messageDigest.get();
+        for (int i = 0; i < ITERATIONS; i++) {
+            value = digest.digest(value);
         }
+        return value;
     }
 
-    private boolean hashesEquals(String a, String b) {
-        char[] caa = a.toCharArray();
-        char[] cab = b.toCharArray();
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        if (caa.length != cab.length) {
+    private boolean hashesEquals(String a, String b) {
+        if (a.length() != b.length()) {
             return false;
         }
 
-        byte ret = 0;
-        for (int i = 0; i < caa.length; i++) {
-            ret |= caa[i] ^ cab[i];
+        int ret = 0;
+        for (int i = 0; i < a.length(); i++) {
+            ret |= a.charAt(i) ^ b.charAt(i);
         }
         return ret == 0;
     }
 
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Password Cache Hit Count")
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Password Cache Miss Count")
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Password Cache Eviction Count")
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Password Cache Size")
+    public long getNumberOfKeys() {
+        return cache.size();
+    }
+
     int getMaxKeys() {
-        return MAX_KEYS;
+        return maxKeys;
     }
 
     int getMaxEncodedPasswords() {
         return MAX_ENCODED_PASSWORDS;
     }
 
-    long getNumberOfKeys() {
-        return cache.size();
+    Duration getCacheTtl() {
+        return cacheTtl;
     }
 
     ConcurrentMap<CharSequence, Set<String>> asMap() {
@@ -151,7 +207,9 @@ public class CachingPasswordEncoder implements PasswordEncoder {
 
     void buildCache() {
         cache = CacheBuilder.newBuilder()
-                .expireAfterWrite(CACHE_TTL.getSeconds(), TimeUnit.SECONDS)
+                .maximumSize(maxKeys)
+                .expireAfterWrite(cacheTtl.getSeconds(), TimeUnit.SECONDS)
+                .recordStats()
                 .build();
     }
 }
@@ -19,6 +19,7 @@ import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
 import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -37,45 +38,47 @@ public class DomainFilter {
     }
 
     public static List<IdentityProvider> filter(List<IdentityProvider> activeProviders, ClientDetails client, String email, boolean useUaaFallback) {
+        return filter(EmailDomainIndex.of(activeProviders), client, email, useUaaFallback);
+    }
+
+    public static List<IdentityProvider> filter(EmailDomainIndex activeProviders, ClientDetails client, String email, boolean useUaaFallback) {
         if (!StringUtils.hasText(email)) {
             return EMPTY_LIST;
         }
 
-        if (activeProviders!=null && activeProviders.size()>0) {
-            //filter client providers
-            List<String> clientFilter = getProvidersForClient(client);
-            if (clientFilter!=null) {
-                activeProviders =
-                    activeProviders.stream().filter(
-                        p -> clientFilter.contains(p.getOriginKey())
-                    ).collect(Collectors.toList());
-            }
-            //filter for email domain
-            if (email!=null && email.contains("@")) {
-                final String domain = email.substring(email.indexOf('@') + 1);
-                List<IdentityProvider> explicitlyMatched =
-                    activeProviders.stream().filter(
-                        p -> doesEmailDomainMatchProvider(p, domain, true)
-                    ).collect(Collectors.toList());
-                if (explicitlyMatched.size()>0 || !useUaaFallback) {
-                    return explicitlyMatched;
-                }
-
-                activeProviders =
-                    activeProviders.stream().filter(
-                        p -> doesEmailDomainMatchProvider(p, domain, false)
-                    ).collect(Collectors.toList());
+        //filter client providers
+        List<String> clientFilter = getProvidersForClient(client);
+        //filter for email domain
+        if (email.contains("@")) {
+            final String domain = email.substring(email.indexOf('@') + 1);
+            List<IdentityProvider> explicitlyMatched = filterForClient(activeProviders.match(domain, true), clientFilter);
+            if (explicitlyMatched.size()>0 || !useUaaFallback) {
+                return explicitlyMatched;
             }
+            return filterForClient(activeProviders.match(domain, false), clientFilter);
         }
-        return activeProviders != null ? activeProviders : EMPTY_LIST;
+        return filterForClient(activeProviders.getProviders(), clientFilter);
     }
 
     public static List<IdentityProvider> getIdpsForEmailDomain(List<IdentityProvider> activeProviders, String email) {
+        return getIdpsForEmailDomain(EmailDomainIndex.of(activeProviders), email);
+    }
+
+    public static List<IdentityProvider> getIdpsForEmailDomain(EmailDomainIndex activeProviders, String email) {
         if (!StringUtils.hasText(email) || !email.contains("@")) {
             return EMPTY_LIST;
         }
         final String domain = email.substring(email.indexOf('@') + 1);
-        return activeProviders.stream().filter(provider -> doesEmailDomainMatchProvider(provider, domain, true)).collect(Collectors.toList());
+        return activeProviders.match(domain, true);
+    }
+
+    private static List<IdentityProvider> filterForClient(List<IdentityProvider> providers, List<String> clientFilter) {
+        if (clientFilter == null) {
+            return new ArrayList<>(providers);
+        }
+        return providers.stream().filter(
+            p -> clientFilter.contains(p.getOriginKey())
+        ).collect(Collectors.toList());
     }
 
     protected static List<String> getProvidersForClient(ClientDetails client) {
@@ -0,0 +1,162 @@
+package org.cloudfoundry.identity.uaa.util;
+
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.cloudfoundry.identity.uaa.constants.OriginKeys.UAA;
+
+/**
+ * The email domains of a list of identity providers, compiled for lookup by domain.
+ * <p>
+ * Domains without a wildcard are kept in a hash map. Domains with a wildcard are kept in a trie
+ * keyed by their labels from the top level domain down, so a lookup only visits the patterns
+ * sharing a suffix with the domain. A {@code *} matches one or more characters within a single
+ * label, as in {@link UaaStringUtils#constructSimpleWildcardPattern(String)}, and matches are
+ * returned in the order of the providers, so the results are the same as those of
+ * {@link DomainFilter#doesEmailDomainMatchProvider(IdentityProvider, String, boolean)}.
+ */
+public final class EmailDomainIndex {
+
+    private static final EmailDomainIndex EMPTY = new EmailDomainIndex(Collections.emptyList());
+
+    private final List<IdentityProvider> providers;
+    private final Map<String, BitSet> exact = new HashMap<>();
+    private final Node wildcards = new Node();
+    // UAA providers without email domains, which match any domain of two to four labels when falling back
+    private final BitSet uaaFallback = new BitSet();
+
+    private EmailDomainIndex(List<IdentityProvider> providers) {
+        this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+        for (int i = 0; i < this.providers.size(); i++) {
+            IdentityProvider provider = this.providers.get(i);
+            List<String> domains = DomainFilter.getEmailDomain(provider);
+            if (domains == null) {
+                if (UAA.equals(provider.getOriginKey())) {
+                    uaaFallback.set(i);
+                }
+                continue;
+            }
+            for (String domain : domains) {
+                if (domain == null) {
+                    continue;
+                }
+                if (domain.indexOf('*') < 0) {
+                    exact.computeIfAbsent(domain, d -> new BitSet()).set(i);
+                } else {
+                    wildcards.add(labels(domain), 0).set(i);
+                }
+            }
+        }
+    }
+
+    public static EmailDomainIndex of(List<IdentityProvider> providers) {
+        return providers == null || providers.isEmpty() ? EMPTY : new EmailDomainIndex(providers);
+    }
+
+    /**
+     * @return the providers of this index, in their original order
+     */
+    public List<IdentityProvider> getProviders() {
+        return providers;
+    }
+
+    /**
+     * @param domain   the part of the email address after the {@code @}
+     * @param explicit false to also match UAA providers without email domains
+     * @return the matching providers, in their original order
+     */
+    public List<IdentityProvider> match(String domain, boolean explicit) {
+        if (providers.isEmpty() || domain == null) {
+            return new ArrayList<>();
+        }
+        BitSet matched = new BitSet();
+        BitSet exactMatches = exact.get(domain);
+        if (exactMatches != null) {
+            matched.or(exactMatches);
+        }
+        String[] labels = labels(domain);
+        wildcards.match(labels, 0, matched);
+        if (!explicit && isFallbackDomain(labels)) {
+            matched.or(uaaFallback);
+        }
+        List<IdentityProvider> result = new ArrayList<>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            result.add(providers.get(i));
+        }
+        return result;
+    }
+
+    private static boolean isFallbackDomain(String[] labels) {
+        if (labels.length < 2 || labels.length > 4) {
+            return false;
+        }
+        for (String label : labels) {
+            if (label.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // labels from the top level domain down
+    private static String[] labels(String domain) {
+        String[] labels = domain.split("\\.", -1);
+        Collections.reverse(Arrays.asList(labels));
+        return labels;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private final Map<String, Node> wildcards = new HashMap<>();
+        private final BitSet providers = new BitSet();
+        // the label leading to this node, for children of a wildcard label
+        private final Pattern pattern;
+
+        Node() {
+            this(null);
+        }
+
+        Node(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        BitSet add(String[] labels, int index) {
+            if (index == labels.length) {
+                return providers;
+            }
+            String label = labels[index];
+            Node child;
+            if (label.indexOf('*') < 0) {
+                child = literals.computeIfAbsent(label, l -> new Node());
+            } else {
+                child = wildcards.computeIfAbsent(label, l -> new Node(Pattern.compile(UaaStringUtils.constructSimpleWildcardPattern(l))));
+            }
+            return child.add(labels, index + 1);
+        }
+
+        void match(String[] labels, int index, BitSet matched) {
+            if (index == labels.length) {
+                matched.or(providers);
+                return;
+            }
+            String label = labels[index];
+            Node literal = literals.get(label);
+            if (literal != null) {
+                literal.match(labels, index + 1, matched);
+            }
+            for (Node wildcard : wildcards.values()) {
+                if (wildcard.pattern.matcher(label).matches()) {
+                    wildcard.match(labels, index + 1, matched);
+                }
+            }
+        }
+    }
+}
@@ -55,6 +55,9 @@ public final class LdapUtils {
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_EMAIL_DOMAIN, definition.getEmailDomain(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_EXTERNAL_GROUPS_WHITELIST, definition.getExternalGroupsWhitelist(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_AUTO_ADD, definition.isAutoAddGroups(), properties);
+        setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_BATCH_SIZE, definition.getGroupSearchBatchSize(), properties);
+        setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_CACHE_MAX_SIZE, definition.getGroupCacheMaxSize(), properties);
+        setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_CACHE_TTL_SECONDS, definition.getGroupCacheTtlSeconds(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_FILE, definition.getLdapGroupFile(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_GROUP_ROLE_ATTRIBUTE, definition.getGroupRoleAttribute(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_GROUP_SEARCH_FILTER, definition.getGroupSearchFilter(), properties);
@@ -62,6 +65,10 @@ public final class LdapUtils {
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_MAX_SEARCH_DEPTH, definition.getMaxGroupSearchDepth(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_SEARCH_BASE, definition.getGroupSearchBase(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_GROUPS_SEARCH_SUBTREE, definition.isGroupSearchSubTree(), properties);
+        setIfNotNull(LdapIdentityProviderDefinition.LDAP_POOL_ENABLED, definition.isConnectionPoolEnabled(), properties);
+        setIfNotNull(LdapIdentityProviderDefinition.LDAP_POOL_IDLE_TIMEOUT_MILLIS, definition.getConnectionPoolIdleTimeoutMillis(), properties);
+        setIfNotNull(LdapIdentityProviderDefinition.LDAP_POOL_MAX_SIZE, definition.getConnectionPoolMaxSize(), properties);
+        setIfNotNull(LdapIdentityProviderDefinition.LDAP_POOL_VALIDATE, definition.isConnectionPoolValidate(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_PROFILE_FILE, definition.getLdapProfileFile(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_SSL_SKIPVERIFICATION, definition.isSkipSSLVerification(), properties);
         setIfNotNull(LdapIdentityProviderDefinition.LDAP_SSL_TLS, definition.getTlsConfiguration(), properties);
@@ -142,6 +149,18 @@ public final class LdapUtils {
             definition.setMailAttributeName((String) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_BASE_MAIL_ATTRIBUTE_NAME));
         }
         definition.setMailSubstitute((String) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_BASE_MAIL_SUBSTITUTE));
+        if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_ENABLED) != null) {
+            definition.setConnectionPoolEnabled((Boolean) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_ENABLED));
+        }
+        if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_MAX_SIZE) != null) {
+            definition.setConnectionPoolMaxSize((Integer) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_MAX_SIZE));
+        }
+        if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_VALIDATE) != null) {
+            definition.setConnectionPoolValidate((Boolean) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_VALIDATE));
+        }
+        if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_IDLE_TIMEOUT_MILLIS) != null) {
+            definition.setConnectionPoolIdleTimeoutMillis(((Number) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_POOL_IDLE_TIMEOUT_MILLIS)).longValue());
+        }
         definition.setPasswordAttributeName((String) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_BASE_PASSWORD_ATTRIBUTE_NAME));
         definition.setPasswordEncoder((String) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_BASE_PASSWORD_ENCODER));
         definition.setLocalPasswordCompare((Boolean)ldapConfig.get(LdapIdentityProviderDefinition.LDAP_BASE_LOCAL_PASSWORD_COMPARE));
@@ -155,6 +174,15 @@ public final class LdapUtils {
             if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_MAX_SEARCH_DEPTH) != null) {
                 definition.setMaxGroupSearchDepth((Integer) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_MAX_SEARCH_DEPTH));
             }
+            if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_BATCH_SIZE) != null) {
+                definition.setGroupSearchBatchSize((Integer) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_BATCH_SIZE));
+            }
+            if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_CACHE_TTL_SECONDS) != null) {
+                definition.setGroupCacheTtlSeconds(((Number) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_CACHE_TTL_SECONDS)).longValue());
+            }
+            if (ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_CACHE_MAX_SIZE) != null) {
+                definition.setGroupCacheMaxSize(((Number) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_CACHE_MAX_SIZE)).longValue());
+            }
             definition.setGroupSearchSubTree((Boolean) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_SEARCH_SUBTREE));
             definition.setAutoAddGroups((Boolean) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_AUTO_ADD));
             definition.setGroupRoleAttribute((String) ldapConfig.get(LdapIdentityProviderDefinition.LDAP_GROUPS_GROUP_ROLE_ATTRIBUTE));
@@ -1,15 +1,43 @@
 package org.cloudfoundry.identity.uaa.util.beans;
 
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@ManagedResource(
+        objectName = "cloudfoundry.identity:name=PasswordEncoder",
+        description = "UAA Password Hashing Metrics"
+)
 public class BackwardsCompatibleDelegatingPasswordEncoder implements PasswordEncoder {
 
+    static final int DEFAULT_BCRYPT_STRENGTH = 10;
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2(a|y|b)?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
     private final String OPTIONAL_BCRYPT_PREFIX = "bcrypt";
     private final BCryptPasswordEncoder defaultPasswordEncoder;
+    private final int strength;
+
+    private final LongAdder matchCount = new LongAdder();
+    private final LongAdder matchNanos = new LongAdder();
 
     public BackwardsCompatibleDelegatingPasswordEncoder(final BCryptPasswordEncoder defaultPasswordEncoder) {
+        this(defaultPasswordEncoder, DEFAULT_BCRYPT_STRENGTH);
+    }
+
+    /**
+     * @param strength the work factor {@code defaultPasswordEncoder} was built with, stored hashes
+     *                 with any other work factor are reported by {@link #upgradeEncoding(String)}
+     */
+    public BackwardsCompatibleDelegatingPasswordEncoder(final BCryptPasswordEncoder defaultPasswordEncoder, final int strength) {
         this.defaultPasswordEncoder = defaultPasswordEncoder;
+        this.strength = strength;
     }
 
     @Override
@@ -27,7 +55,47 @@ public class BackwardsCompatibleDelegatingPasswordEncoder implements PasswordEnc
             return false;
         }
 
-        return defaultPasswordEncoder.matches(rawPassword, verifyPrefixAndExtractPassword(encodedPassword));
+        long start = System.nanoTime();
+        try {
+            return defaultPasswordEncoder.matches(rawPassword, verifyPrefixAndExtractPassword(encodedPassword));
+        } finally {
+            matchNanos.add(System.nanoTime() - start);
+            matchCount.increment();
+        }
+    }
+
+    /**
+     * Unlike {@link BCryptPasswordEncoder#upgradeEncoding(String)} this also reports hashes whose
+     * work factor is higher than the configured one, so the cost can be moved in both directions.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(verifyPrefixAndExtractPassword(encodedPassword));
+        if (!matcher.matches()) {
+            return false;
+        }
+        return Integer.parseInt(matcher.group(2)) != strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @ManagedMetric(metricType = MetricType.COUNTER, displayName = "Password Hash Comparison Count")
+    public long getMatchCount() {
+        return matchCount.sum();
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, displayName = "Average Password Hash Comparison Time (ms)")
+    public double getAverageMatchTimeMillis() {
+        long count = matchCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) matchNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
     }
 
     private String verifyPrefixAndExtractPassword(String encodedPassword) {
@@ -2,6 +2,7 @@ package org.cloudfoundry.identity.uaa.util.beans;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -12,10 +13,13 @@ public class PasswordEncoderConfig {
 
     private static Logger logger = LoggerFactory.getLogger(PasswordEncoderConfig.class);
 
+    @Value("${authentication.passwordEncoder.bcryptStrength:10}")
+    private int bcryptStrength = BackwardsCompatibleDelegatingPasswordEncoder.DEFAULT_BCRYPT_STRENGTH;
+
     @Bean
     public PasswordEncoder nonCachingPasswordEncoder() {
-        logger.info("Building BackwardsCompatibleDelegatingPasswordEncoder with {bcrypt} only");
+        logger.info("Building BackwardsCompatibleDelegatingPasswordEncoder with {bcrypt} only, strength " + bcryptStrength);
 
-        return new BackwardsCompatibleDelegatingPasswordEncoder(new BCryptPasswordEncoder());
+        return new BackwardsCompatibleDelegatingPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), bcryptStrength);
     }
 }
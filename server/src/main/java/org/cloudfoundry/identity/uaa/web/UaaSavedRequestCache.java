@@ -35,11 +35,13 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -127,7 +129,7 @@ public class UaaSavedRequestCache extends HttpSessionRequestCache implements Fil
         private final Map<String, String[]> parameters;
 
         public ClientRedirectSavedRequest(HttpServletRequest request, String redirectUrl) {
-            super(request, req -> req.getServerPort());
+            super(new RedirectOnlyRequest(request), req -> req.getServerPort());
             this.redirectUrl = redirectUrl;
             parameters = Collections.unmodifiableMap(UaaUrlUtils.getParameterMap(redirectUrl));
         }
@@ -191,5 +193,36 @@ public class UaaSavedRequestCache extends HttpSessionRequestCache implements Fil
         }
     }
 
+    /**
+     * Hides the cookies, headers, locales and parameters that {@link ClientRedirectSavedRequest}
+     * overrides anyway, so they are not stored with the session.
+     */
+    private static class RedirectOnlyRequest extends HttpServletRequestWrapper {
+
+        RedirectOnlyRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public Cookie[] getCookies() {
+            return null;
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.emptyEnumeration();
+        }
+
+        @Override
+        public Enumeration<Locale> getLocales() {
+            return Collections.emptyEnumeration();
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return Collections.emptyMap();
+        }
+    }
+
 
 }
@@ -0,0 +1,217 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Session repository that leaves out writes which do not change what other servers see.
+ * <p>
+ * The last access time of a stored session is only passed on to the wrapped repository once it is
+ * {@code lastAccessSlack} or more after the stored one, so most requests do not update the session row.
+ * An attribute set to a value that serializes to the same bytes as the stored value is not written again.
+ * The stored bytes are captured before the attribute is first handed out, since callers may change the
+ * instance they get and set it again.
+ * Sessions therefore look the same on every server, except that the stored last access time, and with
+ * it the idle timeout, may lag by up to {@code lastAccessSlack}.
+ */
+public class CoalescingSessionRepository implements FindByIndexNameSessionRepository<CoalescingSessionRepository.CoalescingSession> {
+
+    private final FindByIndexNameSessionRepository<Session> delegate;
+    private final Duration lastAccessSlack;
+    private Converter<Object, byte[]> serializer = new SerializingConverter();
+
+    private final LongAdder skippedAccessTimeWrites = new LongAdder();
+    private final LongAdder skippedAttributeWrites = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public CoalescingSessionRepository(FindByIndexNameSessionRepository<? extends Session> delegate, Duration lastAccessSlack) {
+        this.delegate = (FindByIndexNameSessionRepository<Session>) delegate;
+        this.lastAccessSlack = lastAccessSlack;
+    }
+
+    /**
+     * @param serializer must produce the same bytes the wrapped repository stores
+     */
+    public void setSerializer(Converter<Object, byte[]> serializer) {
+        this.serializer = serializer;
+    }
+
+    @Override
+    public CoalescingSession createSession() {
+        return new CoalescingSession(delegate.createSession(), null);
+    }
+
+    @Override
+    public void save(CoalescingSession session) {
+        delegate.save(session.delegate);
+    }
+
+    @Override
+    public CoalescingSession findById(String id) {
+        Session session = delegate.findById(id);
+        return session == null ? null : new CoalescingSession(session, session.getLastAccessedTime());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+    }
+
+    @Override
+    public Map<String, CoalescingSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        Map<String, CoalescingSession> result = new HashMap<>();
+        delegate.findByIndexNameAndIndexValue(indexName, indexValue)
+            .forEach((id, session) -> result.put(id, new CoalescingSession(session, session.getLastAccessedTime())));
+        return result;
+    }
+
+    public long getSkippedAccessTimeWrites() {
+        return skippedAccessTimeWrites.sum();
+    }
+
+    public long getSkippedAttributeWrites() {
+        return skippedAttributeWrites.sum();
+    }
+
+    private byte[] serialize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return serializer.convert(value);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public final class CoalescingSession implements Session {
+
+        private final Session delegate;
+        private final Instant storedLastAccessedTime;
+        private Instant lastAccessedTime;
+        private Map<String, Object> unchangedAttributes;
+        // serialized form of the stored attributes, null for those written or removed since loading
+        private final Map<String, byte[]> storedAttributes = new HashMap<>();
+
+        private CoalescingSession(Session delegate, Instant storedLastAccessedTime) {
+            this.delegate = delegate;
+            this.storedLastAccessedTime = storedLastAccessedTime;
+            this.lastAccessedTime = delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getAttribute(String attributeName) {
+            if (unchangedAttributes != null && unchangedAttributes.containsKey(attributeName)) {
+                return (T) unchangedAttributes.get(attributeName);
+            }
+            if (storedLastAccessedTime != null && !storedAttributes.containsKey(attributeName)) {
+                storedAttributes.put(attributeName, serialize(delegate.getAttribute(attributeName)));
+            }
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            if (attributeValue == null) {
+                removeAttribute(attributeName);
+                return;
+            }
+            if (storedLastAccessedTime != null && isStoredValue(attributeName, attributeValue)) {
+                if (unchangedAttributes == null) {
+                    unchangedAttributes = new HashMap<>();
+                }
+                unchangedAttributes.put(attributeName, attributeValue);
+                skippedAttributeWrites.increment();
+                return;
+            }
+            if (unchangedAttributes != null) {
+                unchangedAttributes.remove(attributeName);
+            }
+            storedAttributes.put(attributeName, null);
+            delegate.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            if (unchangedAttributes != null) {
+                unchangedAttributes.remove(attributeName);
+            }
+            storedAttributes.put(attributeName, null);
+            delegate.removeAttribute(attributeName);
+        }
+
+        private boolean isStoredValue(String attributeName, Object attributeValue) {
+            if (!storedAttributes.containsKey(attributeName)) {
+                // not handed out yet, so still as stored
+                storedAttributes.put(attributeName, serialize(delegate.getAttribute(attributeName)));
+            }
+            byte[] stored = storedAttributes.get(attributeName);
+            return stored != null && Arrays.equals(stored, serialize(attributeValue));
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            this.lastAccessedTime = lastAccessedTime;
+            if (storedLastAccessedTime != null && Duration.between(storedLastAccessedTime, lastAccessedTime).compareTo(lastAccessSlack) < 0) {
+                skippedAccessTimeWrites.increment();
+                return;
+            }
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return lastAccessedTime;
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            Duration maxInactiveInterval = getMaxInactiveInterval();
+            if (maxInactiveInterval.isNegative()) {
+                return false;
+            }
+            return Instant.now().minus(maxInactiveInterval).compareTo(lastAccessedTime) >= 0;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes expired rows from the JDBC session store in small batches on a background thread.
+ * <p>
+ * Replaces the single delete of Spring Session's cleanup cron, which on a large table holds locks
+ * for the whole statement. Session attributes go with their session through the cascading foreign key.
+ */
+public class ExpiredSessionCleaner implements InitializingBean, DisposableBean {
+
+    public static final String TABLE_NAME = "SPRING_SESSION";
+
+    private static final String EXPIRED_SQL = "select PRIMARY_ID from " + TABLE_NAME + " where EXPIRY_TIME < ?";
+    private static final String DELETE_SQL = "delete from " + TABLE_NAME + " where PRIMARY_ID = ? and EXPIRY_TIME < ?";
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiredSessionCleaner.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate expiredTemplate;
+
+    private boolean enabled = true;
+    private int batchSize = 500;
+    private long intervalMillis = 60 * 1000;
+
+    private ScheduledExecutorService executor;
+
+    private final LongAdder deleted = new LongAdder();
+
+    public ExpiredSessionCleaner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expiredTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.expiredTemplate.setMaxRows(batchSize);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        this.expiredTemplate.setMaxRows(batchSize);
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long getDeletedCount() {
+        return deleted.sum();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (batchSize <= 0 || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Session cleanup batchSize and interval must be positive numbers");
+        }
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("session-cleanup-"));
+        executor.scheduleWithFixedDelay(this::deleteExpiredSessionsSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the number of sessions deleted
+     */
+    public int deleteExpiredSessions() {
+        long now = System.currentTimeMillis();
+        int total = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> ids = expiredTemplate.queryForList(EXPIRED_SQL, String.class, now);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Object[]> batch = ids.stream().map(id -> new Object[]{id, now}).collect(Collectors.toList());
+            for (int count : jdbcTemplate.batchUpdate(DELETE_SQL, batch)) {
+                total += Math.max(count, 0);
+            }
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        deleted.add(total);
+        return total;
+    }
+
+    private void deleteExpiredSessionsSafely() {
+        try {
+            int count = deleteExpiredSessions();
+            if (count > 0) {
+                logger.debug("Deleted {} expired sessions", count);
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to delete expired sessions", e);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaLoginHint;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.user.UaaAuthority;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+import org.springframework.security.web.savedrequest.SavedCookie;
+import org.springframework.util.LinkedMultiValueMap;
+
+import javax.servlet.http.Cookie;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts session attributes to the bytes stored by the JDBC session store.
+ * <p>
+ * The security context of a UAA login, a {@link UaaAuthentication} and a {@link DefaultSavedRequest}
+ * are written in a compact binary form: a four byte header with the format version and the type,
+ * followed by the fields of the object. Class descriptors are not written, which makes these
+ * attributes a fraction of their Java serialized size. Any other value, and any value carrying state
+ * the compact form does not cover, is Java serialized. Both forms are always read, but
+ * {@code compactFormat} is off by default while servers that only read Java serialization may
+ * share the session store.
+ */
+public class SessionAttributeCodec {
+
+    static final byte MAGIC_0 = 'U';
+    static final byte MAGIC_1 = 'A';
+    static final byte VERSION = 1;
+
+    static final byte TYPE_SECURITY_CONTEXT = 1;
+    static final byte TYPE_UAA_AUTHENTICATION = 2;
+    static final byte TYPE_SAVED_REQUEST = 3;
+
+    private static final byte AUTHORITY_UAA = 0;
+    private static final byte AUTHORITY_SIMPLE = 1;
+
+    private final SerializingConverter javaSerializer = new SerializingConverter();
+    private final DeserializingConverter javaDeserializer;
+
+    private boolean compactFormat = false;
+
+    public SessionAttributeCodec() {
+        this(SessionAttributeCodec.class.getClassLoader());
+    }
+
+    public SessionAttributeCodec(ClassLoader classLoader) {
+        this.javaDeserializer = new DeserializingConverter(classLoader);
+    }
+
+    public void setCompactFormat(boolean compactFormat) {
+        this.compactFormat = compactFormat;
+    }
+
+    public byte[] serialize(Object value) {
+        if (compactFormat) {
+            byte type = compactType(value);
+            if (type != 0) {
+                try {
+                    return writeCompact(type, value);
+                } catch (IOException e) {
+                    throw new SerializationFailedException("Unable to write session attribute of " + value.getClass(), e);
+                }
+            }
+        }
+        return javaSerializer.convert(value);
+    }
+
+    public Object deserialize(byte[] bytes) {
+        if (!isCompactFormat(bytes)) {
+            return javaDeserializer.convert(bytes);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 4, bytes.length - 4));
+            switch (bytes[3]) {
+                case TYPE_SECURITY_CONTEXT:
+                    return new SecurityContextImpl(readAuthentication(in));
+                case TYPE_UAA_AUTHENTICATION:
+                    return readAuthentication(in);
+                case TYPE_SAVED_REQUEST:
+                    return readSavedRequest(in);
+                default:
+                    throw new SerializationFailedException("Unknown session attribute type " + bytes[3]);
+            }
+        } catch (IOException e) {
+            throw new SerializationFailedException("Unable to read session attribute", e);
+        }
+    }
+
+    static boolean isCompactFormat(byte[] bytes) {
+        return bytes != null && bytes.length >= 4 && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1 && bytes[2] == VERSION;
+    }
+
+    private static byte compactType(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value.getClass() == SecurityContextImpl.class) {
+            Object authentication = ((SecurityContextImpl) value).getAuthentication();
+            return authentication != null && isCompact(authentication) ? TYPE_SECURITY_CONTEXT : 0;
+        }
+        if (isCompact(value)) {
+            return TYPE_UAA_AUTHENTICATION;
+        }
+        if (value.getClass() == DefaultSavedRequest.class) {
+            return TYPE_SAVED_REQUEST;
+        }
+        return 0;
+    }
+
+    private static boolean isCompact(Object value) {
+        if (value.getClass() != UaaAuthentication.class) {
+            return false;
+        }
+        UaaAuthentication authentication = (UaaAuthentication) value;
+        if (authentication.getCredentials() != null) {
+            return false;
+        }
+        if (authentication.getDetails() != null && authentication.getDetails().getClass() != UaaAuthenticationDetails.class) {
+            return false;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (!(authority instanceof UaaAuthority) && authority.getClass() != SimpleGrantedAuthority.class) {
+                return false;
+            }
+        }
+        for (Object values : authentication.getUserAttributesAsMap().values()) {
+            if (!(values instanceof List)) {
+                return false;
+            }
+            for (Object attribute : (List<?>) values) {
+                if (attribute != null && !(attribute instanceof String)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static byte[] writeCompact(byte type, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        bytes.write(new byte[]{MAGIC_0, MAGIC_1, VERSION, type});
+        DataOutputStream out = new DataOutputStream(bytes);
+        switch (type) {
+            case TYPE_SECURITY_CONTEXT:
+                writeAuthentication(out, (UaaAuthentication) ((SecurityContextImpl) value).getAuthentication());
+                break;
+            case TYPE_UAA_AUTHENTICATION:
+                writeAuthentication(out, (UaaAuthentication) value);
+                break;
+            default:
+                writeSavedRequest(out, (DefaultSavedRequest) value);
+                break;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeAuthentication(DataOutputStream out, UaaAuthentication authentication) throws IOException {
+        UaaPrincipal principal = authentication.getPrincipal();
+        writeString(out, principal.getId());
+        writeString(out, principal.getName());
+        writeString(out, principal.getEmail());
+        writeString(out, principal.getOrigin());
+        writeString(out, principal.getExternalId());
+        writeString(out, principal.getZoneId());
+
+        Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
+        out.writeBoolean(authorities instanceof Set);
+        out.writeInt(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof UaaAuthority) {
+                out.writeByte(AUTHORITY_UAA);
+                writeString(out, ((UaaAuthority) authority).name());
+            } else {
+                out.writeByte(AUTHORITY_SIMPLE);
+                writeString(out, authority.getAuthority());
+            }
+        }
+
+        UaaAuthenticationDetails details = (UaaAuthenticationDetails) authentication.getDetails();
+        out.writeBoolean(details != null);
+        if (details != null) {
+            out.writeBoolean(details.isAddNew());
+            writeString(out, details.getClientId());
+            writeString(out, details.getOrigin());
+            writeString(out, details.getSessionId());
+            writeString(out, details.getLoginHint() == null ? null : details.getLoginHint().getOrigin());
+            out.writeBoolean(details.getLoginHint() != null);
+            writeParameters(out, details.getParameterMap());
+        }
+
+        writeStrings(out, authentication.getExternalGroups());
+        Map<String, List<String>> userAttributes = authentication.getUserAttributesAsMap();
+        out.writeInt(userAttributes.size());
+        for (Map.Entry<String, List<String>> entry : userAttributes.entrySet()) {
+            writeString(out, entry.getKey());
+            writeStrings(out, entry.getValue());
+        }
+        writeStrings(out, authentication.getAuthenticationMethods());
+        writeStrings(out, authentication.getAuthContextClassRef());
+        out.writeBoolean(authentication.getLastLoginSuccessTime() != null);
+        if (authentication.getLastLoginSuccessTime() != null) {
+            out.writeLong(authentication.getLastLoginSuccessTime());
+        }
+        // once expired an authentication stays unauthenticated, whatever the flag says
+        out.writeBoolean(authentication.isAuthenticated());
+        out.writeLong(authentication.getAuthenticatedTime());
+        out.writeLong(authentication.getExpiresAt());
+    }
+
+    private static UaaAuthentication readAuthentication(DataInputStream in) throws IOException {
+        UaaPrincipal principal = new UaaPrincipal(readString(in), readString(in), readString(in), readString(in), readString(in), readString(in));
+
+        boolean authoritySet = in.readBoolean();
+        int count = in.readInt();
+        Collection<GrantedAuthority> authorities = authoritySet ? new LinkedHashSet<>() : new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = in.readByte();
+            String authority = readString(in);
+            authorities.add(kind == AUTHORITY_UAA ? UaaAuthority.valueOf(authority) : new SimpleGrantedAuthority(authority));
+        }
+
+        UaaAuthenticationDetails details = null;
+        if (in.readBoolean()) {
+            boolean addNew = in.readBoolean();
+            String clientId = readString(in);
+            String origin = readString(in);
+            String sessionId = readString(in);
+            String loginHintOrigin = readString(in);
+            UaaLoginHint loginHint = in.readBoolean() ? new UaaLoginHint(loginHintOrigin) : null;
+            details = new UaaAuthenticationDetails(addNew, clientId, origin, sessionId, loginHint, readParameters(in));
+        }
+
+        Set<String> externalGroups = readStringSet(in);
+        int attributeCount = in.readInt();
+        Map<String, List<String>> userAttributes = new HashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            userAttributes.put(readString(in), readStringList(in));
+        }
+        Set<String> authenticationMethods = readStringSet(in);
+        Set<String> authContextClassRef = readStringSet(in);
+        Long lastLoginSuccessTime = in.readBoolean() ? in.readLong() : null;
+        boolean authenticated = in.readBoolean();
+        long authenticatedTime = in.readLong();
+        long expiresAt = in.readLong();
+
+        UaaAuthentication authentication = new UaaAuthentication(principal, null, authorities, details, authenticated, authenticatedTime, expiresAt);
+        authentication.setExternalGroups(externalGroups);
+        if (!userAttributes.isEmpty()) {
+            authentication.setUserAttributes(new LinkedMultiValueMap<>(userAttributes));
+        }
+        authentication.setAuthenticationMethods(authenticationMethods);
+        authentication.setAuthContextClassRef(authContextClassRef);
+        authentication.setLastLoginSuccessTime(lastLoginSuccessTime);
+        return authentication;
+    }
+
+    private static void writeSavedRequest(DataOutputStream out, DefaultSavedRequest request) throws IOException {
+        writeString(out, request.getContextPath());
+        writeString(out, request.getMethod());
+        writeString(out, request.getPathInfo());
+        writeString(out, request.getQueryString());
+        writeString(out, request.getRequestURI());
+        writeString(out, request.getRequestURL());
+        writeString(out, request.getScheme());
+        writeString(out, request.getServerName());
+        out.writeInt(request.getServerPort());
+        writeString(out, request.getServletPath());
+
+        List<Cookie> cookies = request.getCookies();
+        out.writeInt(cookies.size());
+        for (Cookie cookie : cookies) {
+            writeString(out, cookie.getName());
+            writeString(out, cookie.getValue());
+            writeString(out, cookie.getComment());
+            writeString(out, cookie.getDomain());
+            out.writeInt(cookie.getMaxAge());
+            writeString(out, cookie.getPath());
+            out.writeBoolean(cookie.getSecure());
+            out.writeInt(cookie.getVersion());
+        }
+        Collection<String> headerNames = request.getHeaderNames();
+        out.writeInt(headerNames.size());
+        for (String name : headerNames) {
+            writeString(out, name);
+            writeStrings(out, request.getHeaderValues(name));
+        }
+        List<Locale> locales = request.getLocales();
+        out.writeInt(locales.size());
+        for (Locale locale : locales) {
+            writeString(out, locale.toLanguageTag());
+        }
+        writeParameters(out, request.getParameterMap());
+    }
+
+    private static DefaultSavedRequest readSavedRequest(DataInputStream in) throws IOException {
+        DefaultSavedRequest.Builder builder = new DefaultSavedRequest.Builder();
+        builder.setContextPath(readString(in));
+        builder.setMethod(readString(in));
+        builder.setPathInfo(readString(in));
+        builder.setQueryString(readString(in));
+        builder.setRequestURI(readString(in));
+        builder.setRequestURL(readString(in));
+        builder.setScheme(readString(in));
+        builder.setServerName(readString(in));
+        builder.setServerPort(in.readInt());
+        builder.setServletPath(readString(in));
+
+        int cookieCount = in.readInt();
+        List<SavedCookie> cookies = new ArrayList<>(cookieCount);
+        for (int i = 0; i < cookieCount; i++) {
+            cookies.add(new SavedCookie(readString(in), readString(in), readString(in), readString(in), in.readInt(), readString(in), in.readBoolean(), in.readInt()));
+        }
+        builder.setCookies(cookies);
+        int headerCount = in.readInt();
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(readString(in), readStringList(in));
+        }
+        builder.setHeaders(headers);
+        int localeCount = in.readInt();
+        List<Locale> locales = new ArrayList<>(localeCount);
+        for (int i = 0; i < localeCount; i++) {
+            locales.add(Locale.forLanguageTag(readString(in)));
+        }
+        builder.setLocales(locales);
+        Map<String, String[]> parameters = readParameters(in);
+        builder.setParameters(parameters == null ? new HashMap<>() : parameters);
+        return builder.build();
+    }
+
+    private static void writeParameters(DataOutputStream out, Map<String, String[]> parameters) throws IOException {
+        if (parameters == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(parameters.size());
+        for (Map.Entry<String, String[]> entry : parameters.entrySet()) {
+            writeString(out, entry.getKey());
+            String[] values = entry.getValue();
+            out.writeInt(values == null ? -1 : values.length);
+            if (values != null) {
+                for (String value : values) {
+                    writeString(out, value);
+                }
+            }
+        }
+    }
+
+    private static Map<String, String[]> readParameters(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        Map<String, String[]> parameters = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            int length = in.readInt();
+            String[] values = length < 0 ? null : new String[length];
+            for (int j = 0; j < length; j++) {
+                values[j] = readString(in);
+            }
+            parameters.put(name, values);
+        }
+        return parameters;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStringList(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static Set<String> readStringSet(DataInputStream in) throws IOException {
+        List<String> values = readStringList(in);
+        return values == null ? null : new HashSet<>(values);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
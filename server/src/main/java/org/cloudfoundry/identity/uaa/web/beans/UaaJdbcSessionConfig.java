@@ -4,15 +4,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Condition;
 import org.springframework.context.annotation.ConditionContext;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
 import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
 import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
 import org.springframework.session.jdbc.config.annotation.web.http.JdbcHttpSessionConfiguration;
 
+import java.time.Duration;
+
+import static java.util.Optional.ofNullable;
+
 @Configuration
 @Conditional(UaaJdbcSessionConfig.DatabaseConfigured.class)
 @EnableJdbcHttpSession
@@ -36,6 +47,71 @@ public class UaaJdbcSessionConfig extends UaaSessionConfig {
         jdbcHttpSessionConfiguration.setMaxInactiveIntervalInSeconds(idleTimeout);
     }
 
+    @Autowired
+    public void customizeCleanup(
+            final JdbcHttpSessionConfiguration jdbcHttpSessionConfiguration,
+            final @Value("${servlet.session-coalescing.enabled:false}") boolean coalescing) {
+        if (coalescing) {
+            jdbcHttpSessionConfiguration.setCleanupCron(Scheduled.CRON_DISABLED);
+        }
+    }
+
+    @Bean
+    public SessionAttributeCodec sessionAttributeCodec(
+            final @Value("${servlet.session-attributes.compact-format:false}") boolean compactFormat) {
+        SessionAttributeCodec codec = new SessionAttributeCodec();
+        codec.setCompactFormat(compactFormat);
+        return codec;
+    }
+
+    /**
+     * Picked up by Spring Session to convert session attributes to and from the stored bytes.
+     */
+    @Bean
+    public ConversionService springSessionConversionService(final SessionAttributeCodec sessionAttributeCodec) {
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, sessionAttributeCodec::serialize);
+        conversionService.addConverter(byte[].class, Object.class, sessionAttributeCodec::deserialize);
+        return conversionService;
+    }
+
+    @Bean
+    public ExpiredSessionCleaner expiredSessionCleaner(
+            final JdbcTemplate jdbcTemplate,
+            final @Value("${servlet.session-coalescing.enabled:false}") boolean coalescing,
+            final @Value("${servlet.session-coalescing.cleanup-batch-size:500}") int batchSize,
+            final @Value("${servlet.session-coalescing.cleanup-interval-seconds:60}") int intervalSeconds) {
+        ExpiredSessionCleaner cleaner = new ExpiredSessionCleaner(jdbcTemplate);
+        cleaner.setEnabled(coalescing);
+        cleaner.setBatchSize(batchSize);
+        cleaner.setIntervalMillis(intervalSeconds * 1000L);
+        return cleaner;
+    }
+
+    public static class CoalescingEnabled implements Condition {
+        @Override
+        public boolean matches(@NonNull ConditionContext context, @NonNull AnnotatedTypeMetadata metadata) {
+            return ofNullable(context.getEnvironment().getProperty("servlet.session-coalescing.enabled", Boolean.class)).orElse(false);
+        }
+    }
+
+    /**
+     * Used by the session filter instead of the JDBC session repository, which stays registered
+     * as is for Spring Session's own configuration.
+     */
+    @Bean
+    @Primary
+    @Conditional(CoalescingEnabled.class)
+    public CoalescingSessionRepository coalescingSessionRepository(
+            final JdbcIndexedSessionRepository sessionRepository,
+            final SessionAttributeCodec sessionAttributeCodec,
+            final @Value("${servlet.session-coalescing.last-access-slack-seconds:60}") int slackSeconds) {
+        logger.info("Coalescing session writes, last access slack is {} seconds", slackSeconds);
+        CoalescingSessionRepository repository = new CoalescingSessionRepository(sessionRepository, Duration.ofSeconds(slackSeconds));
+        repository.setSerializer(sessionAttributeCodec::serialize);
+        return repository;
+    }
+
     @Autowired
     void log() {
         logger.info("Using JDBC session configuration");
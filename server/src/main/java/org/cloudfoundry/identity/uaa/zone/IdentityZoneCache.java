@@ -0,0 +1,81 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudfoundry.identity.uaa.audit.event.AbstractUaaEvent;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Active identity zones by id and by subdomain.
+ * <p>
+ * Entries are dropped when this server creates, updates or deletes the zone, and expire after
+ * {@code ttlSeconds} so changes made through another server are picked up. Zones that do not exist
+ * are not cached. The returned zones are shared and must not be modified.
+ */
+public class IdentityZoneCache implements ApplicationListener<AbstractUaaEvent> {
+
+    public static final int DEFAULT_TTL_SECONDS = 30;
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final IdentityZoneProvisioning provisioning;
+    private final Cache<String, IdentityZone> byId;
+    private final Cache<String, IdentityZone> bySubdomain;
+
+    public IdentityZoneCache(IdentityZoneProvisioning provisioning) {
+        this(provisioning, DEFAULT_TTL_SECONDS, DEFAULT_MAX_SIZE);
+    }
+
+    public IdentityZoneCache(IdentityZoneProvisioning provisioning, int ttlSeconds, int maxSize) {
+        this.provisioning = provisioning;
+        this.byId = CacheBuilder.newBuilder().expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).maximumSize(maxSize).build();
+        this.bySubdomain = CacheBuilder.newBuilder().expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).maximumSize(maxSize).build();
+    }
+
+    /**
+     * @throws ZoneDoesNotExistsException if there is no active zone with this id
+     */
+    public IdentityZone retrieve(String id) {
+        IdentityZone zone = byId.getIfPresent(id);
+        if (zone == null) {
+            zone = provisioning.retrieve(id);
+            byId.put(id, zone);
+        }
+        return zone;
+    }
+
+    /**
+     * @throws EmptyResultDataAccessException if there is no active zone with this subdomain
+     */
+    public IdentityZone retrieveBySubdomain(String subdomain) {
+        if (subdomain == null) {
+            throw new EmptyResultDataAccessException("Subdomain cannot be null", 1);
+        }
+        String key = subdomain.toLowerCase();
+        IdentityZone zone = bySubdomain.getIfPresent(key);
+        if (zone == null) {
+            zone = provisioning.retrieveBySubdomain(subdomain);
+            bySubdomain.put(key, zone);
+        }
+        return zone;
+    }
+
+    public void evict(String zoneId) {
+        byId.invalidate(zoneId);
+        // the subdomain of the zone may have changed
+        bySubdomain.asMap().values().removeIf(zone -> zoneId.equals(zone.getId()));
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractUaaEvent event) {
+        if (event instanceof IdentityZoneModifiedEvent) {
+            evict(((IdentityZone) event.getSource()).getId());
+        } else if (event instanceof EntityDeletedEvent && ((EntityDeletedEvent<?>) event).getDeleted() instanceof IdentityZone) {
+            evict(((IdentityZone) ((EntityDeletedEvent<?>) event).getDeleted()).getId());
+        }
+    }
+}
@@ -30,7 +30,8 @@ import static org.cloudfoundry.identity.uaa.zone.ZoneManagementScopes.getZoneSwi
  * If the X-Identity-Zone-Id header is set and the user has a scope
  * of zones.&lt;id&gt;.admin, this filter switches the IdentityZone in the IdentityZoneHolder
  * to the one in the header.
- *
+ * <p>
+ * Zones are looked up through the {@link IdentityZoneCache} when one is set.
  */
 public class IdentityZoneSwitchingFilter extends OncePerRequestFilter {
 
@@ -41,10 +42,15 @@ public class IdentityZoneSwitchingFilter extends OncePerRequestFilter {
     }
 
     private final IdentityZoneProvisioning dao;
+    private IdentityZoneCache zoneCache;
     public static final String HEADER = "X-Identity-Zone-Id";
     public static final String SUBDOMAIN_HEADER = "X-Identity-Zone-Subdomain";
     public static final List<String> zoneScopestoNotStripPrefix = List.of("admin", "read");
 
+    public void setZoneCache(IdentityZoneCache zoneCache) {
+        this.zoneCache = zoneCache;
+    }
+
     protected OAuth2Authentication getAuthenticationForZone(String identityZoneId, HttpServletRequest servletRequest) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if(!(authentication instanceof OAuth2Authentication)) {
@@ -159,9 +165,9 @@ public class IdentityZoneSwitchingFilter extends OncePerRequestFilter {
 
         try {
             if (StringUtils.isEmpty(identityZoneId)) {
-                identityZone = dao.retrieveBySubdomain(identityZoneSubDomain);
+                identityZone = zoneCache == null ? dao.retrieveBySubdomain(identityZoneSubDomain) : zoneCache.retrieveBySubdomain(identityZoneSubDomain);
             } else {
-                identityZone = dao.retrieve(identityZoneId);
+                identityZone = zoneCache == null ? dao.retrieve(identityZoneId) : zoneCache.retrieve(identityZoneId);
             }
         } catch (ZoneDoesNotExistsException | EmptyResultDataAccessException ignored) {
         }
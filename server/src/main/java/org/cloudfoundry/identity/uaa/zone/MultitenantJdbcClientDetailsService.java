@@ -90,6 +90,10 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
             "update oauth_client_details "
                     + "set client_secret = ? where client_id = ? and identity_zone_id = ?";
 
+    private static final String DEFAULT_UPDATE_SECRET_HASH_STATEMENT =
+            "update oauth_client_details "
+                    + "set client_secret = ? where client_id = ? and client_secret = ? and identity_zone_id = ?";
+
     static final String DEFAULT_DELETE_STATEMENT =
             "delete from oauth_client_details where client_id = ? and identity_zone_id = ?";
 
@@ -266,6 +270,17 @@ public class MultitenantJdbcClientDetailsService extends MultitenantClientServic
         }
     }
 
+    /**
+     * Replaces the stored secret hashes with re-encoded hashes of the same secrets.
+     * The update only applies if the stored value still equals {@code currentSecret},
+     * so a concurrent secret change always wins.
+     *
+     * @return true if the stored value was replaced
+     */
+    public boolean updateClientSecretHash(String clientId, String currentSecret, String newSecret, String zoneId) {
+        return jdbcTemplate.update(DEFAULT_UPDATE_SECRET_HASH_STATEMENT, newSecret, clientId, currentSecret, zoneId) == 1;
+    }
+
     @Override
     public void deleteClientSecret(String clientId, String zoneId) throws NoSuchClientException {
         ClientDetails clientDetails = loadClientByClientId(clientId, zoneId);
@@ -0,0 +1,174 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.cloudfoundry.identity.uaa.oauth.client.ClientDetailsModification;
+import org.cloudfoundry.identity.uaa.resources.jdbc.AbstractQueryable;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupMembershipManager;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Exports all users, groups or clients of the current zone as newline delimited JSON.
+ * <p>
+ * Each export is a single query read over a forward-only cursor, and rows are written to the
+ * response a fetch at a time, so memory use stays flat regardless of the size of the zone.
+ * Results can be narrowed with the same SCIM filter syntax the list endpoints accept. Groups are
+ * exported with their members, which are read with one query per fetch.
+ * Client secrets are never exported.
+ */
+@Controller
+public class ZoneExportEndpoints {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    private static final Logger logger = LoggerFactory.getLogger(ZoneExportEndpoints.class);
+
+    private final IdentityZoneManager identityZoneManager;
+    private final AbstractQueryable<ScimUser> scimUserProvisioning;
+    private final AbstractQueryable<ScimGroup> scimGroupProvisioning;
+    private final AbstractQueryable<ClientDetails> clientDetailsService;
+    private final JdbcScimGroupMembershipManager membershipManager;
+    private final int fetchSize;
+
+    public ZoneExportEndpoints(
+            final IdentityZoneManager identityZoneManager,
+            final @Qualifier("scimUserProvisioning") AbstractQueryable<ScimUser> scimUserProvisioning,
+            final @Qualifier("scimGroupProvisioning") AbstractQueryable<ScimGroup> scimGroupProvisioning,
+            final @Qualifier("clientDetailsService") AbstractQueryable<ClientDetails> clientDetailsService,
+            final @Qualifier("groupMembershipManager") JdbcScimGroupMembershipManager membershipManager,
+            final @Value("${export.fetchSize:1000}") int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid \"export.fetchSize\" value (got %d). Should be positive number.", fetchSize)
+            );
+        }
+        this.identityZoneManager = identityZoneManager;
+        this.scimUserProvisioning = scimUserProvisioning;
+        this.scimGroupProvisioning = scimGroupProvisioning;
+        this.clientDetailsService = clientDetailsService;
+        this.membershipManager = membershipManager;
+        this.fetchSize = fetchSize;
+    }
+
+    @RequestMapping(value = "/export/Users", method = RequestMethod.GET)
+    @Transactional(readOnly = true)
+    public void exportUsers(@RequestParam(value = "filter", required = false, defaultValue = "id pr") String filter,
+                            @RequestParam(value = "sortBy", required = false) String sortBy,
+                            HttpServletResponse response) throws IOException {
+        export(scimUserProvisioning, filter, sortBy, perRow(Function.identity()), response);
+    }
+
+    @RequestMapping(value = "/export/Groups", method = RequestMethod.GET)
+    @Transactional(readOnly = true)
+    public void exportGroups(@RequestParam(value = "filter", required = false, defaultValue = "id pr") String filter,
+                             @RequestParam(value = "sortBy", required = false) String sortBy,
+                             HttpServletResponse response) throws IOException {
+        export(scimGroupProvisioning, filter, sortBy, this::withMembers, response);
+    }
+
+    @RequestMapping(value = "/export/oauth/clients", method = RequestMethod.GET)
+    @Transactional(readOnly = true)
+    public void exportClients(@RequestParam(value = "filter", required = false, defaultValue = "client_id pr") String filter,
+                              @RequestParam(value = "sortBy", required = false) String sortBy,
+                              HttpServletResponse response) throws IOException {
+        export(clientDetailsService, filter, sortBy, perRow(ZoneExportEndpoints::removeSecret), response);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleException(IllegalArgumentException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * @param view turns a fetch of rows into the values written for them
+     */
+    private <T> void export(AbstractQueryable<T> queryable,
+                            String filter,
+                            String sortBy,
+                            Function<List<T>, List<?>> view,
+                            HttpServletResponse response) throws IOException {
+        String zoneId = identityZoneManager.getCurrentIdentityZoneId();
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        ServletOutputStream out = response.getOutputStream();
+        SequenceWriter writer = JsonUtils.lineWriter().writeValues(out);
+        List<T> rows = new ArrayList<>(fetchSize);
+        long[] count = {0};
+        try {
+            queryable.stream(filter, hasText(sortBy) ? sortBy : null, true, zoneId, fetchSize, row -> {
+                rows.add(row);
+                if (rows.size() == fetchSize) {
+                    count[0] += write(writer, view.apply(rows));
+                    rows.clear();
+                }
+            });
+            count[0] += write(writer, view.apply(rows));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        if (count[0] > 0) {
+            out.write('\n');
+        }
+        out.flush();
+        logger.debug("Exported " + count[0] + " rows from zone " + zoneId);
+    }
+
+    private static int write(SequenceWriter writer, List<?> values) {
+        try {
+            writer.writeAll(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return values.size();
+    }
+
+    private static <T> Function<List<T>, List<?>> perRow(Function<T, Object> view) {
+        return rows -> rows.stream().map(view).collect(Collectors.toList());
+    }
+
+    private List<?> withMembers(List<ScimGroup> groups) {
+        if (groups.isEmpty()) {
+            return groups;
+        }
+        List<String> ids = groups.stream().map(ScimGroup::getId).collect(Collectors.toList());
+        Map<String, List<ScimGroupMember>> members = membershipManager.getMembers(ids, identityZoneManager.getCurrentIdentityZoneId());
+        groups.forEach(group -> group.setMembers(members.getOrDefault(group.getId(), Collections.emptyList())));
+        return groups;
+    }
+
+    private static Object removeSecret(ClientDetails client) {
+        ClientDetailsModification details = new ClientDetailsModification(client);
+        details.setClientSecret(null);
+        return details;
+    }
+}
@@ -0,0 +1 @@
+-- NOOP HSQLDB has no expression indexes
@@ -0,0 +1 @@
+-- NOOP HSQLDB has no trigram indexes, substring searches use the same predicates unindexed
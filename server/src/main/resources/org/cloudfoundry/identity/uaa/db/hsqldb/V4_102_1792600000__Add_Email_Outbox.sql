@@ -0,0 +1,13 @@
+CREATE TABLE email_outbox (
+  id CHAR(36) NOT NULL PRIMARY KEY,
+  identity_zone_id VARCHAR(36) NOT NULL,
+  recipient VARCHAR(255) NOT NULL,
+  message LONGVARBINARY NOT NULL,
+  created BIGINT NOT NULL,
+  attempts INT DEFAULT 0 NOT NULL,
+  next_attempt BIGINT NOT NULL,
+  dead BOOLEAN DEFAULT FALSE NOT NULL,
+  last_error VARCHAR(1024)
+);
+
+CREATE INDEX email_outbox_due ON email_outbox (dead, next_attempt);
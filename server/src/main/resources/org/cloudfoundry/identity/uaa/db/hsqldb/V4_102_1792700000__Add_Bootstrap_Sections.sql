@@ -0,0 +1,6 @@
+CREATE TABLE bootstrap_section (
+  section VARCHAR(255) NOT NULL PRIMARY KEY,
+  salt VARCHAR(32) NOT NULL,
+  hash CHAR(64) NOT NULL,
+  applied BIGINT NOT NULL
+);
@@ -0,0 +1,3 @@
+-- lookups compare the plain columns on MySQL (case insensitive collation), the unique key starts with origin
+CREATE INDEX users_username_zone ON users (username,identity_zone_id);
+CREATE INDEX users_email_zone ON users (email,identity_zone_id);
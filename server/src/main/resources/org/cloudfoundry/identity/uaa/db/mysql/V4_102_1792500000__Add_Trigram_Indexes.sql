@@ -0,0 +1 @@
+-- NOOP MySQL has no trigram indexes, substring searches keep scanning the case insensitive columns
@@ -0,0 +1,3 @@
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_username_lower_zone ON users (LOWER(username),identity_zone_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_email_lower_zone ON users (LOWER(email),identity_zone_id);
+DROP INDEX CONCURRENTLY IF EXISTS users_key_lower_wo_origin;
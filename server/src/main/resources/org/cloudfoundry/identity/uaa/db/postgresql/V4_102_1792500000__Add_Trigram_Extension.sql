@@ -0,0 +1,9 @@
+-- pg_trgm can only be installed by a sufficiently privileged user, without it substring searches stay unindexed
+-- the indexes are built concurrently by V4_102_1792500001__Add_Trigram_Indexes
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN insufficient_privilege THEN
+    RAISE NOTICE 'pg_trgm is not available, SCIM co/sw filters will not use trigram indexes';
+END
+$$;
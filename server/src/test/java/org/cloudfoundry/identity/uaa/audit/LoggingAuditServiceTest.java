@@ -8,12 +8,17 @@ import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
 
 import static org.cloudfoundry.identity.uaa.audit.AuditEventType.PasswordChangeFailure;
+import static org.cloudfoundry.identity.uaa.audit.AuditEventType.TokenIssuedEvent;
 import static org.cloudfoundry.identity.uaa.audit.AuditEventType.UserAuthenticationSuccess;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 class LoggingAuditServiceTest {
@@ -76,4 +81,47 @@ class LoggingAuditServiceTest {
         verify(mockLogger).info(stringCaptor.capture());
         assertFalse(stringCaptor.getValue().contains(LogSanitizerUtil.SANITIZED_FLAG));
     }
+
+    @Test
+    void log_format_json() {
+        loggingAuditService.setFormat("json");
+        AuditEvent auditEvent = new AuditEvent(PasswordChangeFailure, "thePrincipalId", "theOrigin", "the \"data\"\r\n", 42L, "theZoneId", null, "theDescription");
+
+        loggingAuditService.log(auditEvent, "not-used");
+
+        ArgumentCaptor<String> stringCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockLogger).info(stringCaptor.capture());
+        assertThat(stringCaptor.getValue(), is("{\"type\":\"PasswordChangeFailure\",\"data\":\"the \\\"data\\\"\\r\\n\",\"principal\":\"thePrincipalId\",\"origin\":\"theOrigin\",\"identityZoneId\":\"theZoneId\",\"time\":42}"));
+    }
+
+    @Test
+    void log_format_keyValue() {
+        loggingAuditService.setFormat("keyvalue");
+        AuditEvent auditEvent = new AuditEvent(PasswordChangeFailure, "thePrincipalId", "theOrigin", "the data", 42L, "malicious-zone\n", "theAuthType", "theDescription");
+
+        loggingAuditService.log(auditEvent, "not-used");
+
+        ArgumentCaptor<String> stringCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockLogger).info(stringCaptor.capture());
+        assertThat(stringCaptor.getValue(), is("type=PasswordChangeFailure data=\"the data\" principal=thePrincipalId origin=theOrigin identityZoneId=malicious-zone| authenticationType=theAuthType time=42 sanitized=true"));
+    }
+
+    @Test
+    void log_unknownFormatIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> loggingAuditService.setFormat("xml"));
+    }
+
+    @Test
+    void log_tokenIssuedEventsAreSampled() {
+        loggingAuditService.setTokenIssuedSampleRate(3);
+        for (int i = 0; i < 7; i++) {
+            loggingAuditService.log(new AuditEvent(TokenIssuedEvent, "principalId", "origin", "data", 100L, "zone", null, null), "not-used");
+        }
+        loggingAuditService.log(new AuditEvent(UserAuthenticationSuccess, "principalId", "origin", "data", 100L, "zone", null, null), "not-used");
+
+        verify(mockLogger, times(4)).info(anyString());
+        assertEquals(7, loggingAuditService.getTokenIssuedCount());
+        assertEquals(4, loggingAuditService.getUnsampledCount());
+        assertEquals(1, loggingAuditService.getUserAuthenticationCount());
+    }
 }
@@ -0,0 +1,148 @@
+package org.cloudfoundry.identity.uaa.audit.event;
+
+import org.cloudfoundry.identity.uaa.audit.AuditEvent;
+import org.cloudfoundry.identity.uaa.audit.UaaAuditService;
+import org.cloudfoundry.identity.uaa.authentication.event.UserNotFoundEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuditEventDispatcherTests {
+
+    private AuditEventDispatcher dispatcher;
+
+    @AfterEach
+    void shutDown() throws Exception {
+        if (dispatcher != null) {
+            dispatcher.destroy();
+        }
+    }
+
+    @Test
+    void eventsOfOnePrincipalKeepTheirOrder() throws Exception {
+        dispatcher = new AuditEventDispatcher(true, 4, 1000);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 500; i++) {
+            int sequence = i;
+            dispatcher.dispatch("principal", () -> handled.add(sequence));
+        }
+        dispatcher.destroy();
+
+        assertEquals(500, handled.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, handled.get(i));
+        }
+        assertEquals(500, dispatcher.getDispatchedCount());
+    }
+
+    @Test
+    void fullQueueMakesTheCallerWaitAndKeepsTheOrder() throws Exception {
+        dispatcher = new AuditEventDispatcher(true, 1, 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.dispatch("principal", () -> {
+            blocked.countDown();
+            await(release);
+            handled.add("first");
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch("principal", () -> handled.add("second"));
+        assertEquals(1, dispatcher.getQueueDepth());
+
+        Thread caller = Thread.currentThread();
+        List<Thread> ranOn = Collections.synchronizedList(new ArrayList<>());
+        Thread publisher = new Thread(() -> dispatcher.dispatch("principal", () -> {
+            ranOn.add(Thread.currentThread());
+            handled.add("third");
+        }));
+        publisher.start();
+        while (dispatcher.getBlockedCount() == 0) {
+            Thread.sleep(1);
+        }
+        assertTrue(publisher.isAlive(), "publisher waits while the queue is full");
+        release.countDown();
+        publisher.join(5000);
+        dispatcher.destroy();
+
+        assertEquals(Arrays.asList("first", "second", "third"), handled);
+        assertNotEquals(caller, ranOn.get(0));
+        assertNotEquals(publisher, ranOn.get(0));
+        assertEquals(1, dispatcher.getBlockedCount());
+    }
+
+    @Test
+    void failuresAreCountedAndDoNotStopTheLane() throws Exception {
+        dispatcher = new AuditEventDispatcher(true, 1, 10);
+        CountDownLatch done = new CountDownLatch(1);
+        dispatcher.dispatch("principal", () -> {
+            throw new IllegalStateException("audit store is down");
+        });
+        dispatcher.dispatch("principal", done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, dispatcher.getFailureCount());
+    }
+
+    @Test
+    void disabledDispatcherRunsWorkOnTheCallingThread() {
+        dispatcher = new AuditEventDispatcher(false, 0, 0);
+        Thread caller = Thread.currentThread();
+        List<Thread> ranOn = new ArrayList<>();
+        dispatcher.dispatch("principal", () -> ranOn.add(Thread.currentThread()));
+
+        assertEquals(Collections.singletonList(caller), ranOn);
+        assertEquals(0, dispatcher.getQueueCapacity());
+        assertThrows(IllegalStateException.class, () -> dispatcher.dispatch("principal", () -> {
+            throw new IllegalStateException();
+        }));
+    }
+
+    @Test
+    void listenerLogsOnTheDispatcherThread() throws Exception {
+        dispatcher = new AuditEventDispatcher(true, 2, 10);
+        UaaAuditService auditService = mock(UaaAuditService.class);
+        Authentication authentication = mock(Authentication.class);
+        when(authentication.getName()).thenReturn("name");
+        Thread caller = Thread.currentThread();
+        List<Thread> ranOn = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch logged = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            ranOn.add(Thread.currentThread());
+            logged.countDown();
+            return null;
+        }).when(auditService).log(isA(AuditEvent.class), eq("zone-id"));
+
+        new AuditListener(auditService, dispatcher).onApplicationEvent(new UserNotFoundEvent(authentication, "zone-id"));
+
+        assertTrue(logged.await(5, TimeUnit.SECONDS));
+        verify(auditService).log(isA(AuditEvent.class), eq("zone-id"));
+        assertNotEquals(caller, ranOn.get(0));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
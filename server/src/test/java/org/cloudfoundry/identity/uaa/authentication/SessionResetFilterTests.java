@@ -15,6 +15,7 @@
 
 package org.cloudfoundry.identity.uaa.authentication;
 
+import org.cloudfoundry.identity.uaa.account.event.PasswordChangeEvent;
 import org.cloudfoundry.identity.uaa.constants.OriginKeys;
 import org.cloudfoundry.identity.uaa.user.InMemoryUaaUserDatabase;
 import org.cloudfoundry.identity.uaa.user.UaaUser;
@@ -44,6 +45,7 @@ import java.util.List;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -206,6 +208,34 @@ public class SessionResetFilterTests {
         verify(session, times(1)).invalidate();
     }
 
+    @Test
+    public void passwordChangeTimeIsReusedUntilThePasswordChanges() throws Exception {
+        userDatabase = spy(userDatabase);
+        filter = new SessionResetFilter(new DefaultRedirectStrategy(), "/login", userDatabase);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        filter.doFilterInternal(request, response, chain);
+        filter.doFilterInternal(request, response, chain);
+        verify(userDatabase, times(1)).retrievePasswordLastModified(user.getId());
+        verify(chain, times(2)).doFilter(request, response);
+
+        filter.onApplicationEvent(new PasswordChangeEvent("Password changed", user, authentication, IdentityZone.getUaaZoneId()));
+        filter.doFilterInternal(request, response, chain);
+        verify(userDatabase, times(2)).retrievePasswordLastModified(user.getId());
+    }
+
+    @Test
+    public void passwordChangeTimeIsReadOnEveryRequestWithoutCache() throws Exception {
+        userDatabase = spy(userDatabase);
+        filter = new SessionResetFilter(new DefaultRedirectStrategy(), "/login", userDatabase);
+        filter.setPasswordChangeCacheTtlSeconds(0);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        filter.doFilterInternal(request, response, chain);
+        filter.doFilterInternal(request, response, chain);
+        verify(userDatabase, times(2)).retrievePasswordLastModified(user.getId());
+    }
+
     protected long dropMilliSeconds(long time) {
         return ( time / 1000l ) * 1000l;
     }
@@ -2,6 +2,7 @@ package org.cloudfoundry.identity.uaa.authentication;
 
 import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
 import org.cloudfoundry.identity.uaa.login.util.RandomValueStringGenerator;
+import org.cloudfoundry.identity.uaa.util.beans.BackwardsCompatibleDelegatingPasswordEncoder;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.MultitenantJdbcClientDetailsService;
@@ -13,12 +14,15 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.security.oauth2.provider.client.BaseClientDetails;
 import org.springframework.security.oauth2.provider.client.ClientDetailsUserDetailsService;
 
 import static org.cloudfoundry.identity.uaa.oauth.client.ClientDetailsModification.SECRET;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -90,4 +94,31 @@ class UaaClientAuthenticationProviderTest {
         jdbcClientDetailsService.addClientSecret(client.getClientId(), "secret2", IdentityZoneHolder.get().getId());
         assertThrows(AuthenticationException.class, () -> testClientAuthentication(getToken(client.getClientId(), "secret3")));
     }
+
+    @Test
+    void provider_rehashes_legacy_client_secret_on_authentication() {
+        PasswordEncoder currentEncoder = new BackwardsCompatibleDelegatingPasswordEncoder(new BCryptPasswordEncoder(5), 5);
+        String legacyHash = new BCryptPasswordEncoder(4).encode(SECRET);
+        String otherHash = currentEncoder.encode("secret2");
+        jdbcTemplate.update("update oauth_client_details set client_secret = ? where client_id = ?", legacyHash + " " + otherHash, client.getClientId());
+        authenticationProvider = new ClientDetailsAuthenticationProvider(new ClientDetailsUserDetailsService(jdbcClientDetailsService), currentEncoder);
+        authenticationProvider.setClientDetailsService(jdbcClientDetailsService);
+
+        testClientAuthentication(getToken(client.getClientId(), SECRET));
+        assertEquals(legacyHash + " " + otherHash, storedSecret(), "hashes are kept unless rehashing is enabled");
+
+        authenticationProvider.setRehashOnLogin(true);
+        testClientAuthentication(getToken(client.getClientId(), SECRET));
+
+        String[] hashes = storedSecret().split(" ");
+        assertEquals(2, hashes.length);
+        assertFalse(currentEncoder.upgradeEncoding(hashes[0]));
+        assertTrue(currentEncoder.matches(SECRET, hashes[0]));
+        assertEquals(otherHash, hashes[1]);
+        testClientAuthentication(getToken(client.getClientId(), "secret2"));
+    }
+
+    private String storedSecret() {
+        return jdbcTemplate.queryForObject("select client_secret from oauth_client_details where client_id = ?", String.class, client.getClientId());
+    }
 }
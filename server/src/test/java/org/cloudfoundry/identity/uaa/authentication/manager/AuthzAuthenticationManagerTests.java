@@ -133,6 +133,26 @@ class AuthzAuthenticationManagerTests {
         assertEquals("auser", ((IdentityProviderAuthenticationSuccessEvent) events.get(0)).getUser().getUsername());
     }
 
+    @Test
+    void successfulAuthenticationRehashesPasswordWhenEnabled() {
+        PasswordEncoder upgradingEncoder = mock(PasswordEncoder.class);
+        when(upgradingEncoder.matches("password", user.getPassword())).thenReturn(true);
+        when(upgradingEncoder.upgradeEncoding(user.getPassword())).thenReturn(true);
+        when(upgradingEncoder.encode("password")).thenReturn("rehashed");
+        when(db.retrieveUserByName("auser", OriginKeys.UAA)).thenReturn(user);
+
+        AccountLoginPolicy accountLoginPolicy = mgr.getAccountLoginPolicy();
+        mgr = new AuthzAuthenticationManager(db, upgradingEncoder, providerProvisioning, mockHttpSession);
+        mgr.setOrigin(OriginKeys.UAA);
+        mgr.setAccountLoginPolicy(accountLoginPolicy);
+        mgr.authenticate(createAuthRequest("auser", "password"));
+        verify(db, times(0)).updatePasswordHash(anyString(), anyString(), anyString());
+
+        mgr.setRehashOnLogin(true);
+        assertNotNull(mgr.authenticate(createAuthRequest("auser", "password")));
+        verify(db).updatePasswordHash(user.getId(), user.getPassword(), "rehashed");
+    }
+
     @Test
     void unsuccessfulPasswordExpired() {
         IdentityProvider<UaaIdentityProviderDefinition> provider = new IdentityProvider<>();
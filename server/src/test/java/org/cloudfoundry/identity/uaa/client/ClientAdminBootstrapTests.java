@@ -3,7 +3,9 @@ package org.cloudfoundry.identity.uaa.client;
 import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
 import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.authentication.SystemAuthentication;
+import org.cloudfoundry.identity.uaa.impl.config.BootstrapSectionStore;
 import org.cloudfoundry.identity.uaa.oauth.client.ClientConstants;
+import org.cloudfoundry.identity.uaa.test.TestUtils;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
 import org.cloudfoundry.identity.uaa.zone.MultitenantJdbcClientDetailsService;
 import org.cloudfoundry.identity.uaa.zone.beans.IdentityZoneManager;
@@ -134,6 +136,78 @@ class ClientAdminBootstrapTests {
         }
     }
 
+    @Nested
+    @WithDatabaseContext
+    class WithSectionStore {
+        private BootstrapSectionStore sectionStore;
+        private String clientId;
+
+        @BeforeEach
+        void setUp() {
+            TestUtils.deleteFrom(jdbcTemplate, BootstrapSectionStore.TABLE_NAME);
+            sectionStore = new BootstrapSectionStore(jdbcTemplate);
+            sectionStore.setEnabled(true);
+            clientId = "section-" + randomValueStringGenerator.generate().toLowerCase();
+            Map<String, Object> map = new HashMap<>();
+            map.put("authorized-grant-types", "client_credentials");
+            map.put("secret", "bar");
+            clients.put(clientId, map);
+        }
+
+        @Test
+        void unchangedClientsAreSkipped() {
+            newBootstrap(1).afterPropertiesSet();
+            newBootstrap(1).afterPropertiesSet();
+            verify(multitenantJdbcClientDetailsService, times(1)).addClientDetails(any(), anyString());
+
+            clients.get(clientId).put("scope", "openid");
+            newBootstrap(1).afterPropertiesSet();
+            verify(multitenantJdbcClientDetailsService, times(2)).addClientDetails(any(), anyString());
+            assertTrue(multitenantJdbcClientDetailsService.loadClientByClientId(clientId).getScope().contains("openid"));
+        }
+
+        @Test
+        void deletedClientsAreAddedAgain() {
+            newBootstrap(1).afterPropertiesSet();
+            multitenantJdbcClientDetailsService.removeClientDetails(clientId);
+
+            newBootstrap(1).afterPropertiesSet();
+
+            assertNotNull(multitenantJdbcClientDetailsService.loadClientByClientId(clientId));
+        }
+
+        @Test
+        void changedClientsAreAddedInParallel() {
+            for (int i = 0; i < 5; i++) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("authorized-grant-types", "client_credentials");
+                map.put("secret", "secret-" + i);
+                clients.put(clientId + "-" + i, map);
+            }
+
+            newBootstrap(4).afterPropertiesSet();
+
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(multitenantJdbcClientDetailsService.loadClientByClientId(clientId + "-" + i));
+            }
+        }
+
+        private ClientAdminBootstrap newBootstrap(int parallelism) {
+            ClientAdminBootstrap bootstrap = new ClientAdminBootstrap(
+                    passwordEncoder,
+                    multitenantJdbcClientDetailsService,
+                    clientMetadataProvisioning,
+                    true,
+                    clients,
+                    Collections.emptySet(),
+                    Collections.emptySet(),
+                    jdbcTemplate);
+            bootstrap.setSectionStore(sectionStore);
+            bootstrap.setParallelism(parallelism);
+            return bootstrap;
+        }
+    }
+
     @Test
     void simpleAddClient() throws Exception {
         simpleAddClient("foo", clientAdminBootstrap, multitenantJdbcClientDetailsService, clients);
@@ -102,4 +102,15 @@ public class PostgresDbMigrationIntegrationTest extends DbMigrationIntegrationTe
 
         migrationTestRunner.run(migrationTest);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void trigramIndexesAreBuiltWhenTheExtensionIsInstalled() {
+        flyway.migrate();
+
+        int extensions = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_extension WHERE extname = 'pg_trgm'", Integer.class);
+        int validIndexes = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname LIKE '%\\_trgm' AND i.indisvalid",
+                Integer.class);
+        assertThat(validIndexes, is(extensions == 0 ? 0 : 5));
+    }
+}
@@ -2,11 +2,17 @@ package org.cloudfoundry.identity.uaa.db.beans;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 
+import org.cloudfoundry.identity.uaa.db.beans.FlywayConfiguration.FlywayConfigurationWithMigration;
 import org.cloudfoundry.identity.uaa.db.beans.FlywayConfiguration.FlywayConfigurationWithMigration.ConfiguredWithMigrations;
 import org.cloudfoundry.identity.uaa.db.beans.FlywayConfiguration.FlywayConfigurationWithoutMigrations.ConfiguredWithoutMigrations;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationInfoService;
+import org.flywaydb.core.api.MigrationState;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,7 +36,7 @@ class FlywayConfigurationTest {
   @BeforeEach
   void setUp() {
     mockEnvironment = new MockEnvironment();
-    when(mockConditionContext.getEnvironment()).thenReturn(mockEnvironment);
+    lenient().when(mockConditionContext.getEnvironment()).thenReturn(mockEnvironment);
     configuredWithMigrations = new ConfiguredWithMigrations();
     configuredWithoutMigrations = new ConfiguredWithoutMigrations();
   }
@@ -64,4 +70,33 @@ class FlywayConfigurationTest {
     assertTrue(configuredWithMigrations.matches(mockConditionContext, null));
     assertFalse(configuredWithoutMigrations.matches(mockConditionContext, null));
   }
-}
\ No newline at end of file
+
+  @Test
+  void flywayConfiguration_SkipsMigrations_WhenTheSchemaIsUpToDate() {
+    MigrationInfoService info = mock(MigrationInfoService.class);
+    MigrationInfo success = migration(MigrationState.SUCCESS);
+    when(info.pending()).thenReturn(new MigrationInfo[0]);
+    when(info.applied()).thenReturn(new MigrationInfo[]{success});
+
+    assertTrue(FlywayConfigurationWithMigration.isUpToDate(info));
+  }
+
+  @Test
+  void flywayConfiguration_RunsMigrations_WhenMigrationsArePendingOrFailed() {
+    MigrationInfoService pending = mock(MigrationInfoService.class);
+    when(pending.pending()).thenReturn(new MigrationInfo[]{mock(MigrationInfo.class)});
+    MigrationInfoService failed = mock(MigrationInfoService.class);
+    MigrationInfo failure = migration(MigrationState.FAILED);
+    when(failed.pending()).thenReturn(new MigrationInfo[0]);
+    when(failed.applied()).thenReturn(new MigrationInfo[]{failure});
+
+    assertFalse(FlywayConfigurationWithMigration.isUpToDate(pending));
+    assertFalse(FlywayConfigurationWithMigration.isUpToDate(failed));
+  }
+
+  private static MigrationInfo migration(MigrationState state) {
+    MigrationInfo migration = mock(MigrationInfo.class);
+    when(migration.getState()).thenReturn(state);
+    return migration;
+  }
+}
@@ -0,0 +1,91 @@
+package org.cloudfoundry.identity.uaa.impl.config;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.test.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithDatabaseContext
+class BootstrapSectionStoreTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private BootstrapSectionStore store;
+
+    @BeforeEach
+    void setUp() {
+        TestUtils.deleteFrom(jdbcTemplate, BootstrapSectionStore.TABLE_NAME);
+        store = new BootstrapSectionStore(jdbcTemplate);
+        store.setEnabled(true);
+    }
+
+    @Test
+    void appliedSectionsAreUnchangedUntilTheirConfigurationChanges() {
+        Map<String, Object> client = new HashMap<>();
+        client.put("scope", "openid");
+        client.put("secret", "secret");
+        store.recordApplied(Collections.singletonMap("clients/app", client));
+
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("secret", "secret");
+        reordered.put("scope", "openid");
+        assertTrue(store.load("clients/").isUnchanged("clients/app", reordered));
+
+        reordered.put("secret", "changed");
+        assertFalse(store.load("clients/").isUnchanged("clients/app", reordered));
+        assertFalse(store.load("clients/").isUnchanged("clients/other", client));
+        assertFalse(store.load("users/").isUnchanged("clients/app", client));
+    }
+
+    @Test
+    void sectionsAreRecordedAgain() {
+        store.recordApplied(Collections.singletonMap("groups", Arrays.asList("a", "b")));
+        store.recordApplied(Collections.singletonMap("groups", Arrays.asList("b", "a")));
+
+        assertFalse(store.load("groups").isUnchanged("groups", Arrays.asList("a", "b")));
+        assertTrue(store.load("groups").isUnchanged("groups", Arrays.asList("b", "a")));
+    }
+
+    @Test
+    void configurationIsStoredSalted() {
+        store.recordApplied(Collections.singletonMap("clients/a", "secret"));
+        store.recordApplied(Collections.singletonMap("clients/b", "secret"));
+
+        assertNotEquals(
+                jdbcTemplate.queryForObject("select hash from bootstrap_section where section = ?", String.class, "clients/a"),
+                jdbcTemplate.queryForObject("select hash from bootstrap_section where section = ?", String.class, "clients/b"));
+    }
+
+    @Test
+    void longSectionNamesAreShortened() {
+        String section = "clients/" + String.join("", Collections.nCopies(300, "x"));
+        store.recordApplied(Collections.singletonMap(section, "value"));
+
+        assertEquals(BootstrapSectionStore.MAX_SECTION_LENGTH, BootstrapSectionStore.key(section).length());
+        assertTrue(store.load("clients/").isUnchanged(section, "value"));
+        assertFalse(store.load("clients/").isUnchanged(section + "y", "value"));
+    }
+
+    @Test
+    void disabledStoreRecordsNothing() {
+        store.setEnabled(false);
+        store.recordApplied(Collections.singletonMap("groups", "value"));
+
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from bootstrap_section", Integer.class));
+        assertFalse(store.load("groups").isUnchanged("groups", "value"));
+    }
+}
@@ -1,5 +1,6 @@
 package org.cloudfoundry.identity.uaa.login;
 
+import org.cloudfoundry.identity.uaa.message.EmailOutbox;
 import org.cloudfoundry.identity.uaa.message.EmailService;
 import org.cloudfoundry.identity.uaa.message.MessageType;
 import org.cloudfoundry.identity.uaa.message.util.FakeJavaMailSender;
@@ -15,11 +16,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import javax.mail.Message;
 import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(PollutionPreventionExtension.class)
@@ -93,4 +98,26 @@ class EmailServiceTests {
         assertThat(fromAddress.getAddress(), equalTo("something-specific@bestcompany.example.com"));
         assertThat(fromAddress.getPersonal(), equalTo("Best Company"));
     }
+
+    @Test
+    void queuesMessagesWhenTheOutboxIsEnabled() {
+        EmailOutbox outbox = mock(EmailOutbox.class);
+        when(outbox.isEnabled()).thenReturn(true);
+        when(mockIdentityZoneManager.getCurrentIdentityZoneId()).thenReturn("zone-id");
+        EmailService emailService = new EmailService(
+                mailSender,
+                "http://login.example.com/login",
+                null,
+                mockIdentityZoneManager);
+        emailService.setOutbox(outbox);
+
+        emailService.sendMessage(
+                "user@example.com",
+                MessageType.CHANGE_EMAIL,
+                "Test Message",
+                "<html><body>hi</body></html>");
+
+        assertThat(mailSender.getSentMessages(), hasSize(0));
+        verify(outbox).add(eq("user@example.com"), any(MimeMessage.class), eq("zone-id"));
+    }
 }
@@ -0,0 +1,96 @@
+package org.cloudfoundry.identity.uaa.login;
+
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.IdentityProviderProvisioning;
+import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.provider.oauth.ExternalOAuthProviderConfigurator;
+import org.cloudfoundry.identity.uaa.provider.saml.SamlIdentityProviderConfigurator;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.MultitenancyFixture;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityProviderModifiedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LoginModelCacheTests {
+
+    private SamlIdentityProviderConfigurator samlConfigurator;
+    private ExternalOAuthProviderConfigurator oauthConfigurator;
+    private IdentityProviderProvisioning providerProvisioning;
+    private LoginModelCache cache;
+    private IdentityZone zone;
+    private IdentityProvider uaaProvider;
+
+    @BeforeEach
+    void setUp() {
+        samlConfigurator = mock(SamlIdentityProviderConfigurator.class);
+        oauthConfigurator = mock(ExternalOAuthProviderConfigurator.class);
+        providerProvisioning = mock(IdentityProviderProvisioning.class);
+        cache = new LoginModelCache(samlConfigurator, oauthConfigurator, providerProvisioning, 60);
+
+        zone = MultitenancyFixture.identityZone("zone-id", "zone");
+        zone.setLastModified(new Date(1000));
+        uaaProvider = new IdentityProvider().setOriginKey(OriginKeys.UAA).setIdentityZoneId("zone-id");
+        when(providerProvisioning.retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, "zone-id")).thenReturn(uaaProvider);
+        when(providerProvisioning.retrieveByOrigin(OriginKeys.LDAP, "zone-id")).thenThrow(new EmptyResultDataAccessException(1));
+        when(oauthConfigurator.retrieveAll(true, "zone-id")).thenReturn(Collections.emptyList());
+        when(samlConfigurator.getIdentityProviderDefinitionsForZone(zone)).thenReturn(Arrays.asList(
+                new SamlIdentityProviderDefinition().setIdpEntityAlias("saml-1"),
+                new SamlIdentityProviderDefinition().setIdpEntityAlias("saml-2")));
+    }
+
+    @Test
+    void modelIsBuiltOncePerZoneVersion() {
+        LoginModel model = cache.get(zone);
+
+        assertThat(cache.get(zone), sameInstance(model));
+        assertThat(model.getUaaProvider(), sameInstance(uaaProvider));
+        assertThat(model.getLdapProvider(), is(nullValue()));
+        verify(providerProvisioning, times(1)).retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, "zone-id");
+
+        zone.setLastModified(new Date(2000));
+        cache.get(zone);
+        verify(providerProvisioning, times(2)).retrieveByOriginIgnoreActiveFlag(OriginKeys.UAA, "zone-id");
+    }
+
+    @Test
+    void providerChangesRebuildTheModel() {
+        cache.get(zone);
+
+        cache.onApplicationEvent(IdentityProviderModifiedEvent.identityProviderModified(uaaProvider, "zone-id"));
+        cache.get(zone);
+        cache.onApplicationEvent(new EntityDeletedEvent<>(uaaProvider, mock(Authentication.class), "zone-id"));
+        cache.get(zone);
+
+        verify(oauthConfigurator, times(3)).retrieveAll(true, "zone-id");
+    }
+
+    @Test
+    void samlDefinitionsAreFilteredPerRequest() {
+        LoginModel model = cache.get(zone);
+
+        assertThat(model.getSamlDefinitions(null), hasSize(2));
+        assertThat(model.getSamlDefinitions(Collections.singletonList("saml-2")).get(0).getIdpEntityAlias(), is("saml-2"));
+        assertThat(model.getSamlDefinitions(Collections.singletonList("other")), hasSize(0));
+
+        model.getSamlDefinitions(null).clear();
+        assertThat(model.getSamlDefinitions(null), hasSize(2));
+    }
+}
@@ -0,0 +1,137 @@
+package org.cloudfoundry.identity.uaa.message;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.message.util.FakeJavaMailSender;
+import org.cloudfoundry.identity.uaa.test.TestUtils;
+import org.cloudfoundry.identity.uaa.util.TimeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailSendException;
+
+import javax.mail.Message;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+@WithDatabaseContext
+class EmailOutboxTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private FakeJavaMailSender mailSender;
+    private TimeService timeService;
+    private EmailOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        TestUtils.deleteFrom(jdbcTemplate, EmailOutbox.TABLE_NAME);
+        mailSender = spy(new FakeJavaMailSender());
+        timeService = mock(TimeService.class);
+        when(timeService.getCurrentTimeMillis()).thenReturn(1000L);
+        outbox = new EmailOutbox(jdbcTemplate, mailSender, timeService);
+        outbox.setEnabled(false);
+        outbox.setInitialBackoffMillis(100);
+        outbox.setMaxBackoffMillis(250);
+        outbox.setMaxAttempts(3);
+        outbox.afterPropertiesSet();
+    }
+
+    @Test
+    void queuedMessagesAreSentAndRemoved() throws Exception {
+        outbox.add("user@example.com", message("user@example.com", "<html><body>hi</body></html>"), "zone-id");
+        assertEquals(0, mailSender.getSentMessages().size());
+        assertEquals(1, outbox.getQueueDepth());
+
+        assertEquals(1, outbox.sendDueMessages());
+
+        assertEquals(1, mailSender.getSentMessages().size());
+        FakeJavaMailSender.MimeMessageWrapper sent = mailSender.getSentMessages().get(0);
+        assertEquals(new InternetAddress("user@example.com"), sent.getRecipients(Message.RecipientType.TO).get(0));
+        assertEquals("<html><body>hi</body></html>", sent.getContentString());
+        assertEquals(0, outbox.getQueueDepth());
+        assertEquals(1, outbox.getSentCount());
+        assertEquals(0, outbox.sendDueMessages());
+    }
+
+    @Test
+    void failedMessagesBackOffAndEndUpAsDeadLetters() throws Exception {
+        doThrow(new MailSendException("smtp is down")).when(mailSender).send(any(MimeMessage[].class));
+        outbox.add("user@example.com", message("user@example.com", "hi"), "zone-id");
+
+        assertEquals(1, outbox.sendDueMessages());
+        assertEquals(0, outbox.sendDueMessages(), "message is not due before the backoff has passed");
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(1100L);
+        assertEquals(1, outbox.sendDueMessages());
+        when(timeService.getCurrentTimeMillis()).thenReturn(1299L);
+        assertEquals(0, outbox.sendDueMessages(), "backoff doubles after each attempt");
+        when(timeService.getCurrentTimeMillis()).thenReturn(1300L);
+        assertEquals(1, outbox.sendDueMessages());
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(10000L);
+        assertEquals(0, outbox.sendDueMessages());
+        assertEquals(0, outbox.getQueueDepth());
+        assertEquals(1, outbox.getDeadLetterCount());
+        assertEquals(3, outbox.getFailedAttemptCount());
+        assertEquals(1, outbox.getDeadLetteredCount());
+        assertEquals("smtp is down", jdbcTemplate.queryForObject("select last_error from email_outbox", String.class));
+    }
+
+    @Test
+    void deadLettersArePurgedAfterTheirRetention() throws Exception {
+        doThrow(new MailSendException("smtp is down")).when(mailSender).send(any(MimeMessage[].class));
+        outbox.setMaxAttempts(1);
+        outbox.setDeadLetterRetentionMillis(500);
+        outbox.add("dead@example.com", message("dead@example.com", "hi"), "zone-id");
+        assertEquals(1, outbox.sendDueMessages());
+        outbox.add("queued@example.com", message("queued@example.com", "hi"), "zone-id");
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(1500L);
+        assertEquals(0, outbox.purgeDeadLetters(), "dead letters are kept for their retention");
+        when(timeService.getCurrentTimeMillis()).thenReturn(1501L);
+        assertEquals(1, outbox.purgeDeadLetters());
+
+        assertEquals(0, outbox.getDeadLetterCount());
+        assertEquals(1, outbox.getQueueDepth(), "queued messages are never purged");
+    }
+
+    @Test
+    void deadLettersAreKeptWithoutRetention() throws Exception {
+        doThrow(new MailSendException("smtp is down")).when(mailSender).send(any(MimeMessage[].class));
+        outbox.setMaxAttempts(1);
+        outbox.setDeadLetterRetentionMillis(0);
+        outbox.add("dead@example.com", message("dead@example.com", "hi"), "zone-id");
+        outbox.sendDueMessages();
+
+        when(timeService.getCurrentTimeMillis()).thenReturn(Long.MAX_VALUE);
+        assertEquals(0, outbox.purgeDeadLetters());
+        assertEquals(1, outbox.getDeadLetterCount());
+    }
+
+    @Test
+    void backoffIsCapped() {
+        assertEquals(100, outbox.backoff(1));
+        assertEquals(200, outbox.backoff(2));
+        assertEquals(250, outbox.backoff(3));
+        assertTrue(outbox.backoff(100) <= 250);
+    }
+
+    private MimeMessage message(String to, String content) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        message.addFrom(new InternetAddress[]{new InternetAddress("admin@example.com")});
+        message.addRecipients(Message.RecipientType.TO, to);
+        message.setSubject("Test Message");
+        message.setContent(content, "text/html");
+        return message;
+    }
+}
@@ -0,0 +1,83 @@
+package org.cloudfoundry.identity.uaa.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+class StartupTimeRecorderTests {
+
+    private StartupTimeRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new StartupTimeRecorder();
+    }
+
+    @Test
+    void dependenciesAreNotCountedTwice() {
+        create("parent", () -> create("child", () -> sleep(40)));
+
+        Map<String, Long> slowest = recorder.getSlowestBeans();
+        assertThat(slowest.keySet(), contains("child", "parent"));
+        assertThat(slowest.get("child"), greaterThanOrEqualTo(40L));
+        assertThat(slowest.get("parent"), lessThan(40L));
+    }
+
+    @Test
+    void failedCreationsAreDiscarded() {
+        create("parent", () -> recorder.postProcessBeforeInstantiation(Object.class, "failed"));
+        recorder.postProcessAfterInitialization(new Object(), "factoryBeanProduct");
+
+        assertThat(recorder.getSlowestBeans().keySet(), contains("parent"));
+    }
+
+    @Test
+    void reportIsLimitedAndTakenOnce() {
+        recorder.setReportSize(1);
+        create("first", () -> sleep(5));
+        create("second", () -> {});
+
+        recorder.onApplicationEvent(new ContextRefreshedEvent(new StaticApplicationContext()));
+        long startupTime = recorder.getStartupTime();
+        sleep(5);
+        recorder.onApplicationEvent(new ContextRefreshedEvent(new StaticApplicationContext()));
+
+        assertThat(recorder.getSlowestBeans().keySet(), contains("first"));
+        assertThat(recorder.getStartupTime(), is(startupTime));
+        assertThat(startupTime, greaterThanOrEqualTo(5L));
+    }
+
+    @Test
+    void beansCreatedOnceReadyAreNotRecorded() {
+        create("startup", () -> {});
+        recorder.onApplicationEvent(new ContextRefreshedEvent(new StaticApplicationContext()));
+
+        create("lazy", () -> {});
+        recorder.postProcessBeforeInstantiation(Object.class, "failedLazy");
+
+        assertThat(recorder.getSlowestBeans().keySet(), contains("startup"));
+    }
+
+    private void create(String beanName, Runnable dependencies) {
+        recorder.postProcessBeforeInstantiation(Object.class, beanName);
+        dependencies.run();
+        recorder.postProcessAfterInitialization(new Object(), beanName);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
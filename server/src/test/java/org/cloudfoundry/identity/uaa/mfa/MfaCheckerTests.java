@@ -2,10 +2,13 @@ package org.cloudfoundry.identity.uaa.mfa;
 
 import com.google.common.collect.Lists;
 import org.cloudfoundry.identity.uaa.login.util.RandomValueStringGenerator;
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
 import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.cloudfoundry.identity.uaa.zone.IdentityZoneHolder;
 import org.cloudfoundry.identity.uaa.zone.IdentityZoneProvisioning;
 import org.cloudfoundry.identity.uaa.zone.MfaConfig;
 import org.cloudfoundry.identity.uaa.zone.MultitenancyFixture;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtensionContext;
@@ -15,12 +18,15 @@ import org.junit.jupiter.params.provider.ArgumentsProvider;
 import org.junit.jupiter.params.provider.ArgumentsSource;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.stream.Stream;
 
 import static org.cloudfoundry.identity.uaa.constants.OriginKeys.*;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.*;
 
 class MfaCheckerTests {
@@ -42,6 +48,11 @@ class MfaCheckerTests {
         mfaChecker = new MfaChecker(mockIdentityZoneProvisioning);
     }
 
+    @AfterEach
+    void clearZone() {
+        IdentityZoneHolder.clear();
+    }
+
     static class BooleanArgumentsProvider implements ArgumentsProvider {
 
         @Override
@@ -98,4 +109,40 @@ class MfaCheckerTests {
         assertThat(mfaChecker.isRequired(identityZone, SAML), is(false));
         assertThat(mfaChecker.isRequired(identityZone, "other"), is(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    void isMfaEnabledForCurrentZoneIdDoesNotRetrieveTheZone() {
+        identityZone.getConfig().getMfaConfig().setEnabled(true);
+        IdentityZoneHolder.set(identityZone);
+
+        assertThat(mfaChecker.isMfaEnabledForZoneId(identityZone.getId()), is(true));
+        verifyNoInteractions(mockIdentityZoneProvisioning);
+    }
+
+    @Test
+    void providerIsLookedUpOncePerZoneVersion() {
+        MfaProviderProvisioning mockMfaProviderProvisioning = mock(MfaProviderProvisioning.class);
+        MfaProvider provider = new MfaProvider().setName("mfa-provider").setIdentityZoneId(identityZone.getId());
+        when(mockMfaProviderProvisioning.retrieveByName("mfa-provider", identityZone.getId())).thenReturn(provider);
+        mfaChecker.setMfaProviderProvisioning(mockMfaProviderProvisioning);
+        identityZone.setLastModified(new Date(1000));
+        identityZone.getConfig().getMfaConfig().setEnabled(true).setProviderName("mfa-provider");
+
+        assertSame(provider, mfaChecker.getMfaProvider(identityZone));
+        assertSame(provider, mfaChecker.getMfaProvider(identityZone));
+        assertThat(mfaChecker.isRequired(identityZone, UAA), is(true));
+        verify(mockMfaProviderProvisioning, times(1)).retrieveByName("mfa-provider", identityZone.getId());
+
+        identityZone.setLastModified(new Date(2000));
+        assertSame(provider, mfaChecker.getMfaProvider(identityZone));
+        verify(mockMfaProviderProvisioning, times(2)).retrieveByName("mfa-provider", identityZone.getId());
+
+        mfaChecker.onApplicationEvent(new EntityDeletedEvent<>(provider, null, identityZone.getId()));
+        assertSame(provider, mfaChecker.getMfaProvider(identityZone));
+        verify(mockMfaProviderProvisioning, times(3)).retrieveByName("mfa-provider", identityZone.getId());
+
+        identityZone.getConfig().getMfaConfig().setEnabled(false);
+        assertNull(mfaChecker.getMfaProvider(identityZone));
+        assertThat(mfaChecker.isMfaEnabled(identityZone), is(false));
+    }
+}
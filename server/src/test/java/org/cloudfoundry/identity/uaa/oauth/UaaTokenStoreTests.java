@@ -166,6 +166,34 @@ class UaaTokenStoreTests {
         assertEquals(principal, authentication.getUserAuthentication().getPrincipal());
     }
 
+    @Test
+    void compactFormatIsSmallerAndRoundTrips() {
+        store.setCompactFormat(true);
+        byte[] compact = store.serializeOauth2Authentication(uaaAuthentication);
+        store.setCompactFormat(false);
+        byte[] json = store.serializeOauth2Authentication(uaaAuthentication);
+
+        assertTrue(UaaTokenStore.isCompactFormat(compact));
+        assertFalse(UaaTokenStore.isCompactFormat(json));
+        assertTrue(compact.length < json.length);
+
+        OAuth2Authentication fromCompact = store.deserializeOauth2Authentication(compact);
+        OAuth2Authentication fromJson = store.deserializeOauth2Authentication(json);
+        assertEquals(fromJson.getOAuth2Request(), fromCompact.getOAuth2Request());
+        assertEquals(principal, fromCompact.getUserAuthentication().getPrincipal());
+    }
+
+    @Test
+    void codesWrittenInJsonFormatAreConsumedAfterUpgrade() {
+        store.setCompactFormat(false);
+        String code = store.createAuthorizationCode(usernamePasswordAuthentication);
+        store.setCompactFormat(true);
+
+        OAuth2Authentication authentication = store.consumeAuthorizationCode(code);
+        assertEquals(principal, authentication.getUserAuthentication().getPrincipal());
+        assertEquals(usernamePasswordAuthentication.getOAuth2Request().getScope(), authentication.getOAuth2Request().getScope());
+    }
+
     @Test
     void retrieveToken() {
         String code = store.createAuthorizationCode(clientAuthentication);
@@ -163,6 +163,13 @@ public class LdapIdentityProviderDefinitionTest {
         assertNotNull(environment.getProperty("ldap.groups.maxSearchDepth"));
         assertEquals("100", environment.getProperty("ldap.groups.maxSearchDepth"));
 
+        //nested group searches
+        assertEquals("50", environment.getProperty("ldap.groups.batchSize"));
+        assertEquals("300", environment.getProperty("ldap.groups.cacheTtlSeconds"));
+        assertEquals("10000", environment.getProperty("ldap.groups.cacheMaxSize"));
+        deserialized.setGroupCacheTtlSeconds(0);
+        assertEquals("0", LdapUtils.getLdapConfigurationEnvironment(deserialized).getProperty("ldap.groups.cacheTtlSeconds"));
+
         //skip ssl verification
         assertNotNull(environment.getProperty("ldap.ssl.skipverification"));
         assertEquals("true", environment.getProperty("ldap.ssl.skipverification"));
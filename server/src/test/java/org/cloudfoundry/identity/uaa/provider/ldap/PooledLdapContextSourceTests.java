@@ -0,0 +1,69 @@
+package org.cloudfoundry.identity.uaa.provider.ldap;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ldap.core.support.LdapContextSource;
+
+import javax.naming.directory.DirContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PooledLdapContextSourceTests {
+
+    private InMemoryDirectoryServer directoryServer;
+    private PooledLdapContextSource contextSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=test,dc=com");
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        config.addAdditionalBindCredentials("cn=admin,dc=test,dc=com", "adminsecret");
+        directoryServer = new InMemoryDirectoryServer(config);
+        directoryServer.add("dn: dc=test,dc=com", "objectClass: top", "objectClass: domain", "dc: test");
+        directoryServer.startListening();
+
+        LdapContextSource ldapContextSource = new LdapContextSource();
+        ldapContextSource.setUrl("ldap://localhost:" + directoryServer.getListenPort());
+        ldapContextSource.setUserDn("cn=admin,dc=test,dc=com");
+        ldapContextSource.setPassword("adminsecret");
+        ldapContextSource.afterPropertiesSet();
+        contextSource = new PooledLdapContextSource(ldapContextSource, 2, true, 60000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        contextSource.destroy();
+        directoryServer.shutDown(true);
+    }
+
+    @Test
+    void readOnlyContextsAreReused() throws Exception {
+        DirContext first = contextSource.getReadOnlyContext();
+        assertEquals(1, contextSource.getActiveCount());
+        first.close();
+        assertEquals(0, contextSource.getActiveCount());
+        assertEquals(1, contextSource.getIdleCount());
+
+        DirContext second = contextSource.getReadOnlyContext();
+        assertEquals(0, contextSource.getIdleCount());
+        second.close();
+        assertEquals(1, contextSource.getIdleCount());
+    }
+
+    @Test
+    void userBindsBypassThePool() throws Exception {
+        contextSource.getContext("cn=admin,dc=test,dc=com", "adminsecret").close();
+        assertEquals(0, contextSource.getActiveCount());
+        assertEquals(0, contextSource.getIdleCount());
+    }
+
+    @Test
+    void poolSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new PooledLdapContextSource(new LdapContextSource(), 0, true, 0));
+    }
+}
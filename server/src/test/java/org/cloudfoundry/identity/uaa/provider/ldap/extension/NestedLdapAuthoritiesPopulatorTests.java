@@ -0,0 +1,156 @@
+package org.cloudfoundry.identity.uaa.provider.ldap.extension;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+class NestedLdapAuthoritiesPopulatorTests {
+
+    private static final String USER_DN = "cn=user,ou=users,dc=test,dc=com";
+
+    private InMemoryDirectoryServer directoryServer;
+    private LdapContextSource contextSource;
+    private final AtomicInteger searches = new AtomicInteger();
+    private final Set<String> requestedAttributes = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startLdap() throws Exception {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=test,dc=com");
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+            @Override
+            public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+                searches.incrementAndGet();
+                requestedAttributes.addAll(request.getRequest().getAttributeList());
+            }
+        });
+        directoryServer = new InMemoryDirectoryServer(config);
+        directoryServer.add("dn: dc=test,dc=com", "objectClass: top", "objectClass: domain", "dc: test");
+        directoryServer.add("dn: ou=users,dc=test,dc=com", "objectClass: organizationalUnit", "ou: users");
+        directoryServer.add("dn: ou=groups,dc=test,dc=com", "objectClass: organizationalUnit", "ou: groups");
+        directoryServer.add("dn: " + USER_DN, "objectClass: person", "cn: user", "sn: user");
+        // user -> g1 -> g2 -> g3 -> g1 (circular), g1 -> g4 and g2 -> g4 (diamond), user -> g5
+        addGroup("g1", USER_DN, group("g3"));
+        addGroup("g2", group("g1"));
+        addGroup("g3", group("g2"));
+        addGroup("g4", group("g1"), group("g2"));
+        addGroup("g5", USER_DN);
+        directoryServer.startListening();
+
+        contextSource = new LdapContextSource();
+        contextSource.setUrl("ldap://localhost:" + directoryServer.getListenPort());
+        contextSource.setAnonymousReadOnly(true);
+        contextSource.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void stopLdap() {
+        directoryServer.shutDown(true);
+    }
+
+    @Test
+    void nestedGroupsAreResolvedOneLevelPerSearch() {
+        NestedLdapAuthoritiesPopulator populator = populator("member={0}");
+
+        assertThat(roles(populator), containsInAnyOrder("g1", "g2", "g3", "g4", "g5"));
+        // user, {g1, g5}, {g2, g4}, {g3}
+        assertThat(searches.get(), is(4));
+    }
+
+    @Test
+    void parentGroupsAreCachedBetweenLogins() {
+        NestedLdapAuthoritiesPopulator populator = populator("member={0}");
+        populator.setGroupCache(60, 100);
+        roles(populator);
+        searches.set(0);
+
+        assertThat(roles(populator), containsInAnyOrder("g1", "g2", "g3", "g4", "g5"));
+        assertThat(searches.get(), is(1));
+    }
+
+    @Test
+    void zeroTtlDisablesTheCache() {
+        NestedLdapAuthoritiesPopulator populator = populator("member={0}");
+        populator.setGroupCache(0, 100);
+        roles(populator);
+        searches.set(0);
+
+        assertThat(roles(populator), containsInAnyOrder("g1", "g2", "g3", "g4", "g5"));
+        assertThat(searches.get(), is(4));
+    }
+
+    @Test
+    void memberListsAreNotRead() {
+        roles(populator("member={0}"));
+
+        assertThat(requestedAttributes, contains("cn"));
+    }
+
+    @Test
+    void complexFiltersAreSearchedPerGroup() {
+        NestedLdapAuthoritiesPopulator populator = populator("(&(objectClass=groupOfNames)(member={0}))");
+
+        assertThat(roles(populator), containsInAnyOrder("g1", "g2", "g3", "g4", "g5"));
+        assertThat(searches.get(), greaterThan(4));
+    }
+
+    @Test
+    void maxSearchDepthLimitsTheNumberOfLevels() {
+        NestedLdapAuthoritiesPopulator populator = populator("member={0}");
+        populator.setMaxSearchDepth(2);
+
+        assertThat(roles(populator), containsInAnyOrder("g1", "g2", "g4", "g5"));
+    }
+
+    private Set<String> roles(NestedLdapAuthoritiesPopulator populator) {
+        return populator.getGroupMembershipRoles(USER_DN, "user")
+                .stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+    }
+
+    private NestedLdapAuthoritiesPopulator populator(String groupSearchFilter) {
+        NestedLdapAuthoritiesPopulator populator = new NestedLdapAuthoritiesPopulator(contextSource, "ou=groups,dc=test,dc=com");
+        populator.setGroupRoleAttribute("cn");
+        populator.setRolePrefix("");
+        populator.setConvertToUpperCase(false);
+        populator.setGroupSearchFilter(groupSearchFilter);
+        populator.setAttributeNames(new HashSet<>(Collections.singletonList("cn")));
+        return populator;
+    }
+
+    private void addGroup(String name, String... members) throws Exception {
+        List<String> ldif = new ArrayList<>(Arrays.asList("dn: " + group(name), "objectClass: groupOfNames", "cn: " + name));
+        for (String member : members) {
+            ldif.add("member: " + member);
+        }
+        directoryServer.add(ldif.toArray(new String[0]));
+    }
+
+    private static String group(String name) {
+        return "cn=" + name + ",ou=groups,dc=test,dc=com";
+    }
+}
@@ -1,9 +1,12 @@
 package org.cloudfoundry.identity.uaa.scim.bootstrap;
 
 import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.cloudfoundry.identity.uaa.impl.config.BootstrapSectionStore;
 import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
 import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupMembershipManager;
 import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupProvisioning;
 import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimUserProvisioning;
@@ -27,14 +30,19 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WithDatabaseContext
@@ -148,6 +156,42 @@ class ScimGroupBootstrapTests {
         assertEquals(5, mDB.getMembers(bootstrap.getGroup("org1.dev").getId(), false, IdentityZone.getUaaZoneId()).size());
     }
 
+    @Test
+    void unchangedGroupsAreSkipped() {
+        IdentityZoneHolder.get().getConfig().getUserConfig().setDefaultGroups(emptyList());
+        BootstrapSectionStore sectionStore = newSectionStore();
+        List<String> membership = Collections.singletonList("org1.dev|dev1,dev2");
+        newBootstrap(sectionStore, membership, mDB).afterPropertiesSet();
+
+        JdbcScimGroupMembershipManager spy = spy(mDB);
+        newBootstrap(sectionStore, membership, spy).afterPropertiesSet();
+
+        verify(spy, never()).addMember(anyString(), any(), anyString());
+    }
+
+    @Test
+    void deletedMembersAreAddedAgainWhenTheGroupsAreUnchanged() {
+        IdentityZoneHolder.get().getConfig().getUserConfig().setDefaultGroups(emptyList());
+        BootstrapSectionStore sectionStore = newSectionStore();
+        List<String> membership = Collections.singletonList("org1.dev|dev1,dev2");
+        newBootstrap(sectionStore, membership, mDB).afterPropertiesSet();
+
+        // deleted through the API and recreated by the user bootstrap with a new id
+        ScimUser dev1 = uDB.query("username eq \"dev1\"", IdentityZone.getUaaZoneId()).get(0);
+        mDB.removeMembersByMemberId(dev1.getId(), IdentityZone.getUaaZoneId());
+        uDB.setDeactivateOnDelete(false);
+        uDB.delete(dev1.getId(), dev1.getVersion(), IdentityZone.getUaaZoneId());
+        ScimUser recreated = uDB.createUser(TestUtils.scimUserInstance("dev1"), "test", IdentityZone.getUaaZoneId());
+
+        newBootstrap(sectionStore, membership, mDB).afterPropertiesSet();
+
+        List<String> memberIds = mDB.getMembers(bootstrap.getGroup("org1.dev").getId(), false, IdentityZone.getUaaZoneId()).stream()
+                .map(ScimGroupMember::getMemberId)
+                .collect(Collectors.toList());
+        assertThat(memberIds, hasItem(recreated.getId()));
+        assertEquals(2, memberIds.size());
+    }
+
     @Test
     void stripsWhitespaceFromGroupNamesAndDescriptions() throws Exception {
         Map<String, String> groups = new HashMap<>();
@@ -232,4 +276,18 @@ class ScimGroupBootstrapTests {
         assertThat(bootstrappedGroups, PredicateMatcher.has(group -> "fish.nemo".equals(group.getDisplayName()) && group.getDescription() == null));
         assertThat(bootstrappedGroups, PredicateMatcher.has(group -> "water.drink".equals(group.getDisplayName()) && "Drink the water".equals(group.getDescription())));
     }
+
+    private BootstrapSectionStore newSectionStore() {
+        jdbcTemplate.update("delete from " + BootstrapSectionStore.TABLE_NAME);
+        BootstrapSectionStore sectionStore = new BootstrapSectionStore(jdbcTemplate);
+        sectionStore.setEnabled(true);
+        return sectionStore;
+    }
+
+    private ScimGroupBootstrap newBootstrap(BootstrapSectionStore sectionStore, List<String> membership, JdbcScimGroupMembershipManager membershipManager) {
+        bootstrap = new ScimGroupBootstrap(gDB, uDB, membershipManager);
+        bootstrap.setSectionStore(sectionStore);
+        bootstrap.setGroupMembers(membership);
+        return bootstrap;
+    }
 }
@@ -11,6 +11,7 @@ import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.cloudfoundry.identity.uaa.scim.endpoints.ScimUserEndpoints;
+import org.cloudfoundry.identity.uaa.scim.event.GroupModifiedEvent;
 import org.cloudfoundry.identity.uaa.scim.exception.InvalidPasswordException;
 import org.cloudfoundry.identity.uaa.scim.exception.MemberNotFoundException;
 import org.cloudfoundry.identity.uaa.scim.jdbc.JdbcScimGroupMembershipManager;
@@ -55,6 +56,8 @@ import java.util.UUID;
 import static java.util.Collections.emptyList;
 import static java.util.Optional.ofNullable;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
@@ -62,6 +65,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -493,7 +497,72 @@ class ScimUserBootstrapTests {
 
         bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, true, authorities, true));
 
-        verify(spy, times(externalAuthorities.length*2)).addMember(any(), any(), any());
+        verify(spy).syncExternalMember(userId, origin, Arrays.asList(externalAuthorities), true, IdentityZone.getUaaZoneId());
+        validateAuthoritiesCreated(externalAuthorities, userAuthorities, origin, jdbcScimUserProvisioning.retrieve(userId, IdentityZone.getUaaZoneId()), jdbcScimGroupMembershipManager);
+    }
+
+    @Test
+    void unchangedExternalGroupsAreNotSyncedAgain() {
+        String[] externalAuthorities = new String[]{"extTest1", "extTest2", "extTest3"};
+        String[] userAuthorities = new String[]{"usrTest1"};
+        String origin = "testOrigin";
+        addIdentityProvider(jdbcTemplate, origin);
+        String username = new RandomValueStringGenerator().generate();
+        UaaUser user = getUaaUser(userAuthorities, origin, "test@test.org", "FirstName", "LastName", "testPassword", null, new RandomValueStringGenerator().generate(), username);
+        JdbcScimGroupMembershipManager spy = spy(jdbcScimGroupMembershipManager);
+        ScimUserBootstrap bootstrap = new ScimUserBootstrap(jdbcScimUserProvisioning, jdbcScimGroupProvisioning, spy, Collections.singletonList(user), false, Collections.emptyList());
+        bootstrap.afterPropertiesSet();
+        String userId = jdbcScimUserProvisioning.query("userName eq \"" + username + "\" and origin eq \"" + origin + "\"", IdentityZone.getUaaZoneId()).get(0).getId();
+        user = getUaaUser(userAuthorities, origin, "test@test.org", "FirstName", "LastName", "testPassword", null, userId, username);
+
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(externalAuthorities), true));
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(new String[]{"extTest3", "extTest2", "extTest1"}), true));
+        verify(spy, times(1)).syncExternalMember(any(), any(), any(), anyBoolean(), any());
+
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(new String[]{"extTest1"}), true));
+        verify(spy, times(2)).syncExternalMember(any(), any(), any(), anyBoolean(), any());
+        ScimUser scimUser = jdbcScimUserProvisioning.retrieve(userId, IdentityZone.getUaaZoneId());
+        validateAuthoritiesCreated(new String[]{"extTest1"}, userAuthorities, origin, scimUser, jdbcScimGroupMembershipManager);
+    }
+
+    @Test
+    void groupChangesClearTheSyncedExternalGroups() {
+        String[] externalAuthorities = new String[]{"extTest1", "extTest2"};
+        String origin = "testOrigin";
+        addIdentityProvider(jdbcTemplate, origin);
+        String username = new RandomValueStringGenerator().generate();
+        UaaUser user = getUaaUser(new String[]{"usrTest1"}, origin, "test@test.org", "FirstName", "LastName", "testPassword", null, new RandomValueStringGenerator().generate(), username);
+        JdbcScimGroupMembershipManager spy = spy(jdbcScimGroupMembershipManager);
+        ScimUserBootstrap bootstrap = new ScimUserBootstrap(jdbcScimUserProvisioning, jdbcScimGroupProvisioning, spy, Collections.singletonList(user), false, Collections.emptyList());
+        bootstrap.afterPropertiesSet();
+        String userId = jdbcScimUserProvisioning.query("userName eq \"" + username + "\" and origin eq \"" + origin + "\"", IdentityZone.getUaaZoneId()).get(0).getId();
+        user = getUaaUser(new String[]{"usrTest1"}, origin, "test@test.org", "FirstName", "LastName", "testPassword", null, userId, username);
+
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(externalAuthorities), true));
+        ScimGroup group = jdbcScimGroupProvisioning.getByName("extTest1", IdentityZone.getUaaZoneId());
+        jdbcScimGroupMembershipManager.removeMemberById(group.getId(), userId, IdentityZone.getUaaZoneId());
+        bootstrap.onApplicationEvent(GroupModifiedEvent.groupModified(group.getId(), group.getDisplayName(), new String[0], IdentityZone.getUaaZoneId()));
+        bootstrap.onApplicationEvent(new ExternalGroupAuthorizationEvent(user, false, getAuthorities(externalAuthorities), true));
+
+        verify(spy, times(2)).syncExternalMember(any(), any(), any(), anyBoolean(), any());
+        assertThat(jdbcScimGroupMembershipManager.getGroupsWithExternalMember(userId, origin, IdentityZone.getUaaZoneId()), hasSize(2));
+    }
+
+    @Test
+    void externalGroupNamesAreMatchedIgnoringCase() {
+        String origin = "testOrigin";
+        addIdentityProvider(jdbcTemplate, origin);
+        ScimUser scimUser = new ScimUser(null, new RandomValueStringGenerator().generate(), "First", "Last");
+        scimUser.setPrimaryEmail("test@test.org");
+        scimUser.setOrigin(origin);
+        String userId = jdbcScimUserProvisioning.createUser(scimUser, "", IdentityZone.getUaaZoneId()).getId();
+
+        jdbcScimGroupMembershipManager.syncExternalMember(userId, origin, Arrays.asList("ExtTest1", "exttest1"), true, IdentityZone.getUaaZoneId());
+        Set<ScimGroup> joined = jdbcScimGroupMembershipManager.getGroupsWithExternalMember(userId, origin, IdentityZone.getUaaZoneId());
+        jdbcScimGroupMembershipManager.syncExternalMember(userId, origin, Collections.singletonList("EXTTEST1"), true, IdentityZone.getUaaZoneId());
+
+        assertThat(joined, hasSize(1));
+        assertThat(jdbcScimGroupMembershipManager.getGroupsWithExternalMember(userId, origin, IdentityZone.getUaaZoneId()), is(joined));
     }
 
     @Test
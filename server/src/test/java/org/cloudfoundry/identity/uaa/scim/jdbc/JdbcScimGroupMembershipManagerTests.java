@@ -8,6 +8,9 @@ import org.cloudfoundry.identity.uaa.resources.jdbc.JdbcPagingListFactory;
 import org.cloudfoundry.identity.uaa.resources.jdbc.LimitSqlAdapter;
 import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMemberChangeResult;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMemberChanges;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMemberChangesResult;
 import org.cloudfoundry.identity.uaa.scim.exception.InvalidScimResourceException;
 import org.cloudfoundry.identity.uaa.scim.exception.MemberAlreadyExistsException;
 import org.cloudfoundry.identity.uaa.scim.exception.MemberNotFoundException;
@@ -631,6 +634,42 @@ class JdbcScimGroupMembershipManagerTests {
         jdbcScimGroupMembershipManager.setMaxSqlParameters(oldValue);
     }
 
+    @Test
+    void applyMemberChangesAddsAndRemovesInBatches() {
+        addMember("g1", "m1", "USER", UAA, jdbcTemplate, uaaIdentityZone.getId());
+        addMember("g1", "m2", "USER", UAA, jdbcTemplate, uaaIdentityZone.getId());
+        validateCount(2, jdbcTemplate, uaaIdentityZone.getId());
+
+        ScimGroupMemberChanges changes = new ScimGroupMemberChanges(
+                Arrays.asList(
+                        new ScimGroupMember("m3"),
+                        new ScimGroupMember("g2", ScimGroupMember.Type.GROUP),
+                        new ScimGroupMember("m1"),
+                        new ScimGroupMember("does-not-exist"),
+                        new ScimGroupMember("otherIdentityZone-m4")
+                ),
+                Arrays.asList("m2", "m5"));
+        ScimGroupMemberChangesResult result = jdbcScimGroupMembershipManager.applyMemberChanges("g1", changes, uaaIdentityZone.getId());
+
+        assertEquals("test1", result.getDisplayName());
+        assertEquals(
+                Arrays.asList(201, 201, 409, 404, 404, 200, 404),
+                result.getResults().stream().map(ScimGroupMemberChangeResult::getStatus).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("m3", "g2", "m2"), result.getChangedMemberIds());
+
+        Set<String> members = jdbcScimGroupMembershipManager.getMembers("g1", false, uaaIdentityZone.getId())
+                .stream()
+                .map(ScimGroupMember::getMemberId)
+                .collect(Collectors.toSet());
+        assertEquals(new HashSet<>(Arrays.asList("m1", "m3", "g2")), members);
+    }
+
+    @Test
+    void applyMemberChangesToUnknownGroup() {
+        assertThrows(ScimResourceNotFoundException.class,
+                () -> jdbcScimGroupMembershipManager.applyMemberChanges("unknown", new ScimGroupMemberChanges(), uaaIdentityZone.getId()));
+    }
+
     private void validateM5(int i, Set<ScimGroup> m5, int prefix) {
         int count = 0;
         for (ScimGroup g: m5) {
@@ -29,14 +29,18 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.cloudfoundry.identity.uaa.constants.OriginKeys.LOGIN_SERVER;
 import static org.cloudfoundry.identity.uaa.constants.OriginKeys.UAA;
@@ -335,6 +339,103 @@ class JdbcScimUserProvisioningTests {
         assertTrue(Math.abs(created.getMeta().getCreated().getTime() - created.getPasswordLastModified().getTime()) < 1001); //1 second at most given MySQL fractionless timestamp
     }
 
+    @Test
+    void canCreateUsersInOneBatch() {
+        List<ScimUser> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ScimUser user = new ScimUser(null, generator.generate() + "@foo.com", "Jo", "User");
+            user.addEmail(user.getUserName());
+            user.setPassword("{noop}encoded-" + i);
+            users.add(user);
+        }
+
+        List<ScimUser> created = jdbcScimUserProvisioning.createUsers(users, currentIdentityZoneId);
+
+        assertEquals(3, created.size());
+        for (int i = 0; i < created.size(); i++) {
+            ScimUser retrieved = jdbcScimUserProvisioning.retrieve(created.get(i).getId(), currentIdentityZoneId);
+            assertEquals(users.get(i).getUserName(), retrieved.getUserName());
+            assertEquals(UAA, retrieved.getOrigin());
+            assertEquals("{noop}encoded-" + i, jdbcTemplate.queryForObject("select password from users where id=?", String.class, retrieved.getId()));
+        }
+    }
+
+    @Test
+    void createUsersRejectsTheWholeBatchOnDuplicateUsername() {
+        ScimUser existing = new ScimUser(null, generator.generate() + "@foo.com", "Jo", "User");
+        existing.addEmail(existing.getUserName());
+        jdbcScimUserProvisioning.createUser(existing, "j7hyqpassX", currentIdentityZoneId);
+
+        ScimUser fresh = new ScimUser(null, generator.generate() + "@foo.com", "Jo", "User");
+        fresh.addEmail(fresh.getUserName());
+        ScimUser duplicate = new ScimUser(null, existing.getUserName(), "Jo", "User");
+        duplicate.addEmail(existing.getUserName());
+
+        assertThrows(ScimResourceAlreadyExistsException.class,
+                () -> jdbcScimUserProvisioning.createUsers(Arrays.asList(fresh, duplicate), currentIdentityZoneId));
+    }
+
+    @Test
+    void createUsersLeavesTheTransactionUsableOnDuplicateUsername(@Autowired PlatformTransactionManager transactionManager) {
+        ScimUser existing = new ScimUser(null, generator.generate() + "@foo.com", "Jo", "User");
+        existing.addEmail(existing.getUserName());
+        ScimUser created = jdbcScimUserProvisioning.createUser(existing, "j7hyqpassX", currentIdentityZoneId);
+
+        ScimUser duplicate = new ScimUser(null, existing.getUserName().toUpperCase(), "Jo", "User");
+        duplicate.addEmail(existing.getUserName());
+
+        // a failed statement aborts the whole transaction on PostgreSQL
+        new TransactionTemplate(transactionManager).execute(status -> {
+            ScimResourceAlreadyExistsException e = assertThrows(ScimResourceAlreadyExistsException.class,
+                    () -> jdbcScimUserProvisioning.createUsers(Collections.singletonList(duplicate), currentIdentityZoneId));
+            assertEquals(created.getId(), e.getExtraInfo().get("user_id"));
+            assertEquals(existing.getUserName(), jdbcScimUserProvisioning.retrieve(created.getId(), currentIdentityZoneId).getUserName());
+            status.setRollbackOnly();
+            return null;
+        });
+    }
+
+    @Test
+    void createUsersRejectsDuplicatesWithinTheBatch() {
+        String username = generator.generate() + "@foo.com";
+        ScimUser first = new ScimUser(null, username, "Jo", "User");
+        first.addEmail(username);
+        ScimUser second = new ScimUser(null, username.toUpperCase(), "Jo", "User");
+        second.addEmail(username);
+
+        assertThrows(ScimResourceAlreadyExistsException.class,
+                () -> jdbcScimUserProvisioning.createUsers(Arrays.asList(first, second), currentIdentityZoneId));
+        assertTrue(jdbcScimUserProvisioning.retrieveByUsernameAndZone(username, currentIdentityZoneId).isEmpty());
+    }
+
+    @Test
+    void canStreamUsersMatchingFilter() {
+        String prefix = generator.generate().toLowerCase();
+        for (int i = 0; i < 3; i++) {
+            ScimUser user = new ScimUser(null, prefix + i + "@foo.com", "Jo", "User");
+            user.addEmail(user.getUserName());
+            jdbcScimUserProvisioning.createUser(user, "j7hyqpassX", currentIdentityZoneId);
+        }
+
+        List<String> streamed = new ArrayList<>();
+        jdbcScimUserProvisioning.stream("username sw \"" + prefix + "\"", "username", true, currentIdentityZoneId, 2,
+                user -> streamed.add(user.getUserName()));
+
+        assertEquals(Arrays.asList(prefix + "0@foo.com", prefix + "1@foo.com", prefix + "2@foo.com"), streamed);
+    }
+
+    @Test
+    void canSearchSubstringsWithIndexedPredicates() {
+        SimpleSearchQueryConverter filterConverter = new SimpleSearchQueryConverter();
+        filterConverter.setAttributeNameMapper(new SimpleAttributeNameMapper(Collections.singletonMap("emails\\.value", "email")));
+        filterConverter.setSubstringSearchIndexed(true);
+        jdbcScimUserProvisioning.setQueryConverter(filterConverter);
+
+        List<ScimUser> users = jdbcScimUserProvisioning.query("emails.value co \"JOE.C\" or userName sw \"MAB\"", "username", true, currentIdentityZoneId);
+
+        assertEquals(Arrays.asList(JOE_NAME, "mabel"), users.stream().map(ScimUser::getUserName).collect(Collectors.toList()));
+    }
+
     @Test
     void canModifyPassword() throws Exception {
         ScimUser user = new ScimUser(null, generator.generate() + "@foo.com", "Jo", "User");
@@ -5,45 +5,28 @@ import org.cloudfoundry.identity.uaa.resources.jdbc.SearchQueryConverter.Process
 import org.cloudfoundry.identity.uaa.resources.jdbc.SimpleSearchQueryConverter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mock;
-import org.mockito.Mockito;
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
-import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
 import org.springframework.util.StringUtils;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.mock;
 
 class ScimSearchQueryConverterTests {
 
     private SimpleSearchQueryConverter filterProcessor;
     private final String zoneId = "fake-zone-id";
     private boolean expectCaseInsensitiveDbBehavior;
-    RandomValueStringGenerator randomStringGenerator = mock(RandomValueStringGenerator.class);
 
     @BeforeEach
     void setUp() {
-        Mockito.when(randomStringGenerator.generate()).thenAnswer(new Answer() {
-            private int count = 0;
-
-            public Object answer(InvocationOnMock invocation) {
-                if (count++ == 1)
-                    return "look-at-all-these-dashes";
-
-                return "nodashesinthisone";
-            }
-        });
-
         expectCaseInsensitiveDbBehavior = false;
         Map<String, String> replaceWith = new HashMap<>();
         replaceWith.put("emails\\.value", "email");
         replaceWith.put("groups\\.display", "authorities");
         replaceWith.put("phoneNumbers\\.value", "phoneNumber");
-        filterProcessor = new SimpleSearchQueryConverter(randomStringGenerator);
+        filterProcessor = new SimpleSearchQueryConverter();
         filterProcessor.setAttributeNameMapper(new SimpleAttributeNameMapper(replaceWith));
     }
 
@@ -152,6 +135,47 @@ class ScimSearchQueryConverterTests {
         validate(filterProcessor.convert("username pr", "emails.value", true, zoneId), "username IS NOT NULL", "ORDER BY email ASC", 0);
     }
 
+    @Test
+    void indexedSubstringSearchBindsLowerCasedValues() {
+        filterProcessor.setSubstringSearchIndexed(true);
+        ProcessedFilter contains = filterProcessor.convert("emails.value co \"Example\"", null, false, zoneId);
+        validate(contains, "LOWER(email) LIKE :__value_0", null, 1, String.class);
+        assertEquals("%example%", contains.getParams().get("__value_0"));
+
+        ProcessedFilter startsWith = filterProcessor.convert("userName sw \"JO\" and userName eq \"Joe\"", null, false, zoneId);
+        validate(startsWith, "(LOWER(userName) LIKE :__value_0 AND LOWER(userName) = LOWER(:__value_1))", null, 2, String.class, String.class);
+        assertEquals("jo%", startsWith.getParams().get("__value_0"));
+        assertEquals("Joe", startsWith.getParams().get("__value_1"));
+
+        assertEquals("%other%", filterProcessor.convert("emails.value co \"OTHER\"", null, false, zoneId).getParams().get("__value_0"));
+    }
+
+    @Test
+    void filtersOfTheSameShapeShareTheirSql() {
+        ProcessedFilter first = filterProcessor.convert("username eq \"joe\" and emails.value co \"example\" and active eq true", "username", true, zoneId);
+        ProcessedFilter second = filterProcessor.convert("username eq \"mary\" and emails.value co \"other\" and active eq true", "username", true, "other-zone-id");
+
+        assertEquals(first.getSql(), second.getSql());
+        assertEquals("mary", second.getParams().get("__value_0"));
+        assertEquals("%other%", second.getParams().get("__value_1"));
+        assertEquals(Boolean.TRUE, second.getParams().get("__value_2"));
+        assertEquals("other-zone-id", second.getParams().get("__value_3"));
+        assertEquals("joe", first.getParams().get("__value_0"));
+        assertEquals(zoneId, first.getParams().get("__value_3"));
+    }
+
+    @Test
+    void cachedFiltersStillDistinguishDatesAndSecrets() {
+        filterProcessor.convert("meta.lastModified gt \"2013-09-19T21:22:38.000Z\"", null, false, zoneId);
+        ProcessedFilter date = filterProcessor.convert("meta.lastModified gt \"2014-01-01T00:00:00.000Z\"", null, false, zoneId);
+        ProcessedFilter text = filterProcessor.convert("meta.lastModified gt \"yesterday\"", null, false, zoneId);
+        validate(date, "lastModified > :__value_0", null, 1, Date.class);
+        validate(text, "LOWER(lastModified) > LOWER(:__value_0)", null, 1, String.class);
+
+        filterProcessor.convert("password eq \"first\"", null, false, zoneId);
+        assertEquals("", filterProcessor.convert("password eq \"second\"", null, false, zoneId).getParams().get("__value_0"));
+    }
+
     private void validate(ProcessedFilter filter, String expectedWhereClauseBeforeIdentityZoneCheck, String expectedOrderByClause, int expectedParamCount, Class... types) {
         assertNotNull(filter);
         assertFalse(filter.getParamPrefix().contains("-"), "Filter's param prefix cannot contain '-': " + filter.getParamPrefix());
@@ -159,10 +183,7 @@ class ScimSearchQueryConverterTests {
         // There is always an implied "and also the identity zone must match the zone in which the
         // user performed the query" clause, which also causes an extra param on the filter, so
         // account for that in all of the expectations here
-        String expectedIdentityZoneWhereClause = expectCaseInsensitiveDbBehavior ?
-                " AND identity_zone_id = :__value_" + expectedParamCount
-                :
-                " AND LOWER(identity_zone_id) = LOWER(:__value_" + expectedParamCount + ")";
+        String expectedIdentityZoneWhereClause = " AND identity_zone_id = :__value_" + expectedParamCount;
         String expectedSql = "(" + expectedWhereClauseBeforeIdentityZoneCheck + expectedIdentityZoneWhereClause + ")";
         if (StringUtils.hasText(expectedOrderByClause)) {
             expectedSql += " " + expectedOrderByClause;
@@ -431,6 +431,43 @@ public class CorsFilterTests {
         );
     }
 
+    @Test
+    public void originsMatchLiteralAndRegexPatterns() throws ServletException, IOException {
+        CorsFilter corsFilter = new CorsFilter();
+        corsFilter.getXhrConfiguration().setAllowedUris(new ArrayList<>(Collections.singletonList("^/uaa/userinfo$")));
+        corsFilter.getXhrConfiguration().setAllowedOrigins(new ArrayList<>(Arrays.asList(
+                "^https://app\\.example\\.com$", "\\.example\\.org$", "^(a)\\1\\.example\\.net$", "invalid(")));
+        corsFilter.initialize();
+
+        for (String origin : Arrays.asList("https://app.example.com", "https://x.example.org", "aa.example.net")) {
+            assertEquals(origin, 200, xhrGet(corsFilter, origin).getStatus());
+        }
+        for (String origin : Arrays.asList("https://app.example.com.evil", "https://appXexample.com", "https://example.org.evil", "ab.example.net")) {
+            assertEquals(origin, 403, xhrGet(corsFilter, origin).getStatus());
+            // the decision is remembered
+            assertEquals(origin, 403, xhrGet(corsFilter, origin).getStatus());
+        }
+    }
+
+    @Test
+    public void literalPatterns() {
+        assertEquals("https://app.example.com", CorsPolicy.Matcher.literalOf("^https://app\\.example\\.com$"));
+        assertEquals("a$", CorsPolicy.Matcher.literalOf("^a\\$$"));
+        assertNull(CorsPolicy.Matcher.literalOf("^https://app.example.com$"));
+        assertNull(CorsPolicy.Matcher.literalOf("^a\\$"));
+        assertNull(CorsPolicy.Matcher.literalOf("^a\\d$"));
+        assertNull(CorsPolicy.Matcher.literalOf("example\\.com$"));
+    }
+
+    private static MockHttpServletResponse xhrGet(CorsFilter corsFilter, String origin) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uaa/userinfo");
+        request.addHeader("Origin", origin);
+        request.addHeader("X-Requested-With", "XMLHttpRequest");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        corsFilter.doFilter(request, response, newMockFilterChain());
+        return response;
+    }
+
     private static CorsFilter createConfiguredCorsFilter() {
         CorsFilter corsFilter = new CorsFilter();
 
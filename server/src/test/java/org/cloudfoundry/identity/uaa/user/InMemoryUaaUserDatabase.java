@@ -103,6 +103,16 @@ public class InMemoryUaaUserDatabase implements UaaUserDatabase {
         retrieveUserById(id).setLastLogonTime(System.currentTimeMillis());
     }
 
+    @Override
+    public boolean updatePasswordHash(String id, String currentHash, String newHash) {
+        UaaUser user = retrieveUserById(id);
+        if (!currentHash.equals(user.getPassword())) {
+            return false;
+        }
+        updateUser(id, new UaaUser(new UaaUserPrototype(user).withPassword(newHash)));
+        return true;
+    }
+
     public UaaUser updateUser(String userId, UaaUser user) throws UsernameNotFoundException {
 
         if (!ids.containsKey(userId)) {
@@ -315,6 +315,13 @@ class JdbcUaaUserDatabaseTests {
         assertEquals((long) joe.getLastLogonTime(), 2000L);
     }
 
+    @Test
+    void retrievePasswordLastModified() {
+        assertEquals(jdbcUaaUserDatabase.retrieveUserPrototypeById(JOE_ID).getPasswordLastModified(),
+                jdbcUaaUserDatabase.retrievePasswordLastModified(JOE_ID));
+        assertThrows(UsernameNotFoundException.class, () -> jdbcUaaUserDatabase.retrievePasswordLastModified(ALICE_ID));
+    }
+
     @Test
     void getValidUserInDefaultZoneFromOtherZoneFails() {
         when(mockIdentityZoneManager.getCurrentIdentityZoneId()).thenReturn("zone-the-second");
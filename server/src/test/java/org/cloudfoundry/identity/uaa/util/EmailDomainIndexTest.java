@@ -0,0 +1,76 @@
+package org.cloudfoundry.identity.uaa.util;
+
+import org.cloudfoundry.identity.uaa.constants.OriginKeys;
+import org.cloudfoundry.identity.uaa.provider.AbstractIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.provider.IdentityProvider;
+import org.cloudfoundry.identity.uaa.provider.SamlIdentityProviderDefinition;
+import org.cloudfoundry.identity.uaa.provider.UaaIdentityProviderDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+class EmailDomainIndexTest {
+
+    private final IdentityProvider uaa = provider(OriginKeys.UAA, new UaaIdentityProviderDefinition(null, null));
+    private final IdentityProvider exact = saml("exact", "test.org", "Example.COM");
+    private final IdentityProvider subdomains = saml("subdomains", "*.test.org", "*.*.test.org");
+    private final IdentityProvider partial = saml("partial", "dept-*.test.org", "test.*");
+    private final IdentityProvider special = saml("special", "te(st).org", "a+b.com");
+    private final List<IdentityProvider> providers = Arrays.asList(uaa, exact, subdomains, partial, special);
+
+    @Test
+    void matchesLikeTheWildcardPatterns() {
+        EmailDomainIndex index = EmailDomainIndex.of(providers);
+        List<String> domains = Arrays.asList(
+                "test.org", "example.com", "Example.COM", "a.test.org", "a.b.test.org", "a.b.c.test.org",
+                "dept-x.test.org", "dept-.test.org", "test.com", "test.co.uk", "te(st).org", "test).org",
+                "a+b.com", "aab.com", ".test.org", "test.org.", "a.b.c.d", "a.b.c.d.e", "localhost", "");
+
+        for (String domain : domains) {
+            for (boolean explicit : new boolean[]{true, false}) {
+                List<String> expected = providers.stream()
+                        .filter(p -> DomainFilter.doesEmailDomainMatchProvider(p, domain, explicit))
+                        .map(IdentityProvider::getOriginKey)
+                        .collect(Collectors.toList());
+                List<String> actual = index.match(domain, explicit).stream()
+                        .map(IdentityProvider::getOriginKey)
+                        .collect(Collectors.toList());
+                assertThat(domain + " explicit=" + explicit, actual, is(expected));
+            }
+        }
+    }
+
+    @Test
+    void matchesAreInProviderOrder() {
+        EmailDomainIndex index = EmailDomainIndex.of(Arrays.asList(special, subdomains, exact, saml("second", "test.org")));
+
+        assertThat(index.match("test.org", true).stream().map(IdentityProvider::getOriginKey).collect(Collectors.toList()),
+                contains("exact", "second"));
+    }
+
+    @Test
+    void emptyIndex() {
+        assertThat(EmailDomainIndex.of(null).match("test.org", false), is(empty()));
+        assertThat(EmailDomainIndex.of(null).getProviders(), is(empty()));
+    }
+
+    private static IdentityProvider saml(String origin, String... domains) {
+        SamlIdentityProviderDefinition definition = new SamlIdentityProviderDefinition();
+        definition.setEmailDomain(Arrays.asList(domains));
+        return provider(origin, definition);
+    }
+
+    private static IdentityProvider provider(String origin, AbstractIdentityProviderDefinition definition) {
+        IdentityProvider provider = new IdentityProvider();
+        provider.setOriginKey(origin);
+        provider.setConfig(definition);
+        return provider;
+    }
+}
@@ -84,4 +84,33 @@ class BackwardsCompatibleDelegatingPasswordEncoderTest {
             verify(mockPasswordEncoder).matches("password", "encodedPassword");
         }
     }
+
+    @Nested
+    class UpgradeEncoding {
+
+        private final String cost4Hash = new BCryptPasswordEncoder(4).encode("password");
+        private final String cost5Hash = new BCryptPasswordEncoder(5).encode("password");
+
+        @Test
+        void reportsHashesWithDifferentWorkFactor() {
+            PasswordEncoder cost5Encoder = new BackwardsCompatibleDelegatingPasswordEncoder(new BCryptPasswordEncoder(5), 5);
+            assertThat(cost5Encoder.upgradeEncoding(cost4Hash), is(true));
+            assertThat(cost5Encoder.upgradeEncoding("{bcrypt}" + cost4Hash), is(true));
+            assertThat(cost5Encoder.upgradeEncoding(cost5Hash), is(false));
+        }
+
+        @Test
+        void reportsHashesWithHigherWorkFactor() {
+            PasswordEncoder cost4Encoder = new BackwardsCompatibleDelegatingPasswordEncoder(new BCryptPasswordEncoder(4), 4);
+            assertThat(cost4Encoder.upgradeEncoding(cost5Hash), is(true));
+            assertThat(cost4Encoder.upgradeEncoding(cost4Hash), is(false));
+        }
+
+        @Test
+        void ignoresValuesThatAreNotBcryptHashes() {
+            assertThat(encoder.upgradeEncoding(null), is(false));
+            assertThat(encoder.upgradeEncoding(""), is(false));
+            assertThat(encoder.upgradeEncoding("encodedPassword"), is(false));
+        }
+    }
 }
@@ -0,0 +1,141 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CoalescingSessionRepositoryTest {
+    private static final String SESSION_ID = "id";
+    private FindByIndexNameSessionRepository<Session> delegate;
+    private CoalescingSessionRepository repository;
+    private Instant stored;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        delegate = mock(FindByIndexNameSessionRepository.class);
+        repository = new CoalescingSessionRepository(delegate, Duration.ofSeconds(60));
+        stored = Instant.now().minusSeconds(10);
+    }
+
+    @Test
+    void lastAccessWithinSlackIsNotWritten() {
+        MapSession session = storedSession();
+
+        CoalescingSessionRepository.CoalescingSession found = repository.findById(SESSION_ID);
+        Instant now = Instant.now();
+        found.setLastAccessedTime(now);
+
+        assertThat(session.getLastAccessedTime()).isEqualTo(stored);
+        assertThat(found.getLastAccessedTime()).isEqualTo(now);
+        assertThat(found.isExpired()).isFalse();
+        assertThat(repository.getSkippedAccessTimeWrites()).isEqualTo(1);
+    }
+
+    @Test
+    void lastAccessBeyondSlackIsWritten() {
+        MapSession session = storedSession();
+
+        CoalescingSessionRepository.CoalescingSession found = repository.findById(SESSION_ID);
+        Instant later = stored.plusSeconds(60);
+        found.setLastAccessedTime(later);
+
+        assertThat(session.getLastAccessedTime()).isEqualTo(later);
+        assertThat(repository.getSkippedAccessTimeWrites()).isZero();
+    }
+
+    @Test
+    void newSessionsAreAlwaysWritten() {
+        MapSession session = new MapSession(SESSION_ID);
+        when(delegate.createSession()).thenReturn(session);
+
+        CoalescingSessionRepository.CoalescingSession created = repository.createSession();
+        Instant now = Instant.now();
+        created.setLastAccessedTime(now);
+        created.setAttribute("name", "value");
+
+        assertThat(session.getLastAccessedTime()).isEqualTo(now);
+        assertThat((String) session.getAttribute("name")).isEqualTo("value");
+    }
+
+    @Test
+    void unchangedAttributeIsNotWritten() {
+        Session session = mock(Session.class);
+        when(session.getLastAccessedTime()).thenReturn(stored);
+        when(session.getAttribute("list")).thenReturn(new ArrayList<>(Arrays.asList("a", "b")));
+        when(delegate.findById(SESSION_ID)).thenReturn(session);
+
+        CoalescingSessionRepository.CoalescingSession found = repository.findById(SESSION_ID);
+        ArrayList<String> sameValue = new ArrayList<>(Arrays.asList("a", "b"));
+        found.setAttribute("list", sameValue);
+
+        verify(session, never()).setAttribute(any(), any());
+        assertThat((Object) found.getAttribute("list")).isSameAs(sameValue);
+        assertThat(repository.getSkippedAttributeWrites()).isEqualTo(1);
+
+        found.setAttribute("list", new ArrayList<>(Arrays.asList("a", "c")));
+        verify(session).setAttribute("list", Arrays.asList("a", "c"));
+    }
+
+    @Test
+    void mutatedAttributeIsWritten() {
+        Session session = mock(Session.class);
+        ArrayList<String> storedValue = new ArrayList<>(Arrays.asList("a", "b"));
+        when(session.getLastAccessedTime()).thenReturn(stored);
+        when(session.getAttribute("list")).thenReturn(storedValue);
+        when(delegate.findById(SESSION_ID)).thenReturn(session);
+
+        CoalescingSessionRepository.CoalescingSession found = repository.findById(SESSION_ID);
+        ArrayList<String> list = found.getAttribute("list");
+        list.add("c");
+        found.setAttribute("list", list);
+
+        verify(session).setAttribute("list", Arrays.asList("a", "b", "c"));
+        assertThat(repository.getSkippedAttributeWrites()).isZero();
+    }
+
+    @Test
+    void attributeWrittenEarlierIsWrittenAgain() {
+        MapSession session = storedSession();
+        session.setAttribute("list", new ArrayList<>(Arrays.asList("a")));
+
+        CoalescingSessionRepository.CoalescingSession found = repository.findById(SESSION_ID);
+        found.setAttribute("list", new ArrayList<>(Arrays.asList("b")));
+        ArrayList<String> list = found.getAttribute("list");
+        list.add("c");
+        found.setAttribute("list", list);
+
+        assertThat((Object) session.getAttribute("list")).isEqualTo(Arrays.asList("b", "c"));
+        assertThat(repository.getSkippedAttributeWrites()).isZero();
+    }
+
+    @Test
+    void saveWritesTheWrappedSession() {
+        MapSession session = storedSession();
+
+        repository.save(repository.findById(SESSION_ID));
+
+        verify(delegate).save(session);
+    }
+
+    private MapSession storedSession() {
+        MapSession session = new MapSession(SESSION_ID);
+        session.setLastAccessedTime(stored);
+        when(delegate.findById(SESSION_ID)).thenReturn(session);
+        return session;
+    }
+}
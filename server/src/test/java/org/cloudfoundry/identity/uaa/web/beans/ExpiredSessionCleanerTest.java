@@ -0,0 +1,58 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@WithDatabaseContext
+class ExpiredSessionCleanerTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ExpiredSessionCleaner cleaner;
+
+    @BeforeEach
+    void setUp() {
+        cleaner = new ExpiredSessionCleaner(jdbcTemplate);
+        cleaner.setEnabled(false);
+        cleaner.setBatchSize(2);
+        cleaner.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from SPRING_SESSION");
+    }
+
+    @Test
+    void deletesExpiredSessionsInBatches() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            insertSession(now - 1000);
+        }
+        String active = insertSession(now + 60000);
+
+        assertThat(cleaner.deleteExpiredSessions()).isEqualTo(5);
+
+        assertThat(jdbcTemplate.queryForList("select PRIMARY_ID from SPRING_SESSION", String.class)).containsExactly(active);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from SPRING_SESSION_ATTRIBUTES", Integer.class)).isEqualTo(1);
+        assertThat(cleaner.getDeletedCount()).isEqualTo(5);
+    }
+
+    private String insertSession(long expiryTime) {
+        String id = UUID.randomUUID().toString();
+        jdbcTemplate.update("insert into SPRING_SESSION (PRIMARY_ID, SESSION_ID, CREATION_TIME, LAST_ACCESS_TIME, MAX_INACTIVE_INTERVAL, EXPIRY_TIME) values (?,?,?,?,?,?)",
+                id, UUID.randomUUID().toString(), expiryTime - 1800000, expiryTime - 1800000, 1800, expiryTime);
+        jdbcTemplate.update("insert into SPRING_SESSION_ATTRIBUTES (SESSION_PRIMARY_ID, ATTRIBUTE_NAME, ATTRIBUTE_BYTES) values (?,?,?)",
+                id, "name", new byte[]{1, 2, 3});
+        return id;
+    }
+}
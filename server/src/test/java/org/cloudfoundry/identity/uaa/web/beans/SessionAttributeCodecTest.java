@@ -0,0 +1,122 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthentication;
+import org.cloudfoundry.identity.uaa.authentication.UaaAuthenticationDetails;
+import org.cloudfoundry.identity.uaa.authentication.UaaLoginHint;
+import org.cloudfoundry.identity.uaa.authentication.UaaPrincipal;
+import org.cloudfoundry.identity.uaa.user.UaaAuthority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.PortResolverImpl;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+import org.springframework.util.LinkedMultiValueMap;
+
+import javax.servlet.http.Cookie;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionAttributeCodecTest {
+    private SessionAttributeCodec codec;
+    private UaaAuthentication authentication;
+
+    @BeforeEach
+    void setUp() {
+        codec = new SessionAttributeCodec();
+        codec.setCompactFormat(true);
+        UaaAuthenticationDetails details = new UaaAuthenticationDetails(false, "login", "127.0.0.1", "session-id",
+                new UaaLoginHint("ldap"), Collections.singletonMap("client_id", new String[]{"login"}));
+        authentication = new UaaAuthentication(
+                new UaaPrincipal("user-id", "marissa", "marissa@test.org", "uaa", "external-id", "uaa"),
+                null,
+                Arrays.asList(UaaAuthority.UAA_USER, new SimpleGrantedAuthority("openid")),
+                details,
+                true,
+                System.currentTimeMillis(),
+                -1);
+        authentication.setExternalGroups(new HashSet<>(Arrays.asList("admins", "users")));
+        LinkedMultiValueMap<String, String> userAttributes = new LinkedMultiValueMap<>();
+        userAttributes.put("cost_center", Arrays.asList("1", "2"));
+        authentication.setUserAttributes(userAttributes);
+        authentication.setAuthenticationMethods(new HashSet<>(Arrays.asList("pwd", "mfa")));
+        authentication.setAuthContextClassRef(Collections.singleton("urn:oasis:names:tc:SAML:2.0:ac:classes:Password"));
+    }
+
+    @Test
+    void securityContextRoundTripsInCompactForm() {
+        byte[] bytes = codec.serialize(new SecurityContextImpl(authentication));
+
+        assertThat(SessionAttributeCodec.isCompactFormat(bytes)).isTrue();
+        assertThat(bytes.length * 5).isLessThan(new SerializingConverter().convert(new SecurityContextImpl(authentication)).length);
+
+        UaaAuthentication read = (UaaAuthentication) ((SecurityContextImpl) codec.deserialize(bytes)).getAuthentication();
+        assertThat(read).isEqualTo(authentication);
+        assertThat(read.getPrincipal().getEmail()).isEqualTo("marissa@test.org");
+        assertThat(read.getPrincipal().getExternalId()).isEqualTo("external-id");
+        assertThat(read.getAuthorities()).containsExactly(UaaAuthority.UAA_USER, new SimpleGrantedAuthority("openid"));
+        assertThat(read.getDetails()).isEqualTo(authentication.getDetails());
+        assertThat(((UaaAuthenticationDetails) read.getDetails()).getLoginHint().getOrigin()).isEqualTo("ldap");
+        assertThat(((UaaAuthenticationDetails) read.getDetails()).getParameterMap()).containsOnlyKeys("client_id");
+        assertThat(read.getExternalGroups()).isEqualTo(authentication.getExternalGroups());
+        assertThat(read.getUserAttributesAsMap()).isEqualTo(authentication.getUserAttributesAsMap());
+        assertThat(read.getAuthenticationMethods()).isEqualTo(authentication.getAuthenticationMethods());
+        assertThat(read.getAuthContextClassRef()).isEqualTo(authentication.getAuthContextClassRef());
+        assertThat(read.getLastLoginSuccessTime()).isNull();
+        assertThat(read.isAuthenticated()).isTrue();
+        assertThat(read.getAuthenticatedTime()).isEqualTo(authentication.getAuthenticatedTime());
+        assertThat(read.getExpiresAt()).isEqualTo(-1);
+    }
+
+    @Test
+    void savedRequestRoundTripsInCompactForm() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/oauth/authorize");
+        request.setQueryString("client_id=app&response_type=code");
+        request.addParameter("client_id", "app");
+        request.addParameter("response_type", "code");
+        request.addHeader("Accept", "text/html");
+        request.setCookies(new Cookie("JSESSIONID", "abc"));
+        request.addPreferredLocale(Locale.GERMANY);
+        DefaultSavedRequest savedRequest = new DefaultSavedRequest(request, new PortResolverImpl());
+
+        byte[] bytes = codec.serialize(savedRequest);
+
+        assertThat(SessionAttributeCodec.isCompactFormat(bytes)).isTrue();
+        DefaultSavedRequest read = (DefaultSavedRequest) codec.deserialize(bytes);
+        assertThat(read.getRedirectUrl()).isEqualTo(savedRequest.getRedirectUrl());
+        assertThat(read.getParameterMap()).containsOnlyKeys("client_id", "response_type");
+        assertThat(read.getHeaderValues("accept")).containsExactly("text/html");
+        assertThat(read.getCookies()).extracting(Cookie::getValue).containsExactly("abc");
+        assertThat(read.getLocales()).isEqualTo(savedRequest.getLocales());
+        assertThat(read.doesRequestMatch(request, new PortResolverImpl())).isTrue();
+    }
+
+    @Test
+    void otherValuesAndCredentialsAreJavaSerialized() {
+        assertThat(SessionAttributeCodec.isCompactFormat(codec.serialize("value"))).isFalse();
+        assertThat(codec.deserialize(codec.serialize("value"))).isEqualTo("value");
+
+        UaaAuthentication withCredentials = new UaaAuthentication(authentication.getPrincipal(), "secret",
+                authentication.getAuthorities(), null, true, System.currentTimeMillis());
+        byte[] bytes = codec.serialize(withCredentials);
+        assertThat(SessionAttributeCodec.isCompactFormat(bytes)).isFalse();
+        assertThat(((UaaAuthentication) codec.deserialize(bytes)).getCredentials()).isEqualTo("secret");
+    }
+
+    @Test
+    void javaSerializedAttributesAreReadWhenCompactFormatIsOff() {
+        byte[] legacy = new SerializingConverter().convert(authentication);
+        assertThat(codec.deserialize(legacy)).isEqualTo(authentication);
+
+        codec.setCompactFormat(false);
+        byte[] bytes = codec.serialize(new SecurityContextImpl(authentication));
+        assertThat(SessionAttributeCodec.isCompactFormat(bytes)).isFalse();
+        assertThat(((SecurityContextImpl) codec.deserialize(bytes)).getAuthentication()).isEqualTo(authentication);
+    }
+}
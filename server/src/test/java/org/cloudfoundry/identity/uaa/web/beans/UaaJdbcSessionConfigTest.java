@@ -0,0 +1,73 @@
+package org.cloudfoundry.identity.uaa.web.beans;
+
+import org.cloudfoundry.identity.uaa.annotations.WithDatabaseContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.env.MockPropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@WithDatabaseContext
+class UaaJdbcSessionConfigTest {
+
+    @Autowired
+    private ApplicationContext databaseContext;
+
+    private AnnotationConfigApplicationContext context;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.setParent(databaseContext);
+        context.getEnvironment().getPropertySources().addFirst(new MockPropertySource()
+                .withProperty("servlet.session-store", "database")
+                .withProperty("servlet.session-coalescing.enabled", "true"));
+        context.register(UaaJdbcSessionConfig.class);
+        context.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void coalescingWrapsTheJdbcRepositoryForTheSessionFilter() throws Exception {
+        assertThat(context.getBean(JdbcIndexedSessionRepository.class)).isNotNull();
+        assertThat(context.getBean(FindByIndexNameSessionRepository.class)).isInstanceOf(CoalescingSessionRepository.class);
+
+        SessionRepositoryFilter<?> filter = context.getBean(SessionRepositoryFilter.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), response,
+                chain(request -> request.getSession().setAttribute("name", "value")));
+        Cookie cookie = response.getCookie("JSESSIONID");
+        assertThat(cookie).isNotNull();
+
+        AtomicReference<Object> read = new AtomicReference<>();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(cookie);
+        filter.doFilter(request, new MockHttpServletResponse(),
+                chain(r -> read.set(r.getSession(false).getAttribute("name"))));
+
+        assertThat(read.get()).isEqualTo("value");
+    }
+
+    private static FilterChain chain(Consumer<HttpServletRequest> work) {
+        return (request, response) -> work.accept((HttpServletRequest) request);
+    }
+}
@@ -0,0 +1,75 @@
+package org.cloudfoundry.identity.uaa.zone;
+
+import org.cloudfoundry.identity.uaa.audit.event.EntityDeletedEvent;
+import org.cloudfoundry.identity.uaa.zone.event.IdentityZoneModifiedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.security.core.Authentication;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdentityZoneCacheTests {
+
+    private IdentityZoneProvisioning provisioning;
+    private IdentityZoneCache cache;
+    private IdentityZone zone;
+
+    @BeforeEach
+    void setUp() {
+        provisioning = mock(IdentityZoneProvisioning.class);
+        cache = new IdentityZoneCache(provisioning);
+        zone = MultitenancyFixture.identityZone("zone-id", "zone-subdomain");
+        when(provisioning.retrieve("zone-id")).thenReturn(zone);
+        when(provisioning.retrieveBySubdomain("Zone-Subdomain")).thenReturn(zone);
+        when(provisioning.retrieveBySubdomain("zone-subdomain")).thenReturn(zone);
+    }
+
+    @Test
+    void zonesAreLoadedOnce() {
+        assertSame(zone, cache.retrieve("zone-id"));
+        assertSame(zone, cache.retrieve("zone-id"));
+        assertSame(zone, cache.retrieveBySubdomain("Zone-Subdomain"));
+        assertSame(zone, cache.retrieveBySubdomain("zone-subdomain"));
+
+        verify(provisioning, times(1)).retrieve("zone-id");
+        verify(provisioning, times(1)).retrieveBySubdomain("Zone-Subdomain");
+    }
+
+    @Test
+    void modifiedZonesAreLoadedAgain() {
+        cache.retrieve("zone-id");
+        cache.retrieveBySubdomain("zone-subdomain");
+
+        cache.onApplicationEvent(IdentityZoneModifiedEvent.identityZoneModified(zone));
+        cache.retrieve("zone-id");
+        cache.retrieveBySubdomain("zone-subdomain");
+
+        verify(provisioning, times(2)).retrieve("zone-id");
+        verify(provisioning, times(2)).retrieveBySubdomain("zone-subdomain");
+    }
+
+    @Test
+    void deletedZonesAreLoadedAgain() {
+        cache.retrieve("zone-id");
+
+        cache.onApplicationEvent(new EntityDeletedEvent<>(zone, mock(Authentication.class), IdentityZone.getUaaZoneId()));
+        when(provisioning.retrieve("zone-id")).thenThrow(new ZoneDoesNotExistsException("not found"));
+
+        assertThrows(ZoneDoesNotExistsException.class, () -> cache.retrieve("zone-id"));
+    }
+
+    @Test
+    void missingZonesAreNotCached() {
+        when(provisioning.retrieveBySubdomain("missing")).thenThrow(new EmptyResultDataAccessException(1));
+
+        assertThrows(EmptyResultDataAccessException.class, () -> cache.retrieveBySubdomain("missing"));
+        assertThrows(EmptyResultDataAccessException.class, () -> cache.retrieveBySubdomain("missing"));
+        verify(provisioning, times(2)).retrieveBySubdomain("missing");
+    }
+}
@@ -257,6 +257,33 @@ class DynamicZoneAwareAuthenticationManagerTest {
         assertEquals(manager.getLdapAuthenticationManager(ZONE, ldapActive), chainedAuthenticationManager.getDelegates()[0].getAuthenticationManager());
     }
 
+    @Test
+    void ldapManagersAreWarmedUpAndSwappedIn() {
+        final DynamicLdapAuthenticationManager warmed = mock(DynamicLdapAuthenticationManager.class);
+        when(warmed.getDefinition()).thenReturn(ldapIdentityProviderDefinition);
+        DynamicZoneAwareAuthenticationManager manager = new DynamicZoneAwareAuthenticationManager(
+            providerProvisioning,
+            uaaAuthenticationMgr,
+            scimGroupExternalMembershipManager,
+            scimGroupProvisioning,
+            ldapLoginAuthenticationManager
+        ) {
+            @Override
+            protected DynamicLdapAuthenticationManager newLdapAuthenticationManager(LdapIdentityProviderDefinition definition) {
+                return warmed;
+            }
+        };
+
+        manager.warmUp(ZONE.getId(), ldapIdentityProviderDefinition);
+
+        verify(warmed, times(1)).getLdapAuthenticationManager();
+        assertSame(warmed, manager.getLdapAuthenticationManager(ZONE, ldapActive));
+
+        manager.warmUp(ZONE.getId(), ldapIdentityProviderDefinition);
+        verify(warmed, times(2)).getLdapAuthenticationManager();
+        verify(warmed, times(0)).destroy();
+    }
+
     DynamicZoneAwareAuthenticationManager getDynamicZoneAwareAuthenticationManager() {
         return getDynamicZoneAwareAuthenticationManager(false);
     }
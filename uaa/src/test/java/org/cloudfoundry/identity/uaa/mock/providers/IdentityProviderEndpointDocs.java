@@ -164,6 +164,9 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
     private final FieldDescriptor LDAP_GROUP_AUTO_ADD = fieldWithPath("config.autoAddGroups").optional(true).type(BOOLEAN).description("Set to true when `profile_type=groups_as_scopes` to auto create scopes for a user. Ignored for other profiles.");
     private final FieldDescriptor LDAP_GROUP_SEARCH_SUBTREE = fieldWithPath("config.groupSearchSubTree").optional(true).type(BOOLEAN).description("Boolean value, set to true to search below the search base");
     private final FieldDescriptor LDAP_GROUP_MAX_SEARCH_DEPTH = fieldWithPath("config.maxGroupSearchDepth").optional(10).type(NUMBER).description("Set to number of levels a nested group search should go. Set to `1` to disable nested groups.");
+    private final FieldDescriptor LDAP_GROUP_SEARCH_BATCH_SIZE = fieldWithPath("config.groupSearchBatchSize").optional(50).type(NUMBER).description("The maximum number of nested groups whose parent groups are looked up with one search. Only used when the group search filter matches on the member DN alone, like `member={0}`.");
+    private final FieldDescriptor LDAP_GROUP_CACHE_TTL = fieldWithPath("config.groupCacheTtlSeconds").optional(300).type(NUMBER).description("Time in seconds the parent groups of nested groups are cached. Set to `0` to disable the cache.");
+    private final FieldDescriptor LDAP_GROUP_CACHE_MAX_SIZE = fieldWithPath("config.groupCacheMaxSize").optional(10000).type(NUMBER).description("The maximum number of parent group lookups that are cached.");
     private final FieldDescriptor LDAP_USER_MAIL_ATTRIBUTE = fieldWithPath("config.mailAttributeName").optional(MAIL).type(STRING).description("The name of the LDAP attribute that contains the user's email address");
     private final FieldDescriptor LDAP_USER_MAIL_SUBSTITUTE = fieldWithPath("config.mailSubstitute").optional(null).type(STRING).description("Defines an email pattern containing a `{0}` to generate an email address for an LDAP user during authentication");
     private final FieldDescriptor LDAP_USER_MAIL_SUBSTITUTE_OVERRIDES_LDAP = fieldWithPath("config.mailSubstituteOverridesLdap").optional(false).type(BOOLEAN).description("Set to true if you wish to override an LDAP user email address with a generated one");
@@ -181,6 +184,10 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
     private final FieldDescriptor LDAP_USER_COMPARE_PASSWORD_ATTRIBUTE_NAME = fieldWithPath("config.passwordAttributeName").optional("userPassword").type(STRING).description("Used with `search-and-compare` only. The name of the password attribute in the LDAP directory.");
     private final FieldDescriptor LDAP_USER_COMPARE_ENCODER = fieldWithPath("config.passwordEncoder").optional("org.cloudfoundry.identity.uaa.provider.ldap.DynamicPasswordComparator").type(STRING).description("Used with `search-and-compare` only. A fully-qualified Java classname to the password encoder. This encoder is used to properly encode user password to match the one in the LDAP directory.");
     private final FieldDescriptor LDAP_USER_COMPARE_LOCAL = fieldWithPath("config.localPasswordCompare").optional(null).type(BOOLEAN).description("Set to true if the comparison should be done locally. Setting this value to false implies that rather than retrieving the password, the UAA will run a query to match the password. In order for this query to work, you must know what type of hash/encoding/salt is used for the LDAP password.");
+    private final FieldDescriptor LDAP_POOL_ENABLED = fieldWithPath("config.connectionPoolEnabled").optional(false).type(BOOLEAN).description("Set to true to pool the connections used to search for users and groups. Binds with user credentials are never pooled.");
+    private final FieldDescriptor LDAP_POOL_MAX_SIZE = fieldWithPath("config.connectionPoolMaxSize").optional(8).type(NUMBER).description("The maximum number of pooled connections to the LDAP server.");
+    private final FieldDescriptor LDAP_POOL_VALIDATE = fieldWithPath("config.connectionPoolValidate").optional(true).type(BOOLEAN).description("Validate pooled connections before they are used and while they are idle.");
+    private final FieldDescriptor LDAP_POOL_IDLE_TIMEOUT = fieldWithPath("config.connectionPoolIdleTimeoutMillis").optional(300000).type(NUMBER).description("Time in milliseconds after which an idle pooled connection is closed.");
     private final FieldDescriptor LDAP_GROUP_ROLE_ATTRIBUTE = fieldWithPath("config.groupRoleAttribute").optional("description").type(STRING).description("Used with `groups-as-scopes`, defines the attribute that holds the scope name(s).");
     private final FieldDescriptor LDAP_ATTRIBUTE_MAPPING_FIRSTNAME = fieldWithPath("config.attributeMappings.first_name").optional("givenname").type(STRING).description(GIVEN_NAME_DESC);
     private final FieldDescriptor LDAP_ATTRIBUTE_MAPPING_LASTNAME = fieldWithPath("config.attributeMappings.family_name").optional("sn").type(STRING).description(FAMILY_NAME_DESC);
@@ -205,6 +212,9 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_GROUP_AUTO_ADD,
             LDAP_GROUP_SEARCH_SUBTREE,
             LDAP_GROUP_MAX_SEARCH_DEPTH,
+            LDAP_GROUP_SEARCH_BATCH_SIZE,
+            LDAP_GROUP_CACHE_TTL,
+            LDAP_GROUP_CACHE_MAX_SIZE,
             LDAP_USER_MAIL_ATTRIBUTE,
             LDAP_USER_MAIL_SUBSTITUTE,
             LDAP_USER_MAIL_SUBSTITUTE_OVERRIDES_LDAP,
@@ -218,6 +228,10 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_USER_COMPARE_ENCODER,
             LDAP_USER_COMPARE_LOCAL,
             LDAP_GROUP_ROLE_ATTRIBUTE,
+            LDAP_POOL_ENABLED,
+            LDAP_POOL_MAX_SIZE,
+            LDAP_POOL_VALIDATE,
+            LDAP_POOL_IDLE_TIMEOUT,
             ATTRIBUTE_MAPPING,
             LDAP_ATTRIBUTE_MAPPING_USER_NAME,
             LDAP_ATTRIBUTE_MAPPING_FIRSTNAME,
@@ -243,6 +257,9 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_GROUP_AUTO_ADD,
             LDAP_GROUP_SEARCH_SUBTREE,
             LDAP_GROUP_MAX_SEARCH_DEPTH,
+            LDAP_GROUP_SEARCH_BATCH_SIZE,
+            LDAP_GROUP_CACHE_TTL,
+            LDAP_GROUP_CACHE_MAX_SIZE,
             LDAP_USER_MAIL_ATTRIBUTE,
             LDAP_USER_MAIL_SUBSTITUTE,
             LDAP_USER_MAIL_SUBSTITUTE_OVERRIDES_LDAP,
@@ -256,6 +273,10 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_USER_COMPARE_ENCODER,
             LDAP_USER_COMPARE_LOCAL,
             LDAP_GROUP_ROLE_ATTRIBUTE,
+            LDAP_POOL_ENABLED,
+            LDAP_POOL_MAX_SIZE,
+            LDAP_POOL_VALIDATE,
+            LDAP_POOL_IDLE_TIMEOUT,
             ATTRIBUTE_MAPPING,
             LDAP_ATTRIBUTE_MAPPING_USER_NAME,
             LDAP_ATTRIBUTE_MAPPING_FIRSTNAME,
@@ -279,6 +300,10 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_REFERRAL,
             LDAP_USER_DN_PATTERN,
             LDAP_USER_DN_PATTERN_DELIM,
+            LDAP_POOL_ENABLED,
+            LDAP_POOL_MAX_SIZE,
+            LDAP_POOL_VALIDATE,
+            LDAP_POOL_IDLE_TIMEOUT,
             ATTRIBUTE_MAPPING,
             LDAP_ATTRIBUTE_MAPPING_USER_NAME,
             LDAP_ATTRIBUTE_MAPPING_FIRSTNAME,
@@ -293,6 +318,9 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_GROUP_AUTO_ADD.ignored(),
             LDAP_GROUP_SEARCH_SUBTREE.ignored(),
             LDAP_GROUP_MAX_SEARCH_DEPTH.ignored(),
+            LDAP_GROUP_SEARCH_BATCH_SIZE.ignored(),
+            LDAP_GROUP_CACHE_TTL.ignored(),
+            LDAP_GROUP_CACHE_MAX_SIZE.ignored(),
             LDAP_GROUPS_IGNORE_PARTIAL.ignored(),
             LDAP_USER_COMPARE_PASSWORD_ATTRIBUTE_NAME.ignored(),
             LDAP_USER_COMPARE_ENCODER.ignored(),
@@ -317,6 +345,9 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_GROUP_AUTO_ADD.ignored(),
             LDAP_GROUP_SEARCH_SUBTREE,
             LDAP_GROUP_MAX_SEARCH_DEPTH,
+            LDAP_GROUP_SEARCH_BATCH_SIZE,
+            LDAP_GROUP_CACHE_TTL,
+            LDAP_GROUP_CACHE_MAX_SIZE,
             LDAP_USER_MAIL_ATTRIBUTE,
             LDAP_USER_MAIL_SUBSTITUTE,
             LDAP_USER_MAIL_SUBSTITUTE_OVERRIDES_LDAP,
@@ -330,6 +361,10 @@ class IdentityProviderEndpointDocs extends EndpointDocs {
             LDAP_USER_COMPARE_ENCODER.ignored(),
             LDAP_USER_COMPARE_LOCAL.ignored(),
             LDAP_GROUP_ROLE_ATTRIBUTE.ignored(),
+            LDAP_POOL_ENABLED,
+            LDAP_POOL_MAX_SIZE,
+            LDAP_POOL_VALIDATE,
+            LDAP_POOL_IDLE_TIMEOUT,
             ATTRIBUTE_MAPPING,
             LDAP_ATTRIBUTE_MAPPING_USER_NAME,
             LDAP_ATTRIBUTE_MAPPING_FIRSTNAME,
@@ -0,0 +1,121 @@
+package org.cloudfoundry.identity.uaa.mock.zones;
+
+import org.cloudfoundry.identity.uaa.DefaultTestContext;
+import org.cloudfoundry.identity.uaa.login.util.RandomValueStringGenerator;
+import org.cloudfoundry.identity.uaa.mock.util.MockMvcUtils;
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.test.TestClient;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DefaultTestContext
+class ZoneExportEndpointsMockMvcTests {
+
+    private final RandomValueStringGenerator generator = new RandomValueStringGenerator();
+    private String adminToken;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        adminToken = new TestClient(mockMvc).getClientCredentialsOAuthAccessToken("admin", "adminsecret", "uaa.admin scim.read scim.write");
+    }
+
+    @Test
+    void usersAreExportedOnePerLine() throws Exception {
+        ScimUser first = createUser();
+        ScimUser second = createUser();
+
+        List<String> lines = export("/export/Users", String.format("id eq \"%s\" or id eq \"%s\"", first.getId(), second.getId()), "userName");
+
+        List<String> userNames = lines.stream().map(line -> JsonUtils.readValue(line, ScimUser.class).getUserName()).collect(Collectors.toList());
+        assertThat(userNames, contains(first.getUserName(), second.getUserName()));
+    }
+
+    @Test
+    void groupsAreExportedWithTheirMembers() throws Exception {
+        ScimUser user = createUser();
+        ScimGroup group = new ScimGroup("export." + generator.generate());
+        group.setMembers(Collections.singletonList(new ScimGroupMember(user.getId())));
+        group = MockMvcUtils.createGroup(mockMvc, adminToken, group);
+        ScimGroup empty = MockMvcUtils.createGroup(mockMvc, adminToken,
+                new ScimGroup("export." + generator.generate()));
+
+        List<String> lines = export("/export/Groups", String.format("id eq \"%s\" or id eq \"%s\"", group.getId(), empty.getId()), null);
+
+        assertThat(lines, hasSize(2));
+        Map<String, ScimGroup> exported = lines.stream()
+                .map(line -> JsonUtils.readValue(line, ScimGroup.class))
+                .collect(Collectors.toMap(ScimGroup::getId, g -> g));
+        List<String> memberIds = exported.get(group.getId()).getMembers().stream().map(ScimGroupMember::getMemberId).collect(Collectors.toList());
+        assertThat(memberIds, contains(user.getId()));
+        assertThat(exported.get(empty.getId()).getMembers(), hasSize(0));
+    }
+
+    @Test
+    void clientSecretsAreNotExported() throws Exception {
+        List<String> lines = export("/export/oauth/clients", "client_id eq \"admin\"", null);
+
+        assertThat(lines, hasSize(1));
+        Map<String, Object> client = JsonUtils.readValue(lines.get(0), Map.class);
+        assertThat(client.get("client_id"), is("admin"));
+        assertThat(client, not(hasKey("client_secret")));
+    }
+
+    @Test
+    void invalidFiltersAreRejected() throws Exception {
+        mockMvc.perform(get("/export/Users")
+                .header("Authorization", "Bearer " + adminToken)
+                .param("filter", "unknownAttribute eq \"value\""))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportsNeedAnAdminScope() throws Exception {
+        String scimToken = new TestClient(mockMvc).getClientCredentialsOAuthAccessToken("admin", "adminsecret", "scim.read");
+
+        mockMvc.perform(get("/export/Users").header("Authorization", "Bearer " + scimToken))
+                .andExpect(status().isForbidden());
+    }
+
+    private List<String> export(String path, String filter, String sortBy) throws Exception {
+        String body = mockMvc.perform(get(path)
+                .header("Authorization", "Bearer " + adminToken)
+                .param("filter", filter)
+                .param("sortBy", sortBy == null ? "" : sortBy))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        return Arrays.stream(body.split("\n")).filter(line -> !line.isEmpty()).collect(Collectors.toList());
+    }
+
+    private ScimUser createUser() throws Exception {
+        String userName = generator.generate().toLowerCase() + "@example.com";
+        ScimUser user = new ScimUser(null, userName, "Export", "User");
+        user.setPrimaryEmail(userName);
+        user.setPassword("secr3T");
+        return MockMvcUtils.createUser(mockMvc, adminToken, user);
+    }
+}
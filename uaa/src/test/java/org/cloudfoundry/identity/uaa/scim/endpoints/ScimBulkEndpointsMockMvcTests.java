@@ -0,0 +1,146 @@
+package org.cloudfoundry.identity.uaa.scim.endpoints;
+
+import org.cloudfoundry.identity.uaa.DefaultTestContext;
+import org.cloudfoundry.identity.uaa.login.util.RandomValueStringGenerator;
+import org.cloudfoundry.identity.uaa.mock.util.MockMvcUtils;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkOperation;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkOperationResponse;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkRequest;
+import org.cloudfoundry.identity.uaa.scim.ScimBulkResponse;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.cloudfoundry.identity.uaa.scim.ScimUserProvisioning;
+import org.cloudfoundry.identity.uaa.test.TestClient;
+import org.cloudfoundry.identity.uaa.util.JsonUtils;
+import org.cloudfoundry.identity.uaa.zone.IdentityZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DefaultTestContext
+class ScimBulkEndpointsMockMvcTests {
+
+    private final RandomValueStringGenerator generator = new RandomValueStringGenerator();
+    private String scimWriteToken;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ScimUserProvisioning scimUserProvisioning;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TestClient testClient = new TestClient(mockMvc);
+        String adminToken = testClient.getClientCredentialsOAuthAccessToken("admin", "adminsecret", "clients.write");
+        String clientId = generator.generate().toLowerCase();
+        MockMvcUtils.createClient(mockMvc, adminToken, clientId, "secret", Collections.singleton("oauth"),
+                Collections.singletonList("openid"), Collections.singletonList("client_credentials"), "scim.read,scim.write");
+        scimWriteToken = testClient.getClientCredentialsOAuthAccessToken(clientId, "secret", "scim.read scim.write");
+    }
+
+    @Test
+    void eachOperationGetsItsOwnStatus() throws Exception {
+        ScimUser existing = MockMvcUtils.createUser(mockMvc, scimWriteToken, user(newUserName()));
+        String created = newUserName();
+
+        ScimBulkResponse response = bulk(null,
+                userCreation("first", created),
+                userCreation("taken", existing.getUserName()),
+                new ScimBulkOperation("POST", "group", null, "/Groups", Collections.singletonMap("displayName", "bulk." + generator.generate())),
+                new ScimBulkOperation("DELETE", null, null, "/Users/does-not-exist", null));
+
+        assertThat(statuses(response), contains("201", "409", "201", "404"));
+        String id = response.getOperations().get(0).getLocation().replaceAll(".*/", "");
+        assertThat(scimUserProvisioning.retrieve(id, IdentityZone.getUaaZoneId()).getUserName(), is(created));
+    }
+
+    @Test
+    void processingStopsOnceFailOnErrorsIsReached() throws Exception {
+        ScimUser existing = MockMvcUtils.createUser(mockMvc, scimWriteToken, user(newUserName()));
+        String notCreated = newUserName();
+
+        ScimBulkResponse response = bulk(1,
+                userCreation("created", newUserName()),
+                userCreation("taken", existing.getUserName()),
+                userCreation("notCreated", notCreated));
+
+        assertThat(statuses(response), contains("201", "409"));
+        assertThat(scimUserProvisioning.retrieveByUsernameAndZone(notCreated, IdentityZone.getUaaZoneId()), is(empty()));
+    }
+
+    @Test
+    void failOnErrorsCountsFailuresInRequestOrder() throws Exception {
+        String notCreated = newUserName();
+
+        ScimBulkResponse response = bulk(1,
+                userCreation("created", newUserName()),
+                userCreation("invalid", ""),
+                userCreation("notCreated", notCreated));
+
+        assertThat(statuses(response), contains("201", "400"));
+        assertThat(scimUserProvisioning.retrieveByUsernameAndZone(notCreated, IdentityZone.getUaaZoneId()), is(empty()));
+    }
+
+    @Test
+    void updatesNeedTheCurrentVersion() throws Exception {
+        ScimUser existing = MockMvcUtils.createUser(mockMvc, scimWriteToken, user(newUserName()));
+        Map<String, Object> data = JsonUtils.convertValue(existing, Map.class);
+        data.put("name", Collections.singletonMap("givenName", "Changed"));
+
+        ScimBulkResponse response = bulk(null,
+                new ScimBulkOperation("PUT", null, null, "/Users/" + existing.getId(), data),
+                new ScimBulkOperation("PUT", null, "W/\"" + (existing.getVersion() + 1) + "\"", "/Users/" + existing.getId(), data),
+                new ScimBulkOperation("PUT", null, "W/\"" + existing.getVersion() + "\"", "/Users/" + existing.getId(), data));
+
+        assertThat(statuses(response), contains("400", "409", "200"));
+        assertThat(scimUserProvisioning.retrieve(existing.getId(), IdentityZone.getUaaZoneId()).getGivenName(), is("Changed"));
+    }
+
+    private ScimBulkResponse bulk(Integer failOnErrors, ScimBulkOperation... operations) throws Exception {
+        ScimBulkRequest request = new ScimBulkRequest();
+        request.setFailOnErrors(failOnErrors);
+        request.setOperations(Arrays.asList(operations));
+        String body = mockMvc.perform(post("/Bulk")
+                .header("Authorization", "Bearer " + scimWriteToken)
+                .contentType(APPLICATION_JSON)
+                .content(JsonUtils.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonUtils.readValue(body, ScimBulkResponse.class);
+    }
+
+    private ScimBulkOperation userCreation(String bulkId, String userName) {
+        Map<String, Object> data = JsonUtils.convertValue(user(userName), Map.class);
+        return new ScimBulkOperation("POST", bulkId, null, "/Users", data);
+    }
+
+    private ScimUser user(String userName) {
+        ScimUser user = new ScimUser(null, userName, "Bulk", "User");
+        user.setPrimaryEmail(userName.isEmpty() ? "bulk@example.com" : userName);
+        user.setPassword("secr3T");
+        return user;
+    }
+
+    private String newUserName() {
+        return generator.generate().toLowerCase() + "@example.com";
+    }
+
+    private static List<String> statuses(ScimBulkResponse response) {
+        return response.getOperations().stream().map(ScimBulkOperationResponse::getStatus).collect(Collectors.toList());
+    }
+}